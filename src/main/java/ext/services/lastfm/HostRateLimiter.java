@@ -0,0 +1,103 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spread the requests sent to each host so that no more than one request per interval is
+ * started for a given host, whatever the number of requesting threads.
+ * <p>
+ * Each request books the next free slot of its host and waits for it, slots are booked
+ * atomically so concurrent requests are queued in booking order.
+ * </p>
+ */
+final class HostRateLimiter {
+  /** Minimal delay between two requests to the same host, in nanoseconds. */
+  private final long interval;
+  /** Next free slot (System.nanoTime() based) by host. */
+  private final ConcurrentMap<String, AtomicLong> nextSlots =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * Instantiates a new host rate limiter.
+   *
+   * @param intervalMillis minimal delay between two requests to the same host, in ms
+   */
+  HostRateLimiter(long intervalMillis) {
+    this.interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+  }
+
+  /**
+   * Wait until a request can be sent to the host of an URL.
+   *
+   * @param url the URL, the call returns at once if it is not a valid URL
+   */
+  void acquireForURL(String url) {
+    try {
+      acquire(new URL(url).getHost());
+    } catch (MalformedURLException e) {
+      // The request itself will fail
+    }
+  }
+
+  /**
+   * Wait until a request can be sent to a host. If the thread is interrupted, the call returns
+   * at once with the interrupted status set.
+   *
+   * @param host the host
+   *
+   * @return the waited time in ms
+   */
+  long acquire(String host) {
+    AtomicLong nextSlot = nextSlots.get(host);
+    if (nextSlot == null) {
+      AtomicLong created = new AtomicLong(System.nanoTime());
+      nextSlot = nextSlots.putIfAbsent(host, created);
+      if (nextSlot == null) {
+        nextSlot = created;
+      }
+    }
+    long now = System.nanoTime();
+    long slot;
+    while (true) {
+      long next = nextSlot.get();
+      slot = next - now > 0 ? next : now;
+      if (nextSlot.compareAndSet(next, slot + interval)) {
+        break;
+      }
+    }
+    long wait = slot - now;
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis(wait);
+  }
+}
@@ -31,7 +31,6 @@ import javax.swing.SwingUtilities;
 
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.util.Messages;
-import org.jajuk.util.log.Log;
 
 /**
  * The Class LastFmAlbumsRunnable.
@@ -118,11 +117,7 @@ public class LastFmAlbumsRunnable implements Runnable {
         }
       });
     }
-    try {
-      Thread.sleep(1000); // Wait a second to prevent IP banning
-    } catch (InterruptedException e) {
-      Log.debug("albums runnable interrupted");
-    }
+    // No need to wait here to prevent IP banning, LastFmService spreads the requests
     // If we have to retrieve artist info do it. If not, get previous retrieved
     // albums list
     if (retrieveArtistInfo) {
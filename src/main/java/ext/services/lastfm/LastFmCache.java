@@ -25,52 +25,65 @@ package ext.services.lastfm;
 import ext.services.xml.XMLUtils;
 
 import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import javax.swing.ImageIcon;
+import javax.imageio.ImageIO;
 
 import net.roarsoftware.lastfm.scrobble.SubmissionData;
 
 import org.apache.commons.io.FileUtils;
 import org.jajuk.services.core.SessionService;
+import org.jajuk.services.covers.ImageCache;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
-import org.jajuk.util.MD5Processor;
 import org.jajuk.util.UtilGUI;
 import org.jajuk.util.UtilString;
 import org.jajuk.util.log.Log;
 
 /**
  * The Class LastFmCache.
+ * <p>
+ * Covers, images and information are stored in a single pack file (see LastFmCacheStore) shared
+ * by all instances, within a disk budget of <code>CONF_LASTFM_CACHE_SIZE</code> MB and for
+ * <code>CONF_LASTFM_CACHE_TTL</code> days. Recently retrieved entries are kept decoded in
+ * memory : images in the ImageCache and information in a small LRU map. Retrieved objects are
+ * shared and must not be modified.
+ * </p>
+ * <p>
+ * Submission data are not cached information and are still stored in their own file.
+ * </p>
  */
 public class LastFmCache {
-  /** Album Cover Cache dir. */
-  private static File albumCoverCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_COVER_CACHE_DIR);
-  /** Album Cover Cache dir. */
-  private static File albumInfoCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_INFO_CACHE_DIR);
-  private static File artistInfoCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_INFO_CACHE_DIR);
-  /** Artist thumbs cache dir. */
-  private static File artistThumbCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_THUMB_CACHE_DIR);
-  /** Artist image cache dir. */
-  private static File artistImageCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_IMAGE_CACHE_DIR);
-  /** Artist image cache dir. */
-  private static File artistSimilarCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE
-      + '/' + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_SIMILAR_CACHE_DIR);
-  /** Album list cache dir. */
-  private static File albumListCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_LIST_CACHE_DIR);
-  /** Artist info cache dir. */
-  private static File artistWikiCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_WIKI_CACHE_DIR);
+  /** Number of decoded information kept in memory. */
+  private static final int HOT_SIZE = 100;
+  /** Legacy cache directories, one file per entry, deleted when the pack file is created. */
+  private static final String[] LEGACY_DIRS = { Const.LAST_FM_ALBUM_COVER_CACHE_DIR,
+      Const.LAST_FM_ALBUM_INFO_CACHE_DIR, Const.LAST_FM_ARTIST_INFO_CACHE_DIR,
+      Const.LAST_FM_ARTIST_IMAGE_CACHE_DIR, Const.LAST_FM_ARTIST_SIMILAR_CACHE_DIR,
+      Const.LAST_FM_ARTIST_THUMB_CACHE_DIR, Const.LAST_FM_ALBUM_LIST_CACHE_DIR,
+      Const.LAST_FM_ARTIST_WIKI_CACHE_DIR };
+  /** Shared store, created at first use. */
+  private static LastFmCacheStore store;
+  /** Decoded information by generation and key, in access order. */
+  private static final Map<String, Object> HOT = new LinkedHashMap<String, Object>(HOT_SIZE * 2,
+      0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+      return size() > HOT_SIZE;
+    }
+  };
   private static File submissionCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
       + Const.LASTFM_CACHE + '/' + Const.LAST_FM_SUBMISSION_CACHE_DIR);
 
@@ -82,52 +95,13 @@ public class LastFmCache {
   public synchronized boolean clearCache() {
     boolean exception = false;
     try {
-      FileUtils.cleanDirectory(getAlbumCoverCacheDir());
+      getStore().clear();
     } catch (IOException e) {
-      Log.info("Could not delete all files from album cover cache");
+      Log.info("Could not clear last.fm cache");
       exception = true;
     }
-    try {
-      FileUtils.cleanDirectory(getAlbumInfoCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from album info cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistImageCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist image cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getAlbumListCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from album list cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistSimilarCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from similar artist cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistThumbsCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist thumbs cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistWikiCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist wiki cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistInfoCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist info cache");
-      exception = true;
+    synchronized (HOT) {
+      HOT.clear();
     }
     try {
       FileUtils.cleanDirectory(getSubmissionDataDir());
@@ -139,116 +113,25 @@ public class LastFmCache {
   }
 
   /**
-   * Private getter for albumCoverCacheDir. If dir does not exist, it's created
-   * 
-   * @return the album cover cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getAlbumCoverCacheDir() throws IOException {
-    if (!albumCoverCacheDir.exists()) {
-      FileUtils.forceMkdir(albumCoverCacheDir);
-    }
-    return albumCoverCacheDir;
-  }
-
-  /**
-   * Private getter for albumInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the album info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getAlbumInfoCacheDir() throws IOException {
-    if (!albumInfoCacheDir.exists()) {
-      FileUtils.forceMkdir(albumInfoCacheDir);
-    }
-    return albumInfoCacheDir;
-  }
-
-  /**
-   * Private getter for artistInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistInfoCacheDir() throws IOException {
-    if (!artistInfoCacheDir.exists()) {
-      FileUtils.forceMkdir(artistInfoCacheDir);
-    }
-    return artistInfoCacheDir;
-  }
-
-  /**
-   * Private getter for artistImageCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist image cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistImageCacheDir() throws IOException {
-    if (!artistImageCacheDir.exists()) {
-      FileUtils.forceMkdir(artistImageCacheDir);
-    }
-    return artistImageCacheDir;
-  }
-
-  /**
-   * Private getter for artistInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getAlbumListCacheDir() throws IOException {
-    if (!albumListCacheDir.exists()) {
-      FileUtils.forceMkdir(albumListCacheDir);
-    }
-    return albumListCacheDir;
-  }
-
-  /**
-   * Private getter for artistSimilarCacheDir. If dir does not exist, it's
-   * created
-   * 
-   * @return the artist similar cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistSimilarCacheDir() throws IOException {
-    if (!artistSimilarCacheDir.exists()) {
-      FileUtils.forceMkdir(artistSimilarCacheDir);
-    }
-    return artistSimilarCacheDir;
-  }
-
-  /**
-   * Private getter for artistThumbCacheDir. If dir does not exist, it's created
+   * Gets the shared store, created at first use.
    * 
-   * @return the artist thumbs cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
+   * @return the store
    */
-  private synchronized File getArtistThumbsCacheDir() throws IOException {
-    if (!artistThumbCacheDir.exists()) {
-      FileUtils.forceMkdir(artistThumbCacheDir);
-    }
-    return artistThumbCacheDir;
-  }
-
-  /**
-   * Private getter for artistWikiCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist wiki cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistWikiCacheDir() throws IOException {
-    if (!artistWikiCacheDir.exists()) {
-      FileUtils.forceMkdir(artistWikiCacheDir);
+  static synchronized LastFmCacheStore getStore() {
+    if (store == null) {
+      File dir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/' + Const.LASTFM_CACHE);
+      File file = new File(dir, Const.LAST_FM_CACHE_FILE);
+      if (!file.exists()) {
+        // One-time migration, legacy entries are dropped
+        for (String legacy : LEGACY_DIRS) {
+          FileUtils.deleteQuietly(new File(dir, legacy));
+        }
+      }
+      store = new LastFmCacheStore(file, Math.max(0, Conf.getInt(Const.CONF_LASTFM_CACHE_SIZE))
+          * 1024L * 1024L, Math.max(0, Conf.getInt(Const.CONF_LASTFM_CACHE_TTL))
+          * (long) Const.MILLISECONDS_IN_A_DAY);
     }
-    return artistWikiCacheDir;
+    return store;
   }
 
   /**
@@ -266,239 +149,133 @@ public class LastFmCache {
   }
 
   /**
-   * Album Cover Filename.
-   * 
-   * @param album the album
-   * 
-   * @return the file name for album cover
-   */
-  private String getFileNameForAlbumCover(AlbumInfo album) {
-    return UtilString.concat(MD5Processor.hash(album.getBigCoverURL()), ".png");
-  }
-
-  /**
-   * Absolute Path to Album Cover Filename.
-   * 
-   * @param album the album
-   * 
-   * @return the file name for album cover at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForAlbumCoverAtCache(AlbumInfo album) throws IOException {
-    File albumCoverCacheDirFile = getAlbumCoverCacheDir();
-    if (albumCoverCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(albumCoverCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForAlbumCover(album));
-  }
-
-  /**
-   * Album Cover Filename.
-   *
-   * @param artist the artist
-   * @param album the album
-   * @return the file name for album info
-   */
-  private String getFileNameForAlbumInfo(String artist, String album) {
-    return UtilString.concat(MD5Processor.hash(artist), MD5Processor.hash(album), ".xml");
-  }
-
-  /**
-   * Absolute Path to Album Info Filename.
-   *
-   * @param artist the artist
-   * @param album the album
-   * @return the file name for album info at cache
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForAlbumInfoAtCache(String artist, String album) throws IOException {
-    File albumInfoCacheDirFile = getAlbumInfoCacheDir();
-    if (albumInfoCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(albumInfoCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForAlbumInfo(artist, album));
-  }
-
-  /**
-   * Absolute Path to Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist info at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForArtistInfoAtCache(String artist) throws IOException {
-    File artistInfoCacheDirFile = getArtistInfoCacheDir();
-    if (artistInfoCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(artistInfoCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistInfo(artist));
-  }
-
-  /**
-   * Artist Image Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist image
-   */
-  private String getFileNameForArtistImage(SimilarArtistsInfo artist) {
-    return UtilString.concat(MD5Processor.hash(artist.getArtistName()), ".png");
-  }
-
-  /**
-   * Absolute Path to Artist Image Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist image at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForArtistImageAtCache(SimilarArtistsInfo artist) throws IOException {
-    File artistImageCacheDirFile = getArtistImageCacheDir();
-    if (artistImageCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(artistImageCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistImage(artist));
-  }
-
-  /**
-   * Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist info
-   */
-  private String getFileNameForArtistInfo(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
-  }
-
-  /**
-   * Absolute Path to Artist info Filename.
-   * 
-   * @param artist the artist
+   * Gets the file name for submission cache.
    * 
-   * @return the file name for artist info at cache
+   * @return the file name for submission cache
    * 
    * @throws IOException Signals that an I/O exception has occurred.
    */
-  private String getFileNameForAlbumListAtCache(String artist) throws IOException {
-    File albumListCacheDirFile = getAlbumListCacheDir();
-    if (albumListCacheDirFile == null) {
+  private String getFileNameForSubmissionCache() throws IOException {
+    File submissionDataDirFile = getSubmissionDataDir();
+    if (submissionDataDirFile == null) {
       return null;
     }
-    return UtilString.concat(albumListCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistInfo(artist));
-  }
-
-  /**
-   * Artist Similar Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist similar
-   */
-  private String getFileNameForArtistSimilar(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
+    return UtilString.concat(submissionDataDirFile.getAbsolutePath(), File.separator,
+        "submissionDataCache.xml");
   }
 
   /**
-   * Absolute Path to Artist similar Filename.
-   * 
-   * @param artist the artist
+   * Retrieves an information from cache.
    * 
-   * @return the file name for artist similar at cache
+   * @param key the key
    * 
-   * @throws IOException Signals that an I/O exception has occurred.
+   * @return the decoded information or null if not cached
    */
-  private String getFileNameForArtistSimilarAtCache(String artist) throws IOException {
-    File artistSimilarCacheDirFile = getArtistSimilarCacheDir();
-    if (artistSimilarCacheDirFile == null) {
-      return null;
+  private Object retrieveInfo(String key) {
+    try {
+      LastFmCacheStore cache = getStore();
+      if (!cache.contains(key)) {
+        return null;
+      }
+      String hotKey = cache.getGeneration() + "/" + key;
+      synchronized (HOT) {
+        Object info = HOT.get(hotKey);
+        if (info != null) {
+          return info;
+        }
+      }
+      byte[] data = cache.get(key);
+      if (data == null) {
+        return null;
+      }
+      Object info = XMLUtils.readBeanFromBytes(data);
+      synchronized (HOT) {
+        HOT.put(hotKey, info);
+      }
+      return info;
+    } catch (IOException e) {
+      Log.error(e);
+    } catch (RuntimeException e) {
+      // Unreadable entry, it will be replaced
+      Log.debug("Cannot decode last.fm cache entry {{" + key + "}}");
     }
-    return UtilString.concat(artistSimilarCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistSimilar(artist));
-  }
-
-  /**
-   * Artist Thumb Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist thumb
-   */
-  private String getFileNameForArtistThumb(ArtistInfo artist) {
-    return UtilString.concat(MD5Processor.hash(artist.getName()), ".png");
+    return null;
   }
 
   /**
-   * Absolute Path to Artist Thumb Filename.
-   * 
-   * @param artist the artist
+   * Stores an information at cache.
    * 
-   * @return the file name for artist thumb at cache
+   * @param key the key
+   * @param info the information
    * 
-   * @throws IOException Signals that an I/O exception has occurred.
+   * @return true if stored
    */
-  private String getFileNameForArtistThumbAtCache(ArtistInfo artist) throws IOException {
-    File artistThumbCacheDirFile = getArtistThumbsCacheDir();
-    if (artistThumbCacheDirFile == null) {
-      return null;
+  private boolean storeInfo(String key, Object info) {
+    try {
+      LastFmCacheStore cache = getStore();
+      cache.put(key, XMLUtils.writeBeanToBytes(info));
+      synchronized (HOT) {
+        HOT.remove(cache.getGeneration() + "/" + key);
+      }
+      return true;
+    } catch (IOException e) {
+      Log.error(e);
     }
-    return UtilString.concat(artistThumbCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistThumb(artist));
-  }
-
-  /**
-   * Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist wiki
-   */
-  private String getFileNameForArtistWiki(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
+    return false;
   }
 
   /**
-   * Absolute Path to Artist similar Filename.
-   * 
-   * @param artist the artist
+   * Retrieves an image from cache.
    * 
-   * @return the file name for artist wiki at cache
+   * @param key the key
    * 
-   * @throws IOException Signals that an I/O exception has occurred.
+   * @return the image or null if not cached
    */
-  private String getFileNameForArtistWikiAtCache(String artist) throws IOException {
-    File artistWikiCacheDirFile = getArtistWikiCacheDir();
-    if (artistWikiCacheDirFile == null) {
-      return null;
+  private Image retrieveImage(String key) {
+    try {
+      LastFmCacheStore cache = getStore();
+      if (!cache.contains(key)) {
+        return null;
+      }
+      String hotKey = "lastfm/" + cache.getGeneration() + "/" + key;
+      BufferedImage image = ImageCache.getInstance().get(hotKey);
+      if (image == null) {
+        byte[] data = cache.get(key);
+        if (data == null) {
+          return null;
+        }
+        image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image != null) {
+          ImageCache.getInstance().put(hotKey, image);
+        }
+      }
+      return image;
+    } catch (IOException e) {
+      Log.error(e);
     }
-    return UtilString.concat(artistWikiCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistWiki(artist));
+    return null;
   }
 
   /**
-   * Gets the file name for submission cache.
+   * Stores an image at cache, as PNG.
    * 
-   * @return the file name for submission cache
+   * @param key the key
+   * @param image the image
    * 
-   * @throws IOException Signals that an I/O exception has occurred.
+   * @return true if stored
    */
-  private String getFileNameForSubmissionCache() throws IOException {
-    File submissionDataDirFile = getSubmissionDataDir();
-    if (submissionDataDirFile == null) {
-      return null;
+  private boolean storeImage(String key, Image image) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+      ImageIO.write(UtilGUI.toBufferedImage(image), "png", out);
+      LastFmCacheStore cache = getStore();
+      cache.put(key, out.toByteArray());
+      ImageCache.getInstance().remove("lastfm/" + cache.getGeneration() + "/" + key);
+      return true;
+    } catch (IOException e) {
+      Log.error(e);
     }
-    return UtilString.concat(submissionDataDirFile.getAbsolutePath(), File.separator,
-        "submissionDataCache.xml");
+    return false;
   }
 
   /**
@@ -509,15 +286,7 @@ public class LastFmCache {
    * @return the image
    */
   public synchronized Image retrieveAlbumCover(AlbumInfo album) {
-    try {
-      String path = getFileNameForAlbumCoverAtCache(album);
-      if (path != null && new File(path).exists()) {
-        return new ImageIcon(path).getImage();
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return retrieveImage("albumcover\n" + album.getBigCoverURL());
   }
 
   /**
@@ -528,15 +297,7 @@ public class LastFmCache {
    * @return the audio scrobbler album
    */
   public synchronized AlbumInfo retrieveAlbumInfo(String artist, String album) {
-    try {
-      String path = getFileNameForAlbumInfoAtCache(artist, album);
-      if (path != null && new File(path).exists()) {
-        return (AlbumInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return (AlbumInfo) retrieveInfo("albuminfo\n" + artist + '\n' + album);
   }
 
   /**
@@ -547,15 +308,7 @@ public class LastFmCache {
    * @return the audio scrobbler artist
    */
   public synchronized ArtistInfo retrieveArtistInfo(String artist) {
-    try {
-      String path = getFileNameForArtistInfoAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (ArtistInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return (ArtistInfo) retrieveInfo("artistinfo\n" + artist);
   }
 
   /**
@@ -566,15 +319,7 @@ public class LastFmCache {
    * @return the image
    */
   public synchronized Image retrieveArtistImage(SimilarArtistsInfo artist) {
-    try {
-      String path = getFileNameForArtistImageAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return new ImageIcon(path).getImage();
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return retrieveImage("artistimage\n" + artist.getArtistName());
   }
 
   /**
@@ -585,15 +330,7 @@ public class LastFmCache {
    * @return the audio scrobbler album list
    */
   public synchronized AlbumListInfo retrieveAlbumList(String artist) {
-    try {
-      String path = getFileNameForAlbumListAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (AlbumListInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return (AlbumListInfo) retrieveInfo("albumlist\n" + artist);
   }
 
   /**
@@ -604,15 +341,7 @@ public class LastFmCache {
    * @return the audio scrobbler similar artists
    */
   public synchronized SimilarArtistsInfo retrieveArtistSimilar(String artist) {
-    try {
-      String path = getFileNameForArtistSimilarAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (SimilarArtistsInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return (SimilarArtistsInfo) retrieveInfo("similar\n" + artist);
   }
 
   /**
@@ -623,15 +352,7 @@ public class LastFmCache {
    * @return the image
    */
   public synchronized Image retrieveArtistThumbImage(ArtistInfo artist) {
-    try {
-      String path = getFileNameForArtistThumbAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return new ImageIcon(path).getImage();
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return retrieveImage("artistthumb\n" + artist.getName());
   }
 
   /**
@@ -642,15 +363,7 @@ public class LastFmCache {
    * @return the string
    */
   public synchronized String retrieveArtistWiki(String artist) {
-    try {
-      String path = getFileNameForArtistWikiAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (String) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+    return (String) retrieveInfo("wiki\n" + artist);
   }
 
   /**
@@ -663,14 +376,8 @@ public class LastFmCache {
     if (cover == null || album == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForAlbumCoverAtCache(album);
-      if (fileAbsPath != null) {
-        UtilGUI.extractImage(cover, new File(fileAbsPath));
-        Log.debug(UtilString.concat("Stored album Cover for album {{", album.getTitle(), "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeImage("albumcover\n" + album.getBigCoverURL(), cover)) {
+      Log.debug(UtilString.concat("Stored album Cover for album {{", album.getTitle(), "}}"));
     }
   }
 
@@ -685,14 +392,8 @@ public class LastFmCache {
     if (artist == null || album == null || albumObject == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForAlbumInfoAtCache(artist, album);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(albumObject, fileAbsPath);
-        Log.debug(UtilString.concat("Stored album info for album {{", artist, " ", album, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeInfo("albuminfo\n" + artist + '\n' + album, albumObject)) {
+      Log.debug(UtilString.concat("Stored album info for album {{", artist, " ", album, "}}"));
     }
   }
 
@@ -703,17 +404,11 @@ public class LastFmCache {
    * @param artistObject 
    */
   public synchronized void storeArtistInfo(String artist, ArtistInfo artistObject) {
-    if (artist == null) {
+    if (artist == null || artistObject == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistInfoAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(artistObject, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist info for artist {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeInfo("artistinfo\n" + artist, artistObject)) {
+      Log.debug(UtilString.concat("Stored artist info for artist {{", artist, "}}"));
     }
   }
 
@@ -727,14 +422,8 @@ public class LastFmCache {
     if (image == null || artist == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistImageAtCache(artist);
-      if (fileAbsPath != null) {
-        UtilGUI.extractImage(image, new File(fileAbsPath));
-        Log.debug(UtilString.concat("Stored artist image for {{", artist.getArtistName(), "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeImage("artistimage\n" + artist.getArtistName(), image)) {
+      Log.debug(UtilString.concat("Stored artist image for {{", artist.getArtistName(), "}}"));
     }
   }
 
@@ -748,14 +437,8 @@ public class LastFmCache {
     if (artist == null || list == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForAlbumListAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(list, fileAbsPath);
-        Log.debug(UtilString.concat("Stored album list for {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeInfo("albumlist\n" + artist, list)) {
+      Log.debug(UtilString.concat("Stored album list for {{", artist, "}}"));
     }
   }
 
@@ -769,14 +452,8 @@ public class LastFmCache {
     if (artist == null || similar == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistSimilarAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(similar, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist similar for {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeInfo("similar\n" + artist, similar)) {
+      Log.debug(UtilString.concat("Stored artist similar for {{", artist, "}}"));
     }
   }
 
@@ -790,14 +467,8 @@ public class LastFmCache {
     if (image == null || artist == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistThumbAtCache(artist);
-      if (fileAbsPath != null) {
-        UtilGUI.extractImage(image, new File(fileAbsPath));
-        Log.debug(UtilString.concat("Stored artist thumb for {{", artist.getName() + "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeImage("artistthumb\n" + artist.getName(), image)) {
+      Log.debug(UtilString.concat("Stored artist thumb for {{", artist.getName() + "}}"));
     }
   }
 
@@ -811,14 +482,8 @@ public class LastFmCache {
     if (artist == null || wikiText == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistWikiAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(wikiText, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist wiki for {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
+    if (storeInfo("wiki\n" + artist, wikiText)) {
+      Log.debug(UtilString.concat("Stored artist wiki for {{", artist, "}}"));
     }
   }
 
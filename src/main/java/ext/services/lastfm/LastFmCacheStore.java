@@ -0,0 +1,457 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jajuk.util.log.Log;
+
+/**
+ * Last.fm cache entries stored in a single pack file.
+ * <p>
+ * Entries are appended to the pack file as records (key length, UTF-8 key, storage date, data
+ * length, data) and located through an in-memory index in access order. The index is built by
+ * reading the records headers when the store is first used. A replaced entry leaves garbage in
+ * the file, the live entries are rewritten to a new pack file once the garbage is larger than
+ * them.
+ * </p>
+ * <p>
+ * Entries older than the TTL are dropped. The least recently used entries are dropped when
+ * the live entries exceed the disk budget. A truncated last record (crash while writing) is
+ * dropped when the index is built.
+ * </p>
+ */
+final class LastFmCacheStore {
+  /** Pack file magic number. */
+  private static final int MAGIC = 0x4a4c4643;
+  /** Pack file format version. */
+  private static final int VERSION = 1;
+  /** Pack file header size : magic and version. */
+  private static final int HEADER_SIZE = 8;
+  /** Record overhead besides key and data : key length, date and data length. */
+  private static final int RECORD_OVERHEAD = 16;
+  /** Maximal key length in bytes, a larger value means a corrupted record. */
+  private static final int MAX_KEY_LENGTH = 64 * 1024;
+  /** Garbage size under which the pack file is never compacted, in bytes. */
+  private static final long MIN_GARBAGE = 1024 * 1024;
+  /** Keys encoding. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  /** The pack file. */
+  private final File file;
+  /** Disk budget of live entries, in bytes. */
+  private final long budget;
+  /** Entries time to live, in ms. */
+  private final long ttl;
+  /** Entries locations in access order, null until the store is opened. */
+  private LinkedHashMap<String, Slot> index;
+  /** Opened pack file. */
+  private RandomAccessFile raf;
+  /** Size of live records, in bytes. */
+  private long liveBytes;
+  /** Number of clearings, see getGeneration(). */
+  private int generation;
+
+  /**
+   * Location of an entry data in the pack file.
+   */
+  private static final class Slot {
+    /** Data offset. */
+    private final long offset;
+    /** Data length. */
+    private final int length;
+    /** Storage date. */
+    private final long date;
+    /** Whole record size. */
+    private final int recordSize;
+
+    /**
+     * Instantiates a new slot.
+     *
+     * @param offset data offset
+     * @param length data length
+     * @param date storage date
+     * @param recordSize whole record size
+     */
+    Slot(long offset, int length, long date, int recordSize) {
+      this.offset = offset;
+      this.length = length;
+      this.date = date;
+      this.recordSize = recordSize;
+    }
+  }
+
+  /**
+   * Instantiates a new store, the pack file is read at first use.
+   *
+   * @param file the pack file
+   * @param budget disk budget of live entries, in bytes
+   * @param ttl entries time to live, in ms
+   */
+  LastFmCacheStore(File file, long budget, long ttl) {
+    this.file = file;
+    this.budget = budget;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Return whether an entry is stored.
+   *
+   * @param key the key
+   *
+   * @return true if stored and not expired
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized boolean contains(String key) throws IOException {
+    return getSlot(key) != null;
+  }
+
+  /**
+   * Gets an entry data.
+   *
+   * @param key the key
+   *
+   * @return the data or null if not stored or expired
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized byte[] get(String key) throws IOException {
+    Slot slot = getSlot(key);
+    if (slot == null) {
+      return null;
+    }
+    byte[] data = new byte[slot.length];
+    raf.seek(slot.offset);
+    raf.readFully(data);
+    return data;
+  }
+
+  /**
+   * Store an entry, replacing any entry with the same key.
+   *
+   * @param key the key
+   * @param data the data
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void put(String key, byte[] data) throws IOException {
+    open();
+    remove(key);
+    byte[] keyBytes = key.getBytes(UTF8);
+    int recordSize = RECORD_OVERHEAD + keyBytes.length + data.length;
+    if (recordSize > budget) {
+      return;
+    }
+    long date = System.currentTimeMillis();
+    ByteBuffer record = ByteBuffer.allocate(recordSize);
+    record.putInt(keyBytes.length).put(keyBytes).putLong(date).putInt(data.length).put(data);
+    long offset = raf.length();
+    raf.seek(offset);
+    raf.write(record.array());
+    index.put(key, new Slot(offset + recordSize - data.length, data.length, date, recordSize));
+    liveBytes += recordSize;
+    evict();
+    long garbage = raf.length() - HEADER_SIZE - liveBytes;
+    if (garbage > MIN_GARBAGE && garbage > liveBytes) {
+      compact();
+    }
+  }
+
+  /**
+   * Drop all entries, the pack file is truncated.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void clear() throws IOException {
+    generation++;
+    index = new LinkedHashMap<String, Slot>(256, 0.75f, true);
+    liveBytes = 0;
+    if (raf == null) {
+      file.getParentFile().mkdirs();
+      raf = new RandomAccessFile(file, "rw");
+    }
+    reset();
+  }
+
+  /**
+   * Gets the number of clearings of the store, decoded entries kept in memory must be keyed
+   * with it so that they are not served after a clearing.
+   *
+   * @return the generation
+   */
+  synchronized int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Gets the number of live entries.
+   *
+   * @return the number of entries
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized int size() throws IOException {
+    open();
+    return index.size();
+  }
+
+  /**
+   * Gets the pack file length.
+   *
+   * @return the length in bytes
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized long getFileLength() throws IOException {
+    open();
+    return raf.length();
+  }
+
+  /**
+   * Close the pack file, it is opened again at next use.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void close() throws IOException {
+    if (raf != null) {
+      raf.close();
+      raf = null;
+      index = null;
+      liveBytes = 0;
+    }
+  }
+
+  /**
+   * Gets the slot of an entry, expired entries are dropped.
+   *
+   * @param key the key
+   *
+   * @return the slot or null if not stored or expired
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private Slot getSlot(String key) throws IOException {
+    open();
+    Slot slot = index.get(key);
+    if (slot != null && isExpired(slot.date)) {
+      remove(key);
+      return null;
+    }
+    return slot;
+  }
+
+  /**
+   * Drop an entry from the index, its record becomes garbage.
+   *
+   * @param key the key
+   */
+  private void remove(String key) {
+    Slot slot = index.remove(key);
+    if (slot != null) {
+      liveBytes -= slot.recordSize;
+    }
+  }
+
+  /**
+   * Checks if an entry is expired.
+   *
+   * @param date the entry storage date
+   *
+   * @return true if expired
+   */
+  private boolean isExpired(long date) {
+    return System.currentTimeMillis() - date > ttl;
+  }
+
+  /**
+   * Drop least recently used entries until the live entries fit in the budget.
+   */
+  private void evict() {
+    Iterator<Slot> it = index.values().iterator();
+    while (liveBytes > budget && it.hasNext()) {
+      liveBytes -= it.next().recordSize;
+      it.remove();
+    }
+  }
+
+  /**
+   * Open the pack file and build the index if not done yet.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void open() throws IOException {
+    if (raf != null) {
+      return;
+    }
+    file.getParentFile().mkdirs();
+    raf = new RandomAccessFile(file, "rw");
+    index = new LinkedHashMap<String, Slot>(256, 0.75f, true);
+    liveBytes = 0;
+    long end = load();
+    if (end < raf.length()) {
+      Log.debug("Dropping " + (raf.length() - end) + " unreadable bytes from {{" + file + "}}");
+      raf.setLength(end);
+    }
+    evict();
+  }
+
+  /**
+   * Build the index from the records headers, the records data are skipped.
+   *
+   * @return the end of the last readable record
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long load() throws IOException {
+    long fileLength = raf.length();
+    if (fileLength < HEADER_SIZE) {
+      reset();
+      return HEADER_SIZE;
+    }
+    long position = HEADER_SIZE;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        Log.debug("Unknown last.fm cache format, clearing {{" + file + "}}");
+        reset();
+        return HEADER_SIZE;
+      }
+      while (position < fileLength) {
+        int keyLength = in.readInt();
+        if (keyLength < 0 || keyLength > MAX_KEY_LENGTH) {
+          break;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        in.readFully(keyBytes);
+        long date = in.readLong();
+        int length = in.readInt();
+        int recordSize = RECORD_OVERHEAD + keyLength + length;
+        // A skip can go beyond the end of file, check the record is complete first
+        if (length < 0 || position + recordSize > fileLength) {
+          break;
+        }
+        long skipped = 0;
+        while (skipped < length) {
+          long count = in.skip(length - skipped);
+          if (count <= 0) {
+            throw new EOFException();
+          }
+          skipped += count;
+        }
+        String key = new String(keyBytes, UTF8);
+        remove(key);
+        if (!isExpired(date)) {
+          index.put(key, new Slot(position + recordSize - length, length, date, recordSize));
+          liveBytes += recordSize;
+        }
+        position += recordSize;
+      }
+    } catch (EOFException e) {
+      // Last record is truncated, position is the end of the previous one
+    } finally {
+      in.close();
+    }
+    return position;
+  }
+
+  /**
+   * Truncate the pack file to an empty one.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void reset() throws IOException {
+    raf.setLength(0);
+    raf.seek(0);
+    raf.writeInt(MAGIC);
+    raf.writeInt(VERSION);
+  }
+
+  /**
+   * Rewrite the live entries to a new pack file, in access order.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void compact() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    LinkedHashMap<String, Slot> newIndex = new LinkedHashMap<String, Slot>(index.size() * 2,
+        0.75f, true);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      long position = HEADER_SIZE;
+      for (Map.Entry<String, Slot> entry : index.entrySet()) {
+        Slot slot = entry.getValue();
+        byte[] keyBytes = entry.getKey().getBytes(UTF8);
+        byte[] data = new byte[slot.length];
+        raf.seek(slot.offset);
+        raf.readFully(data);
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(slot.date);
+        out.writeInt(data.length);
+        out.write(data);
+        newIndex.put(entry.getKey(), new Slot(position + slot.recordSize - slot.length,
+            slot.length, slot.date, slot.recordSize));
+        position += slot.recordSize;
+      }
+    } catch (IOException e) {
+      out.close();
+      if (!tmp.delete()) {
+        Log.debug("Cannot delete {{" + tmp + "}}");
+      }
+      throw e;
+    }
+    out.close();
+    raf.close();
+    try {
+      try {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      index = newIndex;
+    } finally {
+      // Old pack file is still there and valid if the move failed
+      raf = new RandomAccessFile(file, "rw");
+    }
+    Log.debug("Compacted last.fm cache {{" + file + "}} to " + raf.length() + " bytes");
+  }
+}
@@ -31,6 +31,16 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.roarsoftware.lastfm.Album;
 import net.roarsoftware.lastfm.Artist;
@@ -59,6 +69,13 @@ import org.jajuk.util.log.Log;
  * 
  * This class is responsible of retrieve information from Last.fm web services.
  * <singleton>
+ * <p>
+ * Concurrent identical requests (same method and arguments) share a single lookup : the first
+ * caller performs it and the others wait for its result. The <code>*Async</code> methods run
+ * the lookups on a small threads pool and return a future shared the same way, these futures
+ * must not be cancelled. Requests to a given host are spread by at least
+ * <code>MIN_REQUEST_INTERVAL</code> ms.
+ * </p>
  */
 public class LastFmService {
   /*
@@ -86,10 +103,33 @@ public class LastFmService {
   private static final int MIN_DURATION_TO_SUBMIT = 30;
   /** The Constant MAX_SUBMISSIONS.   */
   private static final int MAX_SUBMISSIONS = 50;
+  /** Last.fm web services host. */
+  private static final String API_HOST = "ws.audioscrobbler.com";
+  /** Minimal delay between two requests to the same host, in ms. */
+  private static final long MIN_REQUEST_INTERVAL = 200;
+  /** Number of threads running asynchronous lookups. */
+  private static final int NB_THREADS = 3;
   private Scrobbler scrobbler;
   private boolean handshakePerformed;
   private Locale locale;
   private LastFmCache lastFmCache;
+  /** Lookups in progress by key. */
+  private final ConcurrentMap<String, Request<?>> inFlight =
+      new ConcurrentHashMap<String, Request<?>>();
+  /** Requests spreading. */
+  private final HostRateLimiter rateLimiter = new HostRateLimiter(MIN_REQUEST_INTERVAL);
+  /** Asynchronous lookups threads. */
+  private final ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS,
+      new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "LastFM Thread " + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
   /** The singleton. */
   private static LastFmService self;
 
@@ -138,10 +178,49 @@ public class LastFmService {
    * @return the artist
    */
   public ArtistInfo getArtist(String artist) {
+    return getShared(newArtistRequest(artist));
+  }
+
+  /**
+   * Gets the artist asynchronously.
+   * 
+   * @param artist 
+   * 
+   * @return the artist future
+   */
+  public Future<ArtistInfo> getArtistAsync(String artist) {
+    return submit(newArtistRequest(artist));
+  }
+
+  /**
+   * New artist request.
+   * 
+   * @param artist 
+   * 
+   * @return the request
+   */
+  private Request<ArtistInfo> newArtistRequest(final String artist) {
+    return new Request<ArtistInfo>("artist\n" + artist, new Callable<ArtistInfo>() {
+      @Override
+      public ArtistInfo call() {
+        return loadArtist(artist);
+      }
+    });
+  }
+
+  /**
+   * Load the artist.
+   * 
+   * @param artist 
+   * 
+   * @return the artist
+   */
+  private ArtistInfo loadArtist(String artist) {
     try {
       // Try to get from cache
       ArtistInfo artistInfo = lastFmCache.retrieveArtistInfo(artist);
       if (artistInfo == null) {
+        rateLimiter.acquire(API_HOST);
         Artist a = Artist.getInfo(artist, UtilString.rot13(API_KEY));
         if (a != null) {
           artistInfo = LastFmArtist.getArtist(a);
@@ -164,12 +243,55 @@ public class LastFmService {
    * @return the album
    */
   public AlbumInfo getAlbum(String artist, String album) {
+    return getShared(newAlbumRequest(artist, album));
+  }
+
+  /**
+   * Gets the album asynchronously.
+   * 
+   * @param artist the artist
+   * @param album the album
+   * 
+   * @return the album future
+   */
+  public Future<AlbumInfo> getAlbumAsync(String artist, String album) {
+    return submit(newAlbumRequest(artist, album));
+  }
+
+  /**
+   * New album request.
+   * 
+   * @param artist the artist
+   * @param album the album
+   * 
+   * @return the request
+   */
+  private Request<AlbumInfo> newAlbumRequest(final String artist, final String album) {
+    return new Request<AlbumInfo>("album\n" + artist + '\n' + album, new Callable<AlbumInfo>() {
+      @Override
+      public AlbumInfo call() {
+        return loadAlbum(artist, album);
+      }
+    });
+  }
+
+  /**
+   * Load the album.
+   * 
+   * @param artist the artist
+   * @param album the album
+   * 
+   * @return the album
+   */
+  private AlbumInfo loadAlbum(String artist, String album) {
     try {
       // Try to get from cache
       AlbumInfo albumObject = lastFmCache.retrieveAlbumInfo(artist, album);
       if (albumObject == null) {
+        rateLimiter.acquire(API_HOST);
         Album a = Album.getInfo(artist, album, UtilString.rot13(API_KEY));
         if (a != null) {
+          rateLimiter.acquire(API_HOST);
           Playlist pl = Playlist.fetchAlbumPlaylist(a.getId(), UtilString.rot13(API_KEY));
           albumObject = LastFmAlbum.getAlbum(a, pl);
           lastFmCache.storeAlbumInfo(artist, album, albumObject);
@@ -192,11 +314,65 @@ public class LastFmService {
    * 
    * @return the album list
    */
-  public AlbumListInfo getAlbumList(String artist, boolean hideVariousArtists, int minimumSongNumber) {
+  public AlbumListInfo getAlbumList(String artist, boolean hideVariousArtists,
+      int minimumSongNumber) {
+    return getShared(newAlbumListRequest(artist, hideVariousArtists, minimumSongNumber));
+  }
+
+  /**
+   * Gets the album list asynchronously.
+   * 
+   * @param artist the artist
+   * @param hideVariousArtists if <code>true</code> albums with artist name "Various Artists"
+   * are nor returned
+   * @param minimumSongNumber albums with less songs than this argument won't be returned
+   * 
+   * @return the album list future
+   */
+  public Future<AlbumListInfo> getAlbumListAsync(String artist, boolean hideVariousArtists,
+      int minimumSongNumber) {
+    return submit(newAlbumListRequest(artist, hideVariousArtists, minimumSongNumber));
+  }
+
+  /**
+   * New album list request.
+   * 
+   * @param artist the artist
+   * @param hideVariousArtists if <code>true</code> albums with artist name "Various Artists"
+   * are nor returned
+   * @param minimumSongNumber albums with less songs than this argument won't be returned
+   * 
+   * @return the request
+   */
+  private Request<AlbumListInfo> newAlbumListRequest(final String artist,
+      final boolean hideVariousArtists, final int minimumSongNumber) {
+    // Filters are part of the key as the returned list is filtered
+    return new Request<AlbumListInfo>("albumlist\n" + artist + '\n' + hideVariousArtists + '\n'
+        + minimumSongNumber, new Callable<AlbumListInfo>() {
+      @Override
+      public AlbumListInfo call() {
+        return loadAlbumList(artist, hideVariousArtists, minimumSongNumber);
+      }
+    });
+  }
+
+  /**
+   * Load the album list.
+   * 
+   * @param artist the artist
+   * @param hideVariousArtists if <code>true</code> albums with artist name "Various Artists"
+   * are nor returned
+   * @param minimumSongNumber albums with less songs than this argument won't be returned
+   * 
+   * @return the album list
+   */
+  private AlbumListInfo loadAlbumList(String artist, boolean hideVariousArtists,
+      int minimumSongNumber) {
     try {
       // Try to get from cache
       AlbumListInfo albumList = lastFmCache.retrieveAlbumList(artist);
       if (albumList == null) {
+        rateLimiter.acquire(API_HOST);
         Collection<Album> as = Artist.getTopAlbums(artist, UtilString.rot13(API_KEY));
         if (as != null) {
           AlbumListInfo albums = LastFmAlbumList.getAlbumList(as, artist);
@@ -222,12 +398,12 @@ public class LastFmService {
               albumsFiltered.add(albumInfo);
             }
           }
-          albumList.setAlbums(albumsFiltered);
         }
         // Apply filter to hide albums with less than X songs
         if (minimumSongNumber > 0) {
+          List<AlbumInfo> albums = albumsFiltered != null ? albumsFiltered : albumList.getAlbums();
           albumsFiltered = new ArrayList<AlbumInfo>();
-          for (AlbumInfo albumInfo : albumList.getAlbums()) {
+          for (AlbumInfo albumInfo : albums) {
             AlbumInfo extendedAlbumInfo = getAlbum(artist, albumInfo.getTitle());
             if (extendedAlbumInfo != null && extendedAlbumInfo.getTracks() != null //NOSONAR
                 && extendedAlbumInfo.getTracks().size() >= minimumSongNumber) {
@@ -236,7 +412,11 @@ public class LastFmService {
           }
         }
         if (albumsFiltered != null) {
-          albumList.setAlbums(albumsFiltered);
+          // Cached list is shared, return a filtered copy
+          LastFmAlbumList filtered = new LastFmAlbumList();
+          filtered.setArtist(albumList.getArtist());
+          filtered.setAlbums(albumsFiltered);
+          return filtered;
         }
       }
       return albumList;
@@ -255,6 +435,7 @@ public class LastFmService {
    */
   public String getArtistTopTag(String artist) {
     try {
+      rateLimiter.acquire(API_HOST);
       Collection<String> topTags = Artist.getTopTags(artist, UtilString.rot13(API_KEY));
       List<String> tags = new ArrayList<String>(topTags);
       return tags.isEmpty() ? "" : tags.get(0);
@@ -272,12 +453,52 @@ public class LastFmService {
    * @return the image
    */
   public Image getImage(AlbumInfo album) {
+    return getShared(newAlbumImageRequest(album));
+  }
+
+  /**
+   * Gets the image asynchronously.
+   * 
+   * @param album the album
+   * 
+   * @return the image future
+   */
+  public Future<Image> getImageAsync(AlbumInfo album) {
+    return submit(newAlbumImageRequest(album));
+  }
+
+  /**
+   * New album image request.
+   * 
+   * @param album the album
+   * 
+   * @return the request
+   */
+  private Request<Image> newAlbumImageRequest(final AlbumInfo album) {
+    return new Request<Image>("albumimage\n" + album.getArtist() + '\n' + album.getTitle(),
+        new Callable<Image>() {
+          @Override
+          public Image call() {
+            return loadImage(album);
+          }
+        });
+  }
+
+  /**
+   * Load the image.
+   * 
+   * @param album the album
+   * 
+   * @return the image
+   */
+  private Image loadImage(AlbumInfo album) {
     try {
       Image img = null;
       Proxy proxy = DownloadManager.getProxy();
       // Try to retrieve from cache
       img = lastFmCache.retrieveAlbumCover(album);
       if (img == null && album.getBigCoverURL() != null && !album.getBigCoverURL().isEmpty()) {
+        rateLimiter.acquireForURL(album.getBigCoverURL());
         img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
             .getConnection(album.getBigCoverURL(), proxy));
         lastFmCache.storeAlbumCover(album, img);
@@ -297,6 +518,44 @@ public class LastFmService {
    * @return the image
    */
   public Image getImage(ArtistInfo artist) {
+    return getShared(newArtistImageRequest(artist));
+  }
+
+  /**
+   * Gets the image of an artist asynchronously.
+   * 
+   * @param artist the artist
+   * 
+   * @return the image future
+   */
+  public Future<Image> getImageAsync(ArtistInfo artist) {
+    return submit(newArtistImageRequest(artist));
+  }
+
+  /**
+   * New artist image request.
+   * 
+   * @param artist the artist
+   * 
+   * @return the request
+   */
+  private Request<Image> newArtistImageRequest(final ArtistInfo artist) {
+    return new Request<Image>("artistimage\n" + artist.getName(), new Callable<Image>() {
+      @Override
+      public Image call() {
+        return loadImage(artist);
+      }
+    });
+  }
+
+  /**
+   * Load the image of an artist.
+   * 
+   * @param artist the artist
+   * 
+   * @return the image
+   */
+  private Image loadImage(ArtistInfo artist) {
     try {
       // Try to retrieve from cache
       Image img = lastFmCache.retrieveArtistThumbImage(artist);
@@ -306,6 +565,7 @@ public class LastFmService {
         img = getArtistImageFromLastFM(artist.getName());
         // if not then get from artist info
         if (img == null) {
+          rateLimiter.acquireForURL(artist.getImageUrl());
           img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
               .getConnection(artist.getImageUrl(), proxy));
         }
@@ -325,7 +585,24 @@ public class LastFmService {
    * 
    * @return the image
    */
-  public Image getImage(SimilarArtistsInfo similar) {
+  public Image getImage(final SimilarArtistsInfo similar) {
+    return getShared(new Request<Image>("similarimage\n" + similar.getArtistName(),
+        new Callable<Image>() {
+          @Override
+          public Image call() {
+            return loadImage(similar);
+          }
+        }));
+  }
+
+  /**
+   * Load the image of the artist.
+   * 
+   * @param similar the similar
+   * 
+   * @return the image
+   */
+  private Image loadImage(SimilarArtistsInfo similar) {
     try {
       // Try to retrieve from cache
       Image img = lastFmCache.retrieveArtistImage(similar);
@@ -339,6 +616,7 @@ public class LastFmService {
       if (img == null) {
         String similarUrl = similar.getPicture();
         if (!similarUrl.trim().isEmpty()) {
+          rateLimiter.acquireForURL(similarUrl);
           img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
               .getConnection(similarUrl, proxy));
         }
@@ -364,6 +642,7 @@ public class LastFmService {
     try {
       Proxy proxy = DownloadManager.getProxy();
       // Try to get from Artist.getImages() method
+      rateLimiter.acquire(API_HOST);
       PaginatedResult<net.roarsoftware.lastfm.Image> images = Artist.getImages(artistName, 1, 1,
           UtilString.rot13(API_KEY));
       List<net.roarsoftware.lastfm.Image> imageList = new ArrayList<net.roarsoftware.lastfm.Image>(
@@ -372,6 +651,7 @@ public class LastFmService {
         Set<ImageSize> sizes = imageList.get(0).availableSizes();
         // Try to get original
         if (sizes.contains(ImageSize.ORIGINAL)) {
+          rateLimiter.acquireForURL(imageList.get(0).getImageURL(ImageSize.ORIGINAL));
           return ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
               .getConnection(imageList.get(0).getImageURL(ImageSize.ORIGINAL), proxy));
         }
@@ -390,11 +670,52 @@ public class LastFmService {
    * @return the similar artists
    */
   public SimilarArtistsInfo getSimilarArtists(String artist) {
+    return getShared(newSimilarArtistsRequest(artist));
+  }
+
+  /**
+   * Gets the similar artists asynchronously.
+   * 
+   * @param artist the artist
+   * 
+   * @return the similar artists future
+   */
+  public Future<SimilarArtistsInfo> getSimilarArtistsAsync(String artist) {
+    return submit(newSimilarArtistsRequest(artist));
+  }
+
+  /**
+   * New similar artists request.
+   * 
+   * @param artist the artist
+   * 
+   * @return the request
+   */
+  private Request<SimilarArtistsInfo> newSimilarArtistsRequest(final String artist) {
+    return new Request<SimilarArtistsInfo>("similar\n" + artist,
+        new Callable<SimilarArtistsInfo>() {
+          @Override
+          public SimilarArtistsInfo call() {
+            return loadSimilarArtists(artist);
+          }
+        });
+  }
+
+  /**
+   * Load the similar artists.
+   * 
+   * @param artist the artist
+   * 
+   * @return the similar artists
+   */
+  private SimilarArtistsInfo loadSimilarArtists(String artist) {
     try {
       // Try to get from cache
       SimilarArtistsInfo similar = lastFmCache.retrieveArtistSimilar(artist);
       if (similar == null) {
+        rateLimiter.acquire(API_HOST);
         Collection<Artist> as = Artist.getSimilar(artist, UtilString.rot13(API_KEY));
+        rateLimiter.acquire(API_HOST);
         Artist a = Artist.getInfo(artist, UtilString.rot13(API_KEY));
         if (a != null) {
           similar = LastFmSimilarArtists.getSimilarArtists(as, a);
@@ -416,10 +737,49 @@ public class LastFmService {
    * @return the wiki text
    */
   public String getWikiText(String artist) {
+    return getShared(newWikiTextRequest(artist));
+  }
+
+  /**
+   * Gets the wiki text asynchronously.
+   * 
+   * @param artist the artist
+   * 
+   * @return the wiki text future
+   */
+  public Future<String> getWikiTextAsync(String artist) {
+    return submit(newWikiTextRequest(artist));
+  }
+
+  /**
+   * New wiki text request.
+   * 
+   * @param artist the artist
+   * 
+   * @return the request
+   */
+  private Request<String> newWikiTextRequest(final String artist) {
+    return new Request<String>("wiki\n" + artist, new Callable<String>() {
+      @Override
+      public String call() {
+        return loadWikiText(artist);
+      }
+    });
+  }
+
+  /**
+   * Load the wiki text.
+   * 
+   * @param artist the artist
+   * 
+   * @return the wiki text
+   */
+  private String loadWikiText(String artist) {
     try {
       // Try to get from cache
       String wikiText = lastFmCache.retrieveArtistWiki(artist);
       if (wikiText == null) {
+        rateLimiter.acquire(API_HOST);
         Artist a = Artist.getInfo(artist, locale, UtilString.rot13(API_KEY));
         wikiText = a != null ? a.getWikiSummary() : "";
         if (wikiText != null) {
@@ -435,6 +795,110 @@ public class LastFmService {
     return null;
   }
 
+  /**
+   * Return the result of a request, performed in the calling thread unless the same request is
+   * already in progress.
+   * 
+   * @param request the request
+   * 
+   * @return the result or null if the lookup failed
+   */
+  @SuppressWarnings("unchecked")
+  <T> T getShared(Request<T> request) {
+    Request<T> shared = (Request<T>) inFlight.putIfAbsent(request.key, request);
+    if (shared == null) {
+      shared = request;
+    }
+    // No-op if already started, otherwise don't wait for a pool thread
+    shared.run();
+    return await(shared);
+  }
+
+  /**
+   * Submit a request to the pool unless the same request is already in progress.
+   * 
+   * @param request the request
+   * 
+   * @return the request future, shared with other callers
+   */
+  @SuppressWarnings("unchecked")
+  <T> Future<T> submit(Request<T> request) {
+    Request<T> shared = (Request<T>) inFlight.putIfAbsent(request.key, request);
+    if (shared != null) {
+      return shared;
+    }
+    executor.execute(request);
+    return request;
+  }
+
+  /**
+   * Wait for a lookup result.
+   * 
+   * @param future the lookup
+   * 
+   * @return the result or null if the lookup failed or the thread has been interrupted
+   */
+  private static <T> T await(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Log.error(e);
+    }
+    return null;
+  }
+
+  /**
+   * A lookup, registered as in progress until it is done.
+   * 
+   * @param <T> the lookup result type
+   */
+  final class Request<T> extends FutureTask<T> {
+    /** Request key : method and arguments. */
+    private final String key;
+
+    /**
+     * Instantiates a new request.
+     * 
+     * @param key method and arguments
+     * @param loader the lookup
+     */
+    Request(String key, Callable<T> loader) {
+      super(loader);
+      this.key = key;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.FutureTask#set(java.lang.Object)
+     */
+    @Override
+    protected void set(T v) {
+      // Unregister before waking up the waiters so that a caller getting the result never
+      // shares this request again
+      inFlight.remove(key, this);
+      super.set(v);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.FutureTask#setException(java.lang.Throwable)
+     */
+    @Override
+    protected void setException(Throwable t) {
+      inFlight.remove(key, this);
+      super.setException(t);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.FutureTask#done()
+     */
+    @Override
+    protected void done() {
+      // Cancelled requests
+      inFlight.remove(key, this);
+    }
+  }
+
   /**
    * Gets the wiki url.
    * 
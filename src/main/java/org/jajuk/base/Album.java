@@ -38,6 +38,7 @@ import javax.swing.ImageIcon;
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.jajuk.services.covers.Cover;
+import org.jajuk.services.covers.ImageCache;
 import org.jajuk.services.tags.Tag;
 import org.jajuk.ui.thumbnails.ThumbnailManager;
 import org.jajuk.util.Const;
@@ -481,12 +482,16 @@ public class Album extends LogicalItem implements Comparable<Album> {
    * @return album thumb for given size
    */
   public ImageIcon getThumbnail(int size) {
+    String key = ImageCache.getThumbKey(this, size);
+    BufferedImage img = ImageCache.getInstance().get(key);
+    if (img != null) {
+      return new ImageIcon(img);
+    }
     File fCover = ThumbnailManager.getThumbBySize(this, size);
     // Check if thumb already exists
     if (!fCover.exists() || fCover.length() == 0) {
       return IconLoader.getNoCoverIcon(size);
     }
-    BufferedImage img = null;
     try {
       img = ImageIO.read(new File(fCover.getAbsolutePath()));
     } catch (IOException e) {
@@ -497,10 +502,9 @@ public class Album extends LogicalItem implements Comparable<Album> {
     if (img == null) {
       return null;
     }
-    ImageIcon icon = new ImageIcon(img);
-    // Free thumb memory (DO IT AFTER FULL ImageIcon loading)
-    img.flush();
-    return icon;
+    // The image is shared by the cache, do not flush it
+    ImageCache.getInstance().put(key, img);
+    return new ImageIcon(img);
   }
 
   /**
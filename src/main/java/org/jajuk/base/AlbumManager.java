@@ -37,6 +37,8 @@ import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.events.Observer;
 import org.jajuk.services.players.QueueModel;
+import org.jajuk.ui.thumbnails.ThumbnailManager;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.MD5Processor;
 import org.jajuk.util.ReadOnlyIterator;
@@ -89,6 +91,7 @@ public final class AlbumManager extends ItemManager implements Observer {
   public Set<JajukEvents> getRegistrationKeys() {
     Set<JajukEvents> eventSubjectSet = new HashSet<JajukEvents>();
     eventSubjectSet.add(JajukEvents.FILE_LAUNCHED);
+    eventSubjectSet.add(JajukEvents.DEVICE_REFRESH);
     return eventSubjectSet;
   }
 
@@ -265,21 +268,21 @@ public final class AlbumManager extends ItemManager implements Observer {
     } else {
       try {
         lock.readLock().lock();
-        ReadOnlyIterator<Album> albums = getAlbumsIterator();
+        // [Perf] Use the item tracks cache instead of checking every album tracks
+        Set<Track> tracks = null;
+        if (item instanceof Artist) {
+          tracks = ((Artist) item).getTracksCache();
+        } else if (item instanceof Genre) {
+          tracks = ((Genre) item).getTracksCache();
+        } else if (item instanceof Year) {
+          tracks = ((Year) item).getTracksCache();
+        }
         // Use a set to avoid dups
         Set<Album> albumSet = new HashSet<Album>();
-        while (albums.hasNext()) {
-          Album album = albums.next();
-          List<Track> cache = album.getTracksCache();
-          synchronized (cache) {
-            for (Track track : cache) {
-              if (item instanceof Artist && track.getArtist().equals(item)) {
-                albumSet.add(album);
-              } else if (item instanceof Genre && track.getGenre().equals(item)) {
-                albumSet.add(album);
-              } else if (item instanceof Year && track.getYear().equals(item)) {
-                albumSet.add(album);
-              }
+        if (tracks != null) {
+          synchronized (tracks) {
+            for (Track track : tracks) {
+              albumSet.add(track.getAlbum());
             }
           }
         }
@@ -503,6 +506,10 @@ public final class AlbumManager extends ItemManager implements Observer {
         refreshMaxRating();
       }
       comp++;
+    } else if (event.getSubject() == JajukEvents.DEVICE_REFRESH
+        && Conf.getBoolean(Const.CONF_THUMBS_WARM_UP)) {
+      // Create thumbs of new albums in background
+      ThumbnailManager.warmUp();
     }
   }
 
@@ -27,10 +27,19 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -50,6 +59,7 @@ import org.jajuk.util.log.Log;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
@@ -101,45 +111,165 @@ public final class Collection extends DefaultHandler {
   }
   /** [Perf] flag used to accelerate conversion. */
   private boolean needCheckConversions = true;
-  /** [PERF] Does the type has been checked once for ID computation change ? Indeed, we check only one element of each type to check if this computation changed for perfs. */
-  private boolean needCheckID = false;
+  /** [PERF] Does the type has been checked once for ID computation change ? Indeed, we check only one element of each type to check if this computation changed for perfs. Indexed by stage as stages can be loaded concurrently. */
+  private final boolean[] needCheckID = new boolean[Stage.values().length];
 
   // Constants value, use lower value for mist numerous items to parse
   /**
-   * .
+   * Collection file sections. Each stage comes with its loading phase : items
+   * of a given phase only reference items of previous phases so stages of the
+   * same phase can be loaded concurrently. Stages with a negative phase are
+   * always loaded by the parsing thread.
    */
   private enum Stage {
-    STAGE_NONE,
+    STAGE_NONE(-1),
     /** The Constant STAGE_FILES.  */
-    STAGE_FILES,
+    STAGE_FILES(2),
     /** The Constant STAGE_DIRECTORIES.  */
-    STAGE_DIRECTORIES,
+    STAGE_DIRECTORIES(1),
     /** The Constant STAGE_TRACKS.  */
-    STAGE_TRACKS,
+    STAGE_TRACKS(1),
     /** The Constant STAGE_ALBUMS.  */
-    STAGE_ALBUMS,
+    STAGE_ALBUMS(0),
     /** The Constant STAGE_ARTISTS.  */
-    STAGE_ARTISTS,
+    STAGE_ARTISTS(0),
     /** The Constant STAGE_GENRES.  */
-    STAGE_GENRES,
+    STAGE_GENRES(0),
     /** The Constant STAGE_PLAYLIST_FILES.  */
-    STAGE_PLAYLIST_FILES,
+    STAGE_PLAYLIST_FILES(2),
     /** The Constant STAGE_PLAYLISTS.  */
-    STAGE_PLAYLISTS,
+    STAGE_PLAYLISTS(-1),
     /** The Constant STAGE_TYPES.  */
-    STAGE_TYPES,
+    STAGE_TYPES(-1),
     /** The Constant STAGE_DEVICES.  */
-    STAGE_DEVICES,
+    STAGE_DEVICES(0),
     /** The Constant STAGE_YEARS.  */
-    STAGE_YEARS,
+    STAGE_YEARS(0),
     /** STAGE_ALBUM_ARTIST. */
-    STAGE_ALBUM_ARTIST
+    STAGE_ALBUM_ARTIST(0);
+    /** Loading phase. */
+    private final int phase;
+
+    /**
+     * Instantiates a new stage.
+     *
+     * @param phase loading phase
+     */
+    private Stage(int phase) {
+      this.phase = phase;
+    }
   }
 
   /** *************************************************************************** [PERF] provide current stage (files, tracks...) used to optimize switch when parsing the collection ************************************************************************** */
   private Stage stage = Stage.STAGE_NONE;
   /** The Constant additionFormatter.  */
   private final DateFormat additionFormatter = UtilString.getAdditionDateFormatter();
+  /** Number of items submitted at once to a stage worker. */
+  private static final int BATCH_SIZE = 500;
+  /** Max number of batches waiting for a stage worker, bounds the copied attributes memory. */
+  private static final int MAX_PENDING_BATCHES = 20;
+  /** Parallel loading workers by stage, null when items are built by the parsing thread. */
+  private Map<Stage, StageWorker> workers;
+
+  /**
+   * Builds the items of a given stage in order on a dedicated thread while
+   * the collection is parsed.
+   */
+  private final class StageWorker {
+    /** Loaded stage. */
+    private final Stage workerStage;
+    /** The single thread executor. */
+    private final ExecutorService executor;
+    /** Items not yet submitted. */
+    private List<Attributes> batch = new ArrayList<Attributes>(BATCH_SIZE);
+    /** Submitted batches. */
+    private final Deque<Future<?>> pendingBatches = new ArrayDeque<Future<?>>();
+
+    /**
+     * Instantiates a new stage worker.
+     *
+     * @param workerStage the loaded stage
+     */
+    StageWorker(final Stage workerStage) {
+      this.workerStage = workerStage;
+      this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          return new Thread(r, "Collection loading thread: " + workerStage);
+        }
+      });
+    }
+
+    /**
+     * Queue an item. Attributes are copied as the parser reuses them.
+     *
+     * @param attributes item attributes
+     *
+     * @throws SAXException the SAX exception
+     */
+    void add(Attributes attributes) throws SAXException {
+      batch.add(new AttributesImpl(attributes));
+      if (batch.size() >= BATCH_SIZE) {
+        submit();
+      }
+    }
+
+    /**
+     * Submit current batch.
+     *
+     * @throws SAXException the SAX exception
+     */
+    private void submit() throws SAXException {
+      if (batch.isEmpty()) {
+        return;
+      }
+      // Make sure not to keep too many attributes copies in memory if the worker is slower than the parser
+      if (pendingBatches.size() >= MAX_PENDING_BATCHES) {
+        await(pendingBatches.removeFirst());
+      }
+      final List<Attributes> toLoad = batch;
+      batch = new ArrayList<Attributes>(BATCH_SIZE);
+      pendingBatches.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (Attributes attributes : toLoad) {
+            handleElement(workerStage, attributes, attributes.getIndex(Const.XML_ID));
+          }
+        }
+      }));
+    }
+
+    /**
+     * Wait for all queued items to be built.
+     *
+     * @throws SAXException the SAX exception
+     */
+    void finish() throws SAXException {
+      submit();
+      while (!pendingBatches.isEmpty()) {
+        await(pendingBatches.removeFirst());
+      }
+    }
+
+    /**
+     * Wait for a submitted batch.
+     *
+     * @param future the batch future
+     *
+     * @throws SAXException the SAX exception
+     */
+    private void await(Future<?> future) throws SAXException {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SAXException(e);
+      } catch (ExecutionException e) {
+        // Should not happen as items errors are already handled
+        Log.error(e);
+      }
+    }
+  }
 
   /**
    * Instance getter.
@@ -159,13 +289,21 @@ public final class Collection extends DefaultHandler {
 
   /**
    * Write current collection to collection file for persistence between
-   * sessions. 
+   * sessions. When possible, only the changes since last full commit are
+   * appended to the collection journal.
    *
    * @param collectionFile 
    *
    * @throws IOException Signals that an I/O exception has occurred.
    */
   public static synchronized void commit() throws IOException {
+    CollectionJournal journal = CollectionJournal.getInstance();
+    if (!journal.isFoldRequired()) {
+      journal.flush();
+      return;
+    }
+    // Changes made during the full commit will be part of the new journal
+    journal.startFold();
     long time = System.currentTimeMillis();
     String sCharset = Conf.getString(Const.CONF_COLLECTION_CHARSET);
     java.io.File out = SessionService.getConfFileByPath(Const.FILE_COLLECTION + "."
@@ -229,7 +367,17 @@ public final class Collection extends DefaultHandler {
     // Override initial file
     java.io.File finalFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
     UtilSystem.saveFileWithRecoverySupport(finalFile);
+    journal.endFold(finalFile);
     Log.debug("Collection commited in " + (System.currentTimeMillis() - time) + " ms");
+    // Binary snapshot used for faster startup
+    if (Conf.getBoolean(Const.CONF_COLLECTION_SNAPSHOT)) {
+      try {
+        CollectionSnapshot.commit();
+      } catch (IOException e) {
+        // Not fatal : an older snapshot is never used over the XML file
+        Log.error(e);
+      }
+    }
   }
 
   /**
@@ -270,7 +418,31 @@ public final class Collection extends DefaultHandler {
   }
 
   /**
-   * Parse collection.xml file and put all collection information into memory
+   * Back up the collection file. Backups are restored without journal so the changes only stored
+   * in the journal are folded into the collection file first.
+   */
+  public static synchronized void backup() {
+    if (Conf.getInt(Const.CONF_BACKUP_SIZE) <= 0) {
+      // 0 or less means no backup
+      return;
+    }
+    CollectionJournal journal = CollectionJournal.getInstance();
+    if (journal.hasChanges()) {
+      journal.requireFold();
+      try {
+        commit();
+      } catch (IOException e) {
+        Log.error(e);
+      }
+    }
+    UtilSystem.backupFile(SessionService.getConfFileByPath(Const.FILE_COLLECTION),
+        Conf.getInt(Const.CONF_BACKUP_SIZE));
+  }
+
+  /**
+   * Parse collection.xml file and put all collection information into memory.
+   * When loading the regular collection file, the binary snapshot is used instead
+   * if it is up to date and the collection journal is then replayed.
    *
    * @param file 
    *
@@ -291,6 +463,89 @@ public final class Collection extends DefaultHandler {
       throw new JajukException(5, file.toString());
     }
     lTime = System.currentTimeMillis();
+    if (!file.equals(regularFile)) {
+      // A backup file : the journal doesn't apply and the next commit has to be a full one
+      CollectionJournal.getInstance().reset();
+      parse(file);
+      return;
+    }
+    if (CollectionSnapshot.isUsable(file)) {
+      try {
+        getInstance().startParallelLoading();
+        try {
+          CollectionSnapshot.load(getInstance());
+        } finally {
+          getInstance().stopParallelLoading();
+        }
+        CollectionJournal.getInstance().replay(file, getInstance());
+        return;
+      } catch (IOException e) {
+        // Fallback to the XML file
+        Log.error(e);
+        clearCollection();
+        lTime = System.currentTimeMillis();
+      }
+    }
+    parse(file);
+    CollectionJournal.getInstance().replay(file, getInstance());
+  }
+
+  /**
+   * Start loading collection sections concurrently if enabled and useful on
+   * this computer.
+   */
+  private void startParallelLoading() {
+    if (Conf.getBoolean(Const.CONF_COLLECTION_PARALLEL_LOADING)
+        && Runtime.getRuntime().availableProcessors() > 1) {
+      workers = new EnumMap<Stage, StageWorker>(Stage.class);
+    }
+  }
+
+  /**
+   * Wait for all items to be built and release loading threads.
+   *
+   * @throws SAXException the SAX exception
+   */
+  private void stopParallelLoading() throws SAXException {
+    if (workers == null) {
+      return;
+    }
+    try {
+      awaitPhases(Integer.MAX_VALUE);
+    } finally {
+      for (StageWorker worker : workers.values()) {
+        worker.executor.shutdownNow();
+      }
+      workers = null;
+    }
+  }
+
+  /**
+   * Wait for all items of the phases previous to the given one to be built.
+   *
+   * @param phase the phase
+   *
+   * @throws SAXException the SAX exception
+   */
+  private void awaitPhases(int phase) throws SAXException {
+    for (StageWorker worker : workers.values()) {
+      if (worker.workerStage.phase < phase) {
+        worker.finish();
+      }
+    }
+  }
+
+  /**
+   * Parse a collection XML file.
+   *
+   * @param file 
+   *
+   * @throws SAXException the SAX exception
+   * @throws ParserConfigurationException the parser configuration exception
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void parse(File file) throws SAXException, ParserConfigurationException,
+      IOException {
     SAXParserFactory spf = SAXParserFactory.newInstance();
     spf.setValidating(false);
     spf.setNamespaceAware(false);
@@ -298,7 +553,12 @@ public final class Collection extends DefaultHandler {
     spf.setFeature("http://xml.org/sax/features/external-general-entities", false);
     spf.setFeature("http://xml.org/sax/features/string-interning", true);
     SAXParser saxParser = spf.newSAXParser();
-    saxParser.parse(file.toURI().toURL().toString(), getInstance());
+    getInstance().startParallelLoading();
+    try {
+      saxParser.parse(file.toURI().toURL().toString(), getInstance());
+    } finally {
+      getInstance().stopParallelLoading();
+    }
   }
 
   /**
@@ -324,6 +584,7 @@ public final class Collection extends DefaultHandler {
    * read from a file but filled programmatically.
    */
   public static synchronized void clearCollection() {
+    CollectionJournal.getInstance().reset();
     TrackManager.getInstance().clear();
     GenreManager.getInstance().clear();
     ArtistManager.getInstance().clear();
@@ -428,54 +689,54 @@ public final class Collection extends DefaultHandler {
         if (Const.XML_DEVICES == sQName) { //NOSONAR
           manager = DeviceManager.getInstance();
           stage = Stage.STAGE_DEVICES;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_ALBUMS == sQName) {//NOSONAR
           manager = AlbumManager.getInstance();
           stage = Stage.STAGE_ALBUMS;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_ARTISTS == sQName) {//NOSONAR
           manager = ArtistManager.getInstance();
           stage = Stage.STAGE_ARTISTS;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_ALBUM_ARTISTS == sQName) {//NOSONAR
           manager = AlbumArtistManager.getInstance();
           stage = Stage.STAGE_ALBUM_ARTIST;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_DIRECTORIES == sQName) {//NOSONAR
           manager = DirectoryManager.getInstance();
           stage = Stage.STAGE_DIRECTORIES;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_FILES == sQName) {//NOSONAR
           manager = FileManager.getInstance();
           stage = Stage.STAGE_FILES;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_PLAYLISTS == sQName) {//NOSONAR
           // This code is here for Jajuk < 1.6 compatibility
           manager = PlaylistManager.getInstance();
           stage = Stage.STAGE_PLAYLISTS;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_PLAYLIST_FILES == sQName) {//NOSONAR
           manager = PlaylistManager.getInstance();
           stage = Stage.STAGE_PLAYLIST_FILES;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_GENRES == sQName) {//NOSONAR
           manager = GenreManager.getInstance();
           stage = Stage.STAGE_GENRES;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_TRACKS == sQName) {//NOSONAR
           manager = TrackManager.getInstance();
           stage = Stage.STAGE_TRACKS;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_YEARS == sQName) {//NOSONAR
           manager = YearManager.getInstance();
           stage = Stage.STAGE_YEARS;
-          needCheckID = true;
+          needCheckID[stage.ordinal()] = true;
         } else if (Const.XML_TYPES == sQName) {//NOSONAR
           // This is here for pre-1.7 collections, after we don't commit types
           // anymore (they are set programmatically)
           manager = TypeManager.getInstance();
           stage = Stage.STAGE_TYPES;
-          needCheckID = false;
+          needCheckID[stage.ordinal()] = false;
         } else if (Const.XML_PROPERTY == sQName) {//NOSONAR
           // A property description
           boolean bCustom = Boolean.parseBoolean(attributes.getValue(attributes
@@ -517,56 +778,94 @@ public final class Collection extends DefaultHandler {
           Log.debug("Starting stage: '" + stage + "' with property: '" + sQName + "' manager: "
               + (manager != null ? manager.getXMLTag() : "<null>"));
         }
-      } else {
-        // Manage elements themselves using a switch for performances
-        switch (stage) {
-        case STAGE_FILES:
-          handleFiles(attributes, idIndex);
-          break;
-        case STAGE_DIRECTORIES:
-          handleDirectories(attributes, idIndex);
-          break;
-        case STAGE_TRACKS:
-          handleTracks(attributes, idIndex);
-          break;
-        case STAGE_ALBUMS:
-          handleAlbums(attributes, idIndex);
-          break;
-        case STAGE_ARTISTS:
-          handleArtists(attributes, idIndex);
-          break;
-        case STAGE_ALBUM_ARTIST:
-          handleAlbumArtists(attributes, idIndex);
-          break;
-        case STAGE_GENRES:
-          handleGenres(attributes, idIndex);
-          break;
-        case STAGE_PLAYLIST_FILES:
-          handlePlaylistFiles(attributes, idIndex);
-          break;
-        case STAGE_DEVICES:
-          handleDevices(attributes, idIndex);
-          break;
-        case STAGE_YEARS:
-          handleYears(attributes, idIndex);
-          break;
-        case STAGE_TYPES:
-          Log.warn("Unexpected Stage: STAGE_TYPES");
-          break;
-        default:
-          Log.warn("Unexpected Stage: " + stage);
+        if (workers != null && Const.XML_PROPERTY != sQName && stage.phase >= 0) {//NOSONAR
+          // Items of this stage may reference items of previous phases
+          awaitPhases(stage.phase);
+        }
+      } else if (workers != null && stage.phase >= 0) {
+        StageWorker worker = workers.get(stage);
+        if (worker == null) {
+          worker = new StageWorker(stage);
+          workers.put(stage, worker);
         }
+        worker.add(attributes);
+      } else {
+        handleElement(stage, attributes, idIndex);
       }
     } catch (Throwable e) {//NOSONAR
       // Make sure to catch every issue here (including runtime exceptions) so we make sure to start
       // jajuk
-      StringBuilder sAttributes = new StringBuilder();
-      for (int i = 0; i < attributes.getLength(); i++) {
-        sAttributes.append('\n').append(attributes.getQName(i)).append('=')
-            .append(attributes.getValue(i));
+      logElementError(attributes, e);
+    }
+  }
+
+  /**
+   * Build an item from its attributes, called by the parsing thread or by a
+   * stage worker when loading in parallel.
+   *
+   * @param itemStage the item stage
+   * @param attributes 
+   * @param idIndex 
+   */
+  private void handleElement(Stage itemStage, Attributes attributes, int idIndex) {
+    try {
+      switch (itemStage) {
+      case STAGE_FILES:
+        handleFiles(attributes, idIndex);
+        break;
+      case STAGE_DIRECTORIES:
+        handleDirectories(attributes, idIndex);
+        break;
+      case STAGE_TRACKS:
+        handleTracks(attributes, idIndex);
+        break;
+      case STAGE_ALBUMS:
+        handleAlbums(attributes, idIndex);
+        break;
+      case STAGE_ARTISTS:
+        handleArtists(attributes, idIndex);
+        break;
+      case STAGE_ALBUM_ARTIST:
+        handleAlbumArtists(attributes, idIndex);
+        break;
+      case STAGE_GENRES:
+        handleGenres(attributes, idIndex);
+        break;
+      case STAGE_PLAYLIST_FILES:
+        handlePlaylistFiles(attributes, idIndex);
+        break;
+      case STAGE_DEVICES:
+        handleDevices(attributes, idIndex);
+        break;
+      case STAGE_YEARS:
+        handleYears(attributes, idIndex);
+        break;
+      case STAGE_TYPES:
+        Log.warn("Unexpected Stage: STAGE_TYPES");
+        break;
+      default:
+        Log.warn("Unexpected Stage: " + itemStage);
       }
-      Log.error(5, sAttributes.toString(), e);
+    } catch (Throwable e) {//NOSONAR
+      // Make sure to catch every issue here (including runtime exceptions) so we make sure to start
+      // jajuk
+      logElementError(attributes, e);
+    }
+  }
+
+  /**
+   * Log an error on a collection element.
+   *
+   * @param attributes the element attributes
+   * @param e the error
+   */
+  private static void logElementError(Attributes attributes, Throwable e) {
+    StringBuilder sAttributes = new StringBuilder();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      sAttributes.append('\n').append(attributes.getQName(i)).append('=')
+          .append(attributes.getValue(i));
     }
+    Log.error(5, sAttributes.toString(), e);
   }
 
   /**
@@ -629,10 +928,10 @@ public final class Collection extends DefaultHandler {
      * others item one. If is is an upgrade, we force the check.We always check id in debug mode.
      */
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_FILES.ordinal()]) {
       sRightID = FileManager.createID(sItemName, dParent).intern();
       if (sRightID == sID) { //NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_FILES.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong file Id, upgraded: " + sItemName);
         hmWrongRightFileID.put(sID, sRightID);
@@ -680,10 +979,10 @@ public final class Collection extends DefaultHandler {
     String sID = attributes.getValue(idIndex).intern();
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_DIRECTORIES.ordinal()]) {
       sRightID = DirectoryManager.createID(sItemName, device, dParent).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_DIRECTORIES.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong directory Id, upgraded: " + sItemName);
         hmWrongRightDirectoryID.put(sID, sRightID);
@@ -793,11 +1092,11 @@ public final class Collection extends DefaultHandler {
     }
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_TRACKS.ordinal()]) {
       sRightID = TrackManager.createID(sTrackName, album, genre, artist, length, year, lOrder,
           type, lDiscNumber).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_TRACKS.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong Track Id, upgraded: " + sTrackName);
         hmWrongRightTrackID.put(sID, sRightID);
@@ -845,10 +1144,10 @@ public final class Collection extends DefaultHandler {
     }
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_ALBUMS.ordinal()]) {
       sRightID = AlbumManager.createID(sItemName, lItemDiscID).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_ALBUMS.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong album Id, upgraded: " + sItemName);
         hmWrongRightAlbumID.put(sID, sRightID);
@@ -871,10 +1170,10 @@ public final class Collection extends DefaultHandler {
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_ARTISTS.ordinal()]) {
       sRightID = ItemManager.createID(sItemName).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_ARTISTS.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong artist Id, upgraded: " + sItemName);
         hmWrongRightArtistID.put(sID, sRightID);
@@ -897,10 +1196,10 @@ public final class Collection extends DefaultHandler {
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_GENRES.ordinal()]) {
       sRightID = ItemManager.createID(sItemName).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_GENRES.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong genre Id, upgraded: " + sItemName);
         hmWrongRightGenreID.put(sID, sRightID);
@@ -934,10 +1233,10 @@ public final class Collection extends DefaultHandler {
     String sItemName = attributes.getValue(Const.XML_NAME);
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_PLAYLIST_FILES.ordinal()]) {
       sRightID = PlaylistManager.createID(sItemName, dParent).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_PLAYLIST_FILES.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong playlist Id, upgraded: " + sItemName);
         hmWrongRightPlaylistFileID.put(sID, sRightID);
@@ -962,10 +1261,10 @@ public final class Collection extends DefaultHandler {
     Device.Type type = Device.Type.values()[(int) lType];
     // UPGRADE test
     String sRightID = sID;
-    if (needCheckID) {
+    if (needCheckID[Stage.STAGE_DEVICES.ordinal()]) {
       sRightID = ItemManager.createID(sItemName).intern();
       if (sRightID == sID) {//NOSONAR
-        needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
+        needCheckID[Stage.STAGE_DEVICES.ordinal()] = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong device Id, upgraded: " + sItemName);
         hmWrongRightDeviceID.put(sID, sRightID);
@@ -0,0 +1,644 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilString;
+import org.jajuk.util.log.Log;
+import org.xml.sax.SAXException;
+
+/**
+ * Append-only journal of the collection changes made since the last full commit.
+ * <p>
+ * Items registrations, removals and properties changes are recorded as they occur and only
+ * the changed items are appended to the journal file at commit time instead of rewriting the
+ * whole collection. The journal is replayed at startup on top of the collection file (or its
+ * snapshot) and it is folded into a new full commit once it grows over a size threshold.
+ * </p>
+ * <p>
+ * Changes are only recorded when the in-memory collection is derived from the regular collection
+ * file (loaded or fully committed), in any other case (collection cleared, loaded from a backup
+ * file, custom property added...) the next commit is a full one.
+ * </p>
+ *
+ * <pre>
+ * header  : magic, format version, base collection file length and date
+ * records : type (byte), manager XML tag, then
+ *           ITEM   : properties count, (name, value) for each property
+ *           SET    : item ID, property name, property value
+ *           UNSET  : item ID, property name
+ *           REMOVE : item ID
+ * </pre>
+ *
+ * Replaying a record is idempotent so changes made while a full commit is in progress can safely
+ * be written again in the next journal.
+ */
+final class CollectionJournal {
+  /** File magic number ("JJKJ"). */
+  private static final int MAGIC = 0x4A4A4B4A;
+  /** Journal format version. */
+  private static final int FORMAT_VERSION = 1;
+  /** Header length in bytes. */
+  private static final int HEADER_LENGTH = 24;
+  /** Item registration or properties reset record. */
+  private static final byte RECORD_ITEM = 1;
+  /** Property set record. */
+  private static final byte RECORD_SET = 2;
+  /** Property removal record. */
+  private static final byte RECORD_UNSET = 3;
+  /** Item removal record. */
+  private static final byte RECORD_REMOVE = 4;
+  /** Estimated journal size of a pending change, used to bound memory usage. */
+  private static final int CHANGE_SIZE_ESTIMATE = 100;
+  /** Number of bytes in a MB. */
+  private static final long MB = 1024 * 1024;
+  /** XML tags of the managers persisted in the collection file. */
+  private static final List<String> JOURNALED_TAGS = Arrays.asList(Const.XML_DEVICES,
+      Const.XML_GENRES, Const.XML_ARTISTS, Const.XML_ALBUM_ARTISTS, Const.XML_ALBUMS,
+      Const.XML_YEARS, Const.XML_TRACKS, Const.XML_DIRECTORIES, Const.XML_FILES,
+      Const.XML_PLAYLIST_FILES);
+  /** Self instance. */
+  private static CollectionJournal self = new CollectionJournal();
+  /** Are changes recorded ? Volatile as checked without locking on every property change. */
+  private volatile boolean active = false;
+  /** Does the next commit have to be a full one ?. */
+  private boolean foldRequired = true;
+  /** Changes not yet written to the journal file, in order. */
+  private List<Change> pending = new ArrayList<Change>(100);
+  /** Size of the journal file. */
+  private long fileSize = 0;
+
+  /**
+   * A recorded change. Values are only read when writing the journal so an item changed many
+   * times between two commits is written with its latest values.
+   */
+  private static final class Change {
+    /** Record type. */
+    private final byte type;
+    /** Changed item. */
+    private final Item item;
+    /** Changed property name, null for items records. */
+    private final String key;
+
+    /**
+     * Instantiates a new change.
+     *
+     * @param type the record type
+     * @param item the changed item
+     * @param key the changed property name or null
+     */
+    Change(byte type, Item item, String key) {
+      this.type = type;
+      this.item = item;
+      this.key = key;
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  static CollectionJournal getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private CollectionJournal() {
+    super();
+  }
+
+  /**
+   * Gets the journal file.
+   *
+   * @return the journal file
+   */
+  static java.io.File getJournalFile() {
+    return SessionService.getConfFileByPath(Const.FILE_COLLECTION_JOURNAL);
+  }
+
+  /**
+   * Return whether the journal is enabled.
+   *
+   * @return whether the journal is enabled
+   */
+  private static boolean isEnabled() {
+    return Conf.getBoolean(Const.CONF_COLLECTION_JOURNAL);
+  }
+
+  /**
+   * Gets the journal size over which it is folded into a full commit.
+   *
+   * @return the max size in bytes
+   */
+  private static long getMaxSize() {
+    return Conf.getInt(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE) * MB;
+  }
+
+  /**
+   * Return whether the given manager items are persisted in the collection file.
+   *
+   * @param manager the item manager, can be null (smart playlists)
+   *
+   * @return whether changes on this manager items have to be journaled
+   */
+  private static boolean isJournaled(ItemManager manager) {
+    return manager != null && JOURNALED_TAGS.contains(manager.getXMLTag());
+  }
+
+  /**
+   * Record an item registration or a change of all its properties.
+   *
+   * @param item the item
+   */
+  void itemChanged(Item item) {
+    if (active) {
+      record(RECORD_ITEM, item, null);
+    }
+  }
+
+  /**
+   * Record a property set or removal.
+   *
+   * @param item the item
+   * @param key the property name
+   */
+  void propertyChanged(Item item, String key) {
+    if (active) {
+      record(RECORD_SET, item, key);
+    }
+  }
+
+  /**
+   * Record an item removal.
+   *
+   * @param item the item
+   */
+  void itemRemoved(Item item) {
+    if (active) {
+      record(RECORD_REMOVE, item, null);
+    }
+  }
+
+  /**
+   * Record a change.
+   *
+   * @param type the record type
+   * @param item the item
+   * @param key the property name or null
+   */
+  private synchronized void record(byte type, Item item, String key) {
+    // Check again under lock
+    if (!active) {
+      return;
+    }
+    ItemManager manager = ItemManager.getItemManager(item.getClass());
+    if (!isJournaled(manager)) {
+      return;
+    }
+    // Items properties are set before their registration, this is covered by the ITEM record
+    if (type != RECORD_REMOVE && manager.getItemByID(item.getID()) != item) {
+      return;
+    }
+    pending.add(new Change(type, item, key));
+    // Bound memory usage : if the journal would be folded anyway, don't keep changes
+    if (fileSize + (long) pending.size() * CHANGE_SIZE_ESTIMATE > getMaxSize()) {
+      Log.debug("Collection journal full, next commit will be a full one");
+      reset();
+    }
+  }
+
+  /**
+   * Stop recording changes and make next commit a full one. Called when the in-memory collection
+   * is no more derived from the collection file (cleared, loaded from a backup, properties
+   * meta-information changed...).
+   */
+  synchronized void reset() {
+    active = false;
+    foldRequired = true;
+    pending = new ArrayList<Change>(100);
+  }
+
+  /**
+   * Return whether some changes are only stored in the journal file or not written yet.
+   *
+   * @return true if the collection file doesn't hold all changes
+   */
+  synchronized boolean hasChanges() {
+    return fileSize > HEADER_LENGTH || !pending.isEmpty();
+  }
+
+  /**
+   * Make next commit a full one, changes keep being recorded.
+   */
+  synchronized void requireFold() {
+    foldRequired = true;
+  }
+
+  /**
+   * Return whether the next commit has to be a full one.
+   *
+   * @return true if a full commit is required
+   */
+  synchronized boolean isFoldRequired() {
+    return foldRequired || !active || !isEnabled() || fileSize > getMaxSize()
+        || !matchesBase(SessionService.getConfFileByPath(Const.FILE_COLLECTION));
+  }
+
+  /**
+   * Called just before a full commit : changes made from now will be part of the next journal.
+   * Some of them may also be written by the full commit, this is not a problem as replay is
+   * idempotent.
+   */
+  synchronized void startFold() {
+    pending = new ArrayList<Change>(100);
+    foldRequired = true;
+    active = isEnabled();
+  }
+
+  /**
+   * Called after a successful full commit : start a new journal based on the new collection
+   * file.
+   *
+   * @param base the collection file just written
+   */
+  synchronized void endFold(java.io.File base) {
+    if (!active) {
+      // Make sure an outdated journal is never replayed
+      getJournalFile().delete();
+      return;
+    }
+    try {
+      writeHeader(base);
+      foldRequired = false;
+    } catch (IOException e) {
+      Log.error(e);
+      reset();
+    }
+  }
+
+  /**
+   * Append pending changes to the journal file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void flush() throws IOException {
+    List<Change> changes;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      changes = pending;
+      pending = new ArrayList<Change>(100);
+    }
+    long time = System.currentTimeMillis();
+    FileOutputStream fos = new FileOutputStream(getJournalFile(), true);
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+    try {
+      for (Change change : changes) {
+        writeChange(dos, change);
+      }
+      dos.flush();
+      fos.getFD().sync();
+    } finally {
+      dos.close();
+    }
+    synchronized (this) {
+      fileSize += dos.size();
+    }
+    Log.debug("Collection journal: " + changes.size() + " changes commited in "
+        + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Write a change record using the current item values.
+   *
+   * @param dos the output stream
+   * @param change the change
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeChange(DataOutputStream dos, Change change) throws IOException {
+    Item item = change.item;
+    ItemManager manager = ItemManager.getItemManager(item.getClass());
+    if (change.type == RECORD_REMOVE) {
+      dos.writeByte(RECORD_REMOVE);
+      CollectionSnapshot.writeString(dos, manager.getXMLTag());
+      CollectionSnapshot.writeString(dos, item.getID());
+      return;
+    }
+    // The item has been removed or replaced since, nothing to write
+    if (manager.getItemByID(item.getID()) != item) {
+      return;
+    }
+    if (change.type == RECORD_ITEM) {
+      Map<String, Object> properties = item.getProperties();
+      List<String> keys = new ArrayList<String>(properties.size());
+      List<String> values = new ArrayList<String>(properties.size());
+      for (Map.Entry<String, Object> entry : properties.entrySet()) {
+        String value = format(item, entry.getKey(), entry.getValue());
+        if (value != null) {
+          keys.add(entry.getKey());
+          values.add(value);
+        }
+      }
+      dos.writeByte(RECORD_ITEM);
+      CollectionSnapshot.writeString(dos, manager.getXMLTag());
+      dos.writeInt(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        CollectionSnapshot.writeString(dos, keys.get(i));
+        CollectionSnapshot.writeString(dos, values.get(i));
+      }
+    } else {
+      String value = format(item, change.key, item.getRawValue(change.key));
+      dos.writeByte(value == null ? RECORD_UNSET : RECORD_SET);
+      CollectionSnapshot.writeString(dos, manager.getXMLTag());
+      CollectionSnapshot.writeString(dos, item.getID());
+      CollectionSnapshot.writeString(dos, change.key);
+      if (value != null) {
+        CollectionSnapshot.writeString(dos, value);
+      }
+    }
+  }
+
+  /**
+   * Format a property value the same way than in the collection file.
+   *
+   * @param item the item
+   * @param key the property name
+   * @param oValue the property value
+   *
+   * @return the formatted value or null if the property is not set or unknown
+   */
+  private static String format(Item item, String key, Object oValue) {
+    PropertyMetaInformation meta = item.getMeta(key);
+    if (oValue == null || meta == null) {
+      return null;
+    }
+    try {
+      return UtilString.format(oValue, meta, false);
+    } catch (Exception e) {
+      Log.error(e);
+      return null;
+    }
+  }
+
+  /**
+   * Write a new journal header, dropping any previous journal.
+   *
+   * @param base the collection file the journal is based on
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeHeader(java.io.File base) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new FileOutputStream(getJournalFile(), false));
+    try {
+      dos.writeInt(MAGIC);
+      dos.writeInt(FORMAT_VERSION);
+      dos.writeLong(base.length());
+      dos.writeLong(base.lastModified());
+    } finally {
+      dos.close();
+    }
+    fileSize = HEADER_LENGTH;
+  }
+
+  /**
+   * Return whether the journal file is based on the given collection file.
+   *
+   * @param base the collection file
+   *
+   * @return true if the journal file header matches the given collection file
+   */
+  private static boolean matchesBase(java.io.File base) {
+    java.io.File journal = getJournalFile();
+    if (!journal.exists() || !base.exists()) {
+      return false;
+    }
+    try {
+      DataInputStream dis = new DataInputStream(new FileInputStream(journal));
+      try {
+        return dis.readInt() == MAGIC && dis.readInt() == FORMAT_VERSION
+            && dis.readLong() == base.length() && dis.readLong() == base.lastModified();
+      } finally {
+        dis.close();
+      }
+    } catch (IOException e) {
+      Log.debug("Unreadable collection journal: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Replay the journal on top of the just loaded collection file and start recording changes.
+   *
+   * @param base the loaded collection file
+   * @param handler the collection handler used to register new items
+   */
+  synchronized void replay(java.io.File base, Collection handler) {
+    reset();
+    if (!isEnabled()) {
+      return;
+    }
+    if (matchesBase(base)) {
+      long time = System.currentTimeMillis();
+      int nbRecords = 0;
+      try {
+        FileInputStream fis = new FileInputStream(getJournalFile());
+        try {
+          // Read it in memory rather than mapping it as it is truncated at next fold
+          FileChannel channel = fis.getChannel();
+          ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+          while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // read until full
+          }
+          buffer.flip();
+          buffer.position(HEADER_LENGTH);
+          while (buffer.hasRemaining()) {
+            replayRecord(buffer, handler);
+            nbRecords++;
+          }
+          fileSize = buffer.limit();
+          foldRequired = false;
+        } finally {
+          fis.close();
+        }
+      } catch (BufferUnderflowException e) {
+        // Last record has been partially written, next commit will be a full one
+        Log.warn("Truncated collection journal, " + nbRecords + " records replayed");
+      } catch (Exception e) {
+        Log.error(e);
+      }
+      Log.debug("Collection journal: " + nbRecords + " records replayed in "
+          + (System.currentTimeMillis() - time) + " ms");
+    }
+    // If the journal doesn't match, it is rewritten by the next (full) commit
+    active = true;
+  }
+
+  /**
+   * Replay a single record.
+   *
+   * @param buffer the buffer
+   * @param handler the collection handler
+   *
+   * @throws SAXException the SAX exception
+   */
+  private static void replayRecord(ByteBuffer buffer, Collection handler) throws SAXException {
+    byte type = buffer.get();
+    // Tags are compared by reference by the collection handler
+    String tag = CollectionSnapshot.readString(buffer).intern();
+    if (!JOURNALED_TAGS.contains(tag)) {
+      throw new BufferUnderflowException();
+    }
+    ItemManager manager = getManager(tag);
+    if (type == RECORD_ITEM) {
+      int nbProperties = buffer.getInt();
+      CollectionSnapshot.SnapshotAttributes attributes = new CollectionSnapshot.SnapshotAttributes(
+          nbProperties);
+      for (int i = 0; i < nbProperties; i++) {
+        attributes.add(CollectionSnapshot.readString(buffer).intern(),
+            CollectionSnapshot.readString(buffer));
+      }
+      Item item = manager.getItemByID(attributes.getValue(Const.XML_ID));
+      if (item == null) {
+        // New item : switch the handler to the manager stage first
+        handler.startElement(null, null, tag, new CollectionSnapshot.SnapshotAttributes(0));
+        handler.startElement(null, null, tag, attributes);
+      } else {
+        for (int i = 0; i < attributes.getLength(); i++) {
+          applyProperty(item, attributes.getQName(i), attributes.getValue(i));
+        }
+      }
+      return;
+    }
+    String id = CollectionSnapshot.readString(buffer);
+    Item item = manager.getItemByID(id);
+    if (type == RECORD_SET) {
+      String key = CollectionSnapshot.readString(buffer).intern();
+      String value = CollectionSnapshot.readString(buffer);
+      if (item != null) {
+        applyProperty(item, key, value);
+      }
+    } else if (type == RECORD_UNSET) {
+      String key = CollectionSnapshot.readString(buffer);
+      if (item != null) {
+        item.removeProperty(key);
+      }
+    } else if (type == RECORD_REMOVE) {
+      if (item instanceof File) {
+        FileManager.getInstance().removeFile((File) item);
+      } else if (item instanceof Directory) {
+        DirectoryManager.getInstance().removeDirectory(id);
+      } else if (item != null) {
+        manager.removeItem(item);
+      }
+    } else {
+      // Unknown record, can only be garbage
+      throw new BufferUnderflowException();
+    }
+  }
+
+  /**
+   * Set a property from its journal representation, taking care of the properties also cached
+   * in items fields.
+   *
+   * @param item the item
+   * @param key the property name
+   * @param value the property value
+   */
+  private static void applyProperty(Item item, String key, String value) {
+    PropertyMetaInformation meta = item.getMeta(key);
+    if (meta == null || Const.XML_ID.equals(key)) {
+      return;
+    }
+    try {
+      if (Const.XML_NAME.equals(key)) {
+        item.setName(value);
+      } else if (item instanceof File && Const.XML_TRACK.equals(key)) {
+        Track track = TrackManager.getInstance().getTrackByID(value);
+        if (track != null) {
+          ((File) item).setTrack(track);
+        }
+      } else if (item instanceof Track && Const.XML_ALBUM_ARTIST.equals(key)) {
+        AlbumArtist albumArtist = AlbumArtistManager.getInstance().getAlbumArtistByID(value);
+        if (albumArtist != null) {
+          ((Track) item).setAlbumArtist(albumArtist);
+        }
+      } else if (item instanceof Device && Const.XML_URL.equals(key)) {
+        ((Device) item).setUrl(value);
+      } else {
+        item.setProperty(key, UtilString.parse(value, meta.getType()));
+      }
+    } catch (Exception e) {
+      Log.error(137, key, e);
+    }
+  }
+
+  /**
+   * Gets the manager persisted under a given XML tag.
+   *
+   * @param tag the XML tag (interned)
+   *
+   * @return the manager
+   */
+  private static ItemManager getManager(String tag) {
+    // Note that we compare string with '==' for performance reasons and it is safe here.
+    if (Const.XML_DEVICES == tag) { //NOSONAR
+      return DeviceManager.getInstance();
+    } else if (Const.XML_GENRES == tag) { //NOSONAR
+      return GenreManager.getInstance();
+    } else if (Const.XML_ARTISTS == tag) { //NOSONAR
+      return ArtistManager.getInstance();
+    } else if (Const.XML_ALBUM_ARTISTS == tag) { //NOSONAR
+      return AlbumArtistManager.getInstance();
+    } else if (Const.XML_ALBUMS == tag) { //NOSONAR
+      return AlbumManager.getInstance();
+    } else if (Const.XML_YEARS == tag) { //NOSONAR
+      return YearManager.getInstance();
+    } else if (Const.XML_TRACKS == tag) { //NOSONAR
+      return TrackManager.getInstance();
+    } else if (Const.XML_DIRECTORIES == tag) { //NOSONAR
+      return DirectoryManager.getInstance();
+    } else if (Const.XML_FILES == tag) { //NOSONAR
+      return FileManager.getInstance();
+    }
+    return PlaylistManager.getInstance();
+  }
+}
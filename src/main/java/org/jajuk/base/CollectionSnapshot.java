@@ -0,0 +1,516 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.ReadOnlyIterator;
+import org.jajuk.util.UtilString;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Compact binary image of the collection, written next to collection.xml at each commit and
+ * memory-mapped at startup to avoid the XML parsing cost.
+ * <p>
+ * collection.xml stays the interchange and fallback format, the snapshot is only used when it is
+ * at least as recent as the XML file and was written by the same Jajuk release.
+ * </p>
+ * <pre>
+ * header   : magic, format version, string table offset (long), jajuk version (string)
+ * sections : count, then for each manager (in collection.xml order) :
+ *            tag, property descriptions (fixed 8 columns records),
+ *            columns, records (one string table index per column, -1 if property is not set)
+ * strings  : count, then (length, UTF-8 bytes) for each string
+ * </pre>
+ * Records are replayed through the regular {@link Collection} SAX handler so upgrade and
+ * consistency checks are the same for both formats.
+ */
+final class CollectionSnapshot {
+  /** File magic number ("JJKS"). */
+  private static final int MAGIC = 0x4A4A4B53;
+  /** Snapshot format version, to be incremented at each incompatible format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Offset of the string table offset field in the header. */
+  private static final int STRING_TABLE_OFFSET_POSITION = 8;
+  /** Number of manager sections. */
+  private static final int NB_SECTIONS = 10;
+  /** Index used in records for unset properties. */
+  private static final int NO_VALUE = -1;
+  /** Snapshot charset. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  /** Columns used to store properties meta information, in this order. */
+  private static final String[] PROPERTY_COLUMNS = { Const.XML_NAME, Const.XML_CUSTOM,
+      Const.XML_CONSTRUCTOR, Const.XML_VISIBLE, Const.XML_EDITABLE, Const.XML_UNIQUE,
+      Const.XML_TYPE, Const.XML_DEFAULT_VALUE };
+
+  /**
+   * Private constructor for utility class.
+   */
+  private CollectionSnapshot() {
+    super();
+  }
+
+  /**
+   * Gets the snapshot file.
+   *
+   * @return the snapshot file
+   */
+  static java.io.File getSnapshotFile() {
+    return SessionService.getConfFileByPath(Const.FILE_COLLECTION_SNAPSHOT);
+  }
+
+  /**
+   * Return whether the snapshot can be used instead of the given collection file.
+   *
+   * @param collectionFile the collection.xml file
+   *
+   * @return true if snapshot is enabled, exists and is not older than the collection file
+   */
+  static boolean isUsable(java.io.File collectionFile) {
+    if (!Conf.getBoolean(Const.CONF_COLLECTION_SNAPSHOT)) {
+      return false;
+    }
+    java.io.File snapshot = getSnapshotFile();
+    try {
+      UtilSystem.recoverFileIfRequired(snapshot);
+    } catch (IOException e) {
+      Log.error(e);
+      return false;
+    }
+    return snapshot.exists() && snapshot.lastModified() >= collectionFile.lastModified();
+  }
+
+  /**
+   * Write the snapshot of the current collection.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static void commit() throws IOException {
+    long time = System.currentTimeMillis();
+    java.io.File finalFile = getSnapshotFile();
+    java.io.File out = new java.io.File(finalFile.getAbsolutePath() + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    StringTable strings = new StringTable();
+    long stringTableOffset;
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out),
+        1000000));
+    try {
+      dos.writeInt(MAGIC);
+      dos.writeInt(FORMAT_VERSION);
+      // String table offset, patched once known
+      dos.writeLong(0);
+      writeString(dos, Const.JAJUK_VERSION);
+      dos.writeInt(NB_SECTIONS);
+      writeSection(dos, strings, DeviceManager.getInstance(), DeviceManager.getInstance()
+          .getDevices());
+      writeSection(dos, strings, GenreManager.getInstance(), GenreManager.getInstance().getGenres());
+      writeSection(dos, strings, ArtistManager.getInstance(), ArtistManager.getInstance()
+          .getArtists());
+      writeSection(dos, strings, AlbumArtistManager.getInstance(), AlbumArtistManager
+          .getInstance().getAlbumArtists());
+      writeSection(dos, strings, AlbumManager.getInstance(), AlbumManager.getInstance()
+          .getAlbums());
+      writeSection(dos, strings, YearManager.getInstance(), YearManager.getInstance().getYears());
+      // Tracks : as for the XML file, we drop orphan tracks
+      List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getElementCount());
+      TrackManager.getInstance().getLock().readLock().lock();
+      try {
+        ReadOnlyIterator<Track> it = TrackManager.getInstance().getTracksIterator();
+        while (it.hasNext()) {
+          Track track = it.next();
+          if (track.getFiles().size() > 0) {
+            tracks.add(track);
+          }
+        }
+      } finally {
+        TrackManager.getInstance().getLock().readLock().unlock();
+      }
+      writeSection(dos, strings, TrackManager.getInstance(), tracks);
+      writeSection(dos, strings, DirectoryManager.getInstance(), DirectoryManager.getInstance()
+          .getDirectories());
+      writeSection(dos, strings, FileManager.getInstance(), FileManager.getInstance().getFiles());
+      writeSection(dos, strings, PlaylistManager.getInstance(), PlaylistManager.getInstance()
+          .getPlaylists());
+      stringTableOffset = dos.size();
+      dos.writeInt(strings.size());
+      for (String string : strings.getStrings()) {
+        writeString(dos, string);
+      }
+      dos.flush();
+    } finally {
+      dos.close();
+    }
+    RandomAccessFile raf = new RandomAccessFile(out, "rw");
+    try {
+      raf.seek(STRING_TABLE_OFFSET_POSITION);
+      raf.writeLong(stringTableOffset);
+    } finally {
+      raf.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(finalFile);
+    Log.debug("Collection snapshot commited in " + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Write a manager section.
+   *
+   * @param dos the output stream
+   * @param strings the string table
+   * @param manager the item manager
+   * @param items items to write
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeSection(DataOutputStream dos, StringTable strings,
+      ItemManager manager, List<? extends Item> items) throws IOException {
+    dos.writeInt(strings.indexOf(manager.getXMLTag()));
+    // Properties meta information
+    List<PropertyMetaInformation> metas = new ArrayList<PropertyMetaInformation>(
+        manager.getProperties());
+    dos.writeInt(metas.size());
+    for (PropertyMetaInformation meta : metas) {
+      String sDefault = "";
+      if (meta.getDefaultValue() != null) {
+        sDefault = UtilString.format(meta.getDefaultValue(), meta, false);
+      }
+      dos.writeInt(strings.indexOf(meta.getName()));
+      dos.writeInt(strings.indexOf(Boolean.toString(meta.isCustom())));
+      dos.writeInt(strings.indexOf(Boolean.toString(meta.isConstructor())));
+      dos.writeInt(strings.indexOf(Boolean.toString(meta.isVisible())));
+      dos.writeInt(strings.indexOf(Boolean.toString(meta.isEditable())));
+      dos.writeInt(strings.indexOf(Boolean.toString(meta.isMergeable())));
+      dos.writeInt(strings.indexOf(meta.getType().getName()));
+      dos.writeInt(strings.indexOf(sDefault));
+    }
+    // Columns
+    dos.writeInt(metas.size());
+    for (PropertyMetaInformation meta : metas) {
+      dos.writeInt(strings.indexOf(meta.getName()));
+    }
+    // Records
+    dos.writeInt(items.size());
+    for (Item item : items) {
+      for (PropertyMetaInformation meta : metas) {
+        Object oValue = item.getRawValue(meta.getName());
+        if (oValue == null) {
+          dos.writeInt(NO_VALUE);
+        } else {
+          dos.writeInt(strings.indexOf(UtilString.format(oValue, meta, false)));
+        }
+      }
+    }
+  }
+
+  /**
+   * Write a length-prefixed UTF-8 string.
+   *
+   * @param dos the output stream
+   * @param string the string to write
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static void writeString(DataOutputStream dos, String string) throws IOException {
+    byte[] bytes = string.getBytes(UTF8);
+    dos.writeInt(bytes.length);
+    dos.write(bytes);
+  }
+
+  /**
+   * Read a length-prefixed UTF-8 string.
+   *
+   * @param buffer the buffer
+   *
+   * @return the string
+   */
+  static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  /**
+   * Load the snapshot into the collection using the provided handler.
+   *
+   * @param handler the collection handler used to register items
+   *
+   * @throws IOException if the snapshot cannot be read or is not valid for this release
+   * @throws SAXException the SAX exception
+   */
+  static void load(Collection handler) throws IOException, SAXException {
+    java.io.File file = getSnapshotFile();
+    Log.debug("Loading: " + file.getName());
+    FileInputStream fis = new FileInputStream(file);
+    try {
+      FileChannel channel = fis.getChannel();
+      ByteBuffer buffer;
+      if (UtilSystem.isUnderWindows()) {
+        // A mapped file cannot be deleted under Windows until the mapping is garbage collected,
+        // this would prevent next commit to replace it
+        buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+          // read until full
+        }
+        buffer.flip();
+      } else {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        throw new IOException("Unsupported collection snapshot format: " + file);
+      }
+      long stringTableOffset = buffer.getLong();
+      if (!Const.JAJUK_VERSION.equals(readString(buffer))) {
+        throw new IOException("Collection snapshot written by another Jajuk release: " + file);
+      }
+      int sectionsOffset = buffer.position();
+      // Load string table first
+      buffer.position((int) stringTableOffset);
+      String[] strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(buffer);
+      }
+      buffer.position(sectionsOffset);
+      handler.startDocument();
+      int nbSections = buffer.getInt();
+      for (int i = 0; i < nbSections; i++) {
+        readSection(buffer, strings, handler);
+      }
+      handler.endDocument();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated collection snapshot: " + file, e);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Corrupted collection snapshot: " + file, e);
+    } finally {
+      fis.close();
+    }
+  }
+
+  /**
+   * Read a manager section and replay it through the handler.
+   *
+   * @param buffer the buffer
+   * @param strings the string table
+   * @param handler the collection handler
+   *
+   * @throws SAXException the SAX exception
+   */
+  private static void readSection(ByteBuffer buffer, String[] strings, Collection handler)
+      throws SAXException {
+    // The handler compares tags by reference
+    String tag = strings[buffer.getInt()].intern();
+    SnapshotAttributes attributes = new SnapshotAttributes(PROPERTY_COLUMNS.length);
+    handler.startElement(null, null, tag, attributes);
+    // Properties meta information
+    int nbProperties = buffer.getInt();
+    for (int i = 0; i < nbProperties; i++) {
+      attributes.clear();
+      for (String column : PROPERTY_COLUMNS) {
+        attributes.add(column, strings[buffer.getInt()]);
+      }
+      handler.startElement(null, null, Const.XML_PROPERTY, attributes);
+    }
+    // Columns
+    String[] columns = new String[buffer.getInt()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = strings[buffer.getInt()].intern();
+    }
+    // Records
+    attributes = new SnapshotAttributes(columns.length);
+    int nbRecords = buffer.getInt();
+    for (int i = 0; i < nbRecords; i++) {
+      attributes.clear();
+      for (String column : columns) {
+        int index = buffer.getInt();
+        if (index != NO_VALUE) {
+          attributes.add(column, strings[index]);
+        }
+      }
+      handler.startElement(null, null, tag, attributes);
+    }
+  }
+
+  /**
+   * Strings deduplication table used when writing the snapshot.
+   */
+  private static class StringTable {
+    /** String -> index. */
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>(10000);
+    /** Strings in index order. */
+    private final List<String> strings = new ArrayList<String>(10000);
+
+    /**
+     * Return the index of the given string, adding it if required.
+     *
+     * @param string the string
+     *
+     * @return the index
+     */
+    int indexOf(String string) {
+      Integer index = indexes.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.add(string);
+        indexes.put(string, index);
+      }
+      return index;
+    }
+
+    /**
+     * Gets the strings.
+     *
+     * @return the strings in index order
+     */
+    Iterable<String> getStrings() {
+      return strings;
+    }
+
+    /**
+     * Return the table size.
+     *
+     * @return the table size
+     */
+    int size() {
+      return strings.size();
+    }
+  }
+
+  /**
+   * Reusable, allocation-free SAX attributes view over a snapshot record.
+   */
+  static class SnapshotAttributes implements Attributes {
+    private final String[] names;
+    private final String[] values;
+    private int length;
+
+    /**
+     * Instantiates new snapshot attributes.
+     *
+     * @param capacity max number of attributes
+     */
+    SnapshotAttributes(int capacity) {
+      names = new String[capacity];
+      values = new String[capacity];
+    }
+
+    /**
+     * Reset the attributes.
+     */
+    void clear() {
+      length = 0;
+    }
+
+    /**
+     * Add an attribute.
+     *
+     * @param name
+     * @param value
+     */
+    void add(String name, String value) {
+      names[length] = name;
+      values[length] = value;
+      length++;
+    }
+
+    @Override
+    public int getLength() {
+      return length;
+    }
+
+    @Override
+    public String getURI(int index) {
+      return "";
+    }
+
+    @Override
+    public String getLocalName(int index) {
+      return getQName(index);
+    }
+
+    @Override
+    public String getQName(int index) {
+      return (index >= 0 && index < length) ? names[index] : null;
+    }
+
+    @Override
+    public String getType(int index) {
+      return "CDATA";
+    }
+
+    @Override
+    public String getValue(int index) {
+      return (index >= 0 && index < length) ? values[index] : null;
+    }
+
+    @Override
+    public int getIndex(String uri, String localName) {
+      return getIndex(localName);
+    }
+
+    @Override
+    public int getIndex(String qName) {
+      for (int i = 0; i < length; i++) {
+        // Column names are interned, try the fast path first
+        if (names[i] == qName || names[i].equals(qName)) { //NOSONAR
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String getType(String uri, String localName) {
+      return "CDATA";
+    }
+
+    @Override
+    public String getType(String qName) {
+      return "CDATA";
+    }
+
+    @Override
+    public String getValue(String uri, String localName) {
+      return getValue(localName);
+    }
+
+    @Override
+    public String getValue(String qName) {
+      return getValue(getIndex(qName));
+    }
+  }
+}
@@ -21,13 +21,8 @@
 package org.jajuk.base;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
@@ -47,15 +42,12 @@ import org.jajuk.ui.windows.JajukMainWindow;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
-import org.jajuk.util.JajukFileFilter;
 import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
 import org.jajuk.util.UtilGUI;
 import org.jajuk.util.UtilString;
 import org.jajuk.util.UtilSystem;
 import org.jajuk.util.error.JajukException;
-import org.jajuk.util.filters.ImageFilter;
-import org.jajuk.util.filters.KnownTypeFilter;
 import org.jajuk.util.log.Log;
 import org.xml.sax.Attributes;
 
@@ -69,8 +61,10 @@ import org.xml.sax.Attributes;
 public class Device extends PhysicalItem implements Comparable<Device> {
   /** The Constant OPTION_REFRESH_DEEP.*/
   private static final int OPTION_REFRESH_DEEP = 1;
+  /** The Constant OPTION_REFRESH_FULL, a deep refresh reading again all tags. */
+  private static final int OPTION_REFRESH_FULL = 2;
   /** The Constant OPTION_REFRESH_CANCEL. */
-  private static final int OPTION_REFRESH_CANCEL = 2;
+  private static final int OPTION_REFRESH_CANCEL = 3;
 
   // Device type constants
   /**
@@ -94,10 +88,14 @@ public class Device extends PhysicalItem implements Comparable<Device> {
   private volatile boolean bAlreadySynchronizing = false; //NOSONAR
   /** Volume of created files during synchronization. */
   private long lVolume = 0;
+  /** Current synchronization, null if none. */
+  private volatile DeviceSynchronizer synchronizer;
   /** date last refresh. */
   private long lDateLastRefresh;
   /** Progress reporter *. */
   private RefreshReporter reporter;
+  /** File system watcher, null if the device is not watched. */
+  private DeviceWatcher watcher;
   /** Refresh deepness choice *. */
   private int choice = Device.OPTION_REFRESH_DEEP;
   /** [PERF] cache rootDir directory. */
@@ -519,6 +517,57 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     return bAlreadyRefreshing;
   }
 
+  /**
+   * Set the refreshing flag unless the device is already refreshing, so changes applied outside
+   * a refresh never run concurrently with one.
+   * 
+   * @return true if the flag has been set, false if a refresh is running
+   */
+  synchronized boolean startRefreshing() {
+    if (bAlreadyRefreshing) {
+      return false;
+    }
+    bAlreadyRefreshing = true;
+    return true;
+  }
+
+  /**
+   * Clear the refreshing flag set by {@link #startRefreshing()}.
+   */
+  void stopRefreshing() {
+    bAlreadyRefreshing = false;
+  }
+
+  /**
+   * Tells if the device file system is watched, changes are then applied without refresh.
+   * 
+   * @return true, if the device is watched
+   */
+  boolean isWatched() {
+    return watcher != null && watcher.isActive();
+  }
+
+  /**
+   * Start watching the device file system if enabled. CD are not watched as several CD may
+   * share the same mount point.
+   */
+  private void startWatching() {
+    if (Conf.getBoolean(Const.CONF_DEVICES_WATCH) && getType() != Type.FILES_CD) {
+      watcher = new DeviceWatcher(this);
+      watcher.start();
+    }
+  }
+
+  /**
+   * Stop watching the device file system.
+   */
+  private void stopWatching() {
+    if (watcher != null) {
+      watcher.stop();
+      watcher = null;
+    }
+  }
+
   /**
    * Tells if a device is synchronizing.
    * 
@@ -558,8 +607,10 @@ public class Device extends PhysicalItem implements Comparable<Device> {
         cleanRemovedFiles(dirsToRefresh);
       }
       reporter.cleanupDone();
-      // Actual refresh
-      refreshCommand(((i == Device.OPTION_REFRESH_DEEP) || forcedDeep), true, dirsToRefresh);
+      // Actual refresh, only a full or forced refresh reads again tags of unchanged files
+      boolean bFull = (i == Device.OPTION_REFRESH_FULL) || forcedDeep;
+      boolean bDeep = (i == Device.OPTION_REFRESH_DEEP) || bFull;
+      refreshCommand(bDeep, bFull, true, dirsToRefresh);
       // cleanup logical items
       org.jajuk.base.Collection.cleanupLogical();
       // if it is a move, clean old files *after* the refresh
@@ -580,9 +631,9 @@ public class Device extends PhysicalItem implements Comparable<Device> {
   /**
    * Prepare manual refresh.
    * 
-   * @param bAsk ask user to perform deep or fast refresh 
+   * @param bAsk ask user to perform deep, full or fast refresh 
    * 
-   * @return the user choice (deep or fast)
+   * @return the user choice (deep, full or fast)
    * 
    * @throws JajukException if user canceled, device cannot be refreshed or device already
    * refreshing
@@ -591,6 +642,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     if (bAsk) {
       final Object[] possibleValues = { Messages.getString("FilesTreeView.60"),// fast
           Messages.getString("FilesTreeView.61"),// deep
+          Messages.getString("FilesTreeView.63"),// full
           Messages.getString("Cancel") };// cancel
       try {
         SwingUtilities.invokeAndWait(new Runnable() {
@@ -690,6 +742,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     } else {
       throw new JajukException(11, "\"" + getName() + "\" at URL : " + getUrl());
     }
+    startWatching();
     // notify views to refresh if needed
     ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_MOUNT));
     return bMounted;
@@ -789,6 +842,22 @@ public class Device extends PhysicalItem implements Comparable<Device> {
    */
   boolean refreshCommand(final boolean bDeepScan, final boolean bManual,
       List<Directory> dirsToRefresh) {
+    return refreshCommand(bDeepScan, false, bManual, dirsToRefresh);
+  }
+
+  /**
+   * The refresh itself.
+   * 
+   * @param bDeepScan whether it is a deep refresh request or only fast
+   * @param bFullScan whether a deep refresh should read again tags of files unchanged since
+   * last refresh
+   * @param bManual whether it is a manual refresh or auto
+   * @param dirsToRefresh list of the directory to refresh, null if all of them
+   * 
+   * @return true if some changes occurred in device
+   */
+  boolean refreshCommand(final boolean bDeepScan, final boolean bFullScan, final boolean bManual,
+      List<Directory> dirsToRefresh) {
     try {
       // Check if this device is mounted (useful when called by
       // automatic refresh)
@@ -834,8 +903,13 @@ public class Device extends PhysicalItem implements Comparable<Device> {
       } else {
         dirs = dirsToRefresh;
       }
-      for (Directory dir : dirs) {
-        scanRecursively(dir, bDeepScan);
+      boolean bFull = bFullScan || !Conf.getBoolean(Const.CONF_REFRESH_SKIP_UNCHANGED);
+      if (Conf.getBoolean(Const.CONF_REFRESH_PARALLEL)) {
+        new DeviceScanner(this, bDeepScan, bFull, reporter).scan(dirs);
+      } else {
+        for (Directory dir : dirs) {
+          scanRecursively(dir, bDeepScan, bFull);
+        }
       }
       // Force a GUI refresh if new files or directories discovered or have been
       // removed
@@ -867,9 +941,11 @@ public class Device extends PhysicalItem implements Comparable<Device> {
    *  
    * @param dir top directory to scan
    * @param bDeepScan whether we want to perform a deep scan (read tags again)
+   * @param bFullScan whether a deep scan should read again tags of unchanged files
    */
-  private void scanRecursively(final Directory dir, final boolean bDeepScan) {
-    dir.scan(bDeepScan, reporter);
+  private void scanRecursively(final Directory dir, final boolean bDeepScan,
+      final boolean bFullScan) {
+    dir.scan(dir.getFio().listFiles(UtilSystem.getFileFilter()), bDeepScan, bFullScan, reporter);
     if (reporter != null) {
       reporter.updateState(dir);
     }
@@ -882,7 +958,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
         }
         final Directory subDir = DirectoryManager.getInstance().registerDirectory(
             element.getName(), dir, this);
-        scanRecursively(subDir, bDeepScan);
+        scanRecursively(subDir, bDeepScan, bFullScan);
       }
     }
   }
@@ -1009,6 +1085,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     } finally {
       // make sure to unlock synchronizing even if an error occurred
       bAlreadySynchronizing = false;
+      synchronizer = null;
       // Refresh GUI
       ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_REFRESH));
     }
@@ -1023,105 +1100,23 @@ public class Device extends PhysicalItem implements Comparable<Device> {
    * @return nb of created files
    */
   private int synchronizeUnidirectonal(final Device dSrc, final Device dest) {
-    final Set<Directory> hsSourceDirs = new HashSet<Directory>(100);
-    // contains paths ( relative to device) of desynchronized dirs
-    final Set<String> hsDesynchroPaths = new HashSet<String>(10);
-    final Set<Directory> hsDestDirs = new HashSet<Directory>(100);
-    int iNbCreatedFiles = 0;
-    List<Directory> dirs = DirectoryManager.getInstance().getDirectories();
-    for (Directory dir : dirs) {
-      if (dir.getDevice().equals(dSrc)) {
-        // don't take desynchronized dirs into account
-        if (dir.getBooleanValue(Const.XML_DIRECTORY_SYNCHRONIZED)) {
-          hsSourceDirs.add(dir);
-        } else {
-          hsDesynchroPaths.add(dir.getRelativePath());
-        }
-      }
-    }
-    for (Directory dir : dirs) {
-      if (dir.getDevice().equals(dest)) {
-        if (dir.getBooleanValue(Const.XML_DIRECTORY_SYNCHRONIZED)) {
-          // don't take desynchronized dirs into account
-          hsDestDirs.add(dir);
-        } else {
-          hsDesynchroPaths.add(dir.getRelativePath());
-        }
-      }
-    }
-    // handle known extensions and image files
-    final FileFilter filter = new JajukFileFilter(false, new JajukFileFilter[] {
-        KnownTypeFilter.getInstance(), ImageFilter.getInstance() });
-    for (Directory dir : hsSourceDirs) {
-      // give a chance to exit during sync
-      if (ExitService.isExiting()) {
-        return iNbCreatedFiles;
-      }
-      boolean bNeedCreate = true;
-      final String sPath = dir.getRelativePath();
-      // check the directory on source is not desynchronized. If it
-      // is, leave without checking files
-      if (hsDesynchroPaths.contains(sPath)) {
-        continue;
-      }
-      for (Directory dir2 : hsDestDirs) {
-        if (dir2.getRelativePath().equals(sPath)) {
-          // directory already exists on this device
-          bNeedCreate = false;
-          break;
-        }
-      }
-      // create it if needed
-      final File fileNewDir = new File(new StringBuilder(dest.getUrl()).append(sPath).toString());
-      if (bNeedCreate && !fileNewDir.mkdirs()) {
-        Log.warn("Could not create directory " + fileNewDir);
-      }
-      // synchronize files
-      final File fileSrc = new File(new StringBuilder(dSrc.getUrl()).append(sPath).toString());
-      final File[] fSrcFiles = fileSrc.listFiles(filter);
-      if (fSrcFiles != null) {
-        for (final File element : fSrcFiles) {
-          File[] filesArray = fileNewDir.listFiles(filter);
-          if (filesArray == null) {
-            // fileNewDir is not a directory or an error occurred (
-            // read/write right ? )
-            continue;
-          }
-          final List<File> files = Arrays.asList(filesArray);
-          // Sort so files are copied in the filesystem order
-          Collections.sort(files);
-          boolean bNeedCopy = true;
-          for (final File element2 : files) {
-            if (element.getName().equalsIgnoreCase(element2.getName())) {
-              bNeedCopy = false;
-            }
-          }
-          if (bNeedCopy) {
-            try {
-              UtilSystem.copyToDir(element, fileNewDir);
-              iNbCreatedFiles++;
-              lVolume += element.length();
-              InformationJPanel.getInstance().setMessage(
-                  new StringBuilder(Messages.getString("Device.41")).append(dSrc.getName())
-                      .append(',').append(dest.getName()).append(Messages.getString("Device.42"))
-                      .append(element.getAbsolutePath()).append("]").toString(),
-                  InformationJPanel.MessageType.INFORMATIVE);
-            } catch (final JajukException je) {
-              Messages.showErrorMessage(je.getCode(), element.getAbsolutePath());
-              Messages.showErrorMessage(27);
-              Log.error(je);
-              return iNbCreatedFiles;
-            } catch (final Exception e) {
-              Messages.showErrorMessage(20, element.getAbsolutePath());
-              Messages.showErrorMessage(27);
-              Log.error(20, "{{" + element.getAbsolutePath() + "}}", e);
-              return iNbCreatedFiles;
-            }
-          }
-        }
-      }
+    DeviceSynchronizer sync = new DeviceSynchronizer(dSrc, dest);
+    synchronizer = sync;
+    try {
+      return sync.synchronize();
+    } finally {
+      lVolume += sync.getCopiedBytes();
     }
-    return iNbCreatedFiles;
+  }
+
+  /**
+   * Gets the current synchronization.
+   * 
+   * @return the progress of the current synchronization, null if the device is not
+   * synchronizing
+   */
+  public DeviceSynchronizer getSynchronizer() {
+    return synchronizer;
   }
 
   /**
@@ -1216,6 +1211,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
       return;
     }
     bMounted = false;
+    stopWatching();
     if (bUIRefresh) {
       ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_UNMOUNT));
     }
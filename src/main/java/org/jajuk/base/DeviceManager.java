@@ -330,6 +330,11 @@ public final class DeviceManager extends ItemManager {
         if (device.getType() == Device.Type.FILES_CD) {
           continue;
         }
+        // Watched devices are updated as changes occur. Network drives are still refreshed
+        // as changes made by other hosts are not notified.
+        if (device.isWatched() && device.getType() != Device.Type.NETWORK_DRIVE) {
+          continue;
+        }
         double frequency = 60000 * device.getDoubleValue(Const.XML_DEVICE_AUTO_REFRESH);
         // check if this device needs auto-refresh
         if (frequency == 0d
@@ -353,9 +358,9 @@ public final class DeviceManager extends ItemManager {
           }
           // cleanup device
           bNeedUIRefresh = bNeedUIRefresh | device.cleanRemovedFiles(null);
-          // refresh the device (deep refresh forced after an upgrade)
+          // refresh the device (full deep refresh forced after an upgrade)
           bNeedUIRefresh = bNeedUIRefresh
-              | device.refreshCommand(bNeedDeepAfterUpgrade, false, null);
+              | device.refreshCommand(bNeedDeepAfterUpgrade, bNeedDeepAfterUpgrade, false, null);
           // UI refresh if required
           if (bNeedUIRefresh) {
             // Cleanup logical items
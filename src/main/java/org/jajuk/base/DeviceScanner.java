@@ -0,0 +1,300 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jajuk.services.core.ExitService;
+import org.jajuk.services.tags.Tag;
+import org.jajuk.ui.helpers.RefreshReporter;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Parallel scan of device directories used by the device refresh.
+ * <p>
+ * Directories are walked by a fork-join pool (a task per directory) registering sub-directories
+ * and listing files. Tags of the music files to scan are read ahead by a pool of tag readers and
+ * kept in the tags cache. Listed directories are then scanned one after the other by a single
+ * registration stage (the refresh thread itself) exactly like the sequential refresh does, so files
+ * and tracks are still registered from a single thread.
+ * </p>
+ */
+final class DeviceScanner {
+  /** Max number of listed directories waiting for registration, it bounds read ahead tags. */
+  private static final int MAX_PENDING_DIRECTORIES = 64;
+  /** Registration stage polling delay in ms. */
+  private static final int POLL_DELAY = 100;
+  /** Scanned device. */
+  private final Device device;
+  /** Whether tags should be read again for known files. */
+  private final boolean bDeepScan;
+  /** Whether tags should be read again for known files unchanged since last scan. */
+  private final boolean bFullScan;
+  /** Progress reporter, can be null. */
+  private final RefreshReporter reporter;
+  /** Listed directories waiting for registration. */
+  private final BlockingQueue<ListedDirectory> listed = new LinkedBlockingQueue<ListedDirectory>(
+      MAX_PENDING_DIRECTORIES);
+  /** Set when the scan has been interrupted. */
+  private volatile boolean stopped = false;
+  /** Directory walkers. */
+  private ForkJoinPool walkers;
+  /** Tag readers. */
+  private ExecutorService tagReaders;
+
+  /**
+   * A directory with its files and the pending reads of its tags.
+   */
+  private static final class ListedDirectory {
+    /** The directory. */
+    private final Directory directory;
+    /** Files accepted by the jajuk file filter. */
+    private final java.io.File[] files;
+    /** Pending tags reads. */
+    private final List<Future<Tag>> tagReads;
+
+    /**
+     * Instantiates a new listed directory.
+     *
+     * @param directory the directory
+     * @param files the files
+     * @param tagReads the tag reads
+     */
+    private ListedDirectory(Directory directory, java.io.File[] files, List<Future<Tag>> tagReads) {
+      this.directory = directory;
+      this.files = files;
+      this.tagReads = tagReads;
+    }
+  }
+
+  /**
+   * Instantiates a new device scanner.
+   *
+   * @param device the device
+   * @param bDeepScan whether tags should be read again for known files
+   * @param bFullScan whether tags should be read again for known files unchanged since last scan
+   * @param reporter the progress reporter, can be null
+   */
+  DeviceScanner(Device device, boolean bDeepScan, boolean bFullScan, RefreshReporter reporter) {
+    this.device = device;
+    this.bDeepScan = bDeepScan;
+    this.bFullScan = bFullScan;
+    this.reporter = reporter;
+  }
+
+  /**
+   * Scan recursively the given directories. Returns when all directories have been scanned or
+   * when jajuk is exiting.
+   *
+   * @param dirs the top directories to scan
+   */
+  void scan(List<Directory> dirs) {
+    walkers = new ForkJoinPool(Math.max(1, Conf.getInt(Const.CONF_REFRESH_WALKER_THREADS)));
+    tagReaders = Executors.newFixedThreadPool(
+        Math.max(1, Conf.getInt(Const.CONF_REFRESH_TAG_READER_THREADS)), new ThreadFactory() {
+          private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Tag Reader " + threadNumber.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    try {
+      List<ForkJoinTask<Void>> walks = new ArrayList<ForkJoinTask<Void>>(dirs.size());
+      for (Directory dir : dirs) {
+        walks.add(walkers.submit(new WalkTask(dir)));
+      }
+      while (!ExitService.isExiting()) {
+        ListedDirectory next = listed.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+        if (next != null) {
+          register(next);
+        } else if (isDone(walks) && listed.isEmpty()) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Log.error(e);
+    } finally {
+      stopped = true;
+      walkers.shutdownNow();
+      tagReaders.shutdownNow();
+    }
+  }
+
+  /**
+   * Return whether all walks are done.
+   *
+   * @param walks the walks
+   *
+   * @return true if all walks are done
+   */
+  private static boolean isDone(List<ForkJoinTask<Void>> walks) {
+    for (ForkJoinTask<Void> walk : walks) {
+      if (!walk.isDone()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Registration stage : wait for a directory tags and scan it.
+   *
+   * @param listedDirectory the listed directory
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private void register(ListedDirectory listedDirectory) throws InterruptedException {
+    for (Future<Tag> tagRead : listedDirectory.tagReads) {
+      try {
+        tagRead.get();
+      } catch (ExecutionException e) {
+        // The tag is read again by the scan
+        Log.error(e);
+      }
+    }
+    listedDirectory.directory.scan(listedDirectory.files, bDeepScan, bFullScan, reporter);
+    if (reporter != null) {
+      reporter.updateState(listedDirectory.directory);
+    }
+  }
+
+  /**
+   * Read ahead the tags the scan of a directory will need.
+   *
+   * @param dir the directory
+   * @param files the directory files
+   *
+   * @return the pending tags reads
+   */
+  private List<Future<Tag>> readTags(Directory dir, List<java.io.File> files) {
+    List<Future<Tag>> tagReads = new ArrayList<Future<Tag>>(files.size());
+    for (final java.io.File file : files) {
+      // Ignore iTunes files
+      if (file.getName().startsWith("._")) {
+        continue;
+      }
+      Type type = TypeManager.getInstance().getTypeByExtension(UtilSystem.getExtension(file));
+      if (type == null || !type.getBooleanValue(Const.XML_TYPE_IS_MUSIC)
+          || type.getTaggerClass() == null) {
+        continue;
+      }
+      // Known files tags are only read by deep refreshes, if changed unless full
+      String sId = FileManager.createID(file.getName(), dir);
+      org.jajuk.base.File fileRef = FileManager.getInstance().getFileByID(sId);
+      if (fileRef != null && (!bDeepScan || (!bFullScan && fileRef.isUnchanged(file)))) {
+        continue;
+      }
+      tagReads.add(tagReaders.submit(new Callable<Tag>() {
+        @Override
+        public Tag call() throws Exception {
+          return Tag.getTagForFio(file, true);
+        }
+      }));
+    }
+    return tagReads;
+  }
+
+  /**
+   * Walk a directory : register its sub-directories, list its files and walk sub-directories.
+   */
+  private class WalkTask extends RecursiveAction {
+    /** Generated serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+    /** The walked directory. */
+    private final Directory dir;
+
+    /**
+     * Instantiates a new walk task.
+     *
+     * @param dir the walked directory
+     */
+    WalkTask(Directory dir) {
+      this.dir = dir;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      // Leave ASAP if exit request
+      if (stopped || ExitService.isExiting()) {
+        return;
+      }
+      List<java.io.File> files = new ArrayList<java.io.File>();
+      List<WalkTask> subTasks = new ArrayList<WalkTask>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.getFio().toPath())) {
+        for (Path path : stream) {
+          java.io.File fio = path.toFile();
+          if (UtilSystem.getDirFilter().accept(fio)) {
+            Directory subDir = DirectoryManager.getInstance().registerDirectory(fio.getName(), dir,
+                device);
+            subTasks.add(new WalkTask(subDir));
+          } else if (UtilSystem.getFileFilter().accept(fio)) {
+            files.add(fio);
+          }
+        }
+      } catch (IOException e) {
+        Log.error(e);
+      }
+      ListedDirectory listedDirectory = new ListedDirectory(dir,
+          files.toArray(new java.io.File[files.size()]), readTags(dir, files));
+      try {
+        // Wait for the registration stage to catch up
+        while (!listed.offer(listedDirectory, POLL_DELAY, TimeUnit.MILLISECONDS)) {
+          if (stopped) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        return;
+      }
+      invokeAll(subTasks);
+    }
+  }
+}
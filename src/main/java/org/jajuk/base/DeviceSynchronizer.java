@@ -0,0 +1,580 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jajuk.services.core.ExitService;
+import org.jajuk.ui.widgets.InformationJPanel;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.JajukFileFilter;
+import org.jajuk.util.Messages;
+import org.jajuk.util.error.JajukException;
+import org.jajuk.util.filters.ImageFilter;
+import org.jajuk.util.filters.KnownTypeFilter;
+import org.jajuk.util.log.Log;
+
+/**
+ * Unidirectional synchronization of a device with another one.
+ * <p>
+ * Synchronized directories of both devices are listed once (in parallel) into an index of files
+ * by relative path. The index of each side is compared with the other one to plan new files
+ * (missing on the destination), changed files (newer on the source, with another size or, if
+ * <code>CONF_SYNC_CHECKSUM</code> is set, another checksum) and deleted files (missing on the
+ * source). New and changed files are then copied by a pool of
+ * <code>CONF_SYNC_COPY_THREADS</code> threads, deleted files are only reported. Copies are
+ * written to a temporary file renamed once complete so that an interrupted copy never replaces a
+ * destination file.
+ * </p>
+ * <p>
+ * Progress can be read from any thread with the files and bytes counters.
+ * </p>
+ */
+public final class DeviceSynchronizer {
+  /** Max number of bytes transfered by a single transferTo() call. */
+  private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+  /**
+   * Modification dates tolerance in ms, some file systems (FAT) store dates with a two seconds
+   * precision.
+   */
+  private static final long DATE_TOLERANCE = 2000;
+  /** Progress message refresh period in ms. */
+  private static final int PROGRESS_DELAY = 1000;
+  /** Temporary copies suffix. */
+  private static final String TMP_SUFFIX = ".jajuk_sync";
+  /** Source device. */
+  private final Device source;
+  /** Destination device. */
+  private final Device dest;
+  /** Whether same size files and copies are compared with their checksum. */
+  private final boolean checksum;
+  /** Number of files to copy. */
+  private volatile int totalFiles = 0;
+  /** Number of bytes to copy. */
+  private volatile long totalBytes = 0;
+  /** Number of copied files. */
+  private final AtomicInteger copiedFiles = new AtomicInteger(0);
+  /** Number of copied bytes. */
+  private final AtomicLong copiedBytes = new AtomicLong(0);
+  /** Set when the synchronization must stop. */
+  private volatile boolean stopped = false;
+
+  /**
+   * A file of a synchronized directory.
+   */
+  private static final class Entry {
+    /** Directory path relative to the device. */
+    private final String path;
+    /** The file. */
+    private final File file;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param path directory path relative to the device
+     * @param file the file
+     */
+    private Entry(String path, File file) {
+      this.path = path;
+      this.file = file;
+    }
+  }
+
+  /**
+   * Files of the synchronized directories of a device by lower case relative path.
+   */
+  private static final class Index {
+    /** The files. */
+    private final Map<String, Entry> files = new HashMap<String, Entry>(1000);
+    /** Relative paths of the synchronized directories. */
+    private final Set<String> paths = new HashSet<String>(100);
+  }
+
+  /**
+   * Synchronization plan.
+   */
+  static final class Plan {
+    /** New files (source file, destination file). */
+    private final List<File[]> newFiles = new ArrayList<File[]>();
+    /** Changed files (source file, destination file). */
+    private final List<File[]> changedFiles = new ArrayList<File[]>();
+    /** Destination files missing on the source. */
+    private final List<File> deletedFiles = new ArrayList<File>();
+
+    /**
+     * Gets the new files.
+     *
+     * @return the new files as (source file, destination file) pairs
+     */
+    List<File[]> getNewFiles() {
+      return newFiles;
+    }
+
+    /**
+     * Gets the changed files.
+     *
+     * @return the changed files as (source file, destination file) pairs
+     */
+    List<File[]> getChangedFiles() {
+      return changedFiles;
+    }
+
+    /**
+     * Gets the deleted files.
+     *
+     * @return the destination files missing on the source
+     */
+    List<File> getDeletedFiles() {
+      return deletedFiles;
+    }
+  }
+
+  /**
+   * Instantiates a new device synchronizer.
+   *
+   * @param source the source device
+   * @param dest the destination device
+   */
+  DeviceSynchronizer(Device source, Device dest) {
+    this.source = source;
+    this.dest = dest;
+    this.checksum = Conf.getBoolean(Const.CONF_SYNC_CHECKSUM);
+  }
+
+  /**
+   * Gets the number of files to copy.
+   *
+   * @return the number of files to copy, 0 until the plan is done
+   */
+  public int getTotalFiles() {
+    return totalFiles;
+  }
+
+  /**
+   * Gets the number of bytes to copy.
+   *
+   * @return the number of bytes to copy, 0 until the plan is done
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Gets the number of copied files.
+   *
+   * @return the number of copied files
+   */
+  public int getCopiedFiles() {
+    return copiedFiles.get();
+  }
+
+  /**
+   * Gets the number of copied bytes.
+   *
+   * @return the number of copied bytes
+   */
+  public long getCopiedBytes() {
+    return copiedBytes.get();
+  }
+
+  /**
+   * Synchronize the destination with the source. Errors are displayed and stop the
+   * synchronization.
+   *
+   * @return the number of copied files
+   */
+  int synchronize() {
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Math.max(1, Conf.getInt(Const.CONF_SYNC_COPY_THREADS)), new ThreadFactory() {
+          private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Device Synchronize Copy "
+                + threadNumber.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    try {
+      Plan plan = plan(pool);
+      if (plan == null) {
+        return 0;
+      }
+      if (!plan.deletedFiles.isEmpty()) {
+        Log.debug(plan.deletedFiles.size() + " files of " + dest.getName() + " not on "
+            + source.getName() + ", left untouched");
+      }
+      execute(plan, pool);
+    } catch (InterruptedException e) {
+      Log.error(e);
+    } finally {
+      stopped = true;
+      pool.shutdownNow();
+    }
+    return copiedFiles.get();
+  }
+
+  /**
+   * Plan the synchronization.
+   *
+   * @param pool the pool used to list directories
+   *
+   * @return the plan or null if jajuk is exiting
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  Plan plan(ExecutorService pool) throws InterruptedException {
+    // contains paths ( relative to device) of desynchronized dirs
+    Set<String> desynchronized = new HashSet<String>(10);
+    List<Directory> sourceDirs = new ArrayList<Directory>(100);
+    List<Directory> destDirs = new ArrayList<Directory>(100);
+    for (Directory dir : DirectoryManager.getInstance().getDirectories()) {
+      Device device = dir.getDevice();
+      if (device.equals(source) || device.equals(dest)) {
+        // don't take desynchronized dirs into account
+        if (!dir.getBooleanValue(Const.XML_DIRECTORY_SYNCHRONIZED)) {
+          desynchronized.add(dir.getRelativePath());
+        } else if (device.equals(source)) {
+          sourceDirs.add(dir);
+        } else {
+          destDirs.add(dir);
+        }
+      }
+    }
+    Index sourceIndex = index(sourceDirs, desynchronized, pool);
+    Index destIndex = index(destDirs, desynchronized, pool);
+    if (sourceIndex == null || destIndex == null) {
+      return null;
+    }
+    Plan plan = new Plan();
+    long bytes = 0;
+    for (Map.Entry<String, Entry> entry : sourceIndex.files.entrySet()) {
+      Entry sourceEntry = entry.getValue();
+      Entry destEntry = destIndex.files.get(entry.getKey());
+      if (destEntry == null) {
+        File destDir = new File(new StringBuilder(dest.getUrl()).append(sourceEntry.path)
+            .toString());
+        plan.newFiles.add(new File[] { sourceEntry.file,
+            new File(destDir, sourceEntry.file.getName()) });
+      } else if (isChanged(sourceEntry.file, destEntry.file)) {
+        plan.changedFiles.add(new File[] { sourceEntry.file, destEntry.file });
+      } else {
+        continue;
+      }
+      bytes += sourceEntry.file.length();
+    }
+    for (Map.Entry<String, Entry> entry : destIndex.files.entrySet()) {
+      if (!sourceIndex.files.containsKey(entry.getKey())
+          && sourceIndex.paths.contains(entry.getValue().path)) {
+        plan.deletedFiles.add(entry.getValue().file);
+      }
+    }
+    totalFiles = plan.newFiles.size() + plan.changedFiles.size();
+    totalBytes = bytes;
+    return plan;
+  }
+
+  /**
+   * List the files of directories.
+   *
+   * @param dirs the synchronized directories
+   * @param desynchronized relative paths of the desynchronized directories of both devices
+   * @param pool the pool used to list directories
+   *
+   * @return the index or null if jajuk is exiting
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private Index index(List<Directory> dirs, Set<String> desynchronized, ExecutorService pool)
+      throws InterruptedException {
+    // handle known extensions and image files
+    final FileFilter filter = new JajukFileFilter(false, new JajukFileFilter[] {
+        KnownTypeFilter.getInstance(), ImageFilter.getInstance() });
+    Index index = new Index();
+    List<String> paths = new ArrayList<String>(dirs.size());
+    List<Future<File[]>> listings = new ArrayList<Future<File[]>>(dirs.size());
+    for (final Directory dir : dirs) {
+      // check the directory is not desynchronized on the other device
+      if (desynchronized.contains(dir.getRelativePath())) {
+        continue;
+      }
+      paths.add(dir.getRelativePath());
+      listings.add(pool.submit(new Callable<File[]>() {
+        @Override
+        public File[] call() {
+          return dir.getFio().listFiles(filter);
+        }
+      }));
+    }
+    for (int i = 0; i < paths.size(); i++) {
+      // give a chance to exit during sync
+      if (ExitService.isExiting()) {
+        return null;
+      }
+      String path = paths.get(i);
+      index.paths.add(path);
+      File[] files;
+      try {
+        files = listings.get(i).get();
+      } catch (ExecutionException e) {
+        Log.error(e);
+        continue;
+      }
+      if (files == null) {
+        // not a directory or an error occurred ( read/write right ? )
+        continue;
+      }
+      for (File file : files) {
+        index.files.put(path + '/' + file.getName().toLowerCase(Locale.ROOT), new Entry(path,
+            file));
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Checks if a source file changed since it has been copied.
+   *
+   * @param file the source file
+   * @param copy the destination file
+   *
+   * @return true if the source file is newer and has another size, or another checksum if
+   * <code>CONF_SYNC_CHECKSUM</code> is set
+   */
+  private boolean isChanged(File file, File copy) {
+    // Older source files are left untouched, in bidirectional mode they are replaced by the
+    // other synchronization
+    if (file.lastModified() <= copy.lastModified() + DATE_TOLERANCE) {
+      return false;
+    }
+    if (file.length() != copy.length()) {
+      return true;
+    }
+    // Files of the same size are only compared if required, reading them is costly
+    if (!checksum) {
+      return false;
+    }
+    try {
+      return !Arrays.equals(checksum(file), checksum(copy));
+    } catch (IOException e) {
+      Log.error(e);
+      return false;
+    }
+  }
+
+  /**
+   * Copy the planned files.
+   *
+   * @param plan the plan
+   * @param pool the copy pool
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private void execute(Plan plan, ExecutorService pool) throws InterruptedException {
+    List<File[]> copies = new ArrayList<File[]>(totalFiles);
+    copies.addAll(plan.newFiles);
+    copies.addAll(plan.changedFiles);
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(copies.size());
+    for (final File[] copy : copies) {
+      futures.add(pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          // give a chance to exit during sync
+          if (!stopped && !ExitService.isExiting()) {
+            copy(copy[0], copy[1]);
+            copiedFiles.incrementAndGet();
+          }
+          return null;
+        }
+      }));
+    }
+    long lastReport = 0;
+    int i = 0;
+    while (i < futures.size()) {
+      if (ExitService.isExiting()) {
+        return;
+      }
+      try {
+        futures.get(i).get(PROGRESS_DELAY, TimeUnit.MILLISECONDS);
+        i++;
+      } catch (TimeoutException e) {
+        // Still copying, report progress and wait again
+      } catch (ExecutionException e) {
+        stopped = true;
+        File file = copies.get(i)[0];
+        if (e.getCause() instanceof JajukException) {
+          JajukException je = (JajukException) e.getCause();
+          Messages.showErrorMessage(je.getCode(), file.getAbsolutePath());
+          Messages.showErrorMessage(27);
+          Log.error(je);
+        } else {
+          Messages.showErrorMessage(20, file.getAbsolutePath());
+          Messages.showErrorMessage(27);
+          Log.error(20, "{{" + file.getAbsolutePath() + "}}", e.getCause());
+        }
+        return;
+      }
+      long now = System.currentTimeMillis();
+      if (now - lastReport < PROGRESS_DELAY && i < futures.size()) {
+        continue;
+      }
+      lastReport = now;
+      InformationJPanel.getInstance().setMessage(
+          new StringBuilder(Messages.getString("Device.41")).append(source.getName())
+              .append(',').append(dest.getName()).append(Messages.getString("Device.42"))
+              .append(copiedFiles.get()).append('/').append(totalFiles)
+              .append(Messages.getString("Device.35")).append(copiedBytes.get() / 1048576)
+              .append('/').append(totalBytes / 1048576).append(Messages.getString("Device.36"))
+              .append("]").toString(), InformationJPanel.MessageType.INFORMATIVE);
+    }
+  }
+
+  /**
+   * Copy a file, the destination file is replaced only once the copy is complete.
+   *
+   * @param file the source file
+   * @param copy the destination file
+   *
+   * @throws JajukException if the source file cannot be read
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void copy(File file, File copy) throws JajukException, IOException {
+    if (!file.exists() || !file.canRead()) {
+      throw new JajukException(9, file.getAbsolutePath(), null);
+    }
+    File dir = copy.getParentFile();
+    if (!dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Could not create directory " + dir);
+    }
+    File tmp = new File(dir, copy.getName() + TMP_SUFFIX);
+    try {
+      FileInputStream in = new FileInputStream(file);
+      try {
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+          FileChannel inChannel = in.getChannel();
+          FileChannel outChannel = out.getChannel();
+          long size = inChannel.size();
+          long position = 0;
+          while (position < size) {
+            long count = inChannel.transferTo(position, Math.min(TRANSFER_CHUNK, size - position),
+                outChannel);
+            if (count <= 0) {
+              // The file has been truncated meanwhile
+              break;
+            }
+            position += count;
+            copiedBytes.addAndGet(count);
+          }
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+      if (checksum && !Arrays.equals(checksum(file), checksum(tmp))) {
+        throw new IOException("Copy of " + file + " is corrupted");
+      }
+      // Display a warning if copied file is void as it can happen with full
+      // disks
+      if (tmp.length() == 0 && file.length() > 0) {
+        Log.warn("Copied file is void: {{" + file.getAbsolutePath() + "}}");
+      }
+      if (!tmp.setLastModified(file.lastModified())) {
+        Log.debug("Cannot set the date of {{" + tmp + "}}");
+      }
+      try {
+        Files.move(tmp.toPath(), copy.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        Log.debug("Cannot delete {{" + tmp + "}}");
+      }
+    }
+  }
+
+  /**
+   * Compute the MD5 checksum of a file.
+   *
+   * @param file the file
+   *
+   * @return the checksum
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static byte[] checksum(File file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // MD5 is provided by all JVMs
+      throw new IllegalStateException(e);
+    }
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+      while (channel.read(buffer) > 0) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    } finally {
+      in.close();
+    }
+    return digest.digest();
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jajuk.events.JajukEvent;
+import org.jajuk.events.JajukEvents;
+import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.ExitService;
+import org.jajuk.util.log.Log;
+
+/**
+ * Watch the tree of a mounted device and apply created, modified and deleted entries to the
+ * collection without refreshing the whole device.
+ * <p>
+ * Events are batched : a batch is applied once no event has been received for
+ * DEBOUNCE_DELAY ms, or after MAX_BATCH_DELAY ms of continuous events. Deleted files, playlists
+ * and directories are removed directly, directories with created or modified entries are scanned
+ * again (a deep scan only reading tags of changed files) and created directories are watched and
+ * scanned. Changes are applied under the device refreshing flag, they are kept for a later batch
+ * while a refresh is running.
+ * </p>
+ * <p>
+ * When events have been lost, the whole device is refreshed. When the tree cannot be watched
+ * (typically because the system watches limit is reached), the watcher stops and the device
+ * gets back to the periodic auto-refresh.
+ * </p>
+ */
+final class DeviceWatcher implements Runnable {
+  /** Apply changes after this delay in ms without new event. */
+  private static final int DEBOUNCE_DELAY = 2000;
+  /** Apply changes after this delay in ms even if events keep coming. */
+  private static final int MAX_BATCH_DELAY = 10000;
+  /** Events polling delay in ms. */
+  private static final int POLL_DELAY = 500;
+  /** Watched device. */
+  private final Device device;
+  /** Device root path. */
+  private final Path root;
+  /** The watch service. */
+  private WatchService watchService;
+  /** Watched directories by key. */
+  private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>(100);
+  /** Directories to scan at next batch. */
+  private final Set<Path> changedDirectories = new LinkedHashSet<Path>();
+  /** Entries to remove at next batch. */
+  private final Set<Path> deletedEntries = new LinkedHashSet<Path>();
+  /** Have events been lost since last batch ?. */
+  private boolean overflow = false;
+  /** Is the device watched ? False until the tree is registered and after any failure. */
+  private volatile boolean active = false;
+  /** Stop request flag. */
+  private volatile boolean stopped = false;
+
+  /**
+   * Instantiates a new device watcher.
+   *
+   * @param device the device
+   */
+  DeviceWatcher(Device device) {
+    this.device = device;
+    this.root = device.getFIO().toPath();
+  }
+
+  /**
+   * Start watching in a dedicated thread.
+   */
+  void start() {
+    Thread thread = new Thread(this, "Device Watcher for: " + device.getName());
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stop watching.
+   */
+  void stop() {
+    stopped = true;
+    active = false;
+  }
+
+  /**
+   * Return whether the device tree is currently watched.
+   *
+   * @return true if the device is watched
+   */
+  boolean isActive() {
+    return active;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    try {
+      watchService = root.getFileSystem().newWatchService();
+      watchTree(root, false);
+      active = !stopped;
+      Log.debug("Watching device {{" + device.getName() + "}}: " + keys.size() + " directories");
+      long firstEvent = 0;
+      long lastEvent = 0;
+      while (!stopped && !ExitService.isExiting()) {
+        WatchKey key = watchService.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+        long now = System.currentTimeMillis();
+        if (key != null) {
+          handleEvents(key);
+          if (firstEvent == 0) {
+            firstEvent = now;
+          }
+          lastEvent = now;
+        }
+        // Changes are kept for next poll while a refresh is running
+        if (firstEvent != 0
+            && (now - lastEvent >= DEBOUNCE_DELAY || now - firstEvent >= MAX_BATCH_DELAY)
+            && !stopped && applyChanges()) {
+          firstEvent = 0;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      Log.debug("Watch service closed for device {{" + device.getName() + "}}");
+    } catch (IOException e) {
+      Log.warn("Cannot watch device {{" + device.getName()
+          + "}}, using periodic refresh instead: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Log.debug(e);
+    } finally {
+      active = false;
+      keys.clear();
+      if (watchService != null) {
+        try {
+          watchService.close();
+        } catch (IOException e) {
+          Log.error(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Register a directory and all its sub-directories.
+   *
+   * @param start the top directory
+   * @param changed whether the registered directories should be scanned at next batch
+   *
+   * @throws IOException if a directory cannot be watched
+   */
+  private void watchTree(Path start, final boolean changed) throws IOException {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+          throws IOException {
+        keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        if (changed) {
+          changedDirectories.add(dir);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e) {
+        Log.debug("Cannot read: {{" + file + "}} " + e.getMessage());
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Record the events of a watched directory.
+   *
+   * @param key the directory key
+   *
+   * @throws IOException if a created directory cannot be watched
+   */
+  private void handleEvents(WatchKey key) throws IOException {
+    Path dir = keys.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW || dir == null) {
+        overflow = true;
+        continue;
+      }
+      Path child = dir.resolve((Path) event.context());
+      if (event.kind() == ENTRY_DELETE) {
+        deletedEntries.add(child);
+      } else {
+        deletedEntries.remove(child);
+        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+          // Modified directories entries are notified by their own key
+          if (event.kind() == ENTRY_CREATE) {
+            watchTree(child, true);
+          }
+        } else {
+          changedDirectories.add(dir);
+        }
+      }
+    }
+    if (!key.reset()) {
+      // The directory is no more accessible
+      keys.remove(key);
+    }
+  }
+
+  /**
+   * Apply recorded changes to the collection, unless the device is refreshing.
+   *
+   * @return false if the device is refreshing, changes are then kept for a later batch
+   */
+  private boolean applyChanges() {
+    if (!device.startRefreshing()) {
+      return false;
+    }
+    boolean bChanges = false;
+    try {
+      if (overflow) {
+        Log.debug("Events lost for device {{" + device.getName() + "}}, refreshing it");
+        bChanges = device.cleanRemovedFiles(null) | device.refreshCommand(true, false, null);
+      } else {
+        for (Path path : deletedEntries) {
+          bChanges = bChanges | remove(path);
+        }
+        for (Path path : changedDirectories) {
+          if (Files.isDirectory(path) && !ExitService.isExiting()) {
+            getDirectory(path, true).scan(true, null);
+            bChanges = true;
+          }
+        }
+      }
+    } catch (Exception e) {
+      Log.error(e);
+    } finally {
+      overflow = false;
+      deletedEntries.clear();
+      changedDirectories.clear();
+      device.stopRefreshing();
+    }
+    if (bChanges) {
+      Collection.cleanupLogical();
+      ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_REFRESH));
+    }
+    return true;
+  }
+
+  /**
+   * Remove the file, playlist or directory at the given path if it is known.
+   *
+   * @param path the deleted entry
+   *
+   * @return true if an item has been removed
+   */
+  private boolean remove(Path path) {
+    if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+      // Deleted then created again
+      return false;
+    }
+    Directory parent = getDirectory(path.getParent(), false);
+    if (parent == null) {
+      return false;
+    }
+    String name = path.getFileName().toString();
+    File file = FileManager.getInstance().getFileByID(FileManager.createID(name, parent));
+    if (file != null) {
+      FileManager.getInstance().removeFile(file);
+      return true;
+    }
+    Directory dir = DirectoryManager.getInstance().getDirectoryByID(
+        DirectoryManager.createID(name, device, parent));
+    if (dir != null) {
+      // note that associated files are removed too
+      DirectoryManager.getInstance().removeDirectory(dir.getID());
+      return true;
+    }
+    Playlist playlist = PlaylistManager.getInstance().getPlaylistByID(
+        PlaylistManager.createID(name, parent));
+    if (playlist != null) {
+      PlaylistManager.getInstance().removeItem(playlist);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the directory at the given path of the device.
+   *
+   * @param path the directory path, inside the device tree
+   * @param register whether unknown directories should be registered
+   *
+   * @return the directory or null if unknown and not registered
+   */
+  private Directory getDirectory(Path path, boolean register) {
+    DirectoryManager manager = DirectoryManager.getInstance();
+    Directory dir = manager.getDirectoryByID(device.getID());
+    if (dir == null) {
+      if (!register) {
+        return null;
+      }
+      dir = manager.registerDirectory(device);
+    }
+    for (Path name : root.relativize(path)) {
+      if (name.toString().isEmpty()) {
+        // The root itself
+        continue;
+      }
+      String sId = DirectoryManager.createID(name.toString(), device, dir);
+      Directory child = manager.getDirectoryByID(sId);
+      if (child == null) {
+        if (!register) {
+          return null;
+        }
+        child = manager.registerDirectory(sId, name.toString(), dir, device);
+      }
+      dir = child;
+    }
+    return dir;
+  }
+}
@@ -275,9 +275,24 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
    * @param reporter Refresh handler
    */
   void scan(boolean bDeepScan, RefreshReporter reporter) {
+    scan(getFio().listFiles(UtilSystem.getFileFilter()), bDeepScan, false, reporter);
+  }
+
+  /**
+   * Scan given files of this directory.
+   * 
+   * @param filelist the directory files accepted by the jajuk file filter, null if the
+   * directory cannot be listed
+   * @param bDeepScan :
+   * force files tag read
+   * @param bFullScan :
+   * force files tag read even for files unchanged since last scan (deep scan only)
+   * @param reporter Refresh handler
+   */
+  void scan(java.io.File[] filelist, boolean bDeepScan, boolean bFullScan,
+      RefreshReporter reporter) {
     // Make sure to reset the disc ID
     this.discID = -1;
-    java.io.File[] filelist = getFio().listFiles(UtilSystem.getFileFilter());
     if (filelist == null || filelist.length == 0) { // none file, leave
       return;
     }
@@ -311,11 +326,11 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
       }
     }
     // Compute the disc id 
-    this.discID = computeDiscID();
+    this.discID = computeDiscID(filelist);
     // Perform actual scan and check errors for each file
     for (File musicFile : musicFiles) {
       try {
-        scanMusic(musicFile, bDeepScan, reporter);
+        scanMusic(musicFile, bDeepScan, bFullScan, reporter);
       } catch (Exception e) {
         Log.error(103, filelist.length > 0 ? "{{" + musicFile.toString() + "}}" : "", e);
       }
@@ -327,8 +342,11 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
         Log.error(103, filelist.length > 0 ? "{{" + playlistFile.toString() + "}}" : "", e);
       }
     }
-    // Clear the tag cache so tags are actually read at next deep refresh
-    Tag.clearCache();
+    // Clear the tag cache so tags are actually read at next deep refresh. Only drop this
+    // directory files as other directories tags may have been read ahead by a parallel refresh
+    for (File musicFile : musicFiles) {
+      Tag.removeFromCache(musicFile);
+    }
     // Force cover detection (after done once, the cover file is cached as album property)
     // We need this to avoid bug #1550 : if the device is created, then unplugged, catalog
     // view cover/no-cover filter is messed-up because the findCover() method always return null.
@@ -340,15 +358,14 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
 
   /**
    * Compute the directory disc id (simply the sum in bits of the audio files lengths)
+   * @param files the directory files accepted by the jajuk file filter, this includes
+   * all audio files
    * @return the directory disc id
    */
-  private long computeDiscID() {
+  private long computeDiscID(java.io.File[] files) {
     long out = 0;
     JajukFileFilter filter = new JajukFileFilter(AudioFilter.getInstance());
-    File fDir = getFio();
-    java.io.File[] files = fDir.listFiles();// null if none file
-    // found
-    for (int i = 0; files != null && i < files.length; i++) {
+    for (int i = 0; i < files.length; i++) {
       if (filter.accept(files[i])) {
         out += files[i].length();
       }
@@ -375,11 +392,12 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
    *
    * @param music 
    * @param bDeepScan 
+   * @param bFullScan 
    * @param reporter 
    * @throws JajukException the jajuk exception
    */
-  private void scanMusic(java.io.File music, boolean bDeepScan, RefreshReporter reporter)
-      throws JajukException {
+  private void scanMusic(java.io.File music, boolean bDeepScan, boolean bFullScan,
+      RefreshReporter reporter) throws JajukException {
     String lName = music.getName();
     String sId = FileManager.createID(lName, this);
     // check the file is not already known in database
@@ -393,6 +411,13 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
     if (fileRef != null && !bDeepScan) {
       return;
     }
+    // Deep refresh : if the file size and modification date did not change since last scan
+    // and the album disc ID is still the same, tags are the same, just leave. Full refreshes
+    // still read all tags.
+    if (fileRef != null && !bFullScan && fileRef.isUnchanged(music)
+        && fileRef.getTrack().getAlbum().getDiscID() == discID) {
+      return;
+    }
     // Is this format tag readable ?
     Type type = TypeManager.getInstance().getTypeByExtension(UtilSystem.getExtension(music));
     boolean tagSupported = (type.getTaggerClass() != null);
@@ -505,6 +530,8 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
     }
     // Set file date
     file.setProperty(Const.XML_FILE_DATE, new Date(lastModified));
+    // Store the exact modification date to detect changes at next deep refresh
+    file.setProperty(Const.XML_FILE_MODIFICATION, lastModified);
   }
 
   private void cloneAlbumAndTrackPropertiesIfAlbumIDChanged(String sTrackName, String sAlbumName,
@@ -61,7 +61,7 @@ public final class DirectoryManager extends ItemManager {
       }
       sbAbs.append(sName);
     }
-    return MD5Processor.hash(sbAbs.toString());
+    return MD5Processor.hash(sbAbs);
   }
 
   /**
@@ -102,6 +102,18 @@ public class File extends PhysicalItem implements Comparable<File> {
     return sb.toString();
   }
 
+  /**
+   * Return whether the audio file size and modification date are the ones found at last scan.
+   *
+   * @param fio the audio file
+   *
+   * @return true if the audio file is unchanged since last scan
+   */
+  boolean isUnchanged(java.io.File fio) {
+    return getLongValue(Const.XML_FILE_MODIFICATION) == fio.lastModified()
+        && getSize() == fio.length();
+  }
+
   /**
    * Return true is the specified directory is an ancestor for this file.
    *
@@ -25,13 +25,17 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.Predicate;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
@@ -62,22 +66,6 @@ public final class FileManager extends ItemManager {
    * <br/>Applies on HistoryItem collections 
    */
   protected static final int CONSIDERE_AS_RECENTLY_PLAYED_DAYS = 150;
-  /** File comparator based on rate. */
-  private final Comparator<File> rateComparator = new Comparator<File>() {
-    @Override
-    public int compare(File file1, File file2) {
-      long lRate1 = file1.getTrack().getRate();
-      long lRate2 = file2.getTrack().getRate();
-      if (lRate1 == lRate2) {
-        return 0;
-      } else if (lRate1 < lRate2) {
-        return 1;
-      } else {
-        return -1;
-      }
-    }
-  };
-
   /**
    * No constructor available, only static access.
    */
@@ -105,6 +93,9 @@ public final class FileManager extends ItemManager {
     // Date
     registerProperty(new PropertyMetaInformation(Const.XML_FILE_DATE, false, false, true, false,
         false, Date.class, new Date()));
+    // Modification date
+    registerProperty(new PropertyMetaInformation(Const.XML_FILE_MODIFICATION, false, false, false,
+        false, false, Long.class, 0l));
   }
 
   /**
@@ -184,10 +175,10 @@ public final class FileManager extends ItemManager {
     if (UtilSystem.isUnderWindows()) {
       id = MD5Processor.hash(new StringBuilder(dir.getDevice().getName())
           .append(dir.getRelativePath().toLowerCase(Locale.getDefault()))
-          .append(sName.toLowerCase(Locale.getDefault())).toString());
+          .append(sName.toLowerCase(Locale.getDefault())));
     } else {
       id = MD5Processor.hash(new StringBuilder(dir.getDevice().getName())
-          .append(dir.getRelativePath()).append(sName).toString());
+          .append(dir.getRelativePath()).append(sName));
     }
     return id;
   }
@@ -400,15 +391,75 @@ public final class FileManager extends ItemManager {
    * @return the file
    */
   public File getShuffleFile() {
-    List<File> alEligibleFiles = getReadyFiles();
-    // filter banned files
-    CollectionUtils.filter(alEligibleFiles, new JajukPredicates.BannedFilePredicate());
-    if (alEligibleFiles.size() > 0) {
-      int index = UtilSystem.getRandom().nextInt(alEligibleFiles.size() - 1);
-      return alEligibleFiles.get(index);
+    Iterator<File> it = new ShuffleIterator(getFiles(), Const.MODE_TRACK, null,
+        Collections.<File> emptySet(), UtilSystem.getRandom());
+    return it.hasNext() ? it.next() : null;
+  }
+
+  /**
+   * Return a lazily shuffled iterator over the entire accessible collection.
+   *
+   * @return the shuffled files iterator
+   *
+   * @see #getGlobalShuffleIterator(Predicate)
+   */
+  public Iterator<File> getGlobalShuffleIterator() {
+    return getGlobalShuffleIterator(null);
+  }
+
+  /**
+   * Return a lazily shuffled iterator over the entire accessible collection, using the global
+   * random mode.
+   * <br/>Files are drawn on demand so the next tracks can be pulled without filtering or
+   * shuffling the whole collection. Recently played files come last.
+   *
+   * @param filter files filter (an ambience for instance), null if none
+   *
+   * @return the shuffled files iterator
+   */
+  public Iterator<File> getGlobalShuffleIterator(Predicate filter) {
+    return newShuffleIterator(Conf.getString(Const.CONF_GLOBAL_RANDOM_MODE), filter,
+        getRecentlyPlayedFiles());
+  }
+
+  /**
+   * Return a lazily shuffled iterator over the accessible novelties, using the novelties mode.
+   * Unlike {@link #getShuffleNoveltiesPlaylist()}, the number of novelties is not limited.
+   *
+   * @param filter files filter (an ambience for instance), null if none
+   *
+   * @return the shuffled novelties iterator
+   */
+  public Iterator<File> getNoveltiesShuffleIterator(final Predicate filter) {
+    final Predicate age = new JajukPredicates.AgePredicate(
+        Conf.getInt(Const.CONF_OPTIONS_NOVELTIES_AGE));
+    Predicate novelty = new Predicate() {
+      @Override
+      public boolean evaluate(Object o) {
+        return age.evaluate(((File) o).getTrack()) && (filter == null || filter.evaluate(o));
+      }
+    };
+    return newShuffleIterator(Conf.getString(Const.CONF_NOVELTIES_MODE), novelty,
+        Collections.<File> emptySet());
+  }
+
+  /**
+   * Create a shuffle iterator over a snapshot of the collection.
+   *
+   * @param mode the shuffle mode
+   * @param filter files filter, null if none
+   * @param recent files to return last
+   *
+   * @return the shuffle iterator
+   */
+  private Iterator<File> newShuffleIterator(String mode, Predicate filter, Set<File> recent) {
+    List<? extends Item> items;
+    if (Const.MODE_TRACK.equals(mode)) {
+      items = getFiles();
     } else {
-      return null;
+      items = AlbumManager.getInstance().getAlbums();
     }
+    return new ShuffleIterator(items, mode, filter, recent, UtilSystem.getRandom());
   }
 
   /**
@@ -418,25 +469,32 @@ public final class FileManager extends ItemManager {
    * collection)
    */
   public List<File> getGlobalShufflePlaylist() {
-    List<File> alEligibleFiles = getReadyFiles();
-    // filter banned files
-    CollectionUtils.filter(alEligibleFiles, new JajukPredicates.BannedFilePredicate());
+    String mode = Conf.getString(Const.CONF_GLOBAL_RANDOM_MODE);
+    List<File> files = getFiles();
+    List<File> alEligibleFiles = new ArrayList<File>(files.size());
+    // keep ready and unbanned files
+    for (File file : files) {
+      if (file.isReady() && !file.getTrack().getBooleanValue(Const.XML_TRACK_BANNED)) {
+        alEligibleFiles.add(file);
+      }
+    }
     // We filter recently played tracks to improve the quality of the randomness
     filterRecentlyPlayedTracks(alEligibleFiles);
     // shuffle
     Collections.shuffle(alEligibleFiles, UtilSystem.getRandom());
     // song level, just shuffle full collection
-    if (Conf.getString(Const.CONF_GLOBAL_RANDOM_MODE).equals(Const.MODE_TRACK)) {
+    if (mode.equals(Const.MODE_TRACK)) {
       return alEligibleFiles;
     }
     // (not shuffle) Album / album
-    else if (Conf.getString(Const.CONF_GLOBAL_RANDOM_MODE).equals(Const.MODE_ALBUM2)) {
+    else if (mode.equals(Const.MODE_ALBUM2)) {
       final List<Album> albums = AlbumManager.getInstance().getAlbums();
       Collections.shuffle(albums, UtilSystem.getRandom());
       // We need an index (bench: 45* faster)
-      final Map<Album, Integer> index = new HashMap<Album, Integer>();
+      final Map<Album, Integer> index = new HashMap<Album, Integer>(albums.size() * 2);
+      int position = 0;
       for (Album album : albums) {
-        index.put(album, albums.indexOf(album));
+        index.put(album, position++);
       }
       Collections.sort(alEligibleFiles, new Comparator<File>() {
         @Override
@@ -460,6 +518,28 @@ public final class FileManager extends ItemManager {
     }
   }
 
+  /**
+   * Return the files played recently, most recent first.
+   *
+   * @return the recently played files
+   */
+  Set<File> getRecentlyPlayedFiles() {
+    Set<File> recent = new LinkedHashSet<File>();
+    long now = new Date().getTime();
+    for (HistoryItem item : History.getInstance().getItems()) {
+      int trackAgeDays = (int) ((now - item.getDate()) / Const.MILLISECONDS_IN_A_DAY);
+      if (trackAgeDays >= CONSIDERE_AS_RECENTLY_PLAYED_DAYS) {
+        // We reach the non-recently played area of the history, we can leave
+        break;
+      }
+      File file = getFileByID(item.getFileId());
+      if (file != null && file.getTrack() != null) {
+        recent.add(file);
+      }
+    }
+    return recent;
+  }
+
   /**
    * Filter files to keep only files not played recently. 
    * <br/>It contributes to improve the shuffling experience by avoiding playing the same track twice 
@@ -469,25 +549,34 @@ public final class FileManager extends ItemManager {
    * @param files files to filter
    */
   protected void filterRecentlyPlayedTracks(List<File> files) {
-    long now = new Date().getTime();
-    for (HistoryItem item : History.getInstance().getItems()) {
-      int trackAgeDays = (int) ((now - item.getDate()) / Const.MILLISECONDS_IN_A_DAY);
-      if (trackAgeDays < CONSIDERE_AS_RECENTLY_PLAYED_DAYS) {
-        if (files.size() > Const.NB_TRACKS_ON_ACTION) {
-          File file = FileManager.getInstance().getFileByID(item.getFileId());
-          if (file != null && file.getTrack() != null) {
-            // Remove this item if it exist in the list (otherwise, List does nothing)
-            files.remove(file);
-          }
-        } else {
-          //We reach the floor of too few tracks so we stop to filter by date
-          break;
-        }
-      } else {
-        // We reach the non-recently played area of the history, we can leave
+    if (files.size() <= Const.NB_TRACKS_ON_ACTION) {
+      return;
+    }
+    Set<File> eligible = new HashSet<File>(files);
+    Set<File> excluded = new HashSet<File>();
+    int size = files.size();
+    for (File file : getRecentlyPlayedFiles()) {
+      if (size <= Const.NB_TRACKS_ON_ACTION) {
+        //We reach the floor of too few tracks so we stop to filter by date
         break;
       }
+      if (eligible.contains(file)) {
+        excluded.add(file);
+        size--;
+      }
+    }
+    if (excluded.isEmpty()) {
+      return;
+    }
+    // Single pass removal, List.remove() would be quadratic
+    List<File> kept = new ArrayList<File>(size);
+    for (File file : files) {
+      if (!excluded.contains(file)) {
+        kept.add(file);
+      }
     }
+    files.clear();
+    files.addAll(kept);
   }
 
   /**
@@ -604,19 +693,6 @@ public final class FileManager extends ItemManager {
     return out;
   }
 
-  /**
-   * Gets the sorted by rate.
-   *
-   * @return a sorted set of the collection by rate, highest first
-   */
-  private List<File> getSortedByRate() {
-    // use only mounted files
-    List<File> alEligibleFiles = getReadyFiles();
-    // now sort by rate
-    Collections.sort(alEligibleFiles, rateComparator);
-    return alEligibleFiles;
-  }
-
   /**
    * Return a shuffled playlist with the entire accessible bestof collection,
    * best first.
@@ -624,17 +700,28 @@ public final class FileManager extends ItemManager {
    * @return Shuffled best tracks (n% of favorite)
    */
   public List<File> getGlobalBestofPlaylist() {
-    List<File> al = getSortedByRate();
-    // Filter banned files
-    CollectionUtils.filter(al, new JajukPredicates.BannedFilePredicate());
+    // Count eligible files, only the best of them are then read from the rate index
+    int nbEligibleFiles = 0;
+    lock.readLock().lock();
+    try {
+      ReadOnlyIterator<File> it = getFilesIterator();
+      while (it.hasNext()) {
+        File file = it.next();
+        if (file.isReady() && !file.getTrack().getBooleanValue(Const.XML_TRACK_BANNED)) {
+          nbEligibleFiles++;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
     List<File> alBest = null;
-    if (al.size() > 0) {
+    if (nbEligibleFiles > 0) {
       // find superior interval value
-      int sup = (int) ((Const.BESTOF_PROPORTION) * al.size());
+      int sup = (int) ((Const.BESTOF_PROPORTION) * nbEligibleFiles);
       if (sup < 2) {
-        sup = al.size();
+        sup = nbEligibleFiles;
       }
-      alBest = al.subList(0, sup - 1);
+      alBest = TrackRateIndex.getInstance().getBestReadyFiles(sup - 1);
       Collections.shuffle(alBest, UtilSystem.getRandom());
     }
     return alBest;
@@ -661,26 +748,10 @@ public final class FileManager extends ItemManager {
     Log.debug("Invoking Refresh of BestOf-Files");
     // clear data
     alBestofFiles.clear();
-    // create a temporary table to remove unmounted files
+    // Read the best unbanned tracks from the rate index, without sorting the collection
     int iNbBestofFiles = Integer.parseInt(Conf.getString(Const.CONF_BESTOF_TRACKS_SIZE));
-    List<File> alEligibleFiles = new ArrayList<File>(iNbBestofFiles);
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    // filter banned tracks
-    CollectionUtils.filter(tracks, new JajukPredicates.BannedTrackPredicate());
-    for (Track track : tracks) {
-      File file = track.getBestFile(Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED));
-      if (file != null) {
-        alEligibleFiles.add(file);
-      }
-    }
-    Collections.sort(alEligibleFiles, rateComparator);
-    // Keep as much items as we can
-    int i = 0;
-    while (i < alEligibleFiles.size() && i < iNbBestofFiles) {
-      File file = alEligibleFiles.get(i);
-      alBestofFiles.add(file);
-      i++;
-    }
+    alBestofFiles.addAll(TrackRateIndex.getInstance().getBestFiles(iNbBestofFiles,
+        Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)));
   }
 
   /**
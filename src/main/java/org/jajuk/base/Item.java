@@ -22,10 +22,12 @@ package org.jajuk.base;
 
 import com.google.common.collect.Lists;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.swing.ImageIcon;
@@ -56,6 +58,8 @@ public abstract class Item implements Const {
   /** Cache-string which holds the filter-string for the default "any"-Searches, this is filled during the first search and 
    * cleaned on all points where the properties are adjusted. */
   private String any = null;
+  /** Lower case "any" string and the "any" string it has been computed from, for filters. */
+  private volatile String[] anyLowerCase = null;
   private static final List<String> lowPriorityCollectionProperties = Lists.asList(XML_TRACK_HITS,
       new String[] { XML_TRACK_TOTAL_PLAYTIME, XML_EXPANDED, XML_ALBUM_DISCOVERED_COVER,
           XML_TRACK_RATE, XML_ORIGIN });
@@ -170,6 +174,17 @@ public abstract class Item implements Const {
     return out;
   }
 
+  /**
+   * Gets the value actually set for this item, without default value fallback.
+   * 
+   * @param sKey 
+   * 
+   * @return the value or null if the property is not set
+   */
+  Object getRawValue(String sKey) {
+    return properties.get(sKey);
+  }
+
   /**
    * Gets the long value.
    * 
@@ -301,7 +316,10 @@ public abstract class Item implements Const {
   public final void setProperty(String sKey, Object oValue) {
     // reset cached value
     any = null;
+    TrackSearchIndex.getInstance().itemChanged(this);
     properties.put(sKey, oValue);
+    TrackRateIndex.getInstance().propertyChanged(this, sKey);
+    CollectionJournal.getInstance().propertyChanged(this, sKey);
     notifyCollectionChange(sKey);
   }
 
@@ -339,6 +357,39 @@ public abstract class Item implements Const {
       return any;
     }
     StringBuilder sb = new StringBuilder(100);
+    for (String sValue : getAnyValues()) {
+      sb.append(sValue);
+    }
+    any = sb.toString();
+    return any;
+  }
+
+  /**
+   * Gets the lower case any string, in default locale.
+   * <br/>It is cached and computed again only if the "any" string changed, it is safe to call it
+   * from several threads.
+   * 
+   * @return the lower case any string
+   */
+  public String getAnyLowerCase() {
+    String sAny = getAny();
+    String[] cached = anyLowerCase;
+    // Some items (tracks) build a new equal "any" string at each call
+    if (cached != null && (cached[0] == sAny || cached[0].equals(sAny))) {
+      return cached[1];
+    }
+    String lower = sAny.toLowerCase(Locale.getDefault());
+    anyLowerCase = new String[] { sAny, lower };
+    return lower;
+  }
+
+  /**
+   * Gets the values making up the "any" string.
+   * 
+   * @return the human values of all visible properties
+   */
+  List<String> getAnyValues() {
+    List<String> values = new ArrayList<String>(properties.size());
     Iterator<String> it = properties.keySet().iterator();
     while (it.hasNext()) {
       String sKey = it.next();
@@ -349,11 +400,10 @@ public abstract class Item implements Const {
           // visible items
           continue;
         }
-        sb.append(sValue);
+        values.add(sValue);
       }
     }
-    any = sb.toString();
-    return any;
+    return values;
   }
 
   /**
@@ -450,6 +500,7 @@ public abstract class Item implements Const {
     }
     // remove cached value
     any = null;
+    TrackSearchIndex.getInstance().itemChanged(this);
   }
 
   /**
@@ -461,6 +512,9 @@ public abstract class Item implements Const {
     this.properties = properties;
     // remove cached value
     any = null;
+    TrackSearchIndex.getInstance().itemChanged(this);
+    TrackRateIndex.getInstance().itemChanged(this);
+    CollectionJournal.getInstance().itemChanged(this);
     notifyCollectionChange(null);
   }
 
@@ -479,6 +533,9 @@ public abstract class Item implements Const {
     properties.remove(sKey);
     // remove cached value
     any = null;
+    TrackSearchIndex.getInstance().itemChanged(this);
+    TrackRateIndex.getInstance().propertyChanged(this, sKey);
+    CollectionJournal.getInstance().propertyChanged(this, sKey);
     notifyCollectionChange(null);
   }
 
@@ -525,6 +582,9 @@ public abstract class Item implements Const {
     }
     // reset cached value
     any = null;
+    TrackSearchIndex.getInstance().itemChanged(this);
+    TrackRateIndex.getInstance().itemChanged(this);
+    CollectionJournal.getInstance().itemChanged(this);
   }
 
   /**
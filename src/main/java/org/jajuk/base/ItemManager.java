@@ -134,6 +134,10 @@ public abstract class ItemManager {
   public void removeProperty(String sProperty) {
     PropertyMetaInformation meta = getMetaInformation(sProperty);
     hmPropertiesMetaInformation.remove(sProperty);
+    // Properties meta-information are not journaled
+    CollectionJournal.getInstance().reset();
+    // Visible properties make up the search index text
+    TrackSearchIndex.getInstance().reset();
     applyRemoveProperty(meta); // remove this property from all items
   }
 
@@ -380,6 +384,9 @@ public abstract class ItemManager {
         if (!lItems.contains(item)) {
           it.remove();
           internalMap.remove(item.getID());
+          CollectionJournal.getInstance().itemRemoved(item);
+          TrackSearchIndex.getInstance().itemChanged(item);
+          TrackRateIndex.getInstance().itemChanged(item);
         }
       }
     } finally {
@@ -409,6 +416,9 @@ public abstract class ItemManager {
       if (item != null) {
         items.remove(item);
         internalMap.remove(item.getID());
+        CollectionJournal.getInstance().itemRemoved(item);
+        TrackSearchIndex.getInstance().itemChanged(item);
+        TrackRateIndex.getInstance().itemChanged(item);
         notifyCollectionChange(item);
       }
     } finally {
@@ -443,6 +453,9 @@ public abstract class ItemManager {
     try {
       items.add(item);
       internalMap.put(item.getID(), item);
+      CollectionJournal.getInstance().itemChanged(item);
+      TrackSearchIndex.getInstance().itemChanged(item);
+      TrackRateIndex.getInstance().itemChanged(item);
       notifyCollectionChange(item);
     } finally {
       lock.writeLock().unlock();
@@ -456,6 +469,10 @@ public abstract class ItemManager {
    */
   public void registerProperty(PropertyMetaInformation meta) {
     hmPropertiesMetaInformation.put(meta.getName(), meta);
+    // Properties meta-information are not journaled
+    CollectionJournal.getInstance().reset();
+    // Visible properties make up the search index text
+    TrackSearchIndex.getInstance().reset();
   }
 
   /**
@@ -675,11 +692,10 @@ public abstract class ItemManager {
       // first create a copy
       ArrayList<Item> itemsCopy = new ArrayList<Item>(items);
       // then remove all elements
-      clear();
-      // and then re-add all items again to make them correctly sorted again
-      for (Item item : itemsCopy) {
-        registerItem(item);
-      }
+      items.clear();
+      // and then re-add all items again to make them correctly sorted again. Note that we don't
+      // use registerItem() as this is not a collection change and would be journaled
+      items.addAll(itemsCopy);
     } finally {
       lock.writeLock().unlock();
     }
@@ -94,7 +94,7 @@ public final class PlaylistManager extends ItemManager implements Observer {
    */
   protected static String createID(String sName, Directory dParentDirectory) {
     return MD5Processor.hash(new StringBuilder(dParentDirectory.getDevice().getName())
-        .append(dParentDirectory.getRelativePath()).append(sName).toString());
+        .append(dParentDirectory.getRelativePath()).append(sName));
   }
 
   /**
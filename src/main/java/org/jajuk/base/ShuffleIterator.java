@@ -0,0 +1,228 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.collections.Predicate;
+import org.jajuk.util.Const;
+
+/**
+ * Lazily shuffled ready and unbanned files.
+ * <p>
+ * Items are drawn one at a time from a snapshot of the collection (Fisher-Yates shuffle run one
+ * step per drawn item), so pulling the next few tracks costs neither a full shuffle nor a
+ * filtering of the whole collection. In track mode, the drawn items are files. In album modes,
+ * the drawn items are albums whose files are returned together, shuffled (<code>MODE_ALBUM</code>)
+ * or in album order (<code>MODE_ALBUM2</code>).
+ * </p>
+ * <p>
+ * Readiness, banned state and the optional filter are checked when a file is drawn. Recently
+ * played files are deferred and returned once all other files have been returned.
+ * </p>
+ */
+final class ShuffleIterator implements Iterator<File> {
+  /** Files of an album in album order. */
+  private static final Comparator<File> ALBUM_ORDER = new Comparator<File>() {
+    @Override
+    public int compare(File f1, File f2) {
+      int comp = (int) (f1.getTrack().getOrder() - f2.getTrack().getOrder());
+      if (comp == 0) {
+        // If no track number is given, try to sort by
+        // filename than can contain the track
+        return f1.getName().compareTo(f2.getName());
+      }
+      return comp;
+    }
+  };
+  /** Files or albums, items not drawn yet are the first <code>remaining</code> ones. */
+  private final Object[] items;
+  /** Number of items not drawn yet. */
+  private int remaining;
+  /** Shuffle mode, one of <code>Const.MODE_*</code>. */
+  private final String mode;
+  /** Files filter, null if none. */
+  private final Predicate filter;
+  /** Files to return last. */
+  private final Set<File> recent;
+  /** Recent files drawn so far. */
+  private final List<File> deferred = new ArrayList<File>();
+  /** Index of next deferred file to check. */
+  private int deferredIndex = 0;
+  /** Files of the last drawn album. */
+  private final List<File> albumFiles = new ArrayList<File>(20);
+  /** Index of next album file to return. */
+  private int albumIndex = 0;
+  /** Random generator. */
+  private final Random random;
+  /** Next file to return, null if not computed yet or if none. */
+  private File next;
+
+  /**
+   * Instantiates a new shuffle iterator.
+   *
+   * @param items the files in track mode or the albums in album modes, not modified
+   * @param mode the shuffle mode, one of <code>Const.MODE_*</code>
+   * @param filter files filter, null if none
+   * @param recent the files to return last
+   * @param random the random generator
+   */
+  ShuffleIterator(List<? extends Item> items, String mode, Predicate filter, Set<File> recent,
+      Random random) {
+    this.items = items.toArray();
+    this.remaining = this.items.length;
+    this.mode = mode;
+    this.filter = filter;
+    this.recent = recent;
+    this.random = random;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.Iterator#hasNext()
+   */
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      next = advance();
+    }
+    return next != null;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.Iterator#next()
+   */
+  @Override
+  public File next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    File file = next;
+    next = null;
+    return file;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.Iterator#remove()
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Draw the next file to return.
+   *
+   * @return the file or null if none left
+   */
+  private File advance() {
+    while (true) {
+      if (albumIndex < albumFiles.size()) {
+        return albumFiles.get(albumIndex++);
+      }
+      if (remaining == 0) {
+        break;
+      }
+      int index = random.nextInt(remaining);
+      Object item = items[index];
+      // Swap drawn item out of the not drawn area
+      items[index] = items[--remaining];
+      items[remaining] = item;
+      if (Const.MODE_TRACK.equals(mode)) {
+        File file = (File) item;
+        if (accept(file)) {
+          return file;
+        }
+      } else {
+        fillAlbumFiles((Album) item);
+      }
+    }
+    while (deferredIndex < deferred.size()) {
+      File file = deferred.get(deferredIndex++);
+      // State may have changed since the file has been drawn
+      if (isEligible(file)) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Set the files to return for a drawn album.
+   *
+   * @param album the album
+   */
+  private void fillAlbumFiles(Album album) {
+    albumFiles.clear();
+    albumIndex = 0;
+    List<Track> tracks = album.getTracksCache();
+    synchronized (tracks) {
+      for (Track track : tracks) {
+        for (File file : track.getFiles()) {
+          if (accept(file)) {
+            albumFiles.add(file);
+          }
+        }
+      }
+    }
+    if (Const.MODE_ALBUM2.equals(mode)) {
+      Collections.sort(albumFiles, ALBUM_ORDER);
+    } else {
+      Collections.shuffle(albumFiles, random);
+    }
+  }
+
+  /**
+   * Checks if a drawn file can be returned now, recent files are deferred.
+   *
+   * @param file the file
+   *
+   * @return true if the file can be returned now
+   */
+  private boolean accept(File file) {
+    if (!isEligible(file)) {
+      return false;
+    }
+    if (recent.contains(file)) {
+      deferred.add(file);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks if a file can be played.
+   *
+   * @param file the file
+   *
+   * @return true if the file is ready, its track is not banned and it matches the filter
+   */
+  private boolean isEligible(File file) {
+    return file.isReady() && !file.getTrack().getBooleanValue(Const.XML_TRACK_BANNED)
+        && (filter == null || filter.evaluate(file));
+  }
+}
@@ -145,6 +145,18 @@ public class Track extends LogicalItem implements Comparable<Track> {
     return sb.toString();
   }
 
+  /* (non-Javadoc)
+   * @see org.jajuk.base.Item#getAnyValues()
+   */
+  @Override
+  List<String> getAnyValues() {
+    List<String> values = super.getAnyValues();
+    for (File file : getFiles()) {
+      values.add(file.getAbsolutePath());
+    }
+    return values;
+  }
+
   /**
    * Default comparator for tracks, not used for actual sorting (use TrackComparator
    * for that), only for storage purpose.
@@ -183,6 +195,7 @@ public class Track extends LogicalItem implements Comparable<Track> {
    */
   void removeFile(File file) {
     alFiles.remove(file);
+    TrackSearchIndex.getInstance().itemChanged(this);
   }
 
   /**
@@ -419,6 +432,7 @@ public class Track extends LogicalItem implements Comparable<Track> {
     // make sure a file will be referenced by only one track (first found)
     if (!alFiles.contains(file) && file.getTrack().equals(this)) {
       alFiles.add(file);
+      TrackSearchIndex.getInstance().itemChanged(this);
     }
   }
 
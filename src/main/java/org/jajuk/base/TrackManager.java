@@ -202,7 +202,7 @@ public final class TrackManager extends ItemManager {
         .append(lDiscNumber);
     // distinguish tracks by type because we can't find best file
     // on different quality levels by format
-    return MD5Processor.hash(sb.toString());
+    return MD5Processor.hash(sb);
   }
 
   /**
@@ -232,17 +232,80 @@ public final class TrackManager extends ItemManager {
       }
       track = new Track(sId, sName, album, genre, artist, length, year, lOrder, type, lDiscNumber);
       registerItem(track);
-      // For performances, add the track to the album cache
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.add(track);
-      }
+      // For performances, add the track to the items caches
+      addToCaches(track);
       return track;
     } finally {
       lock.writeLock().unlock();
     }
   }
 
+  /**
+   * Add a track to its album, artist, genre and year tracks caches.
+   *
+   * @param track 
+   */
+  private void addToCaches(Track track) {
+    List<Track> albumCache = track.getAlbum().getTracksCache();
+    synchronized (albumCache) {
+      albumCache.add(track);
+    }
+    Set<Track> cache = track.getArtist().getTracksCache();
+    synchronized (cache) {
+      cache.add(track);
+    }
+    cache = track.getGenre().getTracksCache();
+    synchronized (cache) {
+      cache.add(track);
+    }
+    cache = track.getYear().getTracksCache();
+    synchronized (cache) {
+      cache.add(track);
+    }
+  }
+
+  /**
+   * Remove a track from its album, artist, genre and year tracks caches.
+   *
+   * @param track 
+   */
+  private void removeFromCaches(Track track) {
+    List<Track> albumCache = track.getAlbum().getTracksCache();
+    synchronized (albumCache) {
+      albumCache.remove(track);
+    }
+    Set<Track> cache = track.getArtist().getTracksCache();
+    synchronized (cache) {
+      cache.remove(track);
+    }
+    cache = track.getGenre().getTracksCache();
+    synchronized (cache) {
+      cache.remove(track);
+    }
+    cache = track.getYear().getTracksCache();
+    synchronized (cache) {
+      cache.remove(track);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.base.ItemManager#removeItem(org.jajuk.base.Item)
+   */
+  @Override
+  public void removeItem(Item item) {
+    lock.writeLock().lock();
+    try {
+      if (item != null) {
+        removeFromCaches((Track) item);
+      }
+      super.removeItem(item);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Commit tags.
    * 
@@ -329,11 +392,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       // if current track album name is changed, notify it
       if (QueueModel.getPlayingFile() != null
           && QueueModel.getPlayingFile().getTrack().getAlbum().equals(track.getAlbum())) {
@@ -390,11 +450,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       // if current track artist name is changed, notify it
       if (QueueModel.getPlayingFile() != null
           && QueueModel.getPlayingFile().getTrack().getArtist().equals(track.getArtist())) {
@@ -450,11 +507,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       // register the new item
       Genre newGenre = GenreManager.getInstance().registerGenre(sNewGenre);
       Track newTrack = registerTrack(track.getName(), track.getAlbum(), newGenre,
@@ -508,11 +562,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       // Register new item
       Year newYear = YearManager.getInstance().registerYear(newItem);
       Track newTrack = registerTrack(track.getName(), track.getAlbum(), track.getGenre(),
@@ -642,11 +693,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       Track newTrack = registerTrack(track.getName(), track.getAlbum(), track.getGenre(),
           track.getArtist(), track.getDuration(), track.getYear(), lNewOrder, track.getType(),
           track.getDiscNumber());
@@ -734,11 +782,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove old track from the album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       Track newTrack = registerTrack(sNewItem, track.getAlbum(), track.getGenre(),
           track.getArtist(), track.getDuration(), track.getYear(), track.getOrder(),
           track.getType(), track.getDiscNumber());
@@ -844,11 +889,8 @@ public final class TrackManager extends ItemManager {
           tagsToCommit.add(tag);
         }
       }
-      // Remove the track from the old album
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.remove(track);
-      }
+      // Remove the track from the old items caches
+      removeFromCaches(track);
       // if current track album name is changed, notify it
       if (QueueModel.getPlayingFile() != null
           && QueueModel.getPlayingFile().getTrack().getAlbum().equals(track.getAlbum())) {
@@ -901,6 +943,9 @@ public final class TrackManager extends ItemManager {
         // more associated
         // tracks, remove it
         removeItem(track);// remove old track
+      } else {
+        // old track still maps some files, keep it in the items caches
+        addToCaches(track);
       }
     } finally {
       lock.writeLock().unlock();
@@ -1078,42 +1123,38 @@ public final class TrackManager extends ItemManager {
         Collections.sort(out, new TrackComparator(TrackComparatorType.ALBUM));
       }
     } else if (items.get(0) instanceof Artist) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getArtist())) {
-          out.add(track);
-        }
-        // Sort by album
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.ARTIST_ALBUM));
+      for (Item item : items) {
+        Set<Track> tracks = ((Artist) item).getTracksCache();
+        synchronized (tracks) {
+          out.addAll(tracks);
         }
       }
-      return out;
+      // Sort by album
+      if (sorted) {
+        Collections.sort(out, new TrackComparator(TrackComparatorType.ARTIST_ALBUM));
+      }
     } else if (items.get(0) instanceof Genre) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getGenre())) {
-          out.add(track);
-        }
-        // Sort by genre
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.GENRE_ARTIST_ALBUM));
+      for (Item item : items) {
+        Set<Track> tracks = ((Genre) item).getTracksCache();
+        synchronized (tracks) {
+          out.addAll(tracks);
         }
       }
+      // Sort by genre
+      if (sorted) {
+        Collections.sort(out, new TrackComparator(TrackComparatorType.GENRE_ARTIST_ALBUM));
+      }
     } else if (items.get(0) instanceof Year) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getYear())) {
-          out.add(track);
-        }
-        // Sort by year
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.YEAR_ALBUM));
+      for (Item item : items) {
+        Set<Track> tracks = ((Year) item).getTracksCache();
+        synchronized (tracks) {
+          out.addAll(tracks);
         }
       }
+      // Sort by year
+      if (sorted) {
+        Collections.sort(out, new TrackComparator(TrackComparatorType.YEAR_ALBUM));
+      }
     }
     return out;
   }
@@ -1167,18 +1208,52 @@ public final class TrackManager extends ItemManager {
    * @return an ordered list of available files
    */
   public List<SearchResult> search(String criteria) {
+    return search(criteria, true);
+  }
+
+  /**
+   * Perform a search by scanning all tracks, without the search index. Used
+   * to check and measure the index.
+   * 
+   * @param criteria 
+   * 
+   * @return an ordered list of available files
+   */
+  List<SearchResult> searchWithoutIndex(String criteria) {
+    return search(criteria, false);
+  }
+
+  /**
+   * Perform a search in all files names with given criteria.
+   * 
+   * @param criteria 
+   * @param useIndex whether the search index should be used to restrict checked tracks
+   * 
+   * @return an ordered list of available files
+   */
+  @SuppressWarnings("unchecked")
+  private List<SearchResult> search(String criteria, boolean useIndex) {
     lock.readLock().lock();
     try {
       boolean hide = Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED);
+      String lowerCriteria = criteria.toLowerCase(Locale.getDefault());
       List<SearchResult> resu = new ArrayList<SearchResult>();
-      ReadOnlyIterator<Track> tracks = getTracksIterator();
+      Set<Track> candidates = null;
+      if (useIndex) {
+        candidates = TrackSearchIndex.getInstance().getCandidates(lowerCriteria);
+      }
+      Iterator<Track> tracks;
+      if (candidates == null) {
+        tracks = (Iterator<Track>) getItemsIterator();
+      } else {
+        tracks = candidates.iterator();
+      }
       while (tracks.hasNext()) {
         Track track = tracks.next();
         File playable = track.getBestFile(hide);
         if (playable != null) {
           String sResu = track.getAny();
-          if (sResu.toLowerCase(Locale.getDefault()).indexOf(
-              criteria.toLowerCase(Locale.getDefault())) != -1) {
+          if (sResu.toLowerCase(Locale.getDefault()).indexOf(lowerCriteria) != -1) {
             resu.add(new SearchResult(playable, playable.toStringSearch()));
           }
         }
@@ -1189,6 +1264,26 @@ public final class TrackManager extends ItemManager {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.base.ItemManager#clear()
+   */
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      TrackSearchIndex.getInstance().reset();
+      TrackRateIndex.getInstance().reset();
+      for (Track track : getTracks()) {
+        removeFromCaches(track);
+      }
+      super.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Checks if is autocommit.
    * 
@@ -0,0 +1,236 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Tracks ordered by decreasing rate, used to get best-of files without sorting the whole
+ * collection.
+ * <p>
+ * The index is built at first use and then maintained incrementally : tracks whose rate changed
+ * and registered or removed tracks are only flagged (this is called by every property change)
+ * and moved at their new position at next use. Banned state and files availability change
+ * without notice (mounts), they are checked while reading the index from the best track.
+ * </p>
+ */
+final class TrackRateIndex {
+  /** Self instance. */
+  private static TrackRateIndex self = new TrackRateIndex();
+  /** Has the index been built ? Volatile as checked without locking on every property change. */
+  private volatile boolean built = false;
+  /** Indexed tracks, best first. */
+  private final TreeSet<Entry> entries = new TreeSet<Entry>(new Comparator<Entry>() {
+    @Override
+    public int compare(Entry entry1, Entry entry2) {
+      if (entry1.rate != entry2.rate) {
+        return entry1.rate > entry2.rate ? -1 : 1;
+      }
+      return entry1.track.getID().compareTo(entry2.track.getID());
+    }
+  });
+  /** Entry of each indexed track. */
+  private final Map<Track, Entry> trackEntries = new HashMap<Track, Entry>(1000);
+  /**
+   * Tracks to move before next use. Concurrent so that flagging a track never waits for a running
+   * read (that may itself wait for a manager lock held by the flagging thread).
+   */
+  private final Set<Track> dirty = Collections
+      .newSetFromMap(new ConcurrentHashMap<Track, Boolean>(16));
+
+  /**
+   * An indexed track and the rate it is indexed with.
+   */
+  private static final class Entry {
+    /** The track. */
+    private final Track track;
+    /** Indexed rate. */
+    private final long rate;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param track the track
+     */
+    private Entry(Track track) {
+      this.track = track;
+      this.rate = track.getRate();
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  static TrackRateIndex getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private TrackRateIndex() {
+    super();
+  }
+
+  /**
+   * Drop the index, it will be built again at next use. Not synchronized so that it can be called
+   * under a manager lock while the index is read.
+   */
+  void reset() {
+    built = false;
+  }
+
+  /**
+   * Notify that an item has been registered, removed or changed.
+   *
+   * @param item the item
+   */
+  void itemChanged(Item item) {
+    if (built && item instanceof Track) {
+      dirty.add((Track) item);
+    }
+  }
+
+  /**
+   * Notify that an item property changed, only rate changes are relevant.
+   *
+   * @param item the item
+   * @param sKey the property name
+   */
+  void propertyChanged(Item item, String sKey) {
+    if (Const.XML_TRACK_RATE.equals(sKey)) {
+      itemChanged(item);
+    }
+  }
+
+  /**
+   * Return the best files of the best unbanned tracks, at most one per track.
+   *
+   * @param max maximal number of files
+   * @param bHideUnmounted whether unmounted files should be ignored
+   *
+   * @return best files, best first
+   */
+  synchronized List<File> getBestFiles(int max, boolean bHideUnmounted) {
+    update();
+    List<File> out = new ArrayList<File>(Math.min(max, entries.size()));
+    for (Entry entry : entries) {
+      if (out.size() >= max) {
+        break;
+      }
+      if (!entry.track.getBooleanValue(Const.XML_TRACK_BANNED)) {
+        File file = entry.track.getBestFile(bHideUnmounted);
+        if (file != null) {
+          out.add(file);
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Return the ready files of the best unbanned tracks.
+   *
+   * @param max maximal number of files
+   *
+   * @return best ready files, best first
+   */
+  synchronized List<File> getBestReadyFiles(int max) {
+    update();
+    List<File> out = new ArrayList<File>(Math.min(max, entries.size()));
+    for (Entry entry : entries) {
+      if (!entry.track.getBooleanValue(Const.XML_TRACK_BANNED)) {
+        for (File file : entry.track.getReadyFiles()) {
+          if (out.size() >= max) {
+            return out;
+          }
+          out.add(file);
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Build the index or move the changed tracks.
+   */
+  private void update() {
+    if (!built) {
+      build();
+      return;
+    }
+    if (dirty.isEmpty()) {
+      return;
+    }
+    TrackManager manager = TrackManager.getInstance();
+    for (Track track : new ArrayList<Track>(dirty)) {
+      dirty.remove(track);
+      Entry entry = trackEntries.remove(track);
+      if (entry != null) {
+        entries.remove(entry);
+      }
+      // Removed tracks are not indexed again
+      if (manager.getTrackByID(track.getID()) == track) {
+        add(track);
+      }
+    }
+  }
+
+  /**
+   * Index all tracks.
+   */
+  private void build() {
+    long time = System.currentTimeMillis();
+    entries.clear();
+    trackEntries.clear();
+    dirty.clear();
+    // Set first so that tracks changed while building are moved at next use
+    built = true;
+    for (Track track : TrackManager.getInstance().getTracks()) {
+      add(track);
+    }
+    Log.debug("Rate index built in " + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Index a track with its current rate.
+   *
+   * @param track the track
+   */
+  private void add(Track track) {
+    Entry entry = new Entry(track);
+    entries.add(entry);
+    trackEntries.put(track, entry);
+  }
+}
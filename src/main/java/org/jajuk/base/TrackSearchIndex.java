@@ -0,0 +1,410 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jajuk.util.log.Log;
+
+/**
+ * Inverted index over the values making up the tracks "any" string used by the search box.
+ * <p>
+ * Each lower-cased value is split into tokens (maximal runs of letters and digits), each token
+ * maps the tracks containing it. Tokens themselves are indexed by their trigrams so that a
+ * criteria token can be matched anywhere inside a token (prefixes included). Criteria tokens
+ * shorter than a trigram are checked against the whole tokens list.
+ * </p>
+ * <p>
+ * The tracks mapped by the tokens containing the rarest criteria token are the candidates, they
+ * are then checked by the caller against the full criteria. A criteria token has to be found
+ * inside a single value, not across two concatenated values. When the criteria is not selective
+ * enough, no candidates are returned and all tracks are checked. For the same reason, tracks of
+ * very common tokens (like "mp3") are not stored at all.
+ * </p>
+ * <p>
+ * The index is built at first search and then maintained incrementally : changed tracks are only
+ * flagged (this is called by every property change) and re-indexed at next search.
+ * </p>
+ */
+final class TrackSearchIndex {
+  /** N-gram size used to index tokens. */
+  private static final int GRAM = 3;
+  /** Check all tracks when candidates exceed this ratio of all tracks. */
+  private static final int MAX_CANDIDATES_RATIO = 4;
+  /** Self instance. */
+  private static TrackSearchIndex self = new TrackSearchIndex();
+  /** Has the index been built ? Volatile as checked without locking on every property change. */
+  private volatile boolean built = false;
+  /** Token -> posting. */
+  private final Map<String, Posting> postings = new HashMap<String, Posting>(1000);
+  /** Trigram -> tokens containing it, shorter tokens are their own key. */
+  private final Map<String, List<String>> grams = new HashMap<String, List<String>>(1000);
+  /** Indexed tokens of each track. */
+  private final Map<Track, String[]> trackTokens = new HashMap<Track, String[]>(1000);
+  /** Postings with more tracks than this are dropped as not selective enough. */
+  private int maxPostingSize;
+  /**
+   * Tracks to re-index before next search. Concurrent so that flagging a track never waits for a
+   * running search (that may itself wait for a manager lock held by the flagging thread).
+   */
+  private final Set<Track> dirty = Collections
+      .newSetFromMap(new ConcurrentHashMap<Track, Boolean>(16));
+
+  /**
+   * Tracks mapped by a token.
+   */
+  private static final class Posting {
+    /** The token, shared by all tracks tokens arrays. */
+    private final String token;
+    /** Mapped tracks or null if the token is too common. */
+    private List<Track> tracks = new ArrayList<Track>(2);
+
+    /**
+     * Instantiates a new posting.
+     *
+     * @param token the token
+     */
+    private Posting(String token) {
+      this.token = token;
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  static TrackSearchIndex getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private TrackSearchIndex() {
+    super();
+  }
+
+  /**
+   * Drop the index, it will be built again at next search.
+   */
+  synchronized void reset() {
+    built = false;
+    postings.clear();
+    grams.clear();
+    trackTokens.clear();
+    dirty.clear();
+  }
+
+  /**
+   * Notify that an item "any" value may have changed. Tracks depend on their own properties and
+   * on their files paths.
+   *
+   * @param item the changed item
+   */
+  void itemChanged(Item item) {
+    if (!built) {
+      return;
+    }
+    Track track = null;
+    if (item instanceof Track) {
+      track = (Track) item;
+    } else if (item instanceof File) {
+      track = ((File) item).getTrack();
+    }
+    if (track != null) {
+      dirty.add(track);
+    }
+  }
+
+  /**
+   * Return the tracks whose lower-cased "any" value may contain the given lower-cased criteria.
+   * Must be called under the TrackManager read lock.
+   *
+   * @param criteria lower-cased criteria
+   *
+   * @return candidate tracks, in no specific order, or null if all tracks should be checked
+   */
+  synchronized Set<Track> getCandidates(String criteria) {
+    if (!built) {
+      build();
+    } else if (!dirty.isEmpty()) {
+      refresh();
+    }
+    // Use the criteria token mapping the less tracks to get candidates
+    List<Posting> bestPostings = null;
+    int bestCount = trackTokens.size() / MAX_CANDIDATES_RATIO;
+    for (String token : tokenize(criteria)) {
+      List<Posting> matchingPostings = getPostingsContaining(token, bestCount);
+      if (matchingPostings != null) {
+        bestCount = 0;
+        for (Posting posting : matchingPostings) {
+          bestCount += posting.tracks.size();
+        }
+        bestPostings = matchingPostings;
+      }
+    }
+    if (bestPostings == null) {
+      // No letter or digit in criteria or not selective enough
+      return null;
+    }
+    Set<Track> candidates = new HashSet<Track>(bestCount);
+    for (Posting posting : bestPostings) {
+      candidates.addAll(posting.tracks);
+    }
+    return candidates;
+  }
+
+  /**
+   * Index all tracks.
+   */
+  private void build() {
+    long time = System.currentTimeMillis();
+    dirty.clear();
+    // Set first so that tracks changed while building are re-indexed at next search
+    built = true;
+    List<Track> tracks = TrackManager.getInstance().getTracks();
+    maxPostingSize = tracks.size() / MAX_CANDIDATES_RATIO;
+    for (Track track : tracks) {
+      add(track);
+    }
+    Log.debug("Search index built in " + (System.currentTimeMillis() - time) + " ms with "
+        + postings.size() + " tokens");
+  }
+
+  /**
+   * Re-index changed tracks.
+   */
+  private void refresh() {
+    Set<Track> changed = new HashSet<Track>(dirty.size());
+    Iterator<Track> it = dirty.iterator();
+    while (it.hasNext()) {
+      changed.add(it.next());
+      it.remove();
+    }
+    // Group removals by token to filter each postings list only once
+    Map<Posting, Set<Track>> removals = new HashMap<Posting, Set<Track>>();
+    for (Track track : changed) {
+      String[] tokens = trackTokens.remove(track);
+      if (tokens != null) {
+        for (String token : tokens) {
+          Posting posting = postings.get(token);
+          if (posting.tracks == null) {
+            continue;
+          }
+          Set<Track> removed = removals.get(posting);
+          if (removed == null) {
+            removed = new HashSet<Track>(2);
+            removals.put(posting, removed);
+          }
+          removed.add(track);
+        }
+      }
+    }
+    for (Map.Entry<Posting, Set<Track>> entry : removals.entrySet()) {
+      Posting posting = entry.getKey();
+      posting.tracks.removeAll(entry.getValue());
+      if (posting.tracks.isEmpty()) {
+        removeToken(posting.token);
+      }
+    }
+    // Index the current instances, removed tracks are simply dropped
+    TrackManager manager = TrackManager.getInstance();
+    maxPostingSize = Math.max(maxPostingSize, manager.getElementCount() / MAX_CANDIDATES_RATIO);
+    for (Track track : changed) {
+      Track current = manager.getTrackByID(track.getID());
+      if (current != null && !trackTokens.containsKey(current)) {
+        add(current);
+      }
+    }
+  }
+
+  /**
+   * Index a track.
+   *
+   * @param track the track
+   */
+  private void add(Track track) {
+    Set<String> tokens = new HashSet<String>();
+    for (String value : track.getAnyValues()) {
+      tokenize(value.toLowerCase(Locale.getDefault()), tokens);
+    }
+    String[] indexed = new String[tokens.size()];
+    int i = 0;
+    for (String token : tokens) {
+      Posting posting = postings.get(token);
+      if (posting == null) {
+        posting = new Posting(token);
+        postings.put(token, posting);
+        addToken(token);
+      }
+      if (posting.tracks != null) {
+        posting.tracks.add(track);
+        if (posting.tracks.size() > maxPostingSize) {
+          posting.tracks = null;
+        }
+      }
+      indexed[i++] = posting.token;
+    }
+    trackTokens.put(track, indexed);
+  }
+
+  /**
+   * Index a new token by its trigrams.
+   *
+   * @param token the token
+   */
+  private void addToken(String token) {
+    for (String gram : getGrams(token)) {
+      List<String> tokens = grams.get(gram);
+      if (tokens == null) {
+        tokens = new ArrayList<String>(2);
+        grams.put(gram, tokens);
+      }
+      tokens.add(token);
+    }
+  }
+
+  /**
+   * Drop a token no more used by any track.
+   *
+   * @param token the token
+   */
+  private void removeToken(String token) {
+    postings.remove(token);
+    for (String gram : getGrams(token)) {
+      List<String> tokens = grams.get(gram);
+      tokens.remove(token);
+      if (tokens.isEmpty()) {
+        grams.remove(gram);
+      }
+    }
+  }
+
+  /**
+   * Gets the postings of tokens containing a given string if they map at most a given number of
+   * tracks.
+   *
+   * @param string the string, containing only letters and digits
+   * @param maxTracks max number of mapped tracks
+   *
+   * @return the postings or null if they map too many tracks
+   */
+  private List<Posting> getPostingsContaining(String string, int maxTracks) {
+    Collection<String> tokens;
+    if (string.length() < GRAM) {
+      tokens = postings.keySet();
+    } else {
+      // Start from the rarest trigram and check the string by a simple contains()
+      List<String> rarest = null;
+      for (int i = 0; i <= string.length() - GRAM; i++) {
+        List<String> gramTokens = grams.get(string.substring(i, i + GRAM));
+        if (gramTokens == null) {
+          return new ArrayList<Posting>(0);
+        }
+        if (rarest == null || gramTokens.size() < rarest.size()) {
+          rarest = gramTokens;
+        }
+      }
+      tokens = rarest;
+    }
+    List<Posting> out = new ArrayList<Posting>();
+    int count = 0;
+    for (String token : tokens) {
+      if (token.contains(string)) {
+        Posting posting = postings.get(token);
+        if (posting.tracks == null) {
+          return null;
+        }
+        count += posting.tracks.size();
+        if (count > maxTracks) {
+          return null;
+        }
+        out.add(posting);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Gets the distinct trigrams of a token, or the token itself if shorter.
+   *
+   * @param token the token
+   *
+   * @return the trigrams
+   */
+  private static Set<String> getGrams(String token) {
+    Set<String> out = new HashSet<String>(token.length() * 2);
+    if (token.length() < GRAM) {
+      out.add(token);
+    }
+    for (int i = 0; i <= token.length() - GRAM; i++) {
+      out.add(token.substring(i, i + GRAM));
+    }
+    return out;
+  }
+
+  /**
+   * Split a string into its distinct tokens (maximal runs of letters and digits).
+   *
+   * @param text the string
+   *
+   * @return the tokens
+   */
+  static Set<String> tokenize(String text) {
+    Set<String> out = new HashSet<String>();
+    tokenize(text, out);
+    return out;
+  }
+
+  /**
+   * Split a string into its tokens (maximal runs of letters and digits).
+   *
+   * @param text the string
+   * @param out the set to add tokens to
+   */
+  private static void tokenize(String text, Set<String> out) {
+    int start = -1;
+    for (int i = 0; i < text.length(); i++) {
+      if (Character.isLetterOrDigit(text.charAt(i))) {
+        if (start == -1) {
+          start = i;
+        }
+      } else if (start != -1) {
+        out.add(text.substring(start, i));
+        start = -1;
+      }
+    }
+    if (start != -1) {
+      out.add(text.substring(start));
+    }
+  }
+}
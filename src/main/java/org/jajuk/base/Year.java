@@ -20,6 +20,9 @@
  */
 package org.jajuk.base;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import javax.swing.ImageIcon;
 
 import org.jajuk.util.Const;
@@ -33,6 +36,8 @@ import org.jajuk.util.UtilString;
  * <br>Logical item
  */
 public class Year extends LogicalItem implements Comparable<Year> {
+  /** For perfs, we cache the associated tracks. This cache is filled by the TrackManager using the getTracksCache() method */
+  private final Set<Track> cache = new LinkedHashSet<Track>(100);
   /** The year that is stored in this object. */
   private final long value;
 
@@ -129,4 +134,13 @@ public class Year extends LogicalItem implements Comparable<Year> {
   public String toString() {
     return Long.toString(value);
   }
+
+  /**
+   * Gets the tracks cache.
+   * 
+   * @return tracks cache for this year (perf)
+   */
+  public Set<Track> getTracksCache() {
+    return this.cache;
+  }
 }
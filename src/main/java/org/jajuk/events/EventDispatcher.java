@@ -0,0 +1,231 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.events;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Executes queued events with a bounded pool of threads.
+ * <p>
+ * Events of a given subject are executed one after the other in notification order, events of
+ * different subjects are executed concurrently. Some subjects only ask for a refresh : such an
+ * event equal to one of the same subject still waiting for execution is dropped (coalesced).
+ * </p>
+ */
+class EventDispatcher {
+  /** Subjects whose waiting events can be coalesced. */
+  static final Set<JajukEvents> COALESCED_SUBJECTS = EnumSet.of(
+      JajukEvents.VIEW_REFRESH_REQUEST, JajukEvents.QUEUE_NEED_REFRESH, JajukEvents.HEART_BEAT,
+      JajukEvents.FILE_NAME_CHANGED);
+  /** Idle executor threads are stopped after this delay in secs. */
+  private static final int KEEP_ALIVE = 30;
+  /** Events waiting for execution by subject. A subject is present while a task executes it. */
+  private final Map<JajukEvents, Deque<JajukEvent>> pending = new EnumMap<JajukEvents, Deque<JajukEvent>>(
+      JajukEvents.class);
+  /** Executor running one task per subject having waiting events. */
+  private final ThreadPoolExecutor executor;
+  /** Number of events waiting for execution. */
+  private final AtomicInteger waiting = new AtomicInteger(0);
+  /** Number of executed events. */
+  private final AtomicLong dispatched = new AtomicLong(0);
+  /** Number of coalesced events. */
+  private final AtomicLong coalesced = new AtomicLong(0);
+  /** Cumulated dispatch latency in ms. */
+  private final AtomicLong totalLatency = new AtomicLong(0);
+  /** Max dispatch latency in ms. */
+  private final AtomicLong maxLatency = new AtomicLong(0);
+
+  /**
+   * Instantiates a new event dispatcher.
+   */
+  EventDispatcher() {
+    final AtomicInteger threadNumber = new AtomicInteger(0);
+    executor = new ThreadPoolExecutor(Const.EVENT_EXECUTOR_THREADS,
+        Const.EVENT_EXECUTOR_THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Event Executor " + threadNumber.incrementAndGet());
+            // Do not prevent the JVM to exit while idle threads wait for their keep alive
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queue an event for execution.
+   *
+   * @param event the event
+   */
+  void dispatch(JajukEvent event) {
+    JajukEvents subject = event.getSubject();
+    synchronized (pending) {
+      Deque<JajukEvent> events = pending.get(subject);
+      if (events == null) {
+        events = new ArrayDeque<JajukEvent>(4);
+        pending.put(subject, events);
+        executor.execute(new SubjectTask(subject));
+      } else if (COALESCED_SUBJECTS.contains(subject) && events.contains(event)
+          && Conf.getBoolean(Const.CONF_EVENTS_COALESCING)) {
+        coalesced.incrementAndGet();
+        return;
+      }
+      events.add(event);
+      waiting.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drop all events waiting for execution.
+   */
+  void clear() {
+    synchronized (pending) {
+      for (Deque<JajukEvent> events : pending.values()) {
+        waiting.addAndGet(-events.size());
+        // Keep the deque itself, it is removed by the running task
+        events.clear();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of events waiting for execution.
+   *
+   * @return the number of waiting events
+   */
+  int getWaitingCount() {
+    return waiting.get();
+  }
+
+  /**
+   * Gets the number of executed events.
+   *
+   * @return the number of executed events
+   */
+  long getDispatchedCount() {
+    return dispatched.get();
+  }
+
+  /**
+   * Gets the number of coalesced events.
+   *
+   * @return the number of coalesced events
+   */
+  long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /**
+   * Gets the average latency between notification and execution start.
+   *
+   * @return the average latency in ms
+   */
+  long getAverageLatency() {
+    long count = dispatched.get();
+    return count == 0 ? 0 : totalLatency.get() / count;
+  }
+
+  /**
+   * Gets the max latency between notification and execution start.
+   *
+   * @return the max latency in ms
+   */
+  long getMaxLatency() {
+    return maxLatency.get();
+  }
+
+  /**
+   * Update counters for an event about to be executed.
+   *
+   * @param event the event
+   */
+  private void recordDispatch(JajukEvent event) {
+    long latency = System.currentTimeMillis() - event.getNotificationDate();
+    dispatched.incrementAndGet();
+    totalLatency.addAndGet(latency);
+    long max = maxLatency.get();
+    while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+      max = maxLatency.get();
+    }
+  }
+
+  /**
+   * Executes the waiting events of a subject until there is none.
+   */
+  private class SubjectTask implements Runnable {
+    /** The subject. */
+    private final JajukEvents subject;
+
+    /**
+     * Instantiates a new subject task.
+     *
+     * @param subject the subject
+     */
+    SubjectTask(JajukEvents subject) {
+      this.subject = subject;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      while (true) {
+        JajukEvent event;
+        synchronized (pending) {
+          event = pending.get(subject).poll();
+          if (event == null) {
+            pending.remove(subject);
+            return;
+          }
+          waiting.decrementAndGet();
+        }
+        recordDispatch(event);
+        // Make sure to handle any exception or error to keep on executing
+        // next events of this subject
+        try {
+          ObservationManager.notifySync(event);
+        } catch (Throwable e) {
+          Log.error(e);
+        }
+      }
+    }
+  }
+}
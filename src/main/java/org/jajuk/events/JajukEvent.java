@@ -30,6 +30,8 @@ public class JajukEvent {
   private final JajukEvents subject;
   /** Event properties. */
   private Properties pDetails;
+  /** Date of the last asynchronous notification, used to compute the dispatch latency. */
+  private long notificationDate;
 
   /**
    * Event constructor.
@@ -71,6 +73,24 @@ public class JajukEvent {
     return subject;
   }
 
+  /**
+   * Gets the notification date.
+   * 
+   * @return the date of the last asynchronous notification in ms
+   */
+  long getNotificationDate() {
+    return notificationDate;
+  }
+
+  /**
+   * Sets the notification date.
+   * 
+   * @param notificationDate the date of the asynchronous notification in ms
+   */
+  void setNotificationDate(long notificationDate) {
+    this.notificationDate = notificationDate;
+  }
+
   /**
    * ToString method.
    * 
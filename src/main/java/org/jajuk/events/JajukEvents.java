@@ -126,10 +126,8 @@ public enum JajukEvents {
   FILE_FINISHED,
   /** Lyrics data has been downloaded. */
   LYRICS_DOWNLOADED,
-  /** A file has been copied (used by prepare party). */
+  /** Files have been exported (used by prepare party). */
   FILE_COPIED,
-  /** A file is converted from one media type to another. */
-  FILE_CONVERSION,
   /** Covers should be refreshed. */
   COVER_NEED_REFRESH,
   /** Ratings have to be reseted. */
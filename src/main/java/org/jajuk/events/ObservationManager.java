@@ -45,6 +45,8 @@ public final class ObservationManager {
   static BlockingQueue<JajukEvent> queue = new LinkedBlockingQueue<JajukEvent>();
   /** The observation fifo. */
   private static ObservationManagerThread observationThread;
+  /** Executes events taken from the queue. */
+  static EventDispatcher dispatcher = new EventDispatcher();
 
   /**
    * Empty constructor to avoid instantiating this utility class.
@@ -103,6 +105,7 @@ public final class ObservationManager {
        * We don't launch it in a regular thread because EDT waits thread end to
        * display
        */
+      event.setNotificationDate(System.currentTimeMillis());
       queue.add(event);
       // synchronize here to avoid creating more than one observation manager
       // thread
@@ -193,6 +196,52 @@ public final class ObservationManager {
     return hLastEventBySubject.get(subject);
   }
 
+  /**
+   * Gets the number of notified events not yet executed.
+   * 
+   * @return the queue depth
+   */
+  public static int getQueueDepth() {
+    return queue.size() + dispatcher.getWaitingCount();
+  }
+
+  /**
+   * Gets the number of asynchronously executed events.
+   * 
+   * @return the number of executed events
+   */
+  public static long getDispatchedEventsCount() {
+    return dispatcher.getDispatchedCount();
+  }
+
+  /**
+   * Gets the number of events dropped because an equal event was still
+   * waiting for execution.
+   * 
+   * @return the number of coalesced events
+   */
+  public static long getCoalescedEventsCount() {
+    return dispatcher.getCoalescedCount();
+  }
+
+  /**
+   * Gets the average delay between an event notification and its execution.
+   * 
+   * @return the average dispatch latency in ms
+   */
+  public static long getAverageDispatchLatency() {
+    return dispatcher.getAverageLatency();
+  }
+
+  /**
+   * Gets the max delay between an event notification and its execution.
+   * 
+   * @return the max dispatch latency in ms
+   */
+  public static long getMaxDispatchLatency() {
+    return dispatcher.getMaxLatency();
+  }
+
   /**
    * Remove all registered Observers. This is mainly used in Unit Tests
    * to get a clean state again.
@@ -200,6 +249,7 @@ public final class ObservationManager {
   public static void clear() {
     hLastEventBySubject.clear();
     queue.clear();
+    dispatcher.clear();
     observerRegistry.clear();
   }
 }
@@ -217,15 +267,10 @@ class ObservationManagerThread extends Thread {
     // Stop to execute events is thread flag is set or if Jajuk is exiting
     while (!ExitService.isExiting()) {
       try {
-        final JajukEvent event = ObservationManager.queue.poll(1000, TimeUnit.MILLISECONDS);
+        JajukEvent event = ObservationManager.queue.poll(1000, TimeUnit.MILLISECONDS);
         if (event != null) {
-          // launch action asynchronously
-          new Thread("Event Executor for: " + event.toString()) {
-            @Override
-            public void run() {
-              ObservationManager.notifySync(event);
-            }
-          }.start();
+          // launch action asynchronously, in order for a given subject
+          ObservationManager.dispatcher.dispatch(event);
         }
         // Make sure to handle any exception or error to avoid the observation
         // system to die. Throwable covers all types of Exceptions/Errors.
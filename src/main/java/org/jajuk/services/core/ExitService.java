@@ -26,6 +26,7 @@ import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.services.bookmark.History;
 import org.jajuk.services.dbus.DBusManager;
+import org.jajuk.services.players.MPlayerEngine;
 import org.jajuk.services.players.Player;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.webradio.CustomRadiosPersistenceHelper;
@@ -61,6 +62,8 @@ public class ExitService extends Thread {
     Conf.setProperty(Const.CONF_WEBRADIO_WAS_PLAYING, Boolean.toString(QueueModel.isPlayingRadio()));
     // stop sound ASAP
     Player.stop(true);
+    // Kill the idle mplayer processes
+    MPlayerEngine.getInstance().shutdown();
     ObservationManager.notifySync(new JajukEvent(JajukEvents.EXITING));
     // Last attempt to store the collection data, may not be reached on fast computers but persistence manager
     // should have save already most of the data
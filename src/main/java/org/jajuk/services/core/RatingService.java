@@ -20,7 +20,9 @@
  */
 package org.jajuk.services.core;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
 
 import org.jajuk.base.FileManager;
@@ -73,6 +75,18 @@ public final class RatingService extends Thread implements Observer {
     return self;
   }
 
+  /**
+   * Force immediate rating refresh of some tracks (without using the rating manager), views
+   * refresh only these tracks.
+   * 
+   * @param tracks the tracks whose rate, preference or banned state changed
+   */
+  public static void notifyRateChanged(Collection<Track> tracks) {
+    Properties details = new Properties();
+    details.put(Const.DETAIL_ITEMS, tracks);
+    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -23,6 +23,7 @@ package org.jajuk.services.covers;
 import java.awt.Image;
 import java.awt.MediaTracker;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -187,7 +188,7 @@ public class Cover implements Comparable<Cover>, Const {
   }
 
   /**
-   * Gets the image.
+   * Gets the image. Decoded images are cached so they must not be modified.
    *
    * @return Returns the image.
    * @throws IOException Signals that an I/O exception has occurred.
@@ -203,6 +204,11 @@ public class Cover implements Comparable<Cover>, Const {
     if (!file.exists() || file.length() == 0) {
       this.file = DownloadManager.downloadToCache(url);
     }
+    String key = ImageCache.getCoverKey(getFile());
+    BufferedImage cached = ImageCache.getInstance().get(key);
+    if (cached != null) {
+      return cached;
+    }
     Image image = null;
     synchronized (Cover.class) {
       image = Toolkit.getDefaultToolkit().getImage(getFile().getAbsolutePath());
@@ -215,8 +221,11 @@ public class Cover implements Comparable<Cover>, Const {
         throw new JajukException(9, getFile().getAbsolutePath());
       }
     }
+    // Keep a fully decoded copy, views flush the images they get to free memory
+    BufferedImage decoded = UtilGUI.toBufferedImage(image);
+    ImageCache.getInstance().put(key, decoded);
     Log.debug("Loaded {{" + url + "}} in  " + (System.currentTimeMillis() - l) + " ms");
-    return image;
+    return decoded;
   }
 
   /**
@@ -0,0 +1,305 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.covers;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jajuk.base.Album;
+import org.jajuk.events.JajukEvent;
+import org.jajuk.events.JajukEvents;
+import org.jajuk.events.ObservationManager;
+import org.jajuk.events.Observer;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Decoded images cache for album thumbs and covers.
+ * <p>
+ * Most recently used images are strongly referenced up to a memory budget in bytes
+ * (CONF_COVERS_CACHE_SIZE MB). Images evicted from this tier are only softly referenced so the
+ * garbage collector can reclaim them under memory pressure, they are promoted back to the first
+ * tier when used again.
+ * </p>
+ * <p>
+ * Thumbs are keyed by album and size, they are evicted when the album thumbs are created or
+ * deleted. Covers are keyed by file path, size and modification date so a changed cover file is
+ * never served from the cache. Everything is evicted when covers need a refresh.
+ * </p>
+ */
+public final class ImageCache implements Observer {
+  private static ImageCache self = new ImageCache();
+  static {
+    ObservationManager.register(self);
+  }
+  /** Thumbs keys prefix. */
+  private static final String THUMB_PREFIX = "thumb/";
+  /** Covers keys prefix. */
+  private static final String COVER_PREFIX = "cover/";
+  /** Strongly referenced images, in access order. */
+  private final Map<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>(100,
+      0.75f, true);
+  /** Images evicted from the strong tier. */
+  private final Map<String, KeyedReference> softImages = new HashMap<String, KeyedReference>(100);
+  /** Cleared soft references. */
+  private final ReferenceQueue<BufferedImage> clearedImages = new ReferenceQueue<BufferedImage>();
+  /** Memory budget of the strong tier in bytes. */
+  private final long budget;
+  /** Memory used by the strong tier in bytes. */
+  private long bytes;
+  /** Strong tier hits. */
+  private long hits;
+  /** Soft tier hits. */
+  private long softHits;
+  /** Misses. */
+  private long misses;
+  /** Number of images moved to the soft tier. */
+  private long evictions;
+
+  /**
+   * A soft reference knowing its key.
+   */
+  private static final class KeyedReference extends SoftReference<BufferedImage> {
+    /** The key. */
+    private final String key;
+
+    /**
+     * Instantiates a new keyed reference.
+     *
+     * @param key the key
+     * @param image the image
+     * @param queue the queue
+     */
+    KeyedReference(String key, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+      super(image, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * Private constructor for singleton.
+   */
+  private ImageCache() {
+    budget = Math.max(0, Conf.getInt(Const.CONF_COVERS_CACHE_SIZE)) * 1024L * 1024L;
+  }
+
+  /**
+   * Gets the single instance of ImageCache.
+   *
+   * @return single instance of ImageCache
+   */
+  public static ImageCache getInstance() {
+    return self;
+  }
+
+  /**
+   * Gets the key of an album thumb.
+   *
+   * @param album the album
+   * @param size the thumb size (like 50)
+   *
+   * @return the key
+   */
+  public static String getThumbKey(Album album, int size) {
+    return THUMB_PREFIX + album.getID() + '/' + size;
+  }
+
+  /**
+   * Gets the key of a cover file.
+   *
+   * @param file the cover file
+   *
+   * @return the key
+   */
+  public static String getCoverKey(File file) {
+    return COVER_PREFIX + file.getAbsolutePath() + '/' + file.length() + '/'
+        + file.lastModified();
+  }
+
+  /**
+   * Gets a cached image.
+   *
+   * @param key the key
+   *
+   * @return the image or null if not cached
+   */
+  public synchronized BufferedImage get(String key) {
+    BufferedImage image = images.get(key);
+    if (image != null) {
+      hits++;
+      return image;
+    }
+    KeyedReference ref = softImages.remove(key);
+    image = (ref == null) ? null : ref.get();
+    if (image != null) {
+      softHits++;
+      put(key, image);
+      return image;
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Cache an image. Note that cached images are shared and must not be modified.
+   *
+   * @param key the key
+   * @param image the image
+   */
+  public synchronized void put(String key, BufferedImage image) {
+    remove(key);
+    long size = getSize(image);
+    if (size > budget) {
+      softImages.put(key, new KeyedReference(key, image, clearedImages));
+      return;
+    }
+    images.put(key, image);
+    bytes += size;
+    // Move least recently used images to the soft tier
+    Iterator<Map.Entry<String, BufferedImage>> it = images.entrySet().iterator();
+    while (bytes > budget && it.hasNext()) {
+      Map.Entry<String, BufferedImage> entry = it.next();
+      bytes -= getSize(entry.getValue());
+      softImages.put(entry.getKey(), new KeyedReference(entry.getKey(), entry.getValue(),
+          clearedImages));
+      it.remove();
+      evictions++;
+    }
+    purgeClearedImages();
+  }
+
+  /**
+   * Remove an image from the cache.
+   *
+   * @param key the key
+   */
+  public synchronized void remove(String key) {
+    BufferedImage image = images.remove(key);
+    if (image != null) {
+      bytes -= getSize(image);
+    }
+    softImages.remove(key);
+  }
+
+  /**
+   * Remove all thumbs of an album from the cache.
+   *
+   * @param album the album
+   */
+  public synchronized void removeThumbs(Album album) {
+    for (int size = 50; size <= 300; size += 50) {
+      remove(getThumbKey(album, size));
+    }
+  }
+
+  /**
+   * Remove all images from the cache.
+   */
+  public synchronized void clear() {
+    images.clear();
+    softImages.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Gets the cache statistics.
+   *
+   * @return the statistics
+   */
+  public synchronized String getStatistics() {
+    long requests = hits + softHits + misses;
+    return "Image cache: " + images.size() + " images (" + (bytes / 1024) + " KB of "
+        + (budget / 1024) + " KB), " + softImages.size() + " soft images, " + requests
+        + " requests, " + hits + " hits, " + softHits + " soft hits, " + misses + " misses ("
+        + (requests == 0 ? 0 : (100 * (hits + softHits) / requests)) + "% hit ratio), "
+        + evictions + " evictions";
+  }
+
+  /**
+   * Drop the keys of soft images reclaimed by the garbage collector.
+   */
+  private void purgeClearedImages() {
+    KeyedReference ref;
+    while ((ref = (KeyedReference) clearedImages.poll()) != null) {
+      // The key may have been cached again meanwhile
+      if (softImages.get(ref.key) == ref) {
+        softImages.remove(ref.key);
+      }
+    }
+  }
+
+  /**
+   * Gets the memory used by an image.
+   *
+   * @param image the image
+   *
+   * @return the size in bytes
+   */
+  private static long getSize(BufferedImage image) {
+    DataBuffer buffer = image.getRaster().getDataBuffer();
+    return (long) buffer.getSize() * buffer.getNumBanks()
+        * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.events.Observer#getRegistrationKeys()
+   */
+  @Override
+  public Set<JajukEvents> getRegistrationKeys() {
+    Set<JajukEvents> eventSubjectSet = new HashSet<JajukEvents>();
+    eventSubjectSet.add(JajukEvents.THUMB_CREATED);
+    eventSubjectSet.add(JajukEvents.COVER_NEED_REFRESH);
+    eventSubjectSet.add(JajukEvents.EXITING);
+    return eventSubjectSet;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.events.Observer#update(org.jajuk.events.JajukEvent)
+   */
+  @Override
+  public void update(JajukEvent event) {
+    JajukEvents subject = event.getSubject();
+    if (subject == JajukEvents.THUMB_CREATED) {
+      Object album = ObservationManager.getDetail(event, Const.DETAIL_CONTENT);
+      if (album instanceof Album) {
+        removeThumbs((Album) album);
+      }
+    } else if (subject == JajukEvents.COVER_NEED_REFRESH) {
+      clear();
+    } else if (subject == JajukEvents.EXITING) {
+      Log.debug(getStatistics());
+    }
+  }
+}
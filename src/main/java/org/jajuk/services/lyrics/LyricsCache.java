@@ -0,0 +1,174 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.lyrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.MD5Processor;
+import org.jajuk.util.log.Log;
+
+/**
+ * On-disk cache of the web lyrics lookups, keyed by artist and title.
+ * <p>
+ * Each lookup is stored in its own file of the lyrics cache directory. The first line is the
+ * class name of the provider that found the lyrics, the next lines are the lyrics. An empty file
+ * records that no provider found lyrics, this miss expires after
+ * <code>CONF_LYRICS_MISS_TTL</code> days so that providers get a chance to add them.
+ * </p>
+ */
+final class LyricsCache {
+  /** Cache files encoding. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * A cached lookup.
+   */
+  static final class Entry {
+    /** Provider class name, null for a miss. */
+    private final String provider;
+    /** Lyrics, null for a miss. */
+    private final String lyrics;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param provider the provider class name, null for a miss
+     * @param lyrics the lyrics, null for a miss
+     */
+    Entry(String provider, String lyrics) {
+      this.provider = provider;
+      this.lyrics = lyrics;
+    }
+
+    /**
+     * Gets the provider class name.
+     *
+     * @return the provider class name, null for a miss
+     */
+    String getProvider() {
+      return provider;
+    }
+
+    /**
+     * Gets the lyrics.
+     *
+     * @return the lyrics, null for a miss
+     */
+    String getLyrics() {
+      return lyrics;
+    }
+  }
+
+  /**
+   * Private constructor to avoid instantiating utility class.
+   */
+  private LyricsCache() {
+  }
+
+  /**
+   * Gets a cached lookup.
+   *
+   * @param artist the artist
+   * @param title the title
+   *
+   * @return the cached lookup or null if unknown or expired miss
+   */
+  static Entry get(String artist, String title) {
+    File file = getCacheFile(artist, title);
+    if (!file.exists()) {
+      return null;
+    }
+    if (file.length() == 0) {
+      long ttl = (long) Conf.getInt(Const.CONF_LYRICS_MISS_TTL) * Const.MILLISECONDS_IN_A_DAY;
+      if (System.currentTimeMillis() - file.lastModified() > ttl) {
+        return null;
+      }
+      return new Entry(null, null);
+    }
+    try {
+      String content = new String(Files.readAllBytes(file.toPath()), UTF8);
+      int index = content.indexOf('\n');
+      if (index <= 0) {
+        return null;
+      }
+      return new Entry(content.substring(0, index), content.substring(index + 1));
+    } catch (IOException e) {
+      Log.debug("Cannot read cached lyrics {{" + file + "}}");
+      return null;
+    }
+  }
+
+  /**
+   * Store a lookup.
+   *
+   * @param artist the artist
+   * @param title the title
+   * @param provider the provider class name, null for a miss
+   * @param lyrics the lyrics, null for a miss
+   */
+  static void put(String artist, String title, String provider, String lyrics) {
+    File file = getCacheFile(artist, title);
+    File tmp = new File(file.getPath() + '.' + Thread.currentThread().getId());
+    try {
+      file.getParentFile().mkdirs();
+      byte[] content = new byte[0];
+      if (lyrics != null) {
+        content = (provider + '\n' + lyrics).getBytes(UTF8);
+      }
+      Files.write(tmp.toPath(), content);
+      // Concurrent lookups of the same track write the same content, last wins
+      try {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      Log.debug("Cannot cache lyrics {{" + file + "}}");
+      if (tmp.exists() && !tmp.delete()) {
+        Log.debug("Cannot delete {{" + tmp + "}}");
+      }
+    }
+  }
+
+  /**
+   * Gets the cache file of a lookup.
+   *
+   * @param artist the artist
+   * @param title the title
+   *
+   * @return the cache file
+   */
+  static File getCacheFile(String artist, String title) {
+    String key = (artist + '/' + title).toLowerCase(Locale.getDefault());
+    return SessionService.getConfFileByPath(Const.FILE_CACHE + '/' + Const.FILE_LYRICS_CACHE
+        + '/' + MD5Processor.hash(key));
+  }
+}
@@ -22,14 +22,26 @@ package org.jajuk.services.lyrics;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.base.File;
 import org.jajuk.services.lyrics.persisters.ILyricsPersister;
+import org.jajuk.services.lyrics.providers.GenericWebLyricsProvider;
 import org.jajuk.services.lyrics.providers.ILyricsProvider;
 import org.jajuk.services.lyrics.providers.JajukLyricsProvider;
 import org.jajuk.ui.widgets.InformationJPanel;
 import org.jajuk.ui.widgets.InformationJPanel.MessageType;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
 import org.jajuk.util.Messages;
 import org.jajuk.util.error.LyricsPersistenceException;
 import org.jajuk.util.log.Log;
@@ -46,6 +58,8 @@ public final class LyricsService {
   private static List<ILyricsProvider> providers = null;
   private static ILyricsProvider current = null;
   private static List<ILyricsPersister> persisters = null;
+  /** Web providers queries threads, created at first parallel lookup. */
+  private static ExecutorService executor = null;
   /** Providers list. */
   private static String[] providersClasses = new String[] {
     "org.jajuk.services.lyrics.providers.TagLyricsProvider",
@@ -112,28 +126,187 @@ public final class LyricsService {
 
   /**
    * Cycles through lyrics providers to return the best matching lyrics.
+   * <p>
+   * Local providers (tag, txt file) are queried first in their order. Web providers lookups are
+   * cached on disk by artist and title, misses included. On a cache miss, web providers are
+   * queried in parallel and the first found lyrics win, or in their order if
+   * <code>CONF_LYRICS_PARALLEL</code> is not set.
+   * </p>
    * 
    * @param audioFile 
    * 
    * @return the song's lyrics
    */
   public static String getLyrics(final File audioFile) {
-    String lyrics = null;
     current = null;
     Log.debug("Retrieving lyrics for file {{" + audioFile + "}}");
+    List<GenericWebLyricsProvider> webProviders = new ArrayList<GenericWebLyricsProvider>(3);
     for (final ILyricsProvider provider : getProviders()) {
+      if (provider instanceof GenericWebLyricsProvider) {
+        webProviders.add((GenericWebLyricsProvider) provider);
+        continue;
+      }
+      provider.setAudioFile(audioFile);
+      String lyrics = provider.getLyrics();
+      if (lyrics != null) {
+        current = provider;
+        return lyrics;
+      }
+    }
+    if (webProviders.isEmpty() || Conf.getBoolean(Const.CONF_NETWORK_NONE_INTERNET_ACCESS)) {
+      return null;
+    }
+    String artist = audioFile.getTrack().getArtist().getName2();
+    String title = audioFile.getTrack().getName();
+    GenericWebLyricsProvider provider = null;
+    String lyrics = null;
+    LyricsCache.Entry cached = LyricsCache.get(artist, title);
+    if (cached != null) {
+      if (cached.getLyrics() == null) {
+        Log.debug("Lyrics known as missing for file {{" + audioFile + "}}");
+        return null;
+      }
+      for (GenericWebLyricsProvider webProvider : webProviders) {
+        if (webProvider.getClass().getName().equals(cached.getProvider())) {
+          provider = webProvider;
+          lyrics = cached.getLyrics();
+        }
+      }
+    }
+    // Not cached or cached from a provider no more used
+    if (provider == null) {
+      WebLookup lookup;
+      if (Conf.getBoolean(Const.CONF_LYRICS_PARALLEL)) {
+        lookup = lookupInParallel(webProviders, artist, title);
+      } else {
+        lookup = lookupInOrder(webProviders, artist, title);
+      }
+      provider = lookup.provider;
+      lyrics = lookup.lyrics;
+      // Do not record a miss if a provider couldn't be reached
+      if (lyrics != null || !lookup.failed) {
+        LyricsCache.put(artist, title, lyrics == null ? null : provider.getClass().getName(),
+            lyrics);
+      }
+    }
+    if (lyrics != null) {
       provider.setAudioFile(audioFile);
-      lyrics = provider.getLyrics();
       current = provider;
+    }
+    return lyrics;
+  }
+
+  /**
+   * Query web providers one after the other until one finds lyrics.
+   * 
+   * @param webProviders the web providers
+   * @param artist the artist
+   * @param title the title
+   * 
+   * @return the lookup result
+   */
+  private static WebLookup lookupInOrder(List<GenericWebLyricsProvider> webProviders,
+      String artist, String title) {
+    WebLookup lookup = new WebLookup();
+    GenericWebLyricsProvider.checkCallFailure();
+    for (GenericWebLyricsProvider provider : webProviders) {
+      String lyrics = provider.getLyrics(artist, title);
+      lookup.failed |= GenericWebLyricsProvider.checkCallFailure();
       if (lyrics != null) {
+        lookup.provider = provider;
+        lookup.lyrics = lyrics;
         break;
       }
     }
-    // None provider found lyrics so reset current
-    if (lyrics == null) {
-      current = null;
+    return lookup;
+  }
+
+  /**
+   * Query all web providers at the same time, the first found lyrics win and other queries
+   * are cancelled.
+   * 
+   * @param webProviders the web providers
+   * @param artist the artist
+   * @param title the title
+   * 
+   * @return the lookup result
+   */
+  private static WebLookup lookupInParallel(List<GenericWebLyricsProvider> webProviders,
+      final String artist, final String title) {
+    WebLookup lookup = new WebLookup();
+    CompletionService<WebLookup> completion = new ExecutorCompletionService<WebLookup>(
+        getExecutor());
+    List<Future<WebLookup>> futures = new ArrayList<Future<WebLookup>>(webProviders.size());
+    for (final GenericWebLyricsProvider provider : webProviders) {
+      futures.add(completion.submit(new Callable<WebLookup>() {
+        @Override
+        public WebLookup call() {
+          WebLookup result = new WebLookup();
+          GenericWebLyricsProvider.checkCallFailure();
+          result.provider = provider;
+          result.lyrics = provider.getLyrics(artist, title);
+          result.failed = GenericWebLyricsProvider.checkCallFailure();
+          return result;
+        }
+      }));
     }
-    return lyrics;
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        WebLookup result = completion.take().get();
+        lookup.failed |= result.failed;
+        if (result.lyrics != null) {
+          lookup.provider = result.provider;
+          lookup.lyrics = result.lyrics;
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      lookup.failed = true;
+    } catch (ExecutionException e) {
+      Log.error(e);
+      lookup.failed = true;
+    } finally {
+      // Pending queries results are useless now
+      for (Future<WebLookup> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return lookup;
+  }
+
+  /**
+   * Gets the web providers threads pool, created at first use. Threads are created as needed
+   * and dropped after a minute of inactivity.
+   * 
+   * @return the executor
+   */
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Lyrics Provider " + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * Result of a web lookup.
+   */
+  private static final class WebLookup {
+    /** Provider that found the lyrics. */
+    private GenericWebLyricsProvider provider;
+    /** Found lyrics, null if none. */
+    private String lyrics;
+    /** Did a provider fail to answer ?. */
+    private boolean failed;
   }
 
   /**
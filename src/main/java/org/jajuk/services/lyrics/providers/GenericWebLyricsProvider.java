@@ -22,6 +22,7 @@ package org.jajuk.services.lyrics.providers;
 
 import ext.services.network.NetworkUtils;
 
+import java.io.FileNotFoundException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -40,6 +41,16 @@ import org.jajuk.util.log.Log;
  * specific providers.
  */
 public abstract class GenericWebLyricsProvider implements ILyricsProvider {
+  /**
+   * Did a provider call of the current thread fail for a technical reason (network, timeout...)
+   * rather than because the page doesn't exist ?
+   */
+  private static final ThreadLocal<Boolean> CALL_FAILED = new ThreadLocal<Boolean>() {
+    @Override
+    protected Boolean initialValue() {
+      return Boolean.FALSE;
+    }
+  };
   private String source = null;
   private String queryUrlTemplate = null;
   /** audio file we search lyrics for. */
@@ -68,13 +79,29 @@ public abstract class GenericWebLyricsProvider implements ILyricsProvider {
     try {
       URL url = getActualURL(artist, title);
       text = DownloadManager.getTextFromCachedFile(url, getResponseEncoding());
+    } catch (final FileNotFoundException e) {
+      // HTTP 404 : no lyrics page for this track
+      Log.debug("No lyrics at {{" + getProviderHostname() + "}}");
     } catch (final Exception e) {
+      CALL_FAILED.set(Boolean.TRUE);
       Log.warn("Could not retrieve URL {{" + getProviderHostname() + "}}", "{{" + e.getMessage()
           + "}}");
     }
     return text;
   }
 
+  /**
+   * Return whether a provider call of the current thread failed for a technical reason since
+   * last check, so that a missing result can't be trusted. The state is reset.
+   * 
+   * @return true if a call failed
+   */
+  public static boolean checkCallFailure() {
+    boolean failed = CALL_FAILED.get();
+    CALL_FAILED.set(Boolean.FALSE);
+    return failed;
+  }
+
   /**
    * Return query URL template like http://..?artist=%artist&songname=%title
    * 
@@ -70,34 +70,45 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
     this.bStop = true;
     Log.debug("Stop");
     if (proc != null) {
-      if (UtilSystem.isUnderLinux()) {
-        /*
-         * Under linux (not sure if it may happen on others Unix and never
-         * reproduced under Windows), mplayer process can "zombified" after
-         * destroy() method call for unknown reason (linked with the mplayer
-         * slave mode ?). Even worse, these processes block the dsp audio line
-         * and then all new mplayer processes fail. To avoid this, we force a
-         * kill on every process call under Linux.
-         *
-         * Note also that mplayer slave mode opens two processes with different
-         * pids. When we try to kill them with -9 (abruptly) only the parent
-         * process dies and the second process is left hanging in the
-         * background. The solution is to just use kill (without -9) to let both
-         * mplayer processes die gracefully. I guess the destroy() method
-         * internally also tries to use -9 and so both pids are never killed.
-         */
-        Field field = proc.getClass().getDeclaredField("pid");
-        field.setAccessible(true);
-        int pid = field.getInt(proc);
-        try {
-          ProcessBuilder pb = new ProcessBuilder("kill", Integer.toString(pid));
-          pb.start();
-        } catch (Error error) {
-          Log.error(error);
-        }
-      } else {
-        proc.destroy();
+      kill(proc);
+    }
+  }
+
+  /**
+   * Kill a mplayer process.
+   * 
+   * @param proc the mplayer process
+   * 
+   * @throws Exception the exception
+   */
+  static void kill(Process proc) throws Exception {
+    if (UtilSystem.isUnderLinux()) {
+      /*
+       * Under linux (not sure if it may happen on others Unix and never
+       * reproduced under Windows), mplayer process can "zombified" after
+       * destroy() method call for unknown reason (linked with the mplayer
+       * slave mode ?). Even worse, these processes block the dsp audio line
+       * and then all new mplayer processes fail. To avoid this, we force a
+       * kill on every process call under Linux.
+       *
+       * Note also that mplayer slave mode opens two processes with different
+       * pids. When we try to kill them with -9 (abruptly) only the parent
+       * process dies and the second process is left hanging in the
+       * background. The solution is to just use kill (without -9) to let both
+       * mplayer processes die gracefully. I guess the destroy() method
+       * internally also tries to use -9 and so both pids are never killed.
+       */
+      Field field = proc.getClass().getDeclaredField("pid");
+      field.setAccessible(true);
+      int pid = field.getInt(proc);
+      try {
+        ProcessBuilder pb = new ProcessBuilder("kill", Integer.toString(pid));
+        pb.start();
+      } catch (Error error) {
+        Log.error(error);
       }
+    } else {
+      proc.destroy();
     }
   }
 
@@ -159,6 +170,31 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
    * @return command line as a String array
    */
   List<String> buildCommand(String url, int startPositionSec) {
+    List<String> cmd = buildOptions(fVolume);
+    // Start at given position
+    cmd.add(1, "-ss");
+    cmd.add(2, Integer.toString(startPositionSec));
+    // If it is a playlist, add the -playlist option, must be the last option
+    // because options after -playlist are ignored (see mplayer man page).
+    // Moreover, we only use this option if we are about to play line-based stream like m3u or the playback will fail.
+    if (url.matches(".*://.*")
+        && (url.toLowerCase().endsWith(".m3u") || url.toLowerCase().endsWith(".asx") || url
+            .toLowerCase().endsWith(".pls"))) {
+      cmd.add("-playlist");
+    }
+    cmd.add(url);
+    return cmd;
+  }
+
+  /**
+   * Build the mplayer command line without the url to play, used as is by the
+   * processes that play several files.
+   * 
+   * @param volume the volume used to compute the gain of the volume audio filter
+   * 
+   * @return command line as a String array
+   */
+  List<String> buildOptions(float volume) {
     String sCommand = "mplayer";
     // Use any forced mplayer path
     String forced = Conf.getString(Const.CONF_MPLAYER_PATH_FORCED);
@@ -175,9 +211,6 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
     // Build command
     List<String> cmd = new ArrayList<String>(10);
     cmd.add(sCommand);
-    // Start at given position
-    cmd.add("-ss");
-    cmd.add(Integer.toString(startPositionSec));
     // quiet: less traces
     cmd.add("-quiet");
     // slave: slave mode (control with stdin)
@@ -187,7 +220,7 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
       // -af volume: Use volnorm to limit gain to max
       // If mute, use -200db otherwise, use a linear scale
       cmd.add("-af");
-      cmd.add(buildAudioFilters());
+      cmd.add(buildAudioFilters(volume));
       // -softvol : use soft mixer, allows to set volume only to this mplayer
       // instance, not others programs
       cmd.add("-softvol");
@@ -209,24 +242,17 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
         cmd.add(element);
       }
     }
-    // If it is a playlist, add the -playlist option, must be the last option
-    // because options after -playlist are ignored (see mplayer man page).
-    // Moreover, we only use this option if we are about to play line-based stream like m3u or the playback will fail.
-    if (url.matches(".*://.*")
-        && (url.toLowerCase().endsWith(".m3u") || url.toLowerCase().endsWith(".asx") || url
-            .toLowerCase().endsWith(".pls"))) {
-      cmd.add("-playlist");
-    }
-    cmd.add(url);
     return cmd;
   }
 
   /**
    * Build the -af audio filters command part.
    * 
+   * @param volume the volume
+   * 
    * @return the string
    */
-  private String buildAudioFilters() {
+  private String buildAudioFilters(float volume) {
     // Audio filters syntax : -af
     // <filter1[=parameter1:parameter2:...],filter2,...>
     // Add -volnorm (audio normalization) if option is set
@@ -235,12 +261,12 @@ public abstract class AbstractMPlayerImpl implements IPlayerImpl, Const {
       audiofilters.append("volnorm,");
     }
     // gain = -200 = mute
-    int volume = -200;
-    if (fVolume != 0) {
-      // Gain = 10 * log(fVolume)
-      volume = (int) (10 * Math.log(fVolume));
+    int gain = -200;
+    if (volume != 0) {
+      // Gain = 10 * log(volume)
+      gain = (int) (10 * Math.log(volume));
     }
-    audiofilters.append("volume=" + volume);
+    audiofilters.append("volume=" + gain);
     // Add karaoke state if required
     if (Conf.getBoolean(CONF_STATE_KARAOKE)) {
       audiofilters.append(",karaoke");
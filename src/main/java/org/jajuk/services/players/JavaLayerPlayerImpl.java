@@ -21,6 +21,7 @@
 package org.jajuk.services.players;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 
@@ -33,9 +34,7 @@ import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
 import org.jajuk.base.Type;
 import org.jajuk.base.TypeManager;
-import org.jajuk.events.JajukEvent;
-import org.jajuk.events.JajukEvents;
-import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.services.webradio.WebRadio;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
@@ -142,7 +141,7 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
     // Update track rate
     fCurrent.getTrack().updateRate();
     // Force immediate rating refresh (without using the rating manager)
-    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+    RatingService.notifyRateChanged(Collections.singletonList(fCurrent.getTrack()));
   }
 
   /*
@@ -368,7 +367,7 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
               // Update track rate
               fCurrent.getTrack().updateRate();
               // Force immediate rating refresh (without using the rating manager)
-              ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+              RatingService.notifyRateChanged(Collections.singletonList(fCurrent.getTrack()));
             }
           }.start();
         }
@@ -383,7 +382,7 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
             QueueModel.finished();
             fCurrent.getTrack().updateRate();
             // Force immediate rating refresh (without using the rating manager)
-            ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+            RatingService.notifyRateChanged(Collections.singletonList(fCurrent.getTrack()));
           }
         }.start();
       }
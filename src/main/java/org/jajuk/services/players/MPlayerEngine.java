@@ -0,0 +1,438 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Shared I/O loop of the mplayer processes.
+ * <p>
+ * A single thread reads the answers of all the running mplayer processes and dispatches them
+ * line by line to the listener of each process, it also ticks the listeners every
+ * <code>PROGRESS_STEP</code> ms so they can query the position. Process pipes cannot be
+ * registered to a selector so the loop polls the available bytes of each process and sleeps a
+ * little when no process wrote anything. The thread stops when no process is left.
+ * </p>
+ * <p>
+ * Processes started in idle mode can play several files : once released by their player, they
+ * are kept idle and handed to the next player asking for a process with the same command line,
+ * which then only has to send a <code>loadfile</code> command. At most one idle process is kept
+ * and it is killed after <code>IDLE_TIMEOUT</code> ms. The output of a reused process is dropped
+ * until the line announcing the new file ("Playing &lt;file&gt;."), so that late answers to the
+ * previous player never reach the new one.
+ * </p>
+ */
+public final class MPlayerEngine {
+  /** Progress step in ms, do not set less than 300 or 400 to avoid using too much CPU. */
+  static final int PROGRESS_STEP = 500;
+  /** Sleep time when no process wrote anything, in ms. */
+  private static final int POLL_DELAY = 10;
+  /** Idle processes are killed after this delay, in ms. */
+  private static final int IDLE_TIMEOUT = 60000;
+  /** Self instance. */
+  private static MPlayerEngine self = new MPlayerEngine();
+  /** Running processes. */
+  private final List<Slave> slaves = new ArrayList<Slave>(2);
+  /** Idle process ready to play another file, null if none. */
+  private Slave idle;
+  /** I/O loop thread, null if not running. */
+  private Thread loop;
+  /** Read buffer, only used by the I/O loop. */
+  private final byte[] buffer = new byte[4096];
+
+  /**
+   * Receiver of the output of a mplayer process. Methods are called from the I/O loop thread.
+   */
+  interface Listener {
+    /**
+     * A line has been written by the process.
+     *
+     * @param line the line, without end of line characters
+     */
+    void lineRead(String line);
+
+    /**
+     * Called every <code>PROGRESS_STEP</code> ms, first call is done as soon as the listener is
+     * attached.
+     */
+    void tick();
+
+    /**
+     * The process exited, all its output has been read.
+     */
+    void exited();
+  }
+
+  /**
+   * A mplayer process.
+   */
+  static final class Slave {
+    /** The process. */
+    private final Process proc;
+    /** Command line and environment, null if the process plays a single file. */
+    private final String key;
+    /** Process output. */
+    private final InputStream in;
+    /** Process input. */
+    private final PrintStream out;
+    /** Current line bytes. */
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    /** Current listener, null if idle. */
+    private volatile Listener listener;
+    /** Output is dropped until a line containing this text, null if none. */
+    private String handover;
+    /** Date of last tick. */
+    private long lastTick;
+    /** Date of release, used for idle processes only. */
+    private long releaseDate;
+
+    /**
+     * Instantiates a new slave.
+     *
+     * @param proc the process
+     * @param key command line and environment, null if the process plays a single file
+     */
+    private Slave(Process proc, String key) {
+      this.proc = proc;
+      this.key = key;
+      this.in = proc.getInputStream();
+      this.out = new PrintStream(proc.getOutputStream());
+    }
+
+    /**
+     * Gets the process.
+     *
+     * @return the process
+     */
+    Process getProcess() {
+      return proc;
+    }
+
+    /**
+     * Checks if the process is running.
+     *
+     * @return true if the process is running
+     */
+    boolean isRunning() {
+      return UtilSystem.isRunning(proc);
+    }
+
+    /**
+     * Send a command to the process.
+     *
+     * @param command the command
+     */
+    void sendCommand(String command) {
+      synchronized (out) {
+        // Do not use println() : it doesn't work under windows
+        out.print(command + '\n');
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * Private constructor for singleton.
+   */
+  private MPlayerEngine() {
+    super();
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static MPlayerEngine getInstance() {
+    return self;
+  }
+
+  /**
+   * Start a mplayer process.
+   *
+   * @param command the command line
+   * @param env additional environment variables
+   * @param key command line and environment if the process is started in idle mode and can be
+   * reused, null otherwise
+   * @param listener the listener
+   *
+   * @return the slave
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  Slave start(List<String> command, Map<String, String> env, String key, Listener listener)
+      throws IOException {
+    ProcessBuilder pb = new ProcessBuilder(command);
+    Log.debug("Using this Mplayer command: {{" + pb.command() + "}}");
+    pb.environment().putAll(env);
+    // Read errors as well, an idle process would block once its error pipe is full
+    pb.redirectErrorStream(true);
+    Slave slave = new Slave(pb.start(), key);
+    slave.listener = listener;
+    synchronized (this) {
+      slaves.add(slave);
+      if (loop == null) {
+        loop = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            loop();
+          }
+        }, "MPlayer I/O loop");
+        loop.setDaemon(true);
+        loop.start();
+      }
+    }
+    return slave;
+  }
+
+  /**
+   * Take the idle process if it has been started with the given command line and environment.
+   * The listener only gets the output written from the line announcing the given file, the
+   * caller has to load it.
+   *
+   * @param key the command line and environment
+   * @param listener the listener to attach
+   * @param path the path of the file the process will load
+   *
+   * @return the idle process or null if none matches
+   */
+  Slave reuse(String key, Listener listener, String path) {
+    Slave slave;
+    synchronized (this) {
+      slave = idle;
+      if (slave == null || !slave.key.equals(key) || !slave.isRunning()) {
+        return null;
+      }
+      idle = null;
+    }
+    synchronized (slave) {
+      slave.lastTick = 0;
+      slave.handover = "Playing " + path;
+      slave.listener = listener;
+    }
+    return slave;
+  }
+
+  /**
+   * Release a process, it is kept idle if it can play another file, killed otherwise.
+   *
+   * @param slave the slave
+   */
+  void release(Slave slave) {
+    synchronized (slave) {
+      slave.listener = null;
+    }
+    if (slave.key == null || !slave.isRunning()) {
+      kill(slave);
+      return;
+    }
+    slave.sendCommand("stop");
+    Slave previous;
+    synchronized (this) {
+      slave.releaseDate = System.currentTimeMillis();
+      previous = idle;
+      idle = slave;
+    }
+    if (previous != null) {
+      kill(previous);
+    }
+  }
+
+  /**
+   * Kill a process.
+   *
+   * @param slave the slave
+   */
+  void kill(Slave slave) {
+    synchronized (slave) {
+      slave.listener = null;
+    }
+    synchronized (this) {
+      if (idle == slave) {
+        idle = null;
+      }
+    }
+    if (slave.isRunning()) {
+      try {
+        AbstractMPlayerImpl.kill(slave.proc);
+      } catch (Exception e) {
+        Log.error(e);
+        slave.proc.destroy();
+      }
+    }
+  }
+
+  /**
+   * Kill all the processes, called on exit.
+   */
+  public void shutdown() {
+    List<Slave> all;
+    synchronized (this) {
+      all = new ArrayList<Slave>(slaves);
+    }
+    for (Slave slave : all) {
+      kill(slave);
+    }
+  }
+
+  /**
+   * I/O loop.
+   */
+  private void loop() {
+    while (true) {
+      Slave[] current;
+      synchronized (this) {
+        if (slaves.isEmpty()) {
+          loop = null;
+          return;
+        }
+        current = slaves.toArray(new Slave[slaves.size()]);
+      }
+      boolean read = false;
+      for (Slave slave : current) {
+        try {
+          read |= poll(slave);
+        } catch (Exception e) {
+          // A faulty listener must not stop the other players
+          Log.error(e);
+        }
+      }
+      if (!read) {
+        try {
+          Thread.sleep(POLL_DELAY);
+        } catch (InterruptedException e) {
+          Log.error(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Read the available output of a process, dispatch it and tick its listener if required.
+   *
+   * @param slave the slave
+   *
+   * @return true if some bytes have been read
+   */
+  private boolean poll(Slave slave) {
+    // Check the process state before reading so that all its output is read once it exited
+    boolean running = slave.isRunning();
+    boolean read = false;
+    try {
+      int available;
+      while ((available = slave.in.available()) > 0) {
+        int count = slave.in.read(buffer, 0, Math.min(available, buffer.length));
+        if (count <= 0) {
+          break;
+        }
+        read = true;
+        dispatch(slave, count);
+      }
+    } catch (IOException e) {
+      // Thrown when the process has been killed
+      Log.debug("Stream closed");
+      running = false;
+    }
+    long now = System.currentTimeMillis();
+    if (!running) {
+      synchronized (this) {
+        slaves.remove(slave);
+        if (idle == slave) {
+          idle = null;
+        }
+      }
+      synchronized (slave) {
+        if (slave.line.size() > 0) {
+          fireLine(slave);
+        }
+        if (slave.listener != null) {
+          slave.listener.exited();
+        }
+      }
+    } else if (slave.key != null && slave.listener == null && slave.releaseDate > 0
+        && now - slave.releaseDate > IDLE_TIMEOUT) {
+      Log.debug("Kill idle mplayer process");
+      kill(slave);
+    } else {
+      synchronized (slave) {
+        if (slave.listener != null && now - slave.lastTick >= PROGRESS_STEP) {
+          slave.lastTick = now;
+          slave.listener.tick();
+        }
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Split read bytes into lines and dispatch them.
+   *
+   * @param slave the slave
+   * @param count number of bytes read in the buffer
+   */
+  private void dispatch(Slave slave, int count) {
+    synchronized (slave) {
+      for (int i = 0; i < count; i++) {
+        byte b = buffer[i];
+        if (b == '\n' || b == '\r') {
+          if (slave.line.size() > 0) {
+            fireLine(slave);
+          }
+        } else {
+          slave.line.write(b);
+        }
+      }
+    }
+  }
+
+  /**
+   * Send the current line to the listener, if any, and clear it.
+   *
+   * @param slave the slave
+   */
+  private void fireLine(Slave slave) {
+    // Default charset, like the InputStreamReader formerly used to read answers
+    String line = slave.line.toString();
+    slave.line.reset();
+    if (slave.handover != null) {
+      if (!line.startsWith(slave.handover)) {
+        // Output of the previous file
+        return;
+      }
+      slave.handover = null;
+    }
+    Listener listener = slave.listener;
+    if (listener != null) {
+      // Very verbose :
+      //Log.debug("Output from MPlayer: " + line);
+      listener.lineRead(line);
+    }
+  }
+}
@@ -20,17 +20,16 @@
  */
 package org.jajuk.services.players;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.regex.Pattern;
 
 import org.jajuk.base.Track;
-import org.jajuk.events.JajukEvent;
-import org.jajuk.events.JajukEvents;
-import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.services.webradio.WebRadio;
 import org.jajuk.ui.actions.ActionManager;
 import org.jajuk.ui.actions.JajukActions;
@@ -67,8 +66,6 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
   private long pauseCountStamp = -1;
   /** Is the play is in error. */
   private boolean bInError = false;
-  /** Progress step in ms, do not set less than 300 or 400 to avoid using too much CPU. */
-  private static final int PROGRESS_STEP = 500;
   /** Total play time is refreshed every TOTAL_PLAYTIME_UPDATE_INTERVAL times. */
   private static final int TOTAL_PLAYTIME_UPDATE_INTERVAL = 2;
   /** Current file. */
@@ -80,251 +77,242 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
       .compile("Exiting\\x2e\\x2e\\x2e.*\\(End of file\\)");
   /** Language-agnostic end of file pattern */
   private Pattern patternEndOfFileGeneric = Pattern.compile(".*\\x2e\\x2e\\x2e.*\\(.*\\)");
+  /** Current mplayer process, null if none. */
+  private MPlayerEngine.Slave slave;
+  /** Listener of the current mplayer process. */
+  private Session session;
 
   /**
-   * Position and elapsed time getter.
+   * Listener of the mplayer process for the current play, replaced at each play so that late
+   * answers of a previous play are ignored.
    */
-  private class PositionThread extends Thread {
+  private class Session implements MPlayerEngine.Listener {
+    /** Played track. */
+    private final Track current = fCurrent.getTrack();
+    /** Whether the file is played by an idle mode process. */
+    private final boolean idleMode;
+    /** Number of ticks so far. */
+    private int comp = 0;
+    /** Whether this session is over, the process output is then ignored. */
+    private volatile boolean closed = false;
+    // While we don't know the mplayer language, patternEndOfFile matches any language end of file pattern : .*... (.*)
+    private Pattern patternEndOfFile = patternEndOfFileGeneric;
+
     /**
-     * Instantiates a new position thread.
+     * Instantiates a new session.
+     *
+     * @param idleMode whether the file is played by an idle mode process
+     */
+    Session(boolean idleMode) {
+      this.idleMode = idleMode;
+    }
+
+    /*
+     * (non-Javadoc)
      *
-     * @param name 
+     * @see org.jajuk.services.players.MPlayerEngine.Listener#tick()
      */
-    public PositionThread(String name) {
-      super(name);
-      setDaemon(true);
+    @Override
+    public void tick() {
+      if (closed || bStop || bEOF) {
+        return;
+      }
+      if (comp == 0) {
+        lastPlayTimeUpdate = System.currentTimeMillis();
+      }
+      // store elapsed time while the track is paused
+      if (pauseCountStamp > 0) {
+        pauseCount += (System.currentTimeMillis() - pauseCountStamp);
+        pauseCountStamp = -1;
+      }
+      if (bPaused) {
+        pauseCountStamp = System.currentTimeMillis();
+      }
+      if (!bPaused) {
+        // Do not call a get_percent_pos if paused, it resumes the player
+        // (mplayer issue)
+        sendCommand("get_time_pos");
+        // Get track length if required. Do not launch "get_time_length" only 
+        // once because some fast computer makes mplayer start too fast and
+        // the slave mode is not yet opened so this command is not token into account.
+        // See bug #1816 (Track length is zero after a restart)
+        if (lDuration == 0) {
+          sendCommand("get_time_length");
+        }
+        // Every 2 time units, increase actual play time. We wait this
+        // delay for perfs and for precision
+        if (comp > 0 && comp % TOTAL_PLAYTIME_UPDATE_INTERVAL == 0) {
+          // Increase actual play time
+          // End of file: increase actual play time to the track
+          // Perf note : this full action takes less much than 1 ms
+          long trackPlaytime = current.getLongValue(Const.XML_TRACK_TOTAL_PLAYTIME);
+          long newValue = (MPlayerEngine.PROGRESS_STEP * TOTAL_PLAYTIME_UPDATE_INTERVAL / 1000)
+              + trackPlaytime;
+          current.setProperty(Const.XML_TRACK_TOTAL_PLAYTIME, newValue);
+        }
+      }
+      comp++;
     }
 
     /*
      * (non-Javadoc)
      *
-     * @see java.lang.Thread#run()
+     * @see org.jajuk.services.players.MPlayerEngine.Listener#lineRead(java.lang.String)
      */
     @Override
-    public void run() {
-      int comp = 0;
-      lastPlayTimeUpdate = System.currentTimeMillis();
-      Track current = fCurrent.getTrack();
-      while (!bStop && !bEOF) { // stop this thread
+    public void lineRead(String line) {
+      if (closed || bStop) {
+        return;
+      }
+      // Detect mplayer language
+      if (line.indexOf("Starting playback") != -1) {
+        patternEndOfFile = patternEndOfFileEnglish;
+      } else if (line.indexOf("ANS_TIME_POSITION") != -1) {
+        // Stream is actually opened now
+        bOpening = false;
+        StringTokenizer st = new StringTokenizer(line, "=");
+        st.nextToken();
         try {
-          // store elapsed time while the track is paused
-          if (pauseCountStamp > 0) {
-            pauseCount += (System.currentTimeMillis() - pauseCountStamp);
-            pauseCountStamp = -1;
-          }
-          if (bPaused) {
-            pauseCountStamp = System.currentTimeMillis();
+          lTime = (int) (Float.parseFloat(st.nextToken()) * 1000);
+        } catch (NumberFormatException nfe) {
+          Log.error(nfe);
+          lTime = 0l;
+        }
+        pauseCount = 0;
+        pauseCountStamp = -1;
+        // update actually played duration
+        if (lastPlayTimeUpdate > 0 && !bPaused) {
+          actuallyPlayedTimeMillis += (System.currentTimeMillis() - lastPlayTimeUpdate);
+        }
+        lastPlayTimeUpdate = System.currentTimeMillis();
+        // Store current position for use at next startup
+        UtilFeatures.storePersistedPlayingPosition(getCurrentPosition());
+        // Cross-Fade test
+        if (!bFading && iFadeDuration > 0
+        // Length = 0 for some buggy audio headers
+            && lDuration > 0
+            // Does fading time happened ?
+            && lTime > (lDuration - iFadeDuration)
+            // Do not fade if the track is very short
+            && (lDuration > 3 * iFadeDuration)
+            //Do not fade if bit perfect mode
+            && !Conf.getBoolean(CONF_BIT_PERFECT)) {
+          bFading = true;
+          fadingVolume = fVolume;
+          // Call finish (do not close the session to allow cross fading)
+          callFinish();
+        }
+        // If fading, decrease sound progressively
+        if (bFading) {
+          // computes the volume we have to sub to reach zero
+          // at last progress()
+          float fVolumeStep = fadingVolume
+          // we double the refresh period to make sure to
+          // reach 0 at the end of iterations because
+          // we don't as many mplayer response as queries,
+          // tested on 10 & 20 sec of fading
+              * ((float) MPlayerEngine.PROGRESS_STEP / iFadeDuration);
+          float fNewVolume = fVolume - fVolumeStep;
+          // decrease volume by n% of initial volume
+          if (fNewVolume < 0) {
+            fNewVolume = 0;
           }
-          if (!bPaused) {
-            // Do not call a get_percent_pos if paused, it resumes the player
-            // (mplayer issue)
-            sendCommand("get_time_pos");
-            // Get track length if required. Do not launch "get_time_length" only 
-            // once because some fast computer makes mplayer start too fast and
-            // the slave mode is not yet opened so this command is not token into account.
-            // See bug #1816 (Track length is zero after a restart)
-            if (lDuration == 0) {
-              sendCommand("get_time_length");
-            }
-            // Every 2 time units, increase actual play time. We wait this
-            // delay for perfs and for precision
-            if (comp > 0 && comp % TOTAL_PLAYTIME_UPDATE_INTERVAL == 0) {
-              // Increase actual play time
-              // End of file: increase actual play time to the track
-              // Perf note : this full action takes less much than 1 ms
-              long trackPlaytime = current.getLongValue(Const.XML_TRACK_TOTAL_PLAYTIME);
-              long newValue = (PROGRESS_STEP * TOTAL_PLAYTIME_UPDATE_INTERVAL / 1000)
-                  + trackPlaytime;
-              current.setProperty(Const.XML_TRACK_TOTAL_PLAYTIME, newValue);
-            }
+          try {
+            setVolume(fNewVolume);
+          } catch (Exception e) {
+            Log.error(e);
           }
-          comp++;
-          Thread.sleep(PROGRESS_STEP);
-        } catch (Exception e) {
-          Log.error(e);
+        }
+        // Test end of length for intro mode
+        // Length=-1 means there is no max length
+        if (length != TO_THE_END
+        // Duration = 0 in rare case due to header issue
+            && lDuration > 0
+            // Is intro length fully played ?
+            && (lTime - (fPosition * lDuration)) > length) {
+          // No fading in intro mode
+          bFading = false;
+          // Call finish and ignore next answers, the process keeps playing until stopped
+          closed = true;
+          callFinish();
+        }
+      } else if (line.indexOf("ANS_LENGTH") != -1) {
+        /*
+         * To compute the current track length (used by the information panel to display
+         * remaining time and position), we use the tag duration first and the mplayer
+         * duration then if the tag duration looks wrong (example : wrongly tagged file or
+         * format that doesn't support tags like wav). Indeed, mplayer duration is sometimes
+         * wrong for VBR MP3.
+         */
+        StringTokenizer st = new StringTokenizer(line, "=");
+        st.nextToken();
+        long mplayerDuration = 0l;
+        try {
+          mplayerDuration = (long) (Float.parseFloat(st.nextToken()) * 1000);
+        } catch (NumberFormatException nfe) {
+          Log.error(nfe);
+        }
+        long tagDuration = current.getDuration() * 1000;
+        if (tagDuration <= 0) {
+          lDuration = mplayerDuration;
+        } else {
+          lDuration = tagDuration;
         }
       }
+      // End of file, idle mode processes print an "EOF code" (with -msglevel global=6) and
+      // wait for the next file
+      else if ((idleMode && line.startsWith("EOF code:"))
+          || patternEndOfFile.matcher(line).matches()) {
+        endOfFile();
+      } else if (idleMode && bOpening && line.startsWith("Failed to open")) {
+        // An idle mode process doesn't exit when the file cannot be opened
+        endOfFile();
+      }
     }
-  }
 
-  /**
-   * Reader : read information from mplayer like position.
-   */
-  private class ReaderThread extends Thread {
     /**
-     * Instantiates a new reader thread.
-     *
-     * @param name 
+     * Handle the end of the file.
      */
-    public ReaderThread(String name) {
-      super(name);
-      setDaemon(true);
+    private void endOfFile() {
+      bEOF = true;
+      closed = true;
+      // Update track rate if it has been opened
+      if (!bOpening) {
+        current.updateRate();
+        // Force immediate rating refresh (without using the rating manager)
+        RatingService.notifyRateChanged(Collections.singletonList(current));
+      }
+      // Do not launch next track if not opening: it means
+      // that the file is in error (EOF comes
+      // before any play) and the FIFO.finished() is processed by
+      // Player on exception processing
+      if (bOpening) {
+        bOpening = false;
+        bInError = true;
+        return;
+      }
+      // The process is done with this file, make it available for the next track before
+      // launching it
+      if (idleMode) {
+        releaseSlave(this, true);
+      }
+      // If fading, ignore end of file
+      if (!bFading) {
+        callFinish();
+      } else {
+        // If fading, next track has already been launched
+        bFading = false;
+      }
     }
 
     /*
      * (non-Javadoc)
      *
-     * @see java.lang.Thread#run()
+     * @see org.jajuk.services.players.MPlayerEngine.Listener#exited()
      */
     @Override
-    public void run() {
-      try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-        // While we don't know the mplayer language, patternEndOfFile matches any language end of file pattern : .*... (.*)
-        Pattern patternEndOfFile = patternEndOfFileGeneric;
-        try {
-          String line = null;
-          while (!bStop) {
-            try {
-              line = in.readLine();
-              if (line == null) {
-                break;
-              }
-            } catch (IOException ieo) {
-              Log.debug("Stream closed");
-              // Thrown in readLine() when killing the track (in intro mode for
-              // ie)
-              break;
-            }
-            // Very verbose :
-            //Log.debug("Output from MPlayer: " + line);
-            // Detect mplayer language
-            if (line.indexOf("Starting playback") != -1) {
-              patternEndOfFile = patternEndOfFileEnglish;
-            } else if (line.indexOf("ANS_TIME_POSITION") != -1) {
-              // Stream is actually opened now
-              bOpening = false;
-              StringTokenizer st = new StringTokenizer(line, "=");
-              st.nextToken();
-              try {
-                lTime = (int) (Float.parseFloat(st.nextToken()) * 1000);
-              } catch (NumberFormatException nfe) {
-                Log.error(nfe);
-                lTime = 0l;
-              }
-              pauseCount = 0;
-              pauseCountStamp = -1;
-              // update actually played duration
-              if (lastPlayTimeUpdate > 0 && !bPaused) {
-                actuallyPlayedTimeMillis += (System.currentTimeMillis() - lastPlayTimeUpdate);
-              }
-              lastPlayTimeUpdate = System.currentTimeMillis();
-              // Store current position for use at next startup
-              UtilFeatures.storePersistedPlayingPosition(getCurrentPosition());
-              // Cross-Fade test
-              if (!bFading && iFadeDuration > 0
-              // Length = 0 for some buggy audio headers
-                  && lDuration > 0
-                  // Does fading time happened ?
-                  && lTime > (lDuration - iFadeDuration)
-                  // Do not fade if the track is very short
-                  && (lDuration > 3 * iFadeDuration)
-                  //Do not fade if bit perfect mode
-                  && !Conf.getBoolean(CONF_BIT_PERFECT)) {
-                bFading = true;
-                fadingVolume = fVolume;
-                // Call finish (do not leave thread to allow cross fading)
-                callFinish();
-              }
-              // If fading, decrease sound progressively
-              if (bFading) {
-                // computes the volume we have to sub to reach zero
-                // at last progress()
-                float fVolumeStep = fadingVolume
-                // we double the refresh period to make sure to
-                // reach 0 at the end of iterations because
-                // we don't as many mplayer response as queries,
-                // tested on 10 & 20 sec of fading
-                    * ((float) PROGRESS_STEP / iFadeDuration);
-                float fNewVolume = fVolume - fVolumeStep;
-                // decrease volume by n% of initial volume
-                if (fNewVolume < 0) {
-                  fNewVolume = 0;
-                }
-                try {
-                  setVolume(fNewVolume);
-                } catch (Exception e) {
-                  Log.error(e);
-                }
-              }
-              // Test end of length for intro mode
-              // Length=-1 means there is no max length
-              if (length != TO_THE_END
-              // Duration = 0 in rare case due to header issue
-                  && lDuration > 0
-                  // Is intro length fully played ?
-                  && (lTime - (fPosition * lDuration)) > length) {
-                // No fading in intro mode
-                bFading = false;
-                // Call finish and terminate current thread
-                callFinish();
-                return;
-              }
-            } else if (line.indexOf("ANS_LENGTH") != -1) {
-              /*
-               * To compute the current track length (used by the information panel to display
-               * remaining time and position), we use the tag duration first and the mplayer
-               * duration then if the tag duration looks wrong (example : wrongly tagged file or
-               * format that doesn't support tags like wav). Indeed, mplayer duration is sometimes
-               * wrong for VBR MP3.
-               */
-              StringTokenizer st = new StringTokenizer(line, "=");
-              st.nextToken();
-              long mplayerDuration = 0l;
-              try {
-                mplayerDuration = (long) (Float.parseFloat(st.nextToken()) * 1000);
-              } catch (NumberFormatException nfe) {
-                Log.error(nfe);
-              }
-              long tagDuration = fCurrent.getTrack().getDuration() * 1000;
-              if (tagDuration <= 0) {
-                lDuration = mplayerDuration;
-              } else {
-                lDuration = tagDuration;
-              }
-            }
-            // End of file
-            else if (patternEndOfFile.matcher(line).matches()) {
-              bEOF = true;
-              // Update track rate if it has been opened
-              if (!bOpening) {
-                fCurrent.getTrack().updateRate();
-                // Force immediate rating refresh (without using the rating manager)
-                ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
-              }
-              // Launch next track
-              try {
-                // Do not launch next track if not opening: it means
-                // that the file is in error (EOF comes
-                // before any play) and the FIFO.finished() is processed by
-                // Player on exception processing
-                if (bOpening) {
-                  bOpening = false;
-                  bInError = true;
-                  break;
-                }
-                // If fading, ignore end of file
-                if (!bFading) {
-                  // Call finish and terminate current thread
-                  callFinish();
-                  return;
-                } else {
-                  // If fading, next track has already been launched
-                  bFading = false;
-                }
-              } catch (Exception e) {
-                Log.error(e);
-              }
-              break;
-            }
-          }
-        } finally {
-          // can reach this point at the end of file
-          in.close();
-        }
-      } catch (IOException e) {
-        Log.error(e);
-      }
+    public void exited() {
+      closed = true;
     }
   }
 
@@ -335,12 +323,15 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
    */
   @Override
   public void stop() throws Exception {
-    // Call generic stop
-    super.stop();
+    bFading = false;
+    bStop = true;
+    Log.debug("Stop");
+    // A paused process would stay paused, do not reuse it
+    releaseSlave(session, !bPaused);
     // Update track rate
     fCurrent.getTrack().updateRate();
     // Force immediate rating refresh (without using the rating manager)
-    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+    RatingService.notifyRateChanged(Collections.singletonList(fCurrent.getTrack()));
   }
 
   /*
@@ -366,7 +357,8 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
     if (bInError && UtilSystem.isUnderWindows()) {
       bForcedShortnames = true;
       Log.warn("Force shortname filename scheme" + " for : " + file.getAbsolutePath());
-      // Reset any state changed by the previous reader thread
+      // Reset any state changed by the previous session
+      releaseSlave(session, true);
       reset();
       launchMplayer(startPos);
       // Disable forced shortnames because the shortnames converter takes a while (2 secs)
@@ -375,9 +367,9 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
     // Check the file has been property opened
     if (bOpening || bEOF) {
       // try to kill the mplayer process if still alive
-      if (proc != null) {
+      if (slave != null) {
         Log.warn("OOT Mplayer process, try to kill it");
-        proc.destroy();
+        releaseSlave(session, false);
         Log.warn("OK, the process should have been killed now");
       }
       // Notify the problem opening the file
@@ -416,11 +408,9 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
     if (UtilSystem.isUnderWindows() && bForcedShortnames) {
       pathname = UtilSystem.getShortPathNameW(pathname);
     }
-    ProcessBuilder pb = new ProcessBuilder(buildCommand(pathname, startPositionSec));
-    Log.debug("Using this Mplayer command: {{" + pb.command() + "}}");
     // Set all environment variables format: var1=xxx var2=yyy
+    Map<String, String> env = new HashMap<String, String>();
     try {
-      Map<String, String> env = pb.environment();
       StringTokenizer st = new StringTokenizer(Conf.getString(Const.CONF_ENV_VARIABLES), " ");
       while (st.hasMoreTokens()) {
         StringTokenizer st2 = new StringTokenizer(st.nextToken(), "=");
@@ -429,25 +419,94 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
     } catch (Exception e) {
       Log.error(e);
     }
-    // Start mplayer
-    proc = pb.start();
-    // start mplayer replies reader thread
-    new ReaderThread("MPlayer reader thread").start();
-    // start writer to mplayer thread
-    new PositionThread("MPlayer writer thread").start();
+    MPlayerEngine engine = MPlayerEngine.getInstance();
+    MPlayerEngine.Slave newSlave;
+    if (Conf.getBoolean(Const.CONF_MPLAYER_REUSE_PROCESS)) {
+      // The volume filter gain is part of the command line, use a neutral gain and set the
+      // volume with the soft mixer instead so that the process can play tracks at any volume
+      List<String> command = buildOptions(1f);
+      String key = command.toString() + env.toString();
+      Session newSession = new Session(true);
+      newSlave = engine.reuse(key, newSession, pathname);
+      if (newSlave == null) {
+        // idle: keep the process alive after the end of the file
+        command.add(1, "-idle");
+        // global=6 : report end of files as "EOF code: n" lines
+        command.add(2, "-msglevel");
+        command.add(3, "global=6");
+        newSlave = engine.start(command, env, key, newSession);
+      } else {
+        Log.debug("Reuse idle Mplayer process");
+      }
+      attach(newSlave, newSession);
+      // Next commands are queued by mplayer and run once the file is loaded
+      sendCommand("loadfile \"" + pathname.replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+      if (startPositionSec > 0) {
+        sendCommand("seek " + startPositionSec + " 2");
+      }
+      if (!bitPerfect) {
+        setVolume(fVolume);
+      }
+      // Query position as soon as the file is loaded rather than at next tick, the first
+      // tick may have been run before the loadfile command. Length first so that it is known
+      // once the file is opened.
+      sendCommand("get_time_length");
+      sendCommand("get_time_pos");
+    } else {
+      Session newSession = new Session(false);
+      newSlave = engine.start(buildCommand(pathname, startPositionSec), env, null, newSession);
+      attach(newSlave, newSession);
+    }
     // if opening, wait
     long time = System.currentTimeMillis();
     // Try to open the file during several secs
-    while (UtilSystem.isRunning(proc) && !bStop && bOpening && !bEOF
+    while (newSlave.isRunning() && !bStop && bOpening && !bEOF
         && (System.currentTimeMillis() - time) < MPLAYER_START_TIMEOUT) {
       try {
-        Thread.sleep(50);
+        Thread.sleep(10);
       } catch (InterruptedException e) {
         Log.error(e);
       }
     }
   }
 
+  /**
+   * Make a process the current one.
+   *
+   * @param newSlave the process
+   * @param newSession the session listening to the process
+   */
+  private synchronized void attach(MPlayerEngine.Slave newSlave, Session newSession) {
+    slave = newSlave;
+    session = newSession;
+    proc = newSlave.getProcess();
+  }
+
+  /**
+   * Detach the process of a session, if it is still the current one, and hand it back to the
+   * engine.
+   *
+   * @param owner the session owning the process
+   * @param reusable whether the process can play another file, it is killed otherwise
+   */
+  private void releaseSlave(Session owner, boolean reusable) {
+    MPlayerEngine.Slave released;
+    synchronized (this) {
+      if (owner == null || owner != session || slave == null) {
+        return;
+      }
+      owner.closed = true;
+      released = slave;
+      slave = null;
+      proc = null;
+    }
+    if (reusable) {
+      MPlayerEngine.getInstance().release(released);
+    } else {
+      MPlayerEngine.getInstance().kill(released);
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -573,7 +632,7 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
   /**
    * Force finishing (doesn't stop but only make a FIFO request to switch track)
    * <br>
-   * We have to launch the next file from another thread to free the reader
+   * We have to launch the next file from another thread to free the I/O loop
    * thread. Otherwise, finish() calls launches() that call another finishes...
    */
   private void callFinish() {
@@ -86,6 +86,11 @@ public final class QueueModel {
    * methods.
    */
   private static volatile QueueList queue = new QueueList();
+  /**
+   * Files planned tracks are pulled from (global shuffle, novelties...), null if planned tracks
+   * follow the collection in continue mode.
+   */
+  private static volatile Iterator<File> source;
   /** Stop flag*. */
   private static volatile boolean bStop = true;
   /** First played file flag. */
@@ -135,6 +140,7 @@ public final class QueueModel {
    * stopping previous plays.
    */
   public static void clear() {
+    source = null;
     queue.clear();
     index = -1;
     queue.clearPlanned();
@@ -206,6 +212,9 @@ public final class QueueModel {
    */
   public static void push(final List<StackItem> alItems, final boolean bKeepPrevious,
       final boolean bPushNext) {
+    if (!bKeepPrevious && !bPushNext) {
+      source = null;
+    }
     Thread t = new Thread("Queue Push Thread") { // do it in a thread to
       // make
       // UI more reactive
@@ -253,6 +262,9 @@ public final class QueueModel {
    *            exclusive with simple push)
    */
   public static void push(final StackItem item, final boolean bKeepPrevious, final boolean bPushNext) {
+    if (!bKeepPrevious && !bPushNext) {
+      source = null;
+    }
     Thread t = new Thread("Queue Push Thread") {
       // do it in a thread to make UI more reactive
       @Override
@@ -273,6 +285,42 @@ public final class QueueModel {
     t.start();
   }
 
+  /**
+   * Asynchronous push of files pulled on demand from a source, for instance a lazily shuffled
+   * collection. The first file is played and the next ones are pulled as planned tracks, they
+   * are played even if the continue mode is not set.
+   * 
+   * @param files
+   *            the files source, possibly endless
+   */
+  public static void push(final Iterator<File> files) {
+    Thread t = new Thread("Queue Push Thread") {
+      @Override
+      public void run() {
+        try {
+          UtilGUI.waiting();
+          List<StackItem> alItems = new ArrayList<StackItem>(1);
+          synchronized (files) {
+            if (files.hasNext()) {
+              alItems.add(new StackItem(files.next(), Conf.getBoolean(Const.CONF_STATE_REPEAT),
+                  false));
+            }
+          }
+          source = files;
+          pushCommand(alItems, false, false);
+        } catch (Exception e) {
+          Log.error(e);
+        } finally {
+          // refresh queue
+          ObservationManager.notify(new JajukEvent(JajukEvents.QUEUE_NEED_REFRESH));
+          UtilGUI.stopWaiting();
+        }
+      }
+    };
+    t.setPriority(Thread.MAX_PRIORITY);
+    t.start();
+  }
+
   /**
    * Launch a web radio.
    * 
@@ -515,15 +563,15 @@ public final class QueueModel {
       }
       // Nothing more to play ? check if we are in continue mode
       if (queue.size() == 0 || index >= queue.size()) {
-        if (Conf.getBoolean(Const.CONF_STATE_CONTINUE) && itemLast != null) {
+        if ((source != null || Conf.getBoolean(Const.CONF_STATE_CONTINUE)) && itemLast != null) {
           final StackItem item = queue.popNextPlanned();
           final File file;
           // if some tracks are planned (can be 0 if planned size=0)
           if (item != null) {
             file = item.getFile();
           } else {
-            // otherwise, take next track from file manager
-            file = FileManager.getInstance().getNextFile(itemLast.getFile());
+            // otherwise, take next track from the source or from file manager
+            file = getNextFile(itemLast.getFile());
           }
           if (file != null) {
             // push it, it will be played
@@ -738,10 +786,10 @@ public final class QueueModel {
    *            : clear planned tracks stack
    */
   public static void computesPlanned(boolean bClear) {
-    // Check if we are in continue mode and we have some tracks in FIFO, if
-    // not : no planned tracks
-    if (!Conf.getBoolean(Const.CONF_STATE_CONTINUE) || containsRepeat() || queue.size() == 0
-        || Conf.getBoolean(Const.CONF_STATE_SHUFFLE)) {
+    // Check if we are in continue mode or pulling files from a source and we have some tracks
+    // in FIFO, if not : no planned tracks
+    if ((source == null && !Conf.getBoolean(Const.CONF_STATE_CONTINUE)) || containsRepeat()
+        || queue.size() == 0 || Conf.getBoolean(Const.CONF_STATE_SHUFFLE)) {
       queue.clearPlanned();
       return;
     }
@@ -763,7 +811,7 @@ public final class QueueModel {
       try {
         // if fifo contains yet some tracks to play
         if (siLast != null) {
-          item = new StackItem(FileManager.getInstance().getNextFile(siLast.getFile()), false);
+          item = new StackItem(getNextFile(siLast.getFile()), false);
         } else { // nothing in fifo, take first files in
           // collection
           List<File> files = FileManager.getInstance().getFiles();
@@ -781,6 +829,24 @@ public final class QueueModel {
     }
   }
 
+  /**
+   * Gets the file to play after a given one.
+   * 
+   * @param file
+   *            the last queued or planned file
+   * 
+   * @return next file pulled from the source if any or next file in collection, null if none
+   */
+  private static File getNextFile(File file) {
+    Iterator<File> files = source;
+    if (files == null) {
+      return FileManager.getInstance().getNextFile(file);
+    }
+    synchronized (files) {
+      return files.hasNext() ? files.next() : null;
+    }
+  }
+
   /**
    * Contains only repeat.
    * 
@@ -261,8 +261,7 @@ public final class StartupCollectionService {
     new Thread() {
       @Override
       public void run() {
-        UtilSystem.backupFile(SessionService.getConfFileByPath(Const.FILE_COLLECTION),
-            Conf.getInt(Const.CONF_BACKUP_SIZE));
+        Collection.backup();
       }
     }.start();
   }
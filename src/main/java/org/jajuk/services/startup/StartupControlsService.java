@@ -42,6 +42,8 @@ public final class StartupControlsService {
   private static final String[] DIR_CHECKS = {
       // internal pictures cache directory
       Const.FILE_CACHE + '/' + Const.FILE_INTERNAL_CACHE,
+      // web lyrics cache directory
+      Const.FILE_CACHE + '/' + Const.FILE_LYRICS_CACHE,
       // thumbnails directories and sub-directories
       Const.FILE_THUMBS, Const.FILE_THUMBS + "/" + Const.THUMBNAIL_SIZE_50X50,
       Const.FILE_THUMBS + "/" + Const.THUMBNAIL_SIZE_100X100,
@@ -22,9 +22,9 @@ package org.jajuk.services.tags;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jajuk.base.PropertyMetaInformation;
 import org.jajuk.base.TrackManager;
@@ -50,8 +50,11 @@ public class Tag {
   private File fio;
   /** Is this tag corrupted ?. */
   private boolean bCorrupted = false;
-  /** File -> tag cache This is required by the autocommit=false operations. */
-  static private Map<File, Tag> tagsCache = new HashMap<File, Tag>(10);
+  /**
+   * File -> tag cache This is required by the autocommit=false operations. Concurrent as tags are
+   * read by several threads during a parallel refresh.
+   */
+  static private Map<File, Tag> tagsCache = new ConcurrentHashMap<File, Tag>(10);
   private static List<String> supportedTagFields = null;
 
   /**
@@ -698,6 +701,15 @@ public class Tag {
     tagsCache.clear();
   }
 
+  /**
+   * Remove a file tag from the tags cache.
+   * 
+   * @param fio the audio file
+   */
+  public static void removeFromCache(File fio) {
+    tagsCache.remove(fio);
+  }
+
   /**
    * Gets the tag field.
    * 
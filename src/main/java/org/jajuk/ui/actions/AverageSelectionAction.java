@@ -25,9 +25,7 @@ import java.util.List;
 
 import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
-import org.jajuk.events.JajukEvent;
-import org.jajuk.events.JajukEvents;
-import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.util.IconLoader;
 import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
@@ -73,7 +71,7 @@ public class AverageSelectionAction extends SelectionAction {
             track.setPreference(-1l);
           }
           // Request a GUI refresh
-          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+          RatingService.notifyRateChanged(tracks);
         } catch (Exception e) {
           Log.error(e);
         }
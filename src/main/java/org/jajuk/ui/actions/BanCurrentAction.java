@@ -21,12 +21,14 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
+import java.util.Collections;
 
 import org.jajuk.base.File;
 import org.jajuk.base.Track;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
@@ -60,7 +62,7 @@ public class BanCurrentAction extends SelectionAction {
       boolean alreadyBanned = track.getBooleanValue(Const.XML_TRACK_BANNED);
       track.setProperty(Const.XML_TRACK_BANNED, !alreadyBanned);
       // Request a GUI refresh
-      ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+      RatingService.notifyRateChanged(Collections.singletonList(track));
       // Alert GUI so we can switch buttons from ban icon to unban one
       ObservationManager.notify(new JajukEvent(JajukEvents.BANNED));
       // Go to next track if it is banned
@@ -21,12 +21,11 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
+import java.util.Collections;
 
 import org.jajuk.base.File;
 import org.jajuk.base.Track;
-import org.jajuk.events.JajukEvent;
-import org.jajuk.events.JajukEvents;
-import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
@@ -64,9 +63,9 @@ public class ChangeTrackPreferenceAction extends JajukAction {
           if (file != null) {
             Track track = file.getTrack();
             track.setPreference(Conf.getInt(Const.CONF_INC_RATING));
+            // Force immediate rating refresh (without using the rating manager)
+            RatingService.notifyRateChanged(Collections.singletonList(track));
           }
-          // Force immediate rating refresh (without using the rating manager)
-          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
         } catch (Exception e) {
           Log.error(e);
         }
@@ -21,9 +21,7 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
-import java.util.List;
 
-import org.jajuk.base.File;
 import org.jajuk.base.FileManager;
 import org.jajuk.services.dj.Ambience;
 import org.jajuk.services.dj.AmbienceManager;
@@ -68,16 +66,10 @@ public class GlobalRandomAction extends JajukAction {
       @Override
       public void run() {
         Ambience ambience = AmbienceManager.getInstance().getSelectedAmbience();
-        List<File> alToPlay = UtilFeatures.filterByAmbience(FileManager.getInstance()
-            .getGlobalShufflePlaylist(), ambience);
-        // For perfs (mainly playlist editor view refresh), we set a ceil for
-        // tracks number
-        if (alToPlay.size() > Const.NB_TRACKS_ON_ACTION) {
-          alToPlay = alToPlay.subList(0, Const.NB_TRACKS_ON_ACTION);
-        }
-        // Push them
-        QueueModel.push(UtilFeatures.createStackItems(alToPlay,
-            Conf.getBoolean(Const.CONF_STATE_REPEAT), false), false);
+        // Shuffled files are pulled when they are planned, the whole collection is
+        // never shuffled
+        QueueModel.push(FileManager.getInstance().getGlobalShuffleIterator(
+            UtilFeatures.getAmbiencePredicate(ambience)));
       }
     }.start();
   }
@@ -21,15 +21,13 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
-import java.util.List;
+import java.util.Iterator;
 
 import org.jajuk.base.File;
 import org.jajuk.base.FileManager;
 import org.jajuk.services.dj.Ambience;
 import org.jajuk.services.dj.AmbienceManager;
 import org.jajuk.services.players.QueueModel;
-import org.jajuk.util.Conf;
-import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
 import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
@@ -62,12 +60,10 @@ public class NoveltiesAction extends JajukAction {
       public void run() {
         try {
           Ambience ambience = AmbienceManager.getInstance().getSelectedAmbience();
-          List<File> alToPlay = UtilFeatures.filterByAmbience(FileManager.getInstance()
-              .getShuffleNoveltiesPlaylist(), ambience);
-          if (alToPlay != null && alToPlay.size() > 0) {
-            QueueModel.push(
-                UtilFeatures.createStackItems(UtilFeatures.applyPlayOption(alToPlay),
-                    Conf.getBoolean(Const.CONF_STATE_REPEAT), false), false);
+          Iterator<File> files = FileManager.getInstance().getNoveltiesShuffleIterator(
+              UtilFeatures.getAmbiencePredicate(ambience));
+          if (files.hasNext()) {
+            QueueModel.push(files);
           } else { // none novelty found
             Messages.showWarningMessage(Messages.getString("Error.127"));
           }
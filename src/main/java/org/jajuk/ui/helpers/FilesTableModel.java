@@ -20,10 +20,12 @@
  */
 package org.jajuk.ui.helpers;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -31,9 +33,8 @@ import org.jajuk.base.File;
 import org.jajuk.base.FileManager;
 import org.jajuk.base.Item;
 import org.jajuk.base.PropertyMetaInformation;
+import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
-import org.jajuk.base.Type;
-import org.jajuk.ui.widgets.IconLabel;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.Filter;
@@ -42,11 +43,19 @@ import org.jajuk.util.Messages;
 /**
  * Table model used for physical table view.
  */
-public class FilesTableModel extends JajukTableModel {
+public class FilesTableModel extends LazyTableModel {
   /** Generated serialVersionUID. */
   private static final long serialVersionUID = 1L;
   /** Associated view ID. */
   private String viewID;
+  /** Whether rows are synchronized with the tree selection, as of the last populate. */
+  private boolean syncTreeTable = false;
+  /** Filter of the last populate, null before. */
+  private Filter filter;
+  /** Files custom properties when the model has been populated. */
+  private PropertyMetaInformation[] fileProperties = new PropertyMetaInformation[0];
+  /** Tracks custom properties when the model has been populated. */
+  private PropertyMetaInformation[] trackProperties = new PropertyMetaInformation[0];
 
   /**
    * Model constructor.
@@ -121,258 +130,221 @@ public class FilesTableModel extends JajukTableModel {
   /*
    * (non-Javadoc)
    *
-   * @see org.jajuk.ui.helpers.JajukTableModel#populateModel(java.lang.String, java.lang.String,
-   * java.util.List)
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeRows(java.lang.String, java.lang.String)
    */
   @Override
-  public void populateModel(String sPropertyName, String sPattern, List<String> columnsToShow) {
+  protected Item[] computeRows(String sPropertyName, String sPattern) {
     // This should be monitor file manager to avoid NPE when changing items
     List<File> alToShow = FileManager.getInstance().getFiles();
     // Filter mounted files if needed and apply sync table with tree
     // option if needed
-    final boolean syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
-    oItems = new Item[iRowNum];
+    syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
     CollectionUtils.filter(alToShow, new Predicate() {
       @Override
       public boolean evaluate(Object o) {
-        File file = (File) o;
-        // show it if no sync option or if item is in the selection
-        boolean bShowWithTree = !syncTreeTable
-        // tree selection = null means none selection have been
-        // done in tree so far
-            || treeSelection == null
-            // check if the tree selection contains the current file
-            || (treeSelection.size() > 0 && treeSelection.contains(file));
-        return (!file.shouldBeHidden() && bShowWithTree);
+        return isShown((File) o);
       }
     });
     // Filter files
-    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
     alToShow = Filter.filterItems(alToShow, filter, File.class);
-    Iterator<File> it = alToShow.iterator();
-    int iColNum = iNumberStandardCols + FileManager.getInstance().getCustomProperties().size()
-        + TrackManager.getInstance().getCustomProperties().size();
-    iRowNum = alToShow.size();
-    it = alToShow.iterator();
-    oValues = new Object[iRowNum][iColNum];
-    oItems = new Item[iRowNum];
-    bCellEditable = new boolean[iRowNum][iColNum];
-    // For perfs, prepare columns visibility
-    boolean bTrackName = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK));
-    boolean bAlbum = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM));
-    boolean bArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ARTIST));
-    boolean bAlbumArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM_ARTIST));
-    boolean bGenre = (columnsToShow != null && columnsToShow.contains(Const.XML_GENRE));
-    boolean bRate = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_RATE));
-    boolean bLength = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_LENGTH));
-    boolean bDevice = (columnsToShow != null && columnsToShow.contains(Const.XML_DEVICE));
-    boolean bFileName = (columnsToShow != null && columnsToShow.contains(Const.XML_NAME));
-    boolean bComment = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_COMMENT));
-    boolean bQuality = (columnsToShow != null && columnsToShow.contains(Const.XML_QUALITY));
-    boolean bSize = (columnsToShow != null && columnsToShow.contains(Const.XML_SIZE));
-    boolean bDiscovery = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISCOVERY_DATE));
-    boolean bOrder = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_ORDER));
-    boolean bDiscNumber = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISC_NUMBER));
-    boolean bYear = (columnsToShow != null && columnsToShow.contains(Const.XML_YEAR));
-    boolean bDirectory = (columnsToShow != null && columnsToShow.contains(Const.XML_DIRECTORY));
-    boolean bFileDate = (columnsToShow != null && columnsToShow.contains(Const.XML_FILE_DATE));
-    boolean bHits = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_HITS));
-    for (int iRow = 0; it.hasNext(); iRow++) {
-      File file = it.next();
-      setItemAt(iRow, file);
-      // Id
-      oItems[iRow] = file;
-      // Play
-      IconLabel il = null;
-      if (file.isReady()) {
-        il = getIcon(false);
-      } else {
-        il = getIcon(true);
-      }
-      oValues[iRow][0] = il;
-      bCellEditable[iRow][0] = false;
-      // check track has an associated tag editor (not null)
-      boolean bHasATagEditor = false;
-      Type type = file.getType();
-      if (type != null) {
-        bHasATagEditor = (type.getTaggerClass() != null);
-      }
-      // Track name
-      if (bTrackName) {
-        oValues[iRow][1] = file.getTrack().getName();
-      } else {
-        oValues[iRow][1] = "";
-      }
-      bCellEditable[iRow][1] = bHasATagEditor;
-      // Album
-      if (bAlbum) {
-        oValues[iRow][2] = file.getTrack().getAlbum().getName2();
-      } else {
-        oValues[iRow][2] = "";
-      }
-      bCellEditable[iRow][2] = bHasATagEditor;
-      // Artist
-      if (bArtist) {
-        oValues[iRow][3] = file.getTrack().getArtist().getName2();
-      } else {
-        oValues[iRow][3] = "";
-      }
-      bCellEditable[iRow][3] = bHasATagEditor;
-      // AlbumArtist
-      if (bAlbumArtist) {
-        oValues[iRow][4] = file.getTrack().getAlbumArtist().getName2();
-      } else {
-        oValues[iRow][4] = "";
-      }
-      bCellEditable[iRow][4] = bHasATagEditor;
-      // Genre
-      if (bGenre) {
-        oValues[iRow][5] = file.getTrack().getGenre().getName2();
-      } else {
-        oValues[iRow][5] = "";
-      }
-      bCellEditable[iRow][5] = bHasATagEditor;
-      // Rate
-      if (bRate) {
-        oValues[iRow][6] = StarsHelper.getStarIconLabel(file.getTrack());
-      } else {
-        oValues[iRow][6] = "";
-      }
-      bCellEditable[iRow][6] = false;
-      // Length
-      if (bLength) {
-        oValues[iRow][7] = new Duration(file.getTrack().getDuration());
-      } else {
-        oValues[iRow][7] = "";
-      }
-      bCellEditable[iRow][7] = false;
-      // Device
-      if (bDevice) {
-        oValues[iRow][8] = file.getDirectory().getDevice().getName();
-      } else {
-        oValues[iRow][8] = "";
+    fileProperties = FileManager.getInstance().getCustomProperties()
+        .toArray(new PropertyMetaInformation[0]);
+    trackProperties = TrackManager.getInstance().getCustomProperties()
+        .toArray(new PropertyMetaInformation[0]);
+    return alToShow.toArray(new Item[alToShow.size()]);
+  }
+
+  /**
+   * Checks if a file is shown regardless of the filter.
+   *
+   * @param file the file
+   *
+   * @return true if the file is not hidden and matches the tree selection if needed
+   */
+  private boolean isShown(File file) {
+    // show it if no sync option or if item is in the selection
+    boolean bShowWithTree = !syncTreeTable
+    // tree selection = null means none selection have been
+    // done in tree so far
+        || treeSelection == null
+        // check if the tree selection contains the current file
+        || (treeSelection.size() > 0 && treeSelection.contains(file));
+    return (!file.shouldBeHidden() && bShowWithTree);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#collectRowItems(org.jajuk.base.Item, java.util.Set)
+   */
+  @Override
+  protected void collectRowItems(Item changed, Set<Item> rowItems) {
+    if (changed instanceof File) {
+      rowItems.add(changed);
+    } else if (changed instanceof Track) {
+      rowItems.addAll(((Track) changed).getFiles());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#accept(org.jajuk.base.Item)
+   */
+  @Override
+  protected boolean accept(Item item) {
+    File file = (File) item;
+    if (FileManager.getInstance().getFileByID(file.getID()) != file || !isShown(file)) {
+      return false;
+    }
+    List<File> list = new ArrayList<File>(1);
+    list.add(file);
+    return !Filter.filterItems(list, filter, File.class).isEmpty();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#compareRows(org.jajuk.base.Item,
+   * org.jajuk.base.Item)
+   */
+  @Override
+  protected int compareRows(Item item1, Item item2) {
+    // Files are listed by the file manager in their natural order
+    return ((File) item1).compareTo((File) item2);
+  }
+
+  /**
+   * Gets the meta information of a custom property column.
+   *
+   * @param columnIndex the column index, beyond standard columns
+   *
+   * @return the property meta information or null if unknown
+   */
+  private PropertyMetaInformation getCustomProperty(int columnIndex) {
+    int index = columnIndex - iNumberStandardCols;
+    if (index < fileProperties.length) {
+      return fileProperties[index];
+    }
+    index -= fileProperties.length;
+    if (index < trackProperties.length) {
+      return trackProperties[index];
+    }
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeValueAt(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected Object computeValueAt(Item item, int columnIndex) {
+    File file = (File) item;
+    if (columnIndex >= iNumberStandardCols) {
+      // -- Custom properties now --
+      PropertyMetaInformation meta = getCustomProperty(columnIndex);
+      if (meta == null) {
+        return null;
       }
-      bCellEditable[iRow][8] = false;
-      // File name
-      if (bFileName) {
-        oValues[iRow][9] = file.getName();
-      } else {
-        oValues[iRow][9] = "";
+      // files custom tags first, then tracks custom properties
+      Map<String, Object> properties = file.getProperties();
+      if (columnIndex - iNumberStandardCols >= fileProperties.length) {
+        properties = file.getTrack().getProperties();
       }
-      bCellEditable[iRow][9] = true;
-      // Comment
-      if (bComment) {
-        oValues[iRow][10] = file.getTrack().getValue(Const.XML_TRACK_COMMENT);
+      Object o = properties.get(meta.getName());
+      if (o != null) {
+        return o;
       } else {
-        oValues[iRow][10] = "";
+        return meta.getDefaultValue();
       }
-      bCellEditable[iRow][10] = bHasATagEditor;
-      // Quality
-      if (bQuality) {
-        long lQuality = file.getQuality();
-        oValues[iRow][11] = lQuality;
-      } else {
-        oValues[iRow][11] = 0l;
+    }
+    // Play
+    if (columnIndex == 0) {
+      return getIcon(!file.isReady());
+    }
+    if (!isVisible(columnIndex)) {
+      // Quality and size are numbers
+      if (columnIndex == 11 || columnIndex == 12) {
+        return 0l;
       }
-      bCellEditable[iRow][11] = false;
+      return "";
+    }
+    switch (columnIndex) {
+    case 1:
+      return file.getTrack().getName();
+    case 2:
+      return file.getTrack().getAlbum().getName2();
+    case 3:
+      return file.getTrack().getArtist().getName2();
+    case 4:
+      return file.getTrack().getAlbumArtist().getName2();
+    case 5:
+      return file.getTrack().getGenre().getName2();
+    case 6:
+      return StarsHelper.getStarIconLabel(file.getTrack());
+    case 7:
+      return new Duration(file.getTrack().getDuration());
+    case 8:
+      return file.getDirectory().getDevice().getName();
+    case 9:
+      return file.getName();
+    case 10:
+      return file.getTrack().getValue(Const.XML_TRACK_COMMENT);
+    case 11:
+      return file.getQuality();
+    case 12:
       // Size, we want to keep 2 decimals to the value in MB
-      if (bSize) {
-        oValues[iRow][12] = Math.round(file.getSize() / 10485.76) / 100f;
-      } else {
-        oValues[iRow][12] = 0l;
-      }
-      bCellEditable[iRow][12] = false;
-      // Order
-      if (bOrder) {
-        oValues[iRow][13] = file.getTrack().getOrder();
-      } else {
-        oValues[iRow][13] = "";
-      }
-      bCellEditable[iRow][13] = bHasATagEditor;
-      // Disc number
-      if (bDiscNumber) {
-        oValues[iRow][14] = file.getTrack().getDiscNumber();
-      } else {
-        oValues[iRow][14] = "";
-      }
-      bCellEditable[iRow][14] = bHasATagEditor;
-      // year
-      if (bYear) {
-        oValues[iRow][15] = file.getTrack().getYear().getValue();
-      } else {
-        oValues[iRow][15] = "";
-      }
-      bCellEditable[iRow][15] = bHasATagEditor;
+      return Math.round(file.getSize() / 10485.76) / 100f;
+    case 13:
+      return file.getTrack().getOrder();
+    case 14:
+      return file.getTrack().getDiscNumber();
+    case 15:
+      return file.getTrack().getYear().getValue();
+    case 16:
       // directory full path
-      if (bDirectory) {
-        oValues[iRow][16] = file.getDirectory().getAbsolutePath();
-      } else {
-        oValues[iRow][16] = "";
-      }
-      bCellEditable[iRow][16] = false;
-      // file date
-      if (bFileDate) {
-        oValues[iRow][17] = file.getDateValue(Const.XML_FILE_DATE);
-      } else {
-        oValues[iRow][17] = "";
-      }
-      bCellEditable[iRow][17] = false;
-      // Hits
-      if (bHits) {
-        oValues[iRow][18] = file.getTrack().getHits();
-      } else {
-        oValues[iRow][18] = "";
-      }
-      bCellEditable[iRow][18] = false;
-      // Discovery date
-      if (bDiscovery) {
-        oValues[iRow][19] = file.getTrack().getDiscoveryDate();
-      } else {
-        oValues[iRow][19] = "";
-      }
-      bCellEditable[iRow][19] = false;
-      // -- Custom properties now --
-      Map<String, Object> properties = file.getProperties();
-      // files custom tags
-      Iterator<PropertyMetaInformation> it2 = FileManager.getInstance().getCustomProperties()
-          .iterator();
-      for (int i = 0; it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = o;
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        if (meta.getType().equals(Date.class)) {
-          bCellEditable[iRow][iNumberStandardCols + i] = false;
-        } else {
-          bCellEditable[iRow][iNumberStandardCols + i] = true;
-        }
-      }
-      // tracks custom properties
-      properties = file.getTrack().getProperties();
-      it2 = TrackManager.getInstance().getCustomProperties().iterator();
-      for (int i = FileManager.getInstance().getCustomProperties().size(); it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = properties.get(meta.getName());
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        if (meta.getType().equals(Date.class)) {
-          bCellEditable[iRow][iNumberStandardCols + i] = false;
-        } else {
-          bCellEditable[iRow][iNumberStandardCols + i] = true;
-        }
-      }
+      return file.getDirectory().getAbsolutePath();
+    case 17:
+      return file.getDateValue(Const.XML_FILE_DATE);
+    case 18:
+      return file.getTrack().getHits();
+    case 19:
+      return file.getTrack().getDiscoveryDate();
+    default:
+      return "";
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeCellEditable(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected boolean computeCellEditable(Item item, int columnIndex) {
+    if (columnIndex >= iNumberStandardCols) {
+      PropertyMetaInformation meta = getCustomProperty(columnIndex);
+      // Date values not editable, use properties panel instead to
+      // edit
+      return meta != null && !(meta.getType().equals(Date.class));
+    }
+    switch (columnIndex) {
+    case 9:
+      return true;
+    case 1:
+    case 2:
+    case 3:
+    case 4:
+    case 5:
+    case 10:
+    case 13:
+    case 14:
+    case 15:
+      return hasTagEditor(((File) item).getType());
+    default:
+      return false;
     }
   }
 }
@@ -21,6 +21,7 @@
 package org.jajuk.ui.helpers;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -264,6 +265,18 @@ public abstract class JajukTableModel extends DefaultTableModel {
     populateModel(null, null, columnsToShow);
   }
 
+  /**
+   * Update the rows of changed items without populating the model again. Models not supporting
+   * it leave the rows untouched.
+   *
+   * @param changed the changed items, their type can differ from the rows items type
+   *
+   * @return true if the rows have been updated, false if the model must be populated again
+   */
+  public boolean updateItems(Collection<? extends Item> changed) {
+    return false;
+  }
+
   /**
    * Set this model editable state.
    * 
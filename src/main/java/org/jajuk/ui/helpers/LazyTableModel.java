@@ -0,0 +1,486 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jajuk.base.Item;
+import org.jajuk.base.Type;
+
+/**
+ * Table model computing its cells on demand.
+ * <p>
+ * <code>computeRows()</code> implementations only return the displayed items in rows order. Cells
+ * values and editable flags are computed by the concrete model when
+ * the table requests them, so filtering a large collection doesn't build labels, durations or
+ * paths for rows that are never displayed. Values of the most recently requested rows are cached
+ * by row, a cached row is dropped as soon as its slot is requested for another row or another
+ * item.
+ * </p>
+ * <p>
+ * Cells of hidden columns are not computed, concrete models return a placeholder for them like
+ * the other models do.
+ * </p>
+ * <p>
+ * Changed items can be applied to the rows with <code>updateItems()</code> that fires row level
+ * events for the affected rows only, rows order is kept with a sorted insertion. Populates run
+ * out of the EDT, so the rows array is never changed in place : updates build a new array from a
+ * snapshot and publish it unless a populate is running or replaced the rows meanwhile.
+ * </p>
+ */
+public abstract class LazyTableModel extends JajukTableModel {
+  /** Generated serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+  /** Number of cached rows, must be a power of 2. */
+  private static final int ROW_CACHE_SIZE = 256;
+  /** Max number of rows deleted or inserted by an update, beyond the model is populated again. */
+  private static final int MAX_MOVED_ROWS = 100;
+  /** Marker of a cell not computed yet. */
+  private static final Object NOT_COMPUTED = new Object();
+  /** Visible columns, by column index. */
+  private boolean[] bVisible = new boolean[0];
+  /** Cached rows by row low bits, replaced when the rows change. */
+  private volatile CachedRow[] rowCache = new CachedRow[ROW_CACHE_SIZE];
+  /** Lock guarding the rows publication. */
+  private final Object rowsLock = new Object();
+  /** Rows generation, increased each time the rows are set. */
+  private int generation = 0;
+  /** Number of running populates. */
+  private final AtomicInteger populates = new AtomicInteger(0);
+
+  /**
+   * Cells of a row.
+   */
+  private static final class CachedRow {
+    /** Row index. */
+    private final int row;
+    /** Item displayed by the row when the cells have been computed. */
+    private final Item item;
+    /** Cells values, NOT_COMPUTED until requested. */
+    private final Object[] values;
+
+    /**
+     * Instantiates a new cached row.
+     *
+     * @param row the row index
+     * @param item the item
+     * @param columns the number of columns
+     */
+    private CachedRow(int row, Item item, int columns) {
+      this.row = row;
+      this.item = item;
+      this.values = new Object[columns];
+      for (int i = 0; i < columns; i++) {
+        values[i] = NOT_COMPUTED;
+      }
+    }
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param iNumberStandardCols Number of columns of this model (without custom properties)
+   */
+  public LazyTableModel(int iNumberStandardCols) {
+    super(iNumberStandardCols);
+    oItems = new Item[0];
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#populateModel(java.lang.String, java.lang.String,
+   * java.util.List)
+   */
+  @Override
+  public void populateModel(String property, String sPattern, List<String> columnsToShow) {
+    populates.incrementAndGet();
+    try {
+      setRows(computeRows(property, sPattern), columnsToShow);
+    } finally {
+      populates.decrementAndGet();
+    }
+  }
+
+  /**
+   * Compute the displayed items, filtered and sorted.
+   *
+   * @param property the filtered property, null for any
+   * @param sPattern the filter pattern, null for none
+   *
+   * @return the items in rows order
+   */
+  protected abstract Item[] computeRows(String property, String sPattern);
+
+  /**
+   * Set the displayed items.
+   *
+   * @param items the items in rows order
+   * @param columnsToShow List of elements to show in the table
+   */
+  protected void setRows(Item[] items, List<String> columnsToShow) {
+    boolean[] visible = new boolean[idList.size()];
+    for (int i = 0; i < visible.length; i++) {
+      visible[i] = columnsToShow != null && columnsToShow.contains(idList.get(i));
+    }
+    synchronized (rowsLock) {
+      bVisible = visible;
+      oItems = items;
+      iRowNum = items.length;
+      generation++;
+      // Published last so that the table reads the new rows along with the new cache
+      rowCache = new CachedRow[ROW_CACHE_SIZE];
+    }
+  }
+
+  /**
+   * Checks if a column is visible.
+   *
+   * @param columnIndex the column index
+   *
+   * @return true if the column was shown when the model has been populated
+   */
+  protected boolean isVisible(int columnIndex) {
+    boolean[] visible = bVisible;
+    return columnIndex < visible.length && visible[columnIndex];
+  }
+
+  /**
+   * Compute the value of a cell.
+   *
+   * @param item the item displayed by the row
+   * @param columnIndex the column index
+   *
+   * @return the cell value
+   */
+  protected abstract Object computeValueAt(Item item, int columnIndex);
+
+  /**
+   * Compute whether a cell is editable, regardless of the model editable state.
+   *
+   * @param item the item displayed by the row
+   * @param columnIndex the column index
+   *
+   * @return true if the cell is editable
+   */
+  protected abstract boolean computeCellEditable(Item item, int columnIndex);
+
+  /**
+   * Gets the cached row of a row index, computed with the current item of this row.
+   *
+   * @param rowIndex the row index
+   *
+   * @return the cached row or null if the row doesn't exist
+   */
+  private CachedRow getRow(int rowIndex) {
+    // Read the cache before the rows, see setRows()
+    CachedRow[] cache = rowCache;
+    Item[] items = oItems;
+    // We need to test this as UI may request it before table is populated
+    if (rowIndex < 0 || rowIndex >= items.length) {
+      return null;
+    }
+    Item item = items[rowIndex];
+    int slot = rowIndex & (ROW_CACHE_SIZE - 1);
+    CachedRow cached = cache[slot];
+    if (cached == null || cached.row != rowIndex || cached.item != item) {
+      cached = new CachedRow(rowIndex, item, getColumnCount());
+      cache[slot] = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Drop the cached cells of a row.
+   *
+   * @param rowIndex the row index
+   */
+  private void invalidate(int rowIndex) {
+    rowCache[rowIndex & (ROW_CACHE_SIZE - 1)] = null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#getValueAt(int, int)
+   */
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    CachedRow cached = getRow(rowIndex);
+    if (cached == null || columnIndex >= cached.values.length) {
+      return null;
+    }
+    Object value = cached.values[columnIndex];
+    if (value == NOT_COMPUTED) {
+      value = computeValueAt(cached.item, columnIndex);
+      cached.values[columnIndex] = value;
+    }
+    return value;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#setValueAt(java.lang.Object, int, int)
+   */
+  @Override
+  public void setValueAt(Object oValue, int rowIndex, int columnIndex) {
+    CachedRow cached = getRow(rowIndex);
+    if (cached == null) {
+      return;
+    }
+    // The edited value is displayed until the item is changed or the edition undone
+    cached.values[columnIndex] = oValue;
+    fireTableCellUpdated(rowIndex, columnIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#setItemAt(int, org.jajuk.base.Item)
+   */
+  @Override
+  public void setItemAt(int iRow, Item item) {
+    super.setItemAt(iRow, item);
+    invalidate(iRow);
+  }
+
+  /**
+   * Undo last change, the cell is computed again from the unchanged item.
+   *
+   * @param rowIndex
+   * @param columnIndex
+   */
+  @Override
+  public void undo(int rowIndex, int columnIndex) {
+    invalidate(rowIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#isCellEditable(int, int)
+   */
+  @Override
+  public boolean isCellEditable(int rowIndex, int columnIndex) {
+    Item[] items = oItems;
+    return bEditable && rowIndex < items.length
+        && computeCellEditable(items[rowIndex], columnIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#clear()
+   */
+  @Override
+  public void clear() {
+    setRows(new Item[0], null);
+    fireTableDataChanged();
+  }
+
+  /**
+   * Add the rows items whose cells or position can depend on a changed item.
+   *
+   * @param changed the changed item
+   * @param rowItems the rows items to fill, displayed or not
+   */
+  protected abstract void collectRowItems(Item changed, Set<Item> rowItems);
+
+  /**
+   * Checks if an item is displayed by the model, using the criteria of the last
+   * <code>populateModel()</code> call.
+   *
+   * @param item a rows item
+   *
+   * @return true if the item is registered and matches the model criteria
+   */
+  protected abstract boolean accept(Item item);
+
+  /**
+   * Compare rows items in rows order.
+   *
+   * @param item1 the first item
+   * @param item2 the second item
+   *
+   * @return a negative integer, zero, or a positive integer as the first item is displayed
+   * before, with or after the second item
+   */
+  protected abstract int compareRows(Item item1, Item item2);
+
+  /**
+   * Update the rows of changed items without populating the model again. Rows still displayed
+   * at the right position among the rows kept in place are updated in place, other rows are
+   * deleted and accepted items are inserted at their sorted position. Must be called from the
+   * EDT.
+   *
+   * @param changed the changed items, their type can differ from the rows items type
+   *
+   * @return true if the rows have been updated, false if too many rows move or if a populate is
+   * running, the model must then be populated again
+   */
+  @Override
+  public boolean updateItems(Collection<? extends Item> changed) {
+    if (populates.get() > 0) {
+      return false;
+    }
+    Item[] items;
+    int rowsGeneration;
+    synchronized (rowsLock) {
+      items = oItems;
+      rowsGeneration = generation;
+    }
+    // Changed items can be replaced by other instances with the same ID
+    Set<Item> rowItems = Collections.newSetFromMap(new IdentityHashMap<Item, Boolean>());
+    for (Item item : changed) {
+      collectRowItems(item, rowItems);
+    }
+    List<Integer> changedRows = new ArrayList<Integer>();
+    for (int row = 0; row < items.length && !rowItems.isEmpty(); row++) {
+      if (rowItems.remove(items[row])) {
+        changedRows.add(row);
+      }
+    }
+    List<Integer> removedRows = new ArrayList<Integer>();
+    List<Item> inserted = new ArrayList<Item>();
+    Set<Item> updated = Collections.newSetFromMap(new IdentityHashMap<Item, Boolean>());
+    // Changed rows are only checked against the rows kept in place, their neighbours can be
+    // changed rows moving as well : the last kept row before and the next unchanged row
+    Item previous = null;
+    for (int i = 0; i < changedRows.size(); i++) {
+      int row = changedRows.get(i);
+      Item item = items[row];
+      if (row > 0 && (i == 0 || changedRows.get(i - 1) != row - 1)) {
+        previous = items[row - 1];
+      }
+      int next = row + 1;
+      for (int j = i + 1; j < changedRows.size() && changedRows.get(j) == next; j++) {
+        next++;
+      }
+      boolean accepted = accept(item);
+      if (accepted && (previous == null || compareRows(previous, item) <= 0)
+          && (next == items.length || compareRows(item, items[next]) <= 0)) {
+        previous = item;
+        updated.add(item);
+        continue;
+      }
+      removedRows.add(row);
+      if (accepted) {
+        inserted.add(item);
+      }
+    }
+    // Items not displayed so far
+    for (Item item : rowItems) {
+      if (accept(item)) {
+        inserted.add(item);
+      }
+    }
+    if (removedRows.size() + inserted.size() > MAX_MOVED_ROWS) {
+      return false;
+    }
+    updated.addAll(inserted);
+    // Merge the kept rows with the sorted inserted items, inserted after the equal rows
+    Collections.sort(inserted, new Comparator<Item>() {
+      @Override
+      public int compare(Item item1, Item item2) {
+        return compareRows(item1, item2);
+      }
+    });
+    Item[] newItems = new Item[items.length - removedRows.size() + inserted.size()];
+    List<Integer> updatedRows = new ArrayList<Integer>();
+    int count = 0;
+    int nextInserted = 0;
+    int nextRemoved = 0;
+    for (int row = 0; row < items.length; row++) {
+      if (nextRemoved < removedRows.size() && removedRows.get(nextRemoved) == row) {
+        nextRemoved++;
+        continue;
+      }
+      while (nextInserted < inserted.size()
+          && compareRows(items[row], inserted.get(nextInserted)) > 0) {
+        updatedRows.add(count);
+        newItems[count++] = inserted.get(nextInserted++);
+      }
+      if (updated.contains(items[row])) {
+        updatedRows.add(count);
+      }
+      newItems[count++] = items[row];
+    }
+    while (nextInserted < inserted.size()) {
+      updatedRows.add(count);
+      newItems[count++] = inserted.get(nextInserted++);
+    }
+    // The rows between the unchanged first and last rows are replaced
+    int first = 0;
+    int common = Math.min(items.length, newItems.length);
+    while (first < common && items[first] == newItems[first]) {
+      first++;
+    }
+    int unchangedEnd = 0;
+    while (unchangedEnd < common - first
+        && items[items.length - 1 - unchangedEnd] == newItems[newItems.length - 1 - unchangedEnd]) {
+      unchangedEnd++;
+    }
+    synchronized (rowsLock) {
+      if (rowsGeneration != generation || populates.get() > 0) {
+        // Rows replaced meanwhile
+        return false;
+      }
+      oItems = newItems;
+      iRowNum = newItems.length;
+    }
+    for (int row : updatedRows) {
+      invalidate(row);
+    }
+    int lastRemoved = items.length - 1 - unchangedEnd;
+    int lastInserted = newItems.length - 1 - unchangedEnd;
+    if (lastRemoved >= first) {
+      fireTableRowsDeleted(first, lastRemoved);
+    }
+    if (lastInserted >= first) {
+      fireTableRowsInserted(first, lastInserted);
+    }
+    for (int row : updatedRows) {
+      if (row < first || row > lastInserted) {
+        fireTableRowsUpdated(row, row);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if files of a type can be tagged.
+   *
+   * @param type the type, can be null
+   *
+   * @return true if the type has an associated tag editor
+   */
+  protected static boolean hasTagEditor(Type type) {
+    return type != null && type.getTaggerClass() != null;
+  }
+}
@@ -20,11 +20,11 @@
  */
 package org.jajuk.ui.helpers;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -35,8 +35,6 @@ import org.jajuk.base.Track;
 import org.jajuk.base.TrackComparator;
 import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.jajuk.base.TrackManager;
-import org.jajuk.base.Type;
-import org.jajuk.ui.widgets.IconLabel;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.Filter;
@@ -45,11 +43,19 @@ import org.jajuk.util.Messages;
 /**
  * Table model used for logical table view.
  */
-public class TracksTableModel extends JajukTableModel {
+public class TracksTableModel extends LazyTableModel {
   /** Generated serialVersionUID. */
   private static final long serialVersionUID = 1L;
   /** Associated view ID. */
   private String viewID;
+  /** Rows order. */
+  private final TrackComparator comparator = new TrackComparator(TrackComparatorType.ALBUM);
+  /** Whether rows are synchronized with the tree selection, as of the last populate. */
+  private boolean syncTreeTable = false;
+  /** Filter of the last populate, null before. */
+  private Filter filter;
+  /** Tracks custom properties when the model has been populated. */
+  private PropertyMetaInformation[] customProperties = new PropertyMetaInformation[0];
 
   /**
    * Model constructor.
@@ -103,212 +109,193 @@ public class TracksTableModel extends JajukTableModel {
   /*
    * (non-Javadoc)
    *
-   * @see org.jajuk.ui.helpers.JajukTableModel#populateModel(java.lang.String, java.lang.String,
-   * java.util.List)
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeRows(java.lang.String, java.lang.String)
    */
   @Override
-  public void populateModel(String property, String sPattern, List<String> columnsToShow) {
+  protected Item[] computeRows(String property, String sPattern) {
     // This should be monitor file manager to avoid NPE when changing items
     List<Track> alToShow = TrackManager.getInstance().getTracks();
     // / Filter mounted files if needed and apply sync table with tree
     // option if needed
-    final boolean syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
+    syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
     CollectionUtils.filter(alToShow, new Predicate() {
       @Override
       public boolean evaluate(Object o) {
-        Track track = (Track) o;
-        // show it if no sync option or if item is in the selection
-        boolean bShowWithTree = !syncTreeTable
-        // tree selection = null means none election have been
-        // selected in tree so far
-            || treeSelection == null
-            // check if the tree selection contains the current file
-            || (treeSelection.size() > 0 && treeSelection.contains(track));
-        return (!track.shouldBeHidden() && bShowWithTree);
+        return isShown((Track) o);
       }
     });
     // Filter values using given pattern
-    Filter filter = new Filter(property, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    filter = new Filter(property, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
     alToShow = Filter.filterItems(alToShow, filter, Track.class);
     // sort by album
-    Collections.sort(alToShow, new TrackComparator(TrackComparatorType.ALBUM));
-    Iterator<Track> it = alToShow.iterator();
-    int iColNum = iNumberStandardCols + TrackManager.getInstance().getCustomProperties().size();
-    iRowNum = alToShow.size();
-    it = alToShow.iterator();
-    oValues = new Object[iRowNum][iColNum];
-    oItems = new Item[iRowNum];
-    bCellEditable = new boolean[iRowNum][iColNum];
-    // For perfs, prepare columns visibility
-    boolean bName = (columnsToShow != null && columnsToShow.contains(Const.XML_NAME));
-    boolean bAlbum = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM));
-    boolean bArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ARTIST));
-    boolean bAlbumArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM_ARTIST));
-    boolean bGenre = (columnsToShow != null && columnsToShow.contains(Const.XML_GENRE));
-    boolean bRate = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_RATE));
-    boolean bLength = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_LENGTH));
-    boolean bComment = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_COMMENT));
-    boolean bDiscovery = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISCOVERY_DATE));
-    boolean bOrder = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_ORDER));
-    boolean bDiscNumber = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISC_NUMBER));
-    boolean bYear = (columnsToShow != null && columnsToShow.contains(Const.XML_YEAR));
-    boolean bHits = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_HITS));
-    boolean bFiles = (columnsToShow != null && columnsToShow.contains(Const.XML_FILES));
-    for (int iRow = 0; it.hasNext(); iRow++) {
-      Track track = it.next();
-      setItemAt(iRow, track);
-      // Id
-      oItems[iRow] = track;
-      // Play
-      IconLabel il = null;
-      if (track.getBestFile(true) != null) {
-        il = getIcon(false);
-      } else {
-        il = getIcon(true);
-      }
-      // Note: if you want to add an image, use an ImageIcon class and
-      // change
-      oValues[iRow][0] = il;
-      bCellEditable[iRow][0] = false;
-      // check track has an associated tag editor (not null)
-      boolean bHasATagEditor = false;
-      File file = track.getFiles().get(0);
-      // all files have the same type
-      Type type = file.getType();
-      if (type != null) {
-        bHasATagEditor = (type.getTaggerClass() != null);
-      }
-      // Track name
-      if (bName) {
-        oValues[iRow][1] = track.getName();
-      } else {
-        oValues[iRow][1] = "";
-      }
-      bCellEditable[iRow][1] = bHasATagEditor;
-      // Album
-      if (bAlbum) {
-        oValues[iRow][2] = track.getAlbum().getName2();
-      } else {
-        oValues[iRow][2] = "";
-      }
-      bCellEditable[iRow][2] = bHasATagEditor;
-      // Artist
-      if (bArtist) {
-        oValues[iRow][3] = track.getArtist().getName2();
-      } else {
-        oValues[iRow][3] = "";
-      }
-      bCellEditable[iRow][3] = bHasATagEditor;
-      // Album Artist
-      if (bAlbumArtist) {
-        oValues[iRow][4] = track.getAlbumArtist().getName2();
-      } else {
-        oValues[iRow][4] = "";
-      }
-      bCellEditable[iRow][4] = bHasATagEditor;
-      // Genre
-      if (bGenre) {
-        oValues[iRow][5] = track.getGenre().getName2();
-      } else {
-        oValues[iRow][5] = "";
-      }
-      bCellEditable[iRow][5] = bHasATagEditor;
-      // Rate
-      if (bRate) {
-        oValues[iRow][6] = StarsHelper.getStarIconLabel(track);
-      } else {
-        oValues[iRow][6] = "";
-      }
-      bCellEditable[iRow][6] = false;
-      // Length
-      if (bLength) {
-        oValues[iRow][7] = new Duration(track.getDuration());
-      } else {
-        oValues[iRow][7] = "";
-      }
-      bCellEditable[iRow][7] = false;
-      // Comment
-      if (bComment) {
-        oValues[iRow][8] = track.getValue(Const.XML_TRACK_COMMENT);
-      } else {
-        oValues[iRow][8] = "";
-      }
-      bCellEditable[iRow][8] = bHasATagEditor;
-      // Date discovery
-      if (bDiscovery) {
-        oValues[iRow][9] = track.getDiscoveryDate(); // show date using
-        // default local format
-        // and not technical
-        // representation
-        bCellEditable[iRow][9] = false;
-      } else {
-        oValues[iRow][9] = "";
-      }
-      // Order
-      if (bOrder) {
-        oValues[iRow][10] = track.getOrder();
-      } else {
-        oValues[iRow][10] = "";
-      }
-      bCellEditable[iRow][10] = bHasATagEditor;
-      // Disc number
-      if (bDiscNumber) {
-        oValues[iRow][11] = track.getDiscNumber();
-      } else {
-        oValues[iRow][11] = "";
-      }
-      bCellEditable[iRow][11] = bHasATagEditor;
-      // Year
-      if (bYear) {
-        oValues[iRow][12] = track.getYear().getValue();
-      } else {
-        oValues[iRow][12] = "";
+    Collections.sort(alToShow, comparator);
+    customProperties = TrackManager.getInstance().getCustomProperties()
+        .toArray(new PropertyMetaInformation[0]);
+    return alToShow.toArray(new Item[alToShow.size()]);
+  }
+
+  /**
+   * Checks if a track is shown regardless of the filter.
+   *
+   * @param track the track
+   *
+   * @return true if the track is not hidden and matches the tree selection if needed
+   */
+  private boolean isShown(Track track) {
+    // show it if no sync option or if item is in the selection
+    boolean bShowWithTree = !syncTreeTable
+    // tree selection = null means none election have been
+    // selected in tree so far
+        || treeSelection == null
+        // check if the tree selection contains the current file
+        || (treeSelection.size() > 0 && treeSelection.contains(track));
+    return (!track.shouldBeHidden() && bShowWithTree);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#collectRowItems(org.jajuk.base.Item, java.util.Set)
+   */
+  @Override
+  protected void collectRowItems(Item changed, Set<Item> rowItems) {
+    if (changed instanceof Track) {
+      rowItems.add(changed);
+    } else if (changed instanceof File) {
+      rowItems.add(((File) changed).getTrack());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#accept(org.jajuk.base.Item)
+   */
+  @Override
+  protected boolean accept(Item item) {
+    Track track = (Track) item;
+    if (TrackManager.getInstance().getTrackByID(track.getID()) != track || !isShown(track)) {
+      return false;
+    }
+    List<Track> list = new ArrayList<Track>(1);
+    list.add(track);
+    return !Filter.filterItems(list, filter, Track.class).isEmpty();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#compareRows(org.jajuk.base.Item,
+   * org.jajuk.base.Item)
+   */
+  @Override
+  protected int compareRows(Item item1, Item item2) {
+    return comparator.compare((Track) item1, (Track) item2);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeValueAt(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected Object computeValueAt(Item item, int columnIndex) {
+    Track track = (Track) item;
+    if (columnIndex >= iNumberStandardCols) {
+      // Custom properties now
+      int index = columnIndex - iNumberStandardCols;
+      if (index >= customProperties.length) {
+        return null;
       }
-      bCellEditable[iRow][12] = bHasATagEditor;
-      // Hits
-      if (bHits) {
-        oValues[iRow][13] = track.getHits();
+      PropertyMetaInformation meta = customProperties[index];
+      Object o = track.getProperties().get(meta.getName());
+      if (o != null) {
+        return o;
       } else {
-        oValues[iRow][13] = "";
+        return meta.getDefaultValue();
       }
-      bCellEditable[iRow][13] = false;
-      // Files
-      if (bFiles) {
-        List<File> alFiles = track.getFiles();
-        StringBuilder files = new StringBuilder(50);
-        // for perfs, we manage differently single file tracks and multi-files
-        // tracks
-        if (alFiles.size() == 1) {
-          files.append(alFiles.get(0).getAbsolutePath());
-        } else {
-          for (File file2 : alFiles) {
-            files.append(file2.getAbsolutePath()).append(',');
-          }
-          files.deleteCharAt(files.length() - 1);
-        }
-        oValues[iRow][14] = files.toString();
-      } else {
-        oValues[iRow][14] = "";
+    }
+    // Play
+    if (columnIndex == 0) {
+      return getIcon(track.getBestFile(true) == null);
+    }
+    if (!isVisible(columnIndex)) {
+      return "";
+    }
+    switch (columnIndex) {
+    case 1:
+      return track.getName();
+    case 2:
+      return track.getAlbum().getName2();
+    case 3:
+      return track.getArtist().getName2();
+    case 4:
+      return track.getAlbumArtist().getName2();
+    case 5:
+      return track.getGenre().getName2();
+    case 6:
+      return StarsHelper.getStarIconLabel(track);
+    case 7:
+      return new Duration(track.getDuration());
+    case 8:
+      return track.getValue(Const.XML_TRACK_COMMENT);
+    case 9:
+      // show date using default local format and not technical representation
+      return track.getDiscoveryDate();
+    case 10:
+      return track.getOrder();
+    case 11:
+      return track.getDiscNumber();
+    case 12:
+      return track.getYear().getValue();
+    case 13:
+      return track.getHits();
+    case 14:
+      List<File> alFiles = track.getFiles();
+      // for perfs, we manage differently single file tracks and multi-files
+      // tracks
+      if (alFiles.size() == 1) {
+        return alFiles.get(0).getAbsolutePath();
       }
-      bCellEditable[iRow][14] = false;
-      // Custom properties now
-      Map<String, Object> properties = track.getProperties();
-      Iterator<PropertyMetaInformation> it2 = TrackManager.getInstance().getCustomProperties()
-          .iterator();
-      for (int i = 0; it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = o;
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        bCellEditable[iRow][iNumberStandardCols + i] = !(meta.getType().equals(Date.class));
+      StringBuilder files = new StringBuilder(50);
+      for (File file : alFiles) {
+        files.append(file.getAbsolutePath()).append(',');
       }
+      files.deleteCharAt(files.length() - 1);
+      return files.toString();
+    default:
+      return "";
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.LazyTableModel#computeCellEditable(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected boolean computeCellEditable(Item item, int columnIndex) {
+    if (columnIndex >= iNumberStandardCols) {
+      int index = columnIndex - iNumberStandardCols;
+      // Date values not editable, use properties panel instead to
+      // edit
+      return index < customProperties.length
+          && !(customProperties[index].getType().equals(Date.class));
+    }
+    switch (columnIndex) {
+    case 1:
+    case 2:
+    case 3:
+    case 4:
+    case 5:
+    case 8:
+    case 10:
+    case 11:
+    case 12:
+      // all files have the same type
+      return hasTagEditor(((Track) item).getFiles().get(0).getType());
+    default:
+      return false;
     }
   }
 }
@@ -20,15 +20,39 @@
  */
 package org.jajuk.ui.thumbnails;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.ImageIcon;
 
 import org.jajuk.base.Album;
@@ -36,7 +60,10 @@ import org.jajuk.base.AlbumManager;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.ExitService;
+import org.jajuk.services.covers.ImageCache;
 import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
 import org.jajuk.util.JajukIcons;
@@ -49,6 +76,27 @@ import org.jajuk.util.log.Log;
  * Manage thumbnails.
  */
 public final class ThumbnailManager {
+  /** Number of thumbs makers threads. */
+  private static final int THREADS = Math.max(1, Conf.getInt(Const.CONF_THUMBS_THREADS));
+  /** Thumbs makers pool, each task creates all missing thumbs of an album. */
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+      new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Thumbnail Maker " + threadNumber.incrementAndGet());
+          thread.setPriority(Thread.MIN_PRIORITY);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  /** Pending or running thumbs creation by album. */
+  private static final ConcurrentMap<Album, FutureTask<Boolean>> PENDING = new ConcurrentHashMap<Album, FutureTask<Boolean>>(
+      10);
+  /** Is a warm-up running ?. */
+  private static final AtomicBoolean WARMING_UP = new AtomicBoolean(false);
+
   /**
    * No instances.
    */
@@ -109,6 +157,7 @@ public final class ThumbnailManager {
       }
       album.setAvailableThumb(size, false);
     }
+    ImageCache.getInstance().removeThumbs(album);
   }
 
   /**
@@ -125,13 +174,10 @@ public final class ThumbnailManager {
    */
   public static void createThumbnail(final File orig, final File thumb, final int maxDim)
       throws InterruptedException, IOException {
-    // do not use URL object has it can corrupt special paths
-    ImageIcon ii = new ImageIcon(orig.getAbsolutePath());
-    if (ii.getImageLoadStatus() != MediaTracker.COMPLETE) {
-      throw new JajukRuntimeException("Cannot load image: " + orig.getAbsolutePath()
-          + ", load status is: " + ii.getImageLoadStatus());
-    }
-    createThumbnail(ii, thumb, maxDim);
+    int[] sourceSize = new int[2];
+    BufferedImage image = readImage(orig, maxDim, sourceSize);
+    write(scale(image, getThumbDimensions(sourceSize[0], sourceSize[1], maxDim)), thumb);
+    image.flush();
   }
 
   /**
@@ -149,34 +195,202 @@ public final class ThumbnailManager {
    */
   public static void createThumbnail(final ImageIcon ii, final File thumb, final int maxDim)
       throws InterruptedException, IOException {
-    // Synchronize the file to avoid any concurrency between several threads refreshing the thumb
-    // like the catalog view and the artist view.
-    // Don't lock the thumb file itself because we have to write in in this method and
-    // Windows doesn't support share mode for locks but only exclusive
-    File thumbLock = new File(thumb.getAbsolutePath() + ".lock");
-    thumbLock.createNewFile();
-    synchronized (thumbLock.getAbsolutePath().intern()) {
-      // Note that at this point, the image is fully loaded (done in the ImageIcon constructor)
-      final Image image = ii.getImage();
-      // determine thumbnail size from WIDTH and HEIGHT
-      int thumbWidth = maxDim;
-      int thumbHeight = maxDim;
-      final double thumbRatio = (double) thumbWidth / (double) thumbHeight;
-      final int imageWidth = image.getWidth(null);
-      final int imageHeight = image.getHeight(null);
-      final double imageRatio = (double) imageWidth / (double) imageHeight;
-      if (thumbRatio < imageRatio) {
-        thumbHeight = (int) (thumbWidth / imageRatio);
-      } else {
-        thumbWidth = (int) (thumbHeight * imageRatio);
+    // Note that at this point, the image is fully loaded (done in the ImageIcon constructor)
+    final Image image = ii.getImage();
+    int[] dims = getThumbDimensions(image.getWidth(null), image.getHeight(null), maxDim);
+    // draw original image to thumbnail image object and
+    // scale it to the new size on-the-fly
+    final BufferedImage thumbImage = UtilGUI.toBufferedImage(image, dims[0], dims[1]);
+    write(thumbImage, thumb);
+    // Free thumb memory
+    thumbImage.flush();
+  }
+
+  /**
+   * Create all missing thumbs of an album from a single decoding of its cover, largest first,
+   * each size being scaled down from the previous one. The dimensions of each size are computed
+   * from the cover dimensions so rounding doesn't add up from one size to the next.
+   *
+   * @param album the album
+   *
+   * @return whether thumbs have been created
+   */
+  private static boolean createThumbnails(final Album album) {
+    List<Integer> sizes = new ArrayList<Integer>(6);
+    for (int size = 300; size >= 50; size -= 50) {
+      if (!album.isThumbAvailable(size)) {
+        sizes.add(size);
+      }
+    }
+    if (sizes.isEmpty()) {
+      return false;
+    }
+    final File fCover = album.findCover();
+    if (fCover == null) {
+      return false;
+    }
+    try {
+      int[] sourceSize = new int[2];
+      BufferedImage image = readImage(fCover, sizes.get(0), sourceSize);
+      for (int size : sizes) {
+        BufferedImage thumbImage = scale(image,
+            getThumbDimensions(sourceSize[0], sourceSize[1], size));
+        write(thumbImage, getThumbBySize(album, size));
+        // Update thumb availability
+        album.setAvailableThumb(size, true);
+        image.flush();
+        image = thumbImage;
+      }
+      image.flush();
+      ImageCache.getInstance().removeThumbs(album);
+      // Notify the thumb creation
+      Properties details = new Properties();
+      details.put(Const.DETAIL_CONTENT, album);
+      ObservationManager.notify(new JajukEvent(JajukEvents.THUMB_CREATED, details));
+      return true;
+    } catch (final Exception e) {
+      Log.error(e);
+      return false;
+    }
+  }
+
+  /**
+   * Decode an image file. Large images are subsampled while decoding as long as the decoded
+   * image stays at least twice as large as the largest required thumb, this saves most of the
+   * decoding time and memory of big scanned covers.
+   *
+   * @param file the image file
+   * @param maxDim the largest required thumb size
+   * @param sourceSize filled with the image width and height before subsampling
+   *
+   * @return the decoded image
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static BufferedImage readImage(final File file, final int maxDim,
+      final int[] sourceSize) throws IOException {
+    ImageInputStream iis = ImageIO.createImageInputStream(file);
+    if (iis == null) {
+      throw new IOException("Cannot read image: " + file.getAbsolutePath());
+    }
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(iis, true, true);
+          sourceSize[0] = reader.getWidth(0);
+          sourceSize[1] = reader.getHeight(0);
+          int largest = Math.max(sourceSize[0], sourceSize[1]);
+          ImageReadParam param = reader.getDefaultReadParam();
+          int subsampling = largest / (2 * maxDim);
+          if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+          }
+          return reader.read(0, param);
+        } catch (IOException e) {
+          // Some images (like CMYK jpeg files) are not supported by image readers, try the AWT
+          // toolkit
+          Log.debug("Cannot decode image: {{" + file.getAbsolutePath() + "}} " + e.getMessage());
+        } finally {
+          reader.dispose();
+        }
+      }
+    } finally {
+      iis.close();
+    }
+    // do not use URL object has it can corrupt special paths
+    ImageIcon ii = new ImageIcon(file.getAbsolutePath());
+    if (ii.getImageLoadStatus() != MediaTracker.COMPLETE) {
+      throw new JajukRuntimeException("Cannot load image: " + file.getAbsolutePath()
+          + ", load status is: " + ii.getImageLoadStatus());
+    }
+    Image image = ii.getImage();
+    sourceSize[0] = image.getWidth(null);
+    sourceSize[1] = image.getHeight(null);
+    return UtilGUI.toBufferedImage(image, sourceSize[0], sourceSize[1]);
+  }
+
+  /**
+   * Gets the thumb dimensions of an image, keeping its ratio.
+   *
+   * @param imageWidth the image width
+   * @param imageHeight the image height
+   * @param maxDim required size
+   *
+   * @return the thumb width and height
+   */
+  private static int[] getThumbDimensions(int imageWidth, int imageHeight, int maxDim) {
+    // determine thumbnail size from WIDTH and HEIGHT
+    int thumbWidth = maxDim;
+    int thumbHeight = maxDim;
+    final double thumbRatio = (double) thumbWidth / (double) thumbHeight;
+    final double imageRatio = (double) imageWidth / (double) imageHeight;
+    if (thumbRatio < imageRatio) {
+      thumbHeight = (int) (thumbWidth / imageRatio);
+    } else {
+      thumbWidth = (int) (thumbHeight * imageRatio);
+    }
+    return new int[] { Math.max(1, thumbWidth), Math.max(1, thumbHeight) };
+  }
+
+  /**
+   * Scale an image down to the thumb size, halving its size at each step for a better quality
+   * (see UtilGUI.toBufferedImage()).
+   *
+   * @param image the image
+   * @param dims the thumb width and height
+   *
+   * @return the thumb image
+   */
+  private static BufferedImage scale(final BufferedImage image, final int[] dims) {
+    int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+        : BufferedImage.TYPE_INT_RGB;
+    BufferedImage ret = image;
+    int w = image.getWidth();
+    int h = image.getHeight();
+    do {
+      w = Math.max(w / 2, dims[0]);
+      h = Math.max(h / 2, dims[1]);
+      BufferedImage tmp = new BufferedImage(w, h, type);
+      Graphics2D g2 = tmp.createGraphics();
+      g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g2.drawImage(ret, 0, 0, w, h, null);
+      g2.dispose();
+      if (ret != image) {
+        ret.flush();
+      }
+      ret = tmp;
+    } while (w != dims[0] || h != dims[1]);
+    return ret;
+  }
+
+  /**
+   * Write a thumb. The image is written to a temporary file then moved to the thumb file so
+   * readers never get a partially written thumb, no lock is required.
+   *
+   * @param image the thumb image
+   * @param thumb destination file
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void write(final BufferedImage image, final File thumb) throws IOException {
+    File tmp = File.createTempFile(thumb.getName(), ".tmp", thumb.getParentFile());
+    try {
+      if (!ImageIO.write(image, UtilSystem.getExtension(thumb), tmp)) {
+        throw new IOException("No image writer for: " + thumb.getAbsolutePath());
+      }
+      try {
+        Files.move(tmp.toPath(), thumb.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), thumb.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        Log.warn("Cannot delete: " + tmp.getAbsolutePath());
       }
-      // draw original image to thumbnail image object and
-      // scale it to the new size on-the-fly
-      final BufferedImage thumbImage = UtilGUI.toBufferedImage(image, thumbWidth, thumbHeight);
-      // save thumbnail image to OUTFILE
-      ImageIO.write(thumbImage, UtilSystem.getExtension(thumb), thumb);
-      // Free thumb memory
-      thumbImage.flush();
     }
   }
 
@@ -194,7 +408,8 @@ public final class ThumbnailManager {
 
   /**
    * Make thumbnail file exists (album id.jpg or.gif or .png) in thumbs
-   * directory if it doesn't exist yet
+   * directory if it doesn't exist yet. All missing sizes of the album are
+   * created at once.
    * 
    * @param album 
    * @param size 
@@ -206,23 +421,108 @@ public final class ThumbnailManager {
     if (album.isThumbAvailable(size)) {
       return false;
     }
-    final File fThumb = getThumbBySize(album, size);
-    final File fCover = album.findCover();
-    if (fCover != null) {
-      try {
-        createThumbnail(fCover, fThumb, size);
-        // Update thumb availability
-        album.setAvailableThumb(size, true);
-        // Notify the thumb creation
-        Properties details = new Properties();
-        details.put(Const.DETAIL_CONTENT, album);
-        ObservationManager.notify(new JajukEvent(JajukEvents.THUMB_CREATED, details));
+    try {
+      // The task may have been submitted by another thread
+      getThumbnailsTask(album).get();
+      return album.isThumbAvailable(size);
+    } catch (InterruptedException e) {
+      Log.debug(e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Log.error(e);
+    }
+    return false; // thumb already exists or source file cannot be read (an exception occurred)
+  }
+
+  /**
+   * Gets the task creating the missing thumbs of an album, a task is submitted to the thumbs
+   * makers pool unless one is already pending or running for this album.
+   *
+   * @param album the album
+   *
+   * @return the task
+   */
+  private static Future<Boolean> getThumbnailsTask(final Album album) {
+    FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return createThumbnails(album);
+      }
+    }) {
+      @Override
+      protected void done() {
+        PENDING.remove(album, this);
+      }
+    };
+    FutureTask<Boolean> pending = PENDING.putIfAbsent(album, task);
+    if (pending != null) {
+      return pending;
+    }
+    EXECUTOR.execute(task);
+    return task;
+  }
+
+  /**
+   * Create in background the missing thumbs of all albums, for instance after a refresh. Only
+   * a few albums are queued at once so thumbs requested meanwhile by views are created first.
+   * Does nothing if a warm-up is already running.
+   */
+  public static void warmUp() {
+    if (!WARMING_UP.compareAndSet(false, true)) {
+      return;
+    }
+    Thread thread = new Thread("Thumbnails Warm-up Thread") {
+      @Override
+      public void run() {
+        Queue<Future<Boolean>> running = new LinkedList<Future<Boolean>>();
+        int nbAlbums = 0;
+        try {
+          for (Album album : AlbumManager.getInstance().getAlbums()) {
+            if (ExitService.isExiting()) {
+              break;
+            }
+            if (!isMissingThumb(album) || album.findCover() == null) {
+              continue;
+            }
+            // Wait for the oldest album once the pool is busy
+            if (running.size() >= THREADS) {
+              running.poll().get();
+            }
+            running.add(getThumbnailsTask(album));
+            nbAlbums++;
+          }
+          for (Future<Boolean> task : running) {
+            task.get();
+          }
+          Log.debug("Thumbnails warm-up done for " + nbAlbums + " albums");
+        } catch (ExecutionException e) {
+          Log.error(e);
+        } catch (InterruptedException e) {
+          Log.debug(e);
+        } finally {
+          WARMING_UP.set(false);
+        }
+      }
+    };
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Return whether a thumb is missing for an album.
+   *
+   * @param album the album
+   *
+   * @return whether a thumb is missing
+   */
+  private static boolean isMissingThumb(Album album) {
+    for (int size = 50; size <= 300; size += 50) {
+      if (!album.isThumbAvailable(size)) {
         return true;
-      } catch (final Exception e) {
-        Log.error(e);
       }
     }
-    return false; // thumb already exists or source file cannot be read (an exception occurred)
+    return false;
   }
 
   /**
@@ -32,6 +32,8 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -414,6 +416,22 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
     sw.execute();
   }
 
+  /**
+   * Update the rows of the items changed by an event instead of populating the model again.
+   *
+   * @param event the event
+   *
+   * @return true if the event provides the changed items and the rows have been updated
+   */
+  @SuppressWarnings("unchecked")
+  private boolean updateChangedItems(JajukEvent event) {
+    Properties details = event.getDetails();
+    if (details == null || !details.containsKey(Const.DETAIL_ITEMS)) {
+      return false;
+    }
+    return model.updateItems((Collection<Item>) details.get(Const.DETAIL_ITEMS));
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -462,8 +480,10 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
             // force filter to refresh
             applyFilter(sAppliedCriteria, sAppliedFilter);
           } else if (JajukEvents.DEVICE_REFRESH.equals(subject)) {
-            // force filter to refresh
-            applyFilter(sAppliedCriteria, sAppliedFilter);
+            // force filter to refresh unless only known items changed
+            if (!updateChangedItems(event)) {
+              applyFilter(sAppliedCriteria, sAppliedFilter);
+            }
           } else if (JajukEvents.VIEW_REFRESH_REQUEST.equals(subject)) {
             // force filter to refresh if the events has been triggered by the
             // table itself after a column change
@@ -472,6 +492,9 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
               applyFilter(sAppliedCriteria, sAppliedFilter);
             }
           } else if (JajukEvents.RATE_CHANGED.equals(subject)) {
+            if (updateChangedItems(event)) {
+              return;
+            }
             // Keep current selection and nb of rows
             int[] selection = jtable.getSelectedRows();
             // force filter to refresh
@@ -621,8 +644,18 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
         filter = new HashSet<File>();
         filter.add((File) item);
       }
+      // Changed items : the item, its replacement and for files their tracks
+      List<Item> changed = new ArrayList<Item>(4);
+      changed.add(item);
+      if (item instanceof File) {
+        changed.add(((File) item).getTrack());
+      }
       Item itemNew = ItemManager.changeItem(item, sKey, oValue, filter);
       model.setItemAt(e.getFirstRow(), itemNew); // update model
+      changed.add(itemNew);
+      if (itemNew instanceof File) {
+        changed.add(((File) itemNew).getTrack());
+      }
       // user message
       InformationJPanel.getInstance().setMessage(
           Messages.getString("PropertiesWizard.8") + ": " + Messages.getHumanPropertyName(sKey),
@@ -630,6 +663,7 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
       // Require refresh of all tables
       Properties properties = new Properties();
       properties.put(Const.DETAIL_ORIGIN, AbstractTableView.this);
+      properties.put(Const.DETAIL_ITEMS, changed);
       // No real device change if Webradio view
       if (!(this instanceof WebRadioView)) {
         ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_REFRESH, properties));
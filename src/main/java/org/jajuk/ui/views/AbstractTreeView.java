@@ -107,7 +107,7 @@ public abstract class AbstractTreeView extends ViewAdapter {
   /** Used to differentiate tree/table sync due to internal events from users's ones. */
   boolean bInternalAction = false;
   /** Flag used to set tree is refreshing. */
-  boolean refreshing = false;
+  volatile boolean refreshing = false;
 
   /*
    * (non-Javadoc)
@@ -29,6 +29,8 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
@@ -201,9 +203,18 @@ public class ArtistView extends SuggestionView implements TwoStepsDisplayable {
    */
   @Override
   public Object longCall() {
-    // Call last.fm wiki
-    bio = LastFmService.getInstance().getWikiText(artist);
-    artistInfo = LastFmService.getInstance().getArtist(artist);
+    // Call last.fm wiki, the artist lookup runs meanwhile
+    LastFmService service = LastFmService.getInstance();
+    Future<ArtistInfo> artistLookup = service.getArtistAsync(artist);
+    bio = service.getWikiText(artist);
+    try {
+      artistInfo = artistLookup.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      Log.error(e);
+    }
     // Prefetch artist thumbs
     try {
       preFetchOthersAlbum();
@@ -322,7 +322,9 @@ public class SuggestionView extends ViewAdapter {
       @Override
       public Void doInBackground() {
         try {
-          // Fetch last.fm calls and downloads covers
+          // Fetch last.fm calls and downloads covers, similar artists lookup starts at once
+          // and is joined by preFetchSimilarArtists()
+          LastFmService.getInstance().getSimilarArtistsAsync(artist);
           preFetchOthersAlbum();
           preFetchSimilarArtists();
         } catch (Exception e) {
@@ -24,12 +24,18 @@ import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
-import java.util.Enumeration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.swing.Action;
 import javax.swing.BorderFactory;
@@ -47,19 +53,25 @@ import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 import net.miginfocom.swing.MigLayout;
 
 import org.jajuk.base.Album;
+import org.jajuk.base.AlbumManager;
 import org.jajuk.base.Artist;
+import org.jajuk.base.ArtistManager;
 import org.jajuk.base.File;
 import org.jajuk.base.Genre;
+import org.jajuk.base.GenreManager;
 import org.jajuk.base.Item;
 import org.jajuk.base.Track;
 import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.jajuk.base.TrackManager;
 import org.jajuk.base.Year;
+import org.jajuk.base.YearManager;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
@@ -70,6 +82,7 @@ import org.jajuk.ui.actions.JajukActions;
 import org.jajuk.ui.helpers.FontManager;
 import org.jajuk.ui.helpers.FontManager.JajukFont;
 import org.jajuk.ui.helpers.JajukMouseAdapter;
+import org.jajuk.ui.helpers.LazyLoadingTreeNode;
 import org.jajuk.ui.helpers.TreeRootElement;
 import org.jajuk.ui.helpers.TreeTransferHandler;
 import org.jajuk.ui.perspectives.PerspectiveManager;
@@ -150,7 +163,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
     // populate the tree
     populateTree();
     // create tree
-    createTree(false);
+    createTree(true);
     jtree.setCellRenderer(new TracksTreeCellRenderer());
     /**
      * CAUTION ! we register several listeners against this tree Swing can't
@@ -190,371 +203,377 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
     }
     try {
       refreshing = true;
-      // delete previous tree
-      top.removeAllChildren();
-      TrackComparatorType comparatorType = TrackComparatorType.values()[Conf
-          .getInt(Const.CONF_LOGICAL_TREE_SORT_ORDER)];
-      if (comparatorType == TrackComparatorType.GENRE_ARTIST_ALBUM) {
-        populateTreeByGenre();
-      }// Artist/album
-      else if (comparatorType == TrackComparatorType.ARTIST_ALBUM) {
-        populateTreeByArtist();
-      }
-      // Album
-      else if (comparatorType == TrackComparatorType.ALBUM) {
-        populateTreeByAlbum();
-      }
-      // Year / album
-      else if (comparatorType == TrackComparatorType.YEAR_ALBUM) {
-        populateTreeByYear();
-      }
-      // discovery date / album
-      else if (comparatorType == TrackComparatorType.DISCOVERY_ALBUM) {
-        populateTreeByDiscovery();
-      }
-      // Rate / album
-      else if (comparatorType == TrackComparatorType.RATE_ALBUM) {
-        populateTreeByRate();
-      }
-      // Hits / album
-      else if (comparatorType == TrackComparatorType.HITS_ALBUM) {
-        populateTreeByHits();
-      }
-      // see http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6472844 for a
-      // small memory leak that is caused here...
-      if (jtree != null && jtree.getModel() != null) {
-        ((DefaultTreeModel) (jtree.getModel())).reload();
+      // Nodes are also updated by updateTracks() from the EDT, only change them
+      // from the EDT. Workers calling this method hold no lock, so waiting for
+      // the EDT cannot dead-lock.
+      Runnable rebuild = new Runnable() {
+        @Override
+        public void run() {
+          // delete previous tree
+          top.removeAllChildren();
+          // Only the first level nodes are created, the others are created from
+          // the tracks caches when their parent is expanded
+          updateChildren(null, top, Collections.<Track> emptySet());
+          // see http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6472844 for a
+          // small memory leak that is caused here...
+          if (jtree != null && jtree.getModel() != null) {
+            ((DefaultTreeModel) (jtree.getModel())).reload();
+          }
+        }
+      };
+      if (SwingUtilities.isEventDispatchThread()) {
+        rebuild.run();
+      } else {
+        SwingUtilities.invokeAndWait(rebuild);
       }
+    } catch (InterruptedException e) {
+      Log.error(e);
+    } catch (InvocationTargetException e) {
+      Log.error(e);
     } finally {
       refreshing = false;
     }
   }
 
   /**
-   * Fill the tree by genre.
+   * Update in place the branches grouping some changed tracks instead of
+   * populating the tree again. Branches never expanded are left as they are,
+   * they read the tracks caches when expanded.
+   * 
+   * @param changed the changed tracks, both the previous and the new track if
+   * a tag change replaced a track
    */
-  @SuppressWarnings("unchecked")
-  public void populateTreeByGenre() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        GenreNode genreNode = null;
-        Genre genre = track.getGenre();
-        ArtistNode artistNode = null;
-        Artist artist = track.getArtist();
-        AlbumNode albumNode = null;
-        Album album = track.getAlbum();
-        // create genre
-        {
-          Enumeration<GenreNode> e = top.children();
-          boolean b = false;
-          while (e.hasMoreElements()) { // check the genre doesn't
-            // already exist
-            GenreNode sn = e.nextElement();
-            if (sn.getGenre().equals(genre)) {
-              b = true;
-              genreNode = sn;
-              break;
-            }
-          }
-          if (!b) {
-            genreNode = new GenreNode(genre);
-            top.add(genreNode);
-          }
-        }
-        if (genreNode == null) {
-          continue;
-        }
-        // create artist
-        {
-          Enumeration<ArtistNode> e2 = genreNode.children();
-          boolean b = false;
-          while (e2.hasMoreElements()) { // check if the artist doesn't
-            // already exist
-            ArtistNode an = e2.nextElement();
-            if (an.getArtist().equals(artist)) {
-              b = true;
-              artistNode = an;
-              break;
-            }
-          }
-          if (!b) {
-            artistNode = new ArtistNode(artist);
-            genreNode.add(artistNode);
-          }
-        }
-        // create album
-        if (artistNode == null) {
-          continue;
-        }
-        Enumeration<AlbumNode> e3 = artistNode.children();
-        boolean b = false;
-        while (e3.hasMoreElements()) {
-          AlbumNode an = e3.nextElement();
-          if (an.getAlbum().equals(album)) {
-            b = true;
-            albumNode = an;
-            break;
-          }
-        }
-        if (!b) {
-          albumNode = new AlbumNode(album);
-          artistNode.add(albumNode);
-        }
-        // create track
-        assert albumNode != null;
-        albumNode.add(new TrackNode(track));
-      }
+  void updateTracks(Collection<Track> changed) {
+    if (refreshing) {
+      // The tree is populated again anyway
+      return;
     }
+    DefaultTreeModel model = null;
+    if (jtree != null) {
+      model = (DefaultTreeModel) jtree.getModel();
+    }
+    updateChildren(model, top, changed);
   }
 
   /**
-   * Fill the tree by artist.
+   * Update the children of a node from the tracks caches. Existing children
+   * are kept with their loaded and expanded branches, the loaded branches
+   * grouping a changed track are updated the same way.
+   * 
+   * @param model the tree model or null if the tree is not created yet
+   * @param node the root or a loaded group node
+   * @param changed the changed tracks
    */
-  @SuppressWarnings("unchecked")
-  public void populateTreeByArtist() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        ArtistNode artistNode = null;
-        Artist artist = track.getArtist();
-        AlbumNode albumNode = null;
-        Album album = track.getAlbum();
-        // create artist
-        {
-          Enumeration<ArtistNode> e = top.children();
-          boolean b = false;
-          while (e.hasMoreElements()) { // check if the artist doesn't
-            // already exist
-            ArtistNode an = e.nextElement();
-            if (an.getArtist().equals(artist)) {
-              b = true;
-              artistNode = an;
-              break;
-            }
-          }
-          if (!b) {
-            artistNode = new ArtistNode(artist);
-            top.add(artistNode);
-          }
-        }
-        if (artistNode == null) {
-          continue;
-        }
-        // create album
-        Enumeration<AlbumNode> e2 = artistNode.children();
-        boolean b = false;
-        while (e2.hasMoreElements()) { // check if the album doesn't
-          // already exist
-          AlbumNode an = e2.nextElement();
-          if (an.getAlbum().equals(album)) {
-            b = true;
-            albumNode = an;
-            break;
-          }
-        }
-        if (!b) {
-          albumNode = new AlbumNode(album);
-          artistNode.add(albumNode);
-        }
-        // create track
-        if (albumNode != null) {
-          albumNode.add(new TrackNode(track));
+  private static void updateChildren(DefaultTreeModel model, DefaultMutableTreeNode node,
+      Collection<Track> changed) {
+    List<Object> keys = getChildKeys(node);
+    Set<Object> kept = new HashSet<Object>(keys);
+    Map<Object, DefaultMutableTreeNode> children = new HashMap<Object, DefaultMutableTreeNode>();
+    for (int i = node.getChildCount() - 1; i >= 0; i--) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+      Object key = getKey(child);
+      if (kept.contains(key)) {
+        children.put(key, child);
+      } else {
+        removeNode(model, child);
+      }
+    }
+    // Insert new children and move the ones whose position changed
+    for (int i = 0; i < keys.size(); i++) {
+      DefaultMutableTreeNode child = children.get(keys.get(i));
+      if (child == null) {
+        insertNode(model, createNode(keys.get(i)), node, i);
+        continue;
+      }
+      if (node.getChildAt(i) != child) {
+        removeNode(model, child);
+        insertNode(model, child, node, i);
+      }
+      if (child instanceof TracksGroupNode) {
+        TracksGroupNode group = (TracksGroupNode) child;
+        if (group.areChildrenLoaded() && group.matchesAny(changed)) {
+          updateChildren(model, group, changed);
         }
+      } else if (model != null && changed.contains(child.getUserObject())) {
+        // Track node, its name may have changed
+        model.nodeChanged(child);
       }
     }
   }
 
   /**
-   * Fill the tree by year.
+   * Insert a node.
+   * 
+   * @param model the tree model or null if the tree is not created yet
+   * @param child the node to insert
+   * @param parent the parent node
+   * @param index the index
    */
-  @SuppressWarnings("unchecked")
-  public void populateTreeByYear() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+  private static void insertNode(DefaultTreeModel model, DefaultMutableTreeNode child,
+      DefaultMutableTreeNode parent, int index) {
+    if (model == null) {
+      parent.insert(child, index);
+    } else {
+      model.insertNodeInto(child, parent, index);
+    }
+  }
+
+  /**
+   * Remove a node from its parent.
+   * 
+   * @param model the tree model or null if the tree is not created yet
+   * @param child the node to remove
+   */
+  private static void removeNode(DefaultTreeModel model, DefaultMutableTreeNode child) {
+    if (model == null) {
+      child.removeFromParent();
+    } else {
+      model.removeNodeFromParent(child);
+    }
+  }
+
+  /**
+   * Gets the ordered keys of the children of a node : the first level items
+   * for the root, else the items grouping the tracks of the node at the next
+   * level.
+   * 
+   * @param node the root or a group node
+   * 
+   * @return the genres, artists, years, albums, tracks or discovery periods
+   */
+  static List<Object> getChildKeys(DefaultMutableTreeNode node) {
+    if (!(node instanceof TracksGroupNode)) {
+      return getFirstLevelKeys(TrackComparatorType.values()[Conf
+          .getInt(Const.CONF_LOGICAL_TREE_SORT_ORDER)]);
+    }
+    TracksGroupNode group = (TracksGroupNode) node;
+    List<Track> tracks = group.getTracks();
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
+    // Children are ordered as their first track
+    Set<Object> keys = new LinkedHashSet<Object>();
     for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        YearNode yearNode = null;
-        AlbumNode albumNode = null;
-        Album album = track.getAlbum();
-        Year year = track.getYear();
-        // create Year
-        {
-          Enumeration<YearNode> e = top.children();
-          boolean b = false;
-          // check if the artist doesn't already exist
-          while (e.hasMoreElements()) {
-            YearNode yn = e.nextElement();
-            if (yn.getYear().equals(year)) {
-              b = true;
-              yearNode = yn;
-              break;
-            }
-          }
-          if (!b) {
-            yearNode = new YearNode(year);
-            top.add(yearNode);
-          }
-        }
-        if (yearNode == null) {
-          continue;
+      keys.add(group.getChildKey(track));
+    }
+    return new ArrayList<Object>(keys);
+  }
+
+  /**
+   * Gets the first level keys, read from the items managers and the tracks
+   * caches so the cost doesn't depend on the number of tracks (except for the
+   * rate and hits orders that need the best track of each album).
+   * 
+   * @param comparatorType the tree order
+   * 
+   * @return the genres, artists, years, albums or discovery periods
+   */
+  private static List<Object> getFirstLevelKeys(TrackComparatorType comparatorType) {
+    List<Object> keys = new ArrayList<Object>();
+    if (comparatorType == TrackComparatorType.GENRE_ARTIST_ALBUM) {
+      List<Genre> genres = GenreManager.getInstance().getGenres();
+      Collections.sort(genres);
+      for (Genre genre : genres) {
+        if (hasVisibleTrack(genre.getTracksCache())) {
+          keys.add(genre);
         }
-        // create album
-        Enumeration<AlbumNode> e1 = yearNode.children();
-        boolean b = false;
-        while (e1.hasMoreElements()) { // check if the album doesn't
-          // already exist
-          AlbumNode an = e1.nextElement();
-          if (an.getAlbum().equals(album)) {
-            b = true;
-            albumNode = an;
-            break;
-          }
+      }
+    }// Artist/album
+    else if (comparatorType == TrackComparatorType.ARTIST_ALBUM) {
+      List<Artist> artists = ArtistManager.getInstance().getArtists();
+      Collections.sort(artists);
+      for (Artist artist : artists) {
+        if (hasVisibleTrack(artist.getTracksCache())) {
+          keys.add(artist);
         }
-        if (!b) {
-          albumNode = new AlbumNode(album);
-          yearNode.add(albumNode);
+      }
+    }
+    // Album
+    else if (comparatorType == TrackComparatorType.ALBUM) {
+      List<Album> albums = AlbumManager.getInstance().getAlbums();
+      Collections.sort(albums);
+      for (Album album : albums) {
+        if (hasVisibleTrack(album.getTracksCache())) {
+          keys.add(album);
         }
-        // create track
-        if (albumNode != null) {
-          albumNode.add(new TrackNode(track));
+      }
+    }
+    // Year / album
+    else if (comparatorType == TrackComparatorType.YEAR_ALBUM) {
+      List<Year> years = YearManager.getInstance().getYears();
+      Collections.sort(years, Collections.reverseOrder());
+      for (Year year : years) {
+        if (hasVisibleTrack(year.getTracksCache())) {
+          keys.add(year);
         }
       }
     }
+    // discovery date / album
+    else if (comparatorType == TrackComparatorType.DISCOVERY_ALBUM) {
+      for (int i = 0; i < DiscoveryDateNode.PERIODS_LABELS.length; i++) {
+        keys.add(i);
+      }
+    }
+    // Rate or hits / album
+    else if (comparatorType == TrackComparatorType.RATE_ALBUM
+        || comparatorType == TrackComparatorType.HITS_ALBUM) {
+      keys.addAll(getAlbumsByBestTrack(comparatorType == TrackComparatorType.RATE_ALBUM));
+    }
+    return keys;
   }
 
   /**
-   * Fill the tree.
+   * Gets the albums ordered by their best rated or most played visible track.
+   * 
+   * @param byRate true to order by rate, false to order by hits
+   * 
+   * @return the albums
    */
-  public void populateTreeByAlbum() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        addTrackAndAlbum(top, track);
+  private static List<Album> getAlbumsByBestTrack(boolean byRate) {
+    final Map<Album, Long> best = new HashMap<Album, Long>();
+    for (Album album : AlbumManager.getInstance().getAlbums()) {
+      Long max = null;
+      List<Track> cache = album.getTracksCache();
+      synchronized (cache) {
+        for (Track track : cache) {
+          if (!track.shouldBeHidden()) {
+            long value = byRate ? track.getRate() : track.getHits();
+            if (max == null || value > max) {
+              max = value;
+            }
+          }
+        }
+      }
+      if (max != null) {
+        best.put(album, max);
       }
     }
+    List<Album> albums = new ArrayList<Album>(best.keySet());
+    Collections.sort(albums, new Comparator<Album>() {
+      @Override
+      public int compare(Album album1, Album album2) {
+        int comp = best.get(album2).compareTo(best.get(album1));
+        if (comp == 0) {
+          return album1.compareTo(album2);
+        }
+        return comp;
+      }
+    });
+    return albums;
   }
 
   /**
-   * Fill the tree by discovery.
+   * Checks if a tracks cache contains a track that should not be hidden.
+   * 
+   * @param cache the tracks cache
+   * 
+   * @return true if the cache contains a visible track
    */
-  public void populateTreeByDiscovery() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    // Create separator nodes
-    DefaultMutableTreeNode nodeWeekly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.36"));
-    DefaultMutableTreeNode nodeMontly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.37"));
-    DefaultMutableTreeNode nodeThreeMontly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.44"));
-    DefaultMutableTreeNode nodeSixMontly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.38"));
-    DefaultMutableTreeNode nodeYearly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.40"));
-    DefaultMutableTreeNode nodeTwoYearly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.41"));
-    DefaultMutableTreeNode nodeFiveYearly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.42"));
-    DefaultMutableTreeNode nodeTenYearly = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.43"));
-    DefaultMutableTreeNode nodeOlder = new DiscoveryDateNode(
-        Messages.getString("TracksTreeView.39"));
-    // Add separator nodes
-    top.add(nodeWeekly);
-    top.add(nodeMontly);
-    top.add(nodeThreeMontly);
-    top.add(nodeSixMontly);
-    top.add(nodeYearly);
-    top.add(nodeTwoYearly);
-    top.add(nodeFiveYearly);
-    top.add(nodeTenYearly);
-    top.add(nodeOlder);
-    Date today = new Date();
-    // Sort tracks into these categories
-    for (Track track : tracks) {
-      if (track.shouldBeHidden()) {
-        continue;
+  private static boolean hasVisibleTrack(Collection<Track> cache) {
+    boolean hideUnmounted = Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED);
+    synchronized (cache) {
+      if (!hideUnmounted) {
+        return !cache.isEmpty();
       }
-      // less than one week ?
-      long diff = today.getTime() - track.getDiscoveryDate().getTime();
-      if (diff < 604800000l) {
-        addTrackAndAlbum(nodeWeekly, track);
-      } else if (diff < 2628000000l) {
-        addTrackAndAlbum(nodeMontly, track);
-      } else if (diff < 7884000000l) {
-        addTrackAndAlbum(nodeThreeMontly, track);
-      } else if (diff < 15768000000l) {
-        addTrackAndAlbum(nodeSixMontly, track);
-      } else if (diff < 31536000000l) {
-        addTrackAndAlbum(nodeYearly, track);
-      } else if (diff < 63072000000l) {
-        addTrackAndAlbum(nodeTwoYearly, track);
-      } else if (diff < 157680000000l) {
-        addTrackAndAlbum(nodeFiveYearly, track);
-      } else if (diff < 315360000000l) {
-        addTrackAndAlbum(nodeTenYearly, track);
-      } else {
-        addTrackAndAlbum(nodeOlder, track);
+      for (Track track : cache) {
+        if (!track.shouldBeHidden()) {
+          return true;
+        }
       }
+      return false;
     }
   }
 
   /**
-   * Fill the tree by Rate.
+   * Create the node of a child key.
+   * 
+   * @param key a genre, artist, year, album, track or discovery period
+   * 
+   * @return the node
    */
-  public void populateTreeByRate() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        addTrackAndAlbum(top, track);
-      }
+  static DefaultMutableTreeNode createNode(Object key) {
+    if (key instanceof Genre) {
+      return new GenreNode((Genre) key);
+    } else if (key instanceof Artist) {
+      return new ArtistNode((Artist) key);
+    } else if (key instanceof Year) {
+      return new YearNode((Year) key);
+    } else if (key instanceof Album) {
+      return new AlbumNode((Album) key);
+    } else if (key instanceof Track) {
+      return new TrackNode((Track) key);
     }
+    return new DiscoveryDateNode((Integer) key);
   }
 
   /**
-   * Fill the tree by Hits.
+   * Gets the key of a node.
+   * 
+   * @param node the node
+   * 
+   * @return the item of the node or the discovery period
    */
-  public void populateTreeByHits() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    Collections.sort(tracks, TrackManager.getInstance().getComparator());
-    for (Track track : tracks) {
-      if (!track.shouldBeHidden()) {
-        addTrackAndAlbum(top, track);
-      }
+  private static Object getKey(DefaultMutableTreeNode node) {
+    if (node instanceof DiscoveryDateNode) {
+      return ((DiscoveryDateNode) node).getPeriod();
     }
+    return node.getUserObject();
   }
 
   /**
-   * Utility method used by populateByDiscovery method.
+   * Gets the tracks changed by an event.
    * 
-   * @param node 
-   * @param track 
+   * @param event the event
+   * 
+   * @return the changed tracks or null if the event doesn't provide them
    */
   @SuppressWarnings("unchecked")
-  private void addTrackAndAlbum(DefaultMutableTreeNode node, Track track) {
-    boolean bAlbumExists = false;
-    AlbumNode currentAlbum = null;
-    Enumeration<AlbumNode> e = node.children();
-    while (e.hasMoreElements()) {
-      AlbumNode an = e.nextElement();
-      if (an.getAlbum().equals(track.getAlbum())) {
-        bAlbumExists = true;
-        currentAlbum = an;
-        break;
+  private static Set<Track> getChangedTracks(JajukEvent event) {
+    Properties details = event.getDetails();
+    if (details == null || !details.containsKey(Const.DETAIL_ITEMS)) {
+      return null;
+    }
+    Set<Track> tracks = new HashSet<Track>();
+    for (Item item : (Collection<Item>) details.get(Const.DETAIL_ITEMS)) {
+      if (item instanceof Track) {
+        tracks.add((Track) item);
+      } else if (item instanceof File) {
+        tracks.add(((File) item).getTrack());
       }
     }
-    if (!bAlbumExists) {
-      currentAlbum = new AlbumNode(track.getAlbum());
-      node.add(currentAlbum);
+    return tracks;
+  }
+
+  /* (non-Javadoc)
+   * @see org.jajuk.ui.views.AbstractTreeView#update(org.jajuk.events.JajukEvent)
+   */
+  @Override
+  public void update(JajukEvent event) {
+    final JajukEvents subject = event.getSubject();
+    final Set<Track> changed = getChangedTracks(event);
+    if (changed != null && JajukEvents.DEVICE_REFRESH.equals(subject)) {
+      SwingUtilities.invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          updateTracks(changed);
+          // Make sure that preference menu icon is refreshed
+          pjmTracks.resetUI(alSelected);
+        }
+      });
+      return;
     }
-    // create track
-    if (currentAlbum != null) {
-      currentAlbum.add(new TrackNode(track));
+    super.update(event);
+    // Only the rate and hits orders depend on the rate and hits
+    if (changed != null && JajukEvents.RATE_CHANGED.equals(subject)) {
+      TrackComparatorType comparatorType = TrackComparatorType.values()[Conf
+          .getInt(Const.CONF_LOGICAL_TREE_SORT_ORDER)];
+      if (comparatorType == TrackComparatorType.RATE_ALBUM
+          || comparatorType == TrackComparatorType.HITS_ALBUM) {
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            updateTracks(changed);
+          }
+        });
+      }
     }
   }
 
@@ -660,7 +679,6 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
      * 
      * @return the int
      */
-    @SuppressWarnings("unchecked")
     private int handleSelected(TreePath[] tpSelected) {
       int items = 0;
       for (TreePath element : tpSelected) {
@@ -671,25 +689,21 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
           List<Track> allTracks = TrackManager.getInstance().getTracks();
           selectedRecursively.addAll(allTracks);
           break;
-        } else {
-          Object userObject = ((DefaultMutableTreeNode) o).getUserObject();
-          if (userObject instanceof Item) {
-            alSelected.add((Item) userObject);
-          }
-        }
-        // return all child nodes recursively
-        Enumeration<DefaultMutableTreeNode> e2 = ((DefaultMutableTreeNode) o)
-            .depthFirstEnumeration();
-        while (e2.hasMoreElements()) {
-          DefaultMutableTreeNode node = e2.nextElement();
-          if (node instanceof TrackNode) {
-            Track track = ((TrackNode) node).getTrack();
-            // don't count the same track several time
-            // if user select directory and then tracks
-            // inside
-            selectedRecursively.add(track);
-            items++;
+        } else if (o instanceof TracksGroupNode) {
+          TracksGroupNode group = (TracksGroupNode) o;
+          // Periods are not items
+          if (!(group instanceof DiscoveryDateNode)) {
+            alSelected.add((Item) group.getUserObject());
           }
+          // Read the tracks from the caches, the node may not be loaded yet
+          List<Track> tracks = group.getTracks();
+          selectedRecursively.addAll(tracks);
+          items += tracks.size();
+        } else if (o instanceof TrackNode) {
+          Track track = ((TrackNode) o).getTrack();
+          alSelected.add(track);
+          selectedRecursively.add(track);
+          items++;
         }
       }
       return items;
@@ -980,10 +994,128 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
   }
 }
 
+/**
+ * Node grouping tracks, its children are created from the genres, artists,
+ * albums and years tracks caches when it is expanded.
+ */
+abstract class TracksGroupNode extends LazyLoadingTreeNode {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor
+   * 
+   * @param userObject the grouping item or the period name
+   */
+  TracksGroupNode(Object userObject) {
+    super(userObject);
+  }
+
+  /**
+   * Checks if a track belongs to this group, whatever the parent groups.
+   * 
+   * @param track the track
+   * 
+   * @return true if the track belongs to this group
+   */
+  abstract boolean matches(Track track);
+
+  /**
+   * Gets the tracks that may belong to this group.
+   * 
+   * @return a copy of the smallest tracks cache holding the tracks of this
+   * group
+   */
+  abstract List<Track> getCandidateTracks();
+
+  /**
+   * Gets the key of the child grouping a track.
+   * 
+   * @param track a track of this group
+   * 
+   * @return the child key
+   */
+  abstract Object getChildKey(Track track);
+
+  /**
+   * Gets the visible tracks of this group and of all its parent groups.
+   * 
+   * @return the tracks, unordered
+   */
+  List<Track> getTracks() {
+    List<Track> tracks = new ArrayList<Track>();
+    for (Track track : getCandidateTracks()) {
+      if (!track.shouldBeHidden() && isInPath(track)) {
+        tracks.add(track);
+      }
+    }
+    return tracks;
+  }
+
+  /**
+   * Checks if a track belongs to this group and to all its parent groups.
+   * 
+   * @param track the track
+   * 
+   * @return true if the track belongs to all groups of the path
+   */
+  private boolean isInPath(Track track) {
+    for (TreeNode node = this; node instanceof TracksGroupNode; node = node.getParent()) {
+      if (!((TracksGroupNode) node).matches(track)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if some tracks belong to this group, whatever the parent groups.
+   * 
+   * @param tracks the tracks
+   * 
+   * @return true if one of the tracks belongs to this group
+   */
+  boolean matchesAny(Collection<Track> tracks) {
+    for (Track track : tracks) {
+      if (matches(track)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copy a tracks cache.
+   * 
+   * @param cache the tracks cache
+   * 
+   * @return the copy
+   */
+  static List<Track> copy(Collection<Track> cache) {
+    synchronized (cache) {
+      return new ArrayList<Track>(cache);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jajuk.ui.helpers.LazyLoadingTreeNode#loadChildren(javax.swing.tree.DefaultTreeModel)
+   */
+  @Override
+  public MutableTreeNode[] loadChildren(DefaultTreeModel model) {
+    List<Object> keys = TracksTreeView.getChildKeys(this);
+    MutableTreeNode[] nodes = new MutableTreeNode[keys.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = TracksTreeView.createNode(keys.get(i));
+    }
+    return nodes;
+  }
+}
+
 /**
  * Genre node
  */
-class GenreNode extends DefaultMutableTreeNode {
+class GenreNode extends TracksGroupNode {
   private static final long serialVersionUID = 1L;
 
   /**
@@ -1009,12 +1141,27 @@ class GenreNode extends DefaultMutableTreeNode {
   public Genre getGenre() {
     return (Genre) super.getUserObject();
   }
+
+  @Override
+  boolean matches(Track track) {
+    return track.getGenre().equals(getGenre());
+  }
+
+  @Override
+  List<Track> getCandidateTracks() {
+    return copy(getGenre().getTracksCache());
+  }
+
+  @Override
+  Object getChildKey(Track track) {
+    return track.getArtist();
+  }
 }
 
 /**
  * Artist node
  */
-class ArtistNode extends DefaultMutableTreeNode {
+class ArtistNode extends TracksGroupNode {
   /**
    * 
    */
@@ -1043,12 +1190,27 @@ class ArtistNode extends DefaultMutableTreeNode {
   public Artist getArtist() {
     return (Artist) super.getUserObject();
   }
+
+  @Override
+  boolean matches(Track track) {
+    return track.getArtist().equals(getArtist());
+  }
+
+  @Override
+  List<Track> getCandidateTracks() {
+    return copy(getArtist().getTracksCache());
+  }
+
+  @Override
+  Object getChildKey(Track track) {
+    return track.getAlbum();
+  }
 }
 
 /**
  * Year node
  */
-class YearNode extends DefaultMutableTreeNode {
+class YearNode extends TracksGroupNode {
   /**
    * 
    */
@@ -1081,12 +1243,27 @@ class YearNode extends DefaultMutableTreeNode {
   public Year getYear() {
     return (Year) super.getUserObject();
   }
+
+  @Override
+  boolean matches(Track track) {
+    return track.getYear().equals(getYear());
+  }
+
+  @Override
+  List<Track> getCandidateTracks() {
+    return copy(getYear().getTracksCache());
+  }
+
+  @Override
+  Object getChildKey(Track track) {
+    return track.getAlbum();
+  }
 }
 
 /**
  * Album node
  */
-class AlbumNode extends DefaultMutableTreeNode {
+class AlbumNode extends TracksGroupNode {
   private static final long serialVersionUID = 1L;
 
   /**
@@ -1112,6 +1289,21 @@ class AlbumNode extends DefaultMutableTreeNode {
   public Album getAlbum() {
     return (Album) super.getUserObject();
   }
+
+  @Override
+  boolean matches(Track track) {
+    return track.getAlbum().equals(getAlbum());
+  }
+
+  @Override
+  List<Track> getCandidateTracks() {
+    return copy(getAlbum().getTracksCache());
+  }
+
+  @Override
+  Object getChildKey(Track track) {
+    return track;
+  }
 }
 
 /**
@@ -1149,12 +1341,47 @@ class TrackNode extends DefaultMutableTreeNode {
  * 
  * Discovery date filter tree node
  */
-class DiscoveryDateNode extends DefaultMutableTreeNode {
+class DiscoveryDateNode extends TracksGroupNode {
+  /** Periods names, from the most recent. */
+  static final String[] PERIODS_LABELS = { "TracksTreeView.36", "TracksTreeView.37",
+      "TracksTreeView.44", "TracksTreeView.38", "TracksTreeView.40", "TracksTreeView.41",
+      "TracksTreeView.42", "TracksTreeView.43", "TracksTreeView.39" };
+  /** Periods upper bounds in ms, the last period has none. */
+  private static final long[] PERIODS_BOUNDS = { 604800000l, 2628000000l, 7884000000l,
+      15768000000l, 31536000000l, 63072000000l, 157680000000l, 315360000000l };
+  /** Period index. */
+  private final int period;
+
+  /**
+   * @param period the period index
+   */
+  public DiscoveryDateNode(int period) {
+    super(Messages.getString(PERIODS_LABELS[period]));
+    this.period = period;
+  }
+
+  /**
+   * @return the period index
+   */
+  public int getPeriod() {
+    return period;
+  }
+
   /**
-   * @param string
+   * Gets the period of a track.
+   * 
+   * @param track the track
+   * 
+   * @return the period index
    */
-  public DiscoveryDateNode(String string) {
-    super(string);
+  static int getPeriod(Track track) {
+    long diff = System.currentTimeMillis() - track.getDiscoveryDate().getTime();
+    for (int i = 0; i < PERIODS_BOUNDS.length; i++) {
+      if (diff < PERIODS_BOUNDS[i]) {
+        return i;
+      }
+    }
+    return PERIODS_BOUNDS.length;
   }
 
   /**
@@ -1163,16 +1390,24 @@ class DiscoveryDateNode extends DefaultMutableTreeNode {
    * 
    * @see DefaultMutableTreeNode.getUserObject() 
    */
-  @SuppressWarnings("unchecked")
   @Override
   public Object getUserObject() {
-    List<Item> out = new ArrayList<Item>(10);
-    Enumeration<DefaultMutableTreeNode> childrens = children();
-    while (childrens.hasMoreElements()) {
-      DefaultMutableTreeNode node = childrens.nextElement();
-      out.add((Item) node.getUserObject());
-    }
-    return out;
+    return new ArrayList<Item>(getTracks());
+  }
+
+  @Override
+  boolean matches(Track track) {
+    return getPeriod(track) == period;
+  }
+
+  @Override
+  List<Track> getCandidateTracks() {
+    return TrackManager.getInstance().getTracks();
+  }
+
+  @Override
+  Object getChildKey(Track track) {
+    return track.getAlbum();
   }
 
   private static final long serialVersionUID = 7123195836014138019L;
@@ -166,7 +166,6 @@ public final class InformationJPanel extends JXPanel implements Observer {
     eventSubjectSet.add(JajukEvents.PLAYER_STOP);
     eventSubjectSet.add(JajukEvents.THUMB_CREATED);
     eventSubjectSet.add(JajukEvents.FILE_COPIED);
-    eventSubjectSet.add(JajukEvents.FILE_CONVERSION);
     return eventSubjectSet;
   }
 
@@ -356,26 +355,13 @@ public final class InformationJPanel extends JXPanel implements Observer {
               // if no property, the party is done
               setMessage("", InformationJPanel.MessageType.INFORMATIVE);
             } else {
-              String filename = properties.getProperty(Const.DETAIL_CONTENT);
-              if (filename != null) {
-                setMessage(Messages.getString("Device.45") + filename + "]",
+              String done = properties.getProperty(Const.DETAIL_DONE);
+              String total = properties.getProperty(Const.DETAIL_TOTAL);
+              if (done != null && total != null) {
+                setMessage(Messages.getString("Device.49") + done + "/" + total + "]",
                     InformationJPanel.MessageType.INFORMATIVE);
               }
             }
-          } else if (JajukEvents.FILE_CONVERSION.equals(subject)) {
-            Properties properties = event.getDetails();
-            if (properties == null) {
-              // if no property, the party is done
-              setMessage("", InformationJPanel.MessageType.INFORMATIVE);
-            } else {
-              String filename = properties.getProperty(Const.DETAIL_CONTENT);
-              String target = properties.getProperty(Const.DETAIL_NEW);
-              if (filename != null) {
-                setMessage(
-                    Messages.getString("Device.46") + filename + Messages.getString("Device.47")
-                        + target + "]", InformationJPanel.MessageType.INFORMATIVE);
-              }
-            }
           }
         }
       });
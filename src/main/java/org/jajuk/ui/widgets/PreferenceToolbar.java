@@ -24,6 +24,7 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -39,6 +40,7 @@ import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.events.Observer;
+import org.jajuk.services.core.RatingService;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.ui.actions.ActionManager;
 import org.jajuk.ui.actions.JajukActions;
@@ -100,9 +102,9 @@ public class PreferenceToolbar extends JajukJToolbar implements Observer {
         if (file != null) {
           Track track = file.getTrack();
           track.setPreference(3 - jcbPreference.getSelectedIndex());
+          // Force immediate rating refresh (without using the rating manager)
+          RatingService.notifyRateChanged(Collections.singletonList(track));
         }
-        // Force immediate rating refresh (without using the rating manager)
-        ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
       }
     };
     jcbPreference.addActionListener(listener);
@@ -182,6 +182,7 @@ public final class Conf implements Const {
     defaults.put(CONF_CONFIRMATIONS_BEFORE_TAG_WRITE, FALSE);
     defaults.put(CONF_OPTIONS_HIDE_UNMOUNTED, FALSE);
     defaults.put(CONF_OPTIONS_PUSH_ON_CLICK, FALSE);
+    defaults.put(CONF_EVENTS_COALESCING, TRUE);
     defaults.put(CONF_OPTIONS_PUSH_ON_DROP, FALSE);
     defaults.put(CONF_OPTIONS_NOVELTIES_AGE, "30");
     defaults.put(CONF_OPTIONS_VISIBLE_PLANNED, "10");
@@ -211,6 +212,17 @@ public final class Conf implements Const {
     defaults.put(CONF_BACKUP_SIZE, "40");
     defaults.put(CONF_PATTERN_REFACTOR, PATTERN_DEFAULT_REORG);
     defaults.put(CONF_COLLECTION_CHARSET, "UTF-8");
+    defaults.put(CONF_COLLECTION_SNAPSHOT, TRUE);
+    defaults.put(CONF_COLLECTION_JOURNAL, TRUE);
+    defaults.put(CONF_COLLECTION_JOURNAL_MAX_SIZE, "5");
+    defaults.put(CONF_COLLECTION_PARALLEL_LOADING, TRUE);
+    defaults.put(CONF_REFRESH_PARALLEL, TRUE);
+    defaults.put(CONF_REFRESH_WALKER_THREADS, "2");
+    defaults.put(CONF_REFRESH_TAG_READER_THREADS, "4");
+    defaults.put(CONF_SYNC_COPY_THREADS, "2");
+    defaults.put(CONF_SYNC_CHECKSUM, FALSE);
+    defaults.put(CONF_REFRESH_SKIP_UNCHANGED, TRUE);
+    defaults.put(CONF_DEVICES_WATCH, FALSE);
     defaults.put(CONF_NETWORK_USE_PROXY, FALSE);
     defaults.put(CONF_NETWORK_NONE_INTERNET_ACCESS, FALSE);
     // default proxy name, just a guess
@@ -218,6 +230,8 @@ public final class Conf implements Const {
     defaults.put(CONF_NETWORK_PROXY_PORT, "3128");
     defaults.put(CONF_NETWORK_PROXY_LOGIN, "");
     defaults.put(CONF_NETWORK_CONNECTION_TO, "10");
+    defaults.put(CONF_LYRICS_PARALLEL, TRUE);
+    defaults.put(CONF_LYRICS_MISS_TTL, "1");
     defaults.put(CONF_NETWORK_PROXY_TYPE, PROXY_TYPE_HTTP);
     defaults.put(CONF_COVERS_AUTO_COVER, TRUE);
     defaults.put(CONF_COVERS_MIRROW_COVER, FALSE);
@@ -226,6 +240,9 @@ public final class Conf implements Const {
     defaults.put(CONF_COVERS_SAVE_EXPLORER_FRIENDLY, FALSE);
     defaults.put(FILE_DEFAULT_COVER, "front;cover;folder;back");
     defaults.put(CONF_COVERS_SIZE, "3"); // medium and large
+    defaults.put(CONF_THUMBS_THREADS, "2");
+    defaults.put(CONF_THUMBS_WARM_UP, FALSE);
+    defaults.put(CONF_COVERS_CACHE_SIZE, "32");
     defaults.put(CONF_TRACKS_TABLE_EDITION, FALSE);
     defaults.put(CONF_FILES_TABLE_EDITION, FALSE);
     defaults.put(CONF_ALBUMS_TABLE_EDITION, FALSE);
@@ -268,6 +285,7 @@ public final class Conf implements Const {
     defaults.put(CONF_OPTIONS_HOTKEYS, FALSE);
     defaults.put(CONF_MPLAYER_ARGS, "");
     defaults.put(CONF_ENV_VARIABLES, "");
+    defaults.put(CONF_MPLAYER_REUSE_PROCESS, TRUE);
     defaults.put(CONF_USE_VOLNORM, "false");
     defaults.put(CONF_SHOW_TIP_ON_STARTUP, FALSE);
     defaults.put(CONF_CATALOG_PAGE_SIZE, "100");
@@ -284,6 +302,8 @@ public final class Conf implements Const {
     defaults.put(CONF_IGNORED_RELEASES, "");
     defaults.put(CONF_LASTFM_AUDIOSCROBBLER_ENABLE, FALSE);
     defaults.put(CONF_LASTFM_INFO, TRUE);
+    defaults.put(CONF_LASTFM_CACHE_SIZE, "50");
+    defaults.put(CONF_LASTFM_CACHE_TTL, "30");
     defaults.put(CONF_WEBRADIO_WAS_PLAYING, FALSE);
     defaults.put(CONF_PERSPECTIVE_ICONS_SIZE, "32");
     // We use trailing pattern to allow scripting like MSN plugins to
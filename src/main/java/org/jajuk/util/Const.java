@@ -60,6 +60,8 @@ public interface Const {
   int INC_RATE_TIME = 20;
   /** Max number of concurrent executions by observation manager for a given event. */
   int MAX_EVENT_EXECUTIONS = 15;
+  /** Number of threads executing events asynchronously. */
+  int EVENT_EXECUTOR_THREADS = 8;
   /** Min number of tracks in a DJ selection without track unicity. */
   int MIN_TRACKS_NUMBER_WITHOUT_UNICITY = 100;
   /** Default number of tracks in a transition. */
@@ -125,6 +127,10 @@ public interface Const {
   String FILE_SAVING_FILE_EXTENSION = "saving";
   String FILE_SAVED_PROOF_FILE_EXTENSION = "proof";
   String FILE_COLLECTION = "collection.xml";
+  /** Binary snapshot of the collection, loaded instead of collection.xml when up to date. */
+  String FILE_COLLECTION_SNAPSHOT = "collection.bin";
+  /** Changes made to the collection since collection.xml was last written. */
+  String FILE_COLLECTION_JOURNAL = "collection.journal";
   String FILE_REPORTING_CACHE_FILE = "cache/report";
   /** The Constant XML_EXT.   */
   String FILE_XML_EXT = ".xml";
@@ -163,7 +169,11 @@ public interface Const {
   String LAST_FM_ARTIST_WIKI_CACHE_DIR = "artist_wiki";
   /** Last.fm artist submission cache dir. */
   String LAST_FM_SUBMISSION_CACHE_DIR = "submission";
+  /** Last.fm information cache file. */
+  String LAST_FM_CACHE_FILE = "lastfm.pack";
   String FILE_INTERNAL_CACHE = "internal";
+  /** Web lyrics cache directory, inside the cache directory. */
+  String FILE_LYRICS_CACHE = "lyrics";
   String FILE_THUMBS = "thumbs";
   String FILE_THUMB_NO_COVER = "nocover.png";
   String FILE_THUMB_NONE = "none.png";
@@ -287,8 +297,17 @@ public interface Const {
   String DETAIL_VIEW = "view";
   String DETAIL_REASON = "reason";
   String DETAIL_CONTENT = "content";
+  /**
+   * Provides the items (a collection of items) changed by a RATE_CHANGED or DEVICE_REFRESH
+   * event, events without it may concern any item.
+   */
+  String DETAIL_ITEMS = "items";
   String DETAIL_OLD = "old";
   String DETAIL_NEW = "new";
+  /** Provides the number of files exported so far by a FILE_COPIED event. */
+  String DETAIL_DONE = "done";
+  /** Provides the number of files to export of a FILE_COPIED event. */
+  String DETAIL_TOTAL = "total";
   // startup mode
   String STARTUP_MODE_NOTHING = "nothing";
   String STARTUP_MODE_SHUFFLE = "shuffle";
@@ -332,6 +351,8 @@ public interface Const {
   String CONF_OPTIONS_VISIBLE_PLANNED = "jajuk.options.visible_planned";
   /** Default action (play or push) when clicking on an item. */
   String CONF_OPTIONS_PUSH_ON_CLICK = "jajuk.options.default_action_click";
+  /** Drop refresh events equal to one still waiting for execution ?. */
+  String CONF_EVENTS_COALESCING = "jajuk.events_coalescing";
   /** Default action (play or push) when dropping on an item. */
   String CONF_OPTIONS_PUSH_ON_DROP = "jajuk.options.default_action_drop";
   /** Table / tree sync option prefix. */
@@ -371,6 +392,31 @@ public interface Const {
   String CONF_BACKUP_SIZE = "jajuk.backup_size";
   /** Collection file charset (utf-8 or utf-16). */
   String CONF_COLLECTION_CHARSET = "jajuk.collection_charset";
+  /** Write and load the binary collection snapshot ?. */
+  String CONF_COLLECTION_SNAPSHOT = "jajuk.collection_snapshot";
+  /** Commit collection changes to the collection journal when possible ?. */
+  String CONF_COLLECTION_JOURNAL = "jajuk.collection_journal";
+  /** Collection journal size in MB over which collection.xml is written again. */
+  String CONF_COLLECTION_JOURNAL_MAX_SIZE = "jajuk.collection_journal.max_size";
+  /** Build collection items using a thread per collection section at startup ?. */
+  String CONF_COLLECTION_PARALLEL_LOADING = "jajuk.collection_parallel_loading";
+  /** Walk directories and read tags using several threads during devices refresh ?. */
+  String CONF_REFRESH_PARALLEL = "jajuk.refresh.parallel";
+  /** Number of threads walking directories during a parallel refresh. */
+  String CONF_REFRESH_WALKER_THREADS = "jajuk.refresh.walker_threads";
+  /** Number of threads reading tags during a parallel refresh. */
+  String CONF_REFRESH_TAG_READER_THREADS = "jajuk.refresh.tag_reader_threads";
+  /** Number of threads copying files during a device synchronization. */
+  String CONF_SYNC_COPY_THREADS = "jajuk.sync.copy_threads";
+  /** Compare files and verify copies with their checksum during a device synchronization. */
+  String CONF_SYNC_CHECKSUM = "jajuk.sync.checksum";
+  /**
+   * Only read again tags of files whose size or modification date changed on deep refresh ? A
+   * full refresh chosen by the user or forced after an upgrade always reads all tags.
+   */
+  String CONF_REFRESH_SKIP_UNCHANGED = "jajuk.refresh.skip_unchanged";
+  /** Watch mounted devices file systems to apply changes without periodic refresh ?. */
+  String CONF_DEVICES_WATCH = "jajuk.devices.watch";
   /** Path of workspace the user wants to use but may be unavailable */
   String CONF_TARGET_WORKSPACE_PATH = "jajuk.target_workspace";
   String CONF_NETWORK_USE_PROXY = "jajuk.network.use_proxy";
@@ -382,6 +428,10 @@ public interface Const {
   String CONF_LASTFM_AUDIOSCROBBLER_ENABLE = "jajuk.network.audioscrobbler";
   String CONF_LASTFM_USER = "jajuk.network.ASUser";
   String CONF_LASTFM_PASSWORD = "jajuk.network.ASPassword";
+  /** Disk budget in MB of the last.fm information cache. */
+  String CONF_LASTFM_CACHE_SIZE = "jajuk.network.lastfm_cache_size";
+  /** Number of days last.fm information are cached. */
+  String CONF_LASTFM_CACHE_TTL = "jajuk.network.lastfm_cache_ttl";
   String CONF_COVERS_AUTO_COVER = "jajuk.covers.auto_cover";
   String CONF_COVERS_MIRROW_COVER = "jajuk.covers.mirrow_cover";
   String CONF_COVERS_MIRROW_COVER_FS_MODE = "jajuk.covers.mirrow_cover_fs_mode";
@@ -389,7 +439,17 @@ public interface Const {
   String CONF_COVERS_SAVE_EXPLORER_FRIENDLY = "jajuk.covers.save.explorer.friendly";
   String CONF_COVERS_SIZE = "jajuk.covers.size";
   String CONF_COVERS_ACCURACY = "jajuk.covers.accuracy";
+  /** Number of threads creating thumbs. */
+  String CONF_THUMBS_THREADS = "jajuk.covers.thumbs_threads";
+  /** Create the missing thumbs of all albums after a refresh ?. */
+  String CONF_THUMBS_WARM_UP = "jajuk.covers.thumbs_warm_up";
+  /** Memory budget in MB of decoded thumbs and covers kept in memory. */
+  String CONF_COVERS_CACHE_SIZE = "jajuk.covers.cache_size";
   String CONF_NETWORK_CONNECTION_TO = "jajuk.network.connection_timeout";
+  /** Query the web lyrics providers in parallel, first found lyrics win ?. */
+  String CONF_LYRICS_PARALLEL = "jajuk.lyrics.parallel";
+  /** Days before lyrics not found on the web are searched again. */
+  String CONF_LYRICS_MISS_TTL = "jajuk.lyrics.miss_ttl";
   /** Last Option selected tab. */
   String CONF_OPTIONS_TAB = "jajuk.options.tab";
   /** Data buffer size in bytes. */
@@ -478,6 +538,8 @@ public interface Const {
   String CONF_MPLAYER_ARGS = "jajuk.player.mplayer_args";
   /** MPlayer additional environment variables *. */
   String CONF_ENV_VARIABLES = "jajuk.player.env_variables";
+  /** Play next tracks with an idle mplayer process instead of starting a new one. */
+  String CONF_MPLAYER_REUSE_PROCESS = "jajuk.player.mplayer_reuse_process";
   /** Max Number of thumbs displayed at the same time in catalog view. */
   String CONF_CATALOG_PAGE_SIZE = "jajuk.catalog.pages_size";
   /** Show Catalog popups. */
@@ -562,6 +624,8 @@ public interface Const {
   String XML_YEARS = "years";
   String XML_PLAY = "play";
   String XML_FILE_DATE = "date";
+  /** File modification date in ms, used with the size to detect changed files. */
+  String XML_FILE_MODIFICATION = "mtime";
   String XML_TRACK_NAME = "name";
   String XML_TRACK_ALBUM = "album";
   String XML_TRACK_GENRE = "style";
@@ -667,7 +731,7 @@ public interface Const {
       XML_PLAYLIST_FILES, XML_TRACK_COMMENT, XML_ANY, XML_TRACK_ORDER, XML_DEVICE_SYNCHRO_MODE,
       XML_DEVICE_SYNCHRO_SOURCE, XML_FILE_DATE, XML_TRACK_TOTAL_PLAYTIME, XML_TRACK_PREFERENCE,
       XML_TRACK_BANNED, XML_TRACK_DISC_NUMBER, XML_ALBUM_ARTIST, XML_ALBUM_DISC_ID,
-      XML_TRACK_SCROBBLE, XML_ORIGIN };
+      XML_TRACK_SCROBBLE, XML_ORIGIN, XML_FILE_MODIFICATION };
   /** Option name. */
   String PROPERTY_SEPARATOR = "Property_";
   // Formats
@@ -22,8 +22,15 @@ package org.jajuk.util;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -36,6 +43,12 @@ import org.jajuk.util.log.Log;
  * Filter on meta information.
  */
 public class Filter {
+  /** Minimal list size to filter it with several threads. */
+  private static final int PARALLEL_THRESHOLD = 20000;
+  /** Number of filtering threads. */
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+  /** Filtering threads, created at first parallel filtering. */
+  private static ExecutorService executor;
   /** Key. */
   String key;
   /** Value*. */
@@ -100,15 +113,15 @@ public class Filter {
   /**
    * Filter a list.
    * <p>
-   * Work on the input collection (for performance reasons and to save memory we
-   * don't create a new list)
-   * </p>
-   * <p>
-   * This filter is not thread safe.
+   * The filter is compiled once for the whole list. Long lists are filtered by several threads,
+   * the items order is kept.
    * </p>
    *
-   * @param list The input list to filter. Filtering is done in-place on this list.
+   * @param list The input list to filter, it is not modified.
    * @param filter The filter to apply on the list.
+   * @param clazz the items class
+   *
+   * @return the filtered list, the input list itself if the filter is void
    */
   public static <T extends Item> List<T> filterItems(List<T> list, Filter filter,
       @SuppressWarnings("unused")
@@ -116,62 +129,222 @@ public class Filter {
     if (filter == null || filter.getValue() == null) {
       return list;
     }
-    // Check if property is not the "fake" any property
-    boolean bAny = (filter.getProperty() == null || "any".equals(filter.getProperty()));
-    String comparator = null;
     String checked = filter.getValue();
     // If checked is void, return the list as it
     if (StringUtils.isBlank(checked)) {
       return list;
     }
     // If pattern is wrong, return a void list
+    final ItemMatcher matcher;
     try {
-      Pattern.compile(checked);
+      matcher = filter.compile();
     } catch (PatternSyntaxException e) {
       Log.debug("Wrong regexp pattern: " + checked);
       return Collections.emptyList();
     }
+    if (list.size() < PARALLEL_THRESHOLD || THREADS == 1) {
+      return filterRange(list, 0, list.size(), matcher);
+    }
+    return filterParallel(list, matcher);
+  }
+
+  /**
+   * Compile the filter.
+   *
+   * @return the item matcher
+   *
+   * @throws PatternSyntaxException if the value is not a valid regular expression
+   */
+  private ItemMatcher compile() {
+    Pattern pattern = Pattern.compile(sValue);
+    if (bExact) {
+      return new PatternMatcher(pattern);
+    }
+    // Check if property is not the "fake" any property
+    boolean bAny = (key == null || "any".equals(key));
+    return new TokensMatcher(sValue, bAny ? null : key, bHuman);
+  }
+
+  /**
+   * Filter a range of a list.
+   *
+   * @param list the list
+   * @param from first index, inclusive
+   * @param to last index, exclusive
+   * @param matcher the compiled filter
+   *
+   * @return the matching items
+   */
+  private static <T extends Item> List<T> filterRange(List<T> list, int from, int to,
+      ItemMatcher matcher) {
     List<T> newList = new ArrayList<T>();
-    Iterator<T> it = list.iterator();
-    while (it.hasNext()) {
-      T item = it.next();
-      // If none property set, the search if global "any"
-      if (bAny) {
-        comparator = item.getAny();
-      } else {
-        if (filter.isHuman()) {
-          comparator = item.getHumanValue(filter.getProperty());
-        } else {
-          comparator = item.getStringValue(filter.getProperty());
+    for (int i = from; i < to; i++) {
+      T item = list.get(i);
+      if (matcher.matches(item)) {
+        newList.add(item);
+      }
+    }
+    return newList;
+  }
+
+  /**
+   * Filter a list using several threads, each one filtering a range of the list.
+   *
+   * @param list the list, accessed by index so it should be a random access list
+   * @param matcher the compiled filter
+   *
+   * @return the matching items
+   */
+  private static <T extends Item> List<T> filterParallel(final List<T> list,
+      final ItemMatcher matcher) {
+    int size = list.size();
+    List<Future<List<T>>> ranges = new ArrayList<Future<List<T>>>(THREADS);
+    for (int i = 0; i < THREADS; i++) {
+      final int from = (int) ((long) size * i / THREADS);
+      final int to = (int) ((long) size * (i + 1) / THREADS);
+      ranges.add(getExecutor().submit(new Callable<List<T>>() {
+        @Override
+        public List<T> call() {
+          return filterRange(list, from, to, matcher);
         }
+      }));
+    }
+    List<T> newList = new ArrayList<T>();
+    try {
+      for (Future<List<T>> range : ranges) {
+        newList.addAll(range.get());
       }
-      // perform the test
-      boolean bMatch = false;
-      if (filter.isExact()) {
-        // Check every item property (no not use getAny() string will not match
-        // as it is a concatenation of all properties)
-        for (String propertyName : item.getProperties().keySet()) {
-          // Ignore technical/invisible property (id for instance)
-          PropertyMetaInformation meta = item.getMeta(propertyName);
-          if (!meta.isVisible()) {
-            continue;
-          }
-          String value = item.getHumanValue(propertyName);
-          // Escape the string so regexp ignore special characters
-          value = UtilString.escapeString(value);
-          if (value.matches(checked)) {
-            bMatch = true;
-            break;
-          }
+      return newList;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      Log.error(e);
+    } catch (ExecutionException e) {
+      Log.error(e);
+    }
+    // Something went wrong, try again from the calling thread
+    return filterRange(list, 0, size, matcher);
+  }
+
+  /**
+   * Gets the filtering threads pool, created at first use.
+   *
+   * @return the executor
+   */
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Filter Thread " + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
         }
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * A compiled filter, it is immutable and can be used by several threads.
+   */
+  private abstract static class ItemMatcher {
+    /**
+     * Check if an item matches.
+     *
+     * @param item the item
+     *
+     * @return true if the item matches the filter
+     */
+    abstract boolean matches(Item item);
+  }
+
+  /**
+   * Exact matching : a visible property human value should match the regular expression.
+   */
+  private static final class PatternMatcher extends ItemMatcher {
+    /** The pattern. */
+    private final Pattern pattern;
+
+    /**
+     * Instantiates a new pattern matcher.
+     *
+     * @param pattern the pattern
+     */
+    PatternMatcher(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.util.Filter.ItemMatcher#matches(org.jajuk.base.Item)
+     */
+    @Override
+    boolean matches(Item item) {
+      // Check every item property (no not use getAny() string will not match
+      // as it is a concatenation of all properties)
+      for (String propertyName : item.getProperties().keySet()) {
+        // Ignore technical/invisible property (id for instance)
+        PropertyMetaInformation meta = item.getMeta(propertyName);
+        if (!meta.isVisible()) {
+          continue;
+        }
+        String value = item.getHumanValue(propertyName);
+        // Escape the string so regexp ignore special characters
+        if (value != null && pattern.matcher(UtilString.escapeString(value)).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Default matching : the value should contain all the filter words, ignoring case and order.
+   * Do not use Regexp, too costly.
+   */
+  private static final class TokensMatcher extends ItemMatcher {
+    /** Lower case filter words. */
+    private final String[] tokens;
+    /** Filtered property, null for any property. */
+    private final String property;
+    /** Filter the property human value ?. */
+    private final boolean human;
+
+    /**
+     * Instantiates a new tokens matcher.
+     *
+     * @param value the filter value
+     * @param property the filtered property, null for any property
+     * @param human filter the property human value ?
+     */
+    TokensMatcher(String value, String property, boolean human) {
+      this.tokens = StringUtils.split(value.toLowerCase(Locale.getDefault()), ' ');
+      this.property = property;
+      this.human = human;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.util.Filter.ItemMatcher#matches(org.jajuk.base.Item)
+     */
+    @Override
+    boolean matches(Item item) {
+      String value;
+      if (property == null) {
+        value = item.getAnyLowerCase();
       } else {
-        // Do not use Regexp matches() method, too costly
-        bMatch = UtilString.matchesIgnoreCaseAndOrder(checked, comparator);
+        value = human ? item.getHumanValue(property) : item.getStringValue(property);
+        if (value == null) {
+          return false;
+        }
+        value = value.toLowerCase(Locale.getDefault());
       }
-      if (bMatch) {
-        newList.add(item);
+      for (String token : tokens) {
+        if (value.indexOf(token) == -1) {
+          return false;
+        }
       }
+      return true;
     }
-    return newList;
   }
 }
@@ -16,30 +16,46 @@
  *  You should have received a copy of the GNU General Public License
  *  along with this program; if not, write to the Free Software
  *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
- *  
+ *
  */
 package org.jajuk.util;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-import org.jajuk.util.log.Log;
-
 /**
  * Convenient class to compute MD5 hashcodes and return them using predefined
  * base.
+ * <p>
+ * Hashes are the base 36 representation of the absolute value of the MD5 digest of the UTF-8
+ * input read as a signed 128 bits integer (as <code>new BigInteger(digest).abs().toString(36)
+ * </code>), this is the items IDs format stored in collection.xml. Each thread uses its own
+ * digest and buffers so IDs can be computed concurrently by collection loading and refresh
+ * threads.
+ * </p>
  */
 public final class MD5Processor {
-  private static MessageDigest msgDigest;
-  static {
-    try {
-      msgDigest = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      Log.error(e);
+  /** Base 36 digits. */
+  private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+  /** Maximal number of base 36 digits of a 128 bits unsigned integer. */
+  private static final int MAX_DIGITS = 25;
+  /** Recently computed IDs cache size, must be a power of 2. */
+  private static final int CACHE_SIZE = 4096;
+  /**
+   * Recently computed IDs by digest low bits. Items names (artists, genres, years...) are hashed
+   * again for every registered track, a hit avoids encoding and interning the ID. Entries are
+   * immutable so concurrent reads and writes are safe without lock, a lost write is only a
+   * miss.
+   */
+  private static final CachedID[] CACHE = new CachedID[CACHE_SIZE];
+  /** Per thread digest and buffers. */
+  private static final ThreadLocal<Hasher> HASHERS = new ThreadLocal<Hasher>() {
+    @Override
+    protected Hasher initialValue() {
+      return new Hasher();
     }
-  }
+  };
 
   /**
    * private constructor to avoid instantiating utility class.
@@ -49,23 +65,188 @@ public final class MD5Processor {
 
   /**
    * MD5 hashcoding, return a hashcode.
-   * 
+   *
    * @param sIn input String
-   * 
+   *
    * @return hashed output
    */
-  public static final String hash(String sIn) {
-    try {
-      msgDigest.update(sIn.getBytes("UTF-8"));
-    } catch (UnsupportedEncodingException e) {
-      // This should not happen
-      Log.error(e);
-      return null;
+  public static String hash(CharSequence sIn) {
+    return HASHERS.get().hash(sIn);
+  }
+
+  /**
+   * A computed ID and its digest.
+   */
+  private static final class CachedID {
+    /** Digest high bits. */
+    private final long high;
+    /** Digest low bits. */
+    private final long low;
+    /** The ID. */
+    private final String id;
+
+    /**
+     * Instantiates a new cached ID.
+     *
+     * @param high digest high bits
+     * @param low digest low bits
+     * @param id the ID
+     */
+    CachedID(long high, long low, String id) {
+      this.high = high;
+      this.low = low;
+      this.id = id;
+    }
+  }
+
+  /**
+   * Digest and buffers of a thread.
+   */
+  private static final class Hasher {
+    /** The MD5 digest. */
+    private final MessageDigest digest;
+    /** UTF-8 encoded input, grown as needed. */
+    private byte[] bytes = new byte[256];
+    /** Digest output. */
+    private final byte[] out = new byte[16];
+    /** Base 36 digits, filled from the end. */
+    private final char[] chars = new char[MAX_DIGITS];
+    /** 128 bits unsigned value as four 32 bits limbs, most significant first. */
+    private final long[] limbs = new long[4];
+
+    /**
+     * Instantiates a new hasher.
+     */
+    Hasher() {
+      try {
+        digest = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        // MD5 is provided by all JVMs
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * Hash a string.
+     *
+     * @param sIn input String
+     *
+     * @return the interned ID
+     */
+    String hash(CharSequence sIn) {
+      // encode() may grow the bytes buffer
+      int length = encode(sIn);
+      digest.update(bytes, 0, length);
+      try {
+        digest.digest(out, 0, out.length);
+      } catch (DigestException e) {
+        // This should not happen, the output buffer is large enough
+        throw new IllegalStateException(e);
+      }
+      long high = toLong(0);
+      long low = toLong(8);
+      int slot = (int) low & (CACHE_SIZE - 1);
+      CachedID cached = CACHE[slot];
+      if (cached != null && cached.high == high && cached.low == low) {
+        return cached.id;
+      }
+      // Important : we internalize the result of this computation
+      // because all equals between items is done with '==' operator
+      // against strings and new discovered items call this method.
+      // IDs read from collection.xml are interned too.
+      String id = toBase36(high, low).intern();
+      CACHE[slot] = new CachedID(high, low, id);
+      return id;
+    }
+
+    /**
+     * UTF-8 encode the input into the bytes buffer, unpaired surrogates are replaced by '?' like
+     * String.getBytes() does.
+     *
+     * @param sIn the input
+     *
+     * @return the number of bytes
+     */
+    private int encode(CharSequence sIn) {
+      int length = sIn.length();
+      if (bytes.length < length * 3) {
+        bytes = new byte[length * 3];
+      }
+      int pos = 0;
+      for (int i = 0; i < length; i++) {
+        char c = sIn.charAt(i);
+        if (c < 0x80) {
+          bytes[pos++] = (byte) c;
+        } else if (c < 0x800) {
+          bytes[pos++] = (byte) (0xc0 | (c >> 6));
+          bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(sIn.charAt(i + 1))) {
+          // A pair of 3 bytes fits in the 6 bytes reserved for two chars
+          int cp = Character.toCodePoint(c, sIn.charAt(++i));
+          bytes[pos++] = (byte) (0xf0 | (cp >> 18));
+          bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+          bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+          bytes[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+          bytes[pos++] = '?';
+        } else {
+          bytes[pos++] = (byte) (0xe0 | (c >> 12));
+          bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+          bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+        }
+      }
+      return pos;
+    }
+
+    /**
+     * Read 8 big-endian bytes of the digest.
+     *
+     * @param offset the offset
+     *
+     * @return the long
+     */
+    private long toLong(int offset) {
+      long value = 0;
+      for (int i = offset; i < offset + 8; i++) {
+        value = (value << 8) | (out[i] & 0xff);
+      }
+      return value;
+    }
+
+    /**
+     * Base 36 representation of the absolute value of a signed 128 bits integer.
+     *
+     * @param high the high bits
+     * @param low the low bits
+     *
+     * @return the string
+     */
+    private String toBase36(long high, long low) {
+      if (high < 0) {
+        // Two's complement negation, -2^127 becomes 2^127 read as unsigned
+        low = -low;
+        high = ~high + (low == 0 ? 1 : 0);
+      }
+      limbs[0] = high >>> 32;
+      limbs[1] = high & 0xffffffffL;
+      limbs[2] = low >>> 32;
+      limbs[3] = low & 0xffffffffL;
+      int pos = MAX_DIGITS;
+      int first = 0;
+      do {
+        long remainder = 0;
+        for (int i = first; i < 4; i++) {
+          long current = (remainder << 32) | limbs[i];
+          limbs[i] = current / 36;
+          remainder = current % 36;
+        }
+        chars[--pos] = DIGITS[(int) remainder];
+        while (first < 4 && limbs[first] == 0) {
+          first++;
+        }
+      } while (first < 4);
+      return new String(chars, pos, MAX_DIGITS - pos);
     }
-    byte[] digest = msgDigest.digest();
-    // Important : we internalize the result of this computation
-    // because all equals between items is done with '==' operator
-    // against strings and new discovered items call this method
-    return new BigInteger(digest).abs().toString(36).intern();
   }
 }
@@ -0,0 +1,318 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.jajuk.events.JajukEvent;
+import org.jajuk.events.JajukEvents;
+import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.ExitService;
+import org.jajuk.util.log.Log;
+
+/**
+ * Export of the Prepare Party files to a directory.
+ * <p>
+ * Plain copies run on a pool of <code>CONF_SYNC_COPY_THREADS</code> threads (the same setting
+ * as device synchronizations as both are bound by the target device) and use
+ * <code>FileChannel.transferTo()</code>. Conversions spawn an external pacpl process each and run
+ * on a separate pool of one thread per core so that they never wait for copies nor block them.
+ * The playlist is written in the files order as soon as each file is exported, and progress is
+ * notified with a single <code>FILE_COPIED</code> event per period holding the number of
+ * exported files.
+ * </p>
+ */
+final class PartyExporter {
+  /** Max number of bytes transfered by a single transferTo() call. */
+  private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+  /** Progress notification period in ms. */
+  private static final int PROGRESS_DELAY = 1000;
+  /** Files to export, in playlist order. */
+  private final List<org.jajuk.base.File> files;
+  /** The target location. */
+  private final File destDir;
+  /** Whether file names are normalized. */
+  private final boolean isNormalize;
+  /** Whether files of another format than media are converted. */
+  private final boolean isConvertMedia;
+  /** Target media format. */
+  private final String media;
+  /** The command-string to call pacpl. */
+  private final String convertCommand;
+  /** Number of exported files. */
+  private final AtomicInteger exportedFiles = new AtomicInteger(0);
+  /** Number of files copied in their original format because the conversion failed. */
+  private final AtomicInteger convertErrors = new AtomicInteger(0);
+  /** Set when the export must stop. */
+  private volatile boolean stopped = false;
+
+  /**
+   * Instantiates a new party exporter.
+   *
+   * @param files the files to export, in playlist order
+   * @param destDir the target location
+   * @param isNormalize whether file names are normalized
+   * @param isConvertMedia whether files of another format than media are converted
+   * @param media the target media format
+   * @param convertCommand the command-string to call pacpl
+   */
+  PartyExporter(List<org.jajuk.base.File> files, File destDir, boolean isNormalize,
+      boolean isConvertMedia, String media, String convertCommand) {
+    this.files = files;
+    this.destDir = destDir;
+    this.isNormalize = isNormalize;
+    this.isConvertMedia = isConvertMedia;
+    this.media = media;
+    this.convertCommand = convertCommand;
+  }
+
+  /**
+   * Gets the number of exported files.
+   *
+   * @return the number of exported files
+   */
+  int getExportedFiles() {
+    return exportedFiles.get();
+  }
+
+  /**
+   * Gets the number of files that could not be converted.
+   *
+   * @return the number of files copied in their original format
+   */
+  int getConvertErrors() {
+    return convertErrors.get();
+  }
+
+  /**
+   * Export the files and write the playlist. The first error stops the export.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void export() throws IOException {
+    ExecutorService copyPool = newPool("PrepareParty - File Copy ",
+        Math.max(1, Conf.getInt(Const.CONF_SYNC_COPY_THREADS)));
+    ExecutorService convertPool = null;
+    if (isConvertMedia) {
+      convertPool = newPool("PrepareParty - Conversion ", Runtime.getRuntime()
+          .availableProcessors());
+    }
+    try {
+      List<Future<String>> futures = new ArrayList<Future<String>>(files.size());
+      int count = 0;
+      for (final org.jajuk.base.File entry : files) {
+        count++;
+        // We can use the actual file name as we do numbering of the files,
+        // this is important for existing playlists to keep the order
+        String name = StringUtils.leftPad(Integer.toString(count), 5, '0') + '_'
+            + entry.getFIO().getName();
+        // normalize filenames if necessary
+        if (isNormalize) {
+          name = UtilPrepareParty.normalizeFilename(name);
+        }
+        final String fileName = name;
+        if (isConvertMedia && !entry.getType().getExtension().equals(media)) {
+          futures.add(convertPool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              return convert(entry, fileName);
+            }
+          }));
+        } else {
+          futures.add(copyPool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              if (!stopped && !ExitService.isExiting()) {
+                copy(entry.getFIO(), new File(destDir, fileName));
+              }
+              return fileName;
+            }
+          }));
+        }
+      }
+      writePlaylist(futures);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    } finally {
+      stopped = true;
+      copyPool.shutdownNow();
+      if (convertPool != null) {
+        convertPool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Write the playlist in files order as files get exported.
+   *
+   * @param futures the exports, their result is the exported file name
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws InterruptedException the interrupted exception
+   */
+  private void writePlaylist(List<Future<String>> futures) throws IOException,
+      InterruptedException {
+    final BufferedWriter bw = new BufferedWriter(new FileWriter(new File(destDir,
+        "playlist.m3u")));
+    try {
+      bw.write(Const.PLAYLIST_NOTE);
+      long lastReport = System.currentTimeMillis();
+      int i = 0;
+      while (i < futures.size()) {
+        if (ExitService.isExiting()) {
+          return;
+        }
+        try {
+          String name = futures.get(i).get(PROGRESS_DELAY, TimeUnit.MILLISECONDS);
+          // increase hits for this track/file as it is likely played outside of Jajuk
+          files.get(i).getTrack().incHits();
+          bw.newLine();
+          bw.write(name);
+          i++;
+          exportedFiles.incrementAndGet();
+        } catch (TimeoutException e) {
+          // Still exporting, notify progress and wait again
+        } catch (ExecutionException e) {
+          stopped = true;
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw new IOException(e.getCause());
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastReport >= PROGRESS_DELAY && i < futures.size()) {
+          lastReport = now;
+          Properties properties = new Properties();
+          properties.put(Const.DETAIL_DONE, Integer.toString(exportedFiles.get()));
+          properties.put(Const.DETAIL_TOTAL, Integer.toString(futures.size()));
+          ObservationManager.notify(new JajukEvent(JajukEvents.FILE_COPIED, properties));
+        }
+      }
+      bw.flush();
+    } finally {
+      bw.close();
+    }
+  }
+
+  /**
+   * Convert a file to the target media format, the file is copied in its original format if the
+   * conversion fails.
+   *
+   * @param entry the file
+   * @param name the exported file name, without the target format extension
+   *
+   * @return the exported file name
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private String convert(org.jajuk.base.File entry, String name) throws IOException {
+    if (stopped || ExitService.isExiting()) {
+      return name;
+    }
+    int ret = UtilPrepareParty.convertPACPL(convertCommand, entry.getFIO(), media, destDir, name);
+    if (ret != 0) {
+      convertErrors.incrementAndGet();
+      // do a normal copy of original format if it cannot be converted
+      copy(entry.getFIO(), new File(destDir, name));
+      return name;
+    }
+    // Conversion is done, new filename is <oldname.old_extension.target_extension>
+    return name + "." + media;
+  }
+
+  /**
+   * Copy a file.
+   *
+   * @param file the source file
+   * @param copy the destination file
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static void copy(File file, File copy) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileOutputStream out = new FileOutputStream(copy);
+      try {
+        FileChannel inChannel = in.getChannel();
+        FileChannel outChannel = out.getChannel();
+        long size = inChannel.size();
+        long position = 0;
+        while (position < size) {
+          long count = inChannel.transferTo(position, Math.min(TRANSFER_CHUNK, size - position),
+              outChannel);
+          if (count <= 0) {
+            // The file has been truncated meanwhile
+            break;
+          }
+          position += count;
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+    if (!copy.setLastModified(file.lastModified())) {
+      Log.debug("Cannot set the date of {{" + copy + "}}");
+    }
+  }
+
+  /**
+   * Create a pool of daemon threads.
+   *
+   * @param name the threads name prefix
+   * @param size the number of threads
+   *
+   * @return the pool
+   */
+  private static ExecutorService newPool(final String name, int size) {
+    return Executors.newFixedThreadPool(size, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name + threadNumber.incrementAndGet());
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+}
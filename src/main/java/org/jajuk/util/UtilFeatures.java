@@ -34,6 +34,7 @@ import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
 
+import org.apache.commons.collections.Predicate;
 import org.jajuk.base.Device;
 import org.jajuk.base.Directory;
 import org.jajuk.base.File;
@@ -53,6 +54,7 @@ import org.jajuk.services.players.StackItem;
 import org.jajuk.services.webradio.WebRadio;
 import org.jajuk.ui.widgets.InformationJPanel;
 import org.jajuk.util.error.JajukException;
+import org.jajuk.util.filters.JajukPredicates;
 import org.jajuk.util.log.Log;
 
 /**
@@ -132,6 +134,20 @@ public final class UtilFeatures {
     return alOut;
   }
 
+  /**
+   * Gets the files filter of an ambience.
+   * 
+   * @param ambience ambience
+   * 
+   * @return the filter or null if the ambience doesn't filter anything
+   */
+  public static Predicate getAmbiencePredicate(final Ambience ambience) {
+    if ((ambience == null) || (ambience.getGenres().size() == 0)) {
+      return null;
+    }
+    return new JajukPredicates.AmbiencePredicate(ambience);
+  }
+
   /**
    * Filter a given file list by ambience.
    * 
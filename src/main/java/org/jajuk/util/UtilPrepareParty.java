@@ -22,18 +22,14 @@ package org.jajuk.util;
 
 import ext.ProcessLauncher;
 
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.CharUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.base.FileManager;
@@ -585,60 +581,11 @@ public class UtilPrepareParty {
         UtilGUI.waiting();
         // start time to display elapsed time at the end
         long lRefreshDateStart = System.currentTimeMillis();
-        // start copying and create a playlist on the fly
-        int convert_errors = 0;
-        final java.io.File file = new java.io.File(destDir.getAbsolutePath() + "/playlist.m3u");
+        // copy and convert the files and create a playlist on the fly
+        PartyExporter exporter = new PartyExporter(files, destDir, isNormalize, isConvertMedia,
+            media, convertCommand);
         try {
-          final BufferedWriter bw = new BufferedWriter(new FileWriter(file));
-          try {
-            bw.write(Const.PLAYLIST_NOTE);
-            int count = 0;
-            for (final org.jajuk.base.File entry : files) {
-              // update progress
-              count++;
-              // We can use the actual file name as we do numbering of the files,
-              // this is important for existing playlists to keep the order
-              String name = StringUtils.leftPad(Integer.valueOf(count).toString(), 5, '0') + '_'
-                  + entry.getFIO().getName();
-              // normalize filenames if necessary
-              if (isNormalize) {
-                name = UtilPrepareParty.normalizeFilename(name);
-              }
-              // check if we need to convert the file format
-              if (isConvertMedia && !entry.getType().getExtension().equals(media)) {
-                // Notify that we are converting a file
-                Properties properties = new Properties();
-                properties.put(Const.DETAIL_CONTENT, entry.getName());
-                properties.put(Const.DETAIL_NEW, name + "." + media);
-                ObservationManager.notify(new JajukEvent(JajukEvents.FILE_CONVERSION, properties));
-                int ret = UtilPrepareParty.convertPACPL(convertCommand, entry.getFIO(), media,
-                    destDir, name);
-                if (ret != 0) {
-                  convert_errors++;
-                  // do a normal copy of original format if it cannot be converted
-                  FileUtils.copyFile(entry.getFIO(), new File(destDir, name));
-                } else {
-                  // Conversion is done, new filename is <oldname.old_extension.target_extension>
-                  name = name + "." + media;
-                }
-              } else {
-                // do a normal copy otherwise
-                FileUtils.copyFile(entry.getFIO(), new File(destDir, name));
-              }
-              // increase hits for this track/file as it is likely played outside of Jajuk
-              entry.getTrack().incHits();
-              // write playlist as well
-              bw.newLine();
-              bw.write(name);
-              // Notify that a file has been copied
-              Properties properties = new Properties();
-              properties.put(Const.DETAIL_CONTENT, entry.getName());
-              ObservationManager.notify(new JajukEvent(JajukEvents.FILE_COPIED, properties));
-            }
-            bw.flush();
-          } finally {
-            bw.close();
-          }
+          exporter.export();
           // Send a last event with null properties to inform the
           // client that the party is done
           ObservationManager.notify(new JajukEvent(JajukEvents.FILE_COPIED));
@@ -655,8 +602,8 @@ public class UtilPrepareParty {
               .append(Messages.getString("PreparePartyWizard.23")).append(" ")
               .append(((refreshTime < 1000) ? refreshTime + " ms." : refreshTime / 1000 + " s."));
           // inform user if converting did not work
-          if (convert_errors > 0) {
-            sbOut.append("\n").append(Integer.toString(convert_errors))
+          if (exporter.getConvertErrors() > 0) {
+            sbOut.append("\n").append(Integer.toString(exporter.getConvertErrors()))
                 .append(Messages.getString("PreparePartyWizard.36"));
           }
           String message = sbOut.toString();
@@ -0,0 +1,194 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Last.fm cache pack file tests.
+ */
+public class TestLastFmCacheStore extends TestCase {
+  /** One day in ms. */
+  private static final long DAY = 24L * 3600 * 1000;
+  private File file;
+
+  /* (non-Javadoc)
+   * @see junit.framework.TestCase#setUp()
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("lastfm", ".pack");
+    assertTrue(file.delete());
+  }
+
+  /* (non-Javadoc)
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    new File(file.getPath() + ".tmp").delete();
+    super.tearDown();
+  }
+
+  /**
+   * Test entries survive a reopening and replaced entries are not returned.
+   *
+   * @throws Exception the exception
+   */
+  public void testPutGetReopen() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    assertNull(store.get("a"));
+    store.put("a", bytes(10, 1));
+    store.put("b", bytes(20, 2));
+    store.put("a", bytes(30, 3));
+    assertTrue(Arrays.equals(bytes(30, 3), store.get("a")));
+    store.close();
+    store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    assertEquals(2, store.size());
+    assertTrue(Arrays.equals(bytes(30, 3), store.get("a")));
+    assertTrue(Arrays.equals(bytes(20, 2), store.get("b")));
+    assertFalse(store.contains("c"));
+    store.close();
+  }
+
+  /**
+   * Test least recently used entries are dropped out of the budget.
+   *
+   * @throws Exception the exception
+   */
+  public void testBudget() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 360, DAY);
+    store.put("a", bytes(100, 1));
+    store.put("b", bytes(100, 2));
+    store.put("c", bytes(100, 3));
+    // a is now the most recently used
+    assertTrue(store.contains("a"));
+    store.put("d", bytes(100, 4));
+    assertTrue(store.contains("a"));
+    assertFalse(store.contains("b"));
+    assertTrue(store.contains("c"));
+    assertTrue(store.contains("d"));
+    // Larger than the budget
+    store.put("e", bytes(400, 5));
+    assertFalse(store.contains("e"));
+    store.close();
+  }
+
+  /**
+   * Test expired entries are dropped.
+   *
+   * @throws Exception the exception
+   */
+  public void testTTL() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 1024 * 1024, 100);
+    store.put("a", bytes(10, 1));
+    assertTrue(store.contains("a"));
+    Thread.sleep(200);
+    assertNull(store.get("a"));
+    store.close();
+  }
+
+  /**
+   * Test a truncated last record is dropped.
+   *
+   * @throws Exception the exception
+   */
+  public void testTruncatedRecord() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    store.put("a", bytes(10, 1));
+    store.put("b", bytes(100, 2));
+    long length = store.getFileLength();
+    store.close();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.setLength(length - 50);
+    raf.close();
+    store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    assertEquals(1, store.size());
+    assertTrue(Arrays.equals(bytes(10, 1), store.get("a")));
+    // New records are appended after the valid ones
+    store.put("c", bytes(10, 3));
+    store.close();
+    store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    assertEquals(2, store.size());
+    assertTrue(Arrays.equals(bytes(10, 3), store.get("c")));
+    store.close();
+  }
+
+  /**
+   * Test the pack file is compacted when replaced entries are larger than live ones.
+   *
+   * @throws Exception the exception
+   */
+  public void testCompaction() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 10 * 1024 * 1024, DAY);
+    store.put("keep", bytes(1000, 7));
+    for (int i = 0; i < 50; i++) {
+      store.put("replaced", bytes(100 * 1024, i));
+    }
+    assertTrue(store.getFileLength() < 3 * 1024 * 1024);
+    assertTrue(Arrays.equals(bytes(1000, 7), store.get("keep")));
+    assertTrue(Arrays.equals(bytes(100 * 1024, 49), store.get("replaced")));
+    store.close();
+    store = new LastFmCacheStore(file, 10 * 1024 * 1024, DAY);
+    assertEquals(2, store.size());
+    assertTrue(Arrays.equals(bytes(100 * 1024, 49), store.get("replaced")));
+    store.close();
+  }
+
+  /**
+   * Test clearing truncates the pack file.
+   *
+   * @throws Exception the exception
+   */
+  public void testClear() throws Exception {
+    LastFmCacheStore store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    store.put("a", bytes(10, 1));
+    int generation = store.getGeneration();
+    store.clear();
+    assertEquals(generation + 1, store.getGeneration());
+    assertFalse(store.contains("a"));
+    assertEquals(8, store.getFileLength());
+    store.close();
+    store = new LastFmCacheStore(file, 1024 * 1024, DAY);
+    assertEquals(0, store.size());
+    store.close();
+  }
+
+  /**
+   * Test data.
+   *
+   * @param length data length
+   * @param seed data content
+   *
+   * @return the bytes
+   */
+  private static byte[] bytes(int length, int seed) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) seed);
+    return bytes;
+  }
+}
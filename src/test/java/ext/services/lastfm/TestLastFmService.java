@@ -0,0 +1,138 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * LastFmService requests sharing and spreading tests.
+ */
+public class TestLastFmService extends TestCase {
+  /** Number of lookups performed by the test loaders. */
+  private final AtomicInteger loads = new AtomicInteger(0);
+
+  /**
+   * Test that concurrent identical requests perform a single lookup.
+   *
+   * @throws Exception the exception
+   */
+  public void testGetSharedSingleLookup() throws Exception {
+    final LastFmService service = LastFmService.getInstance();
+    final CountDownLatch release = new CountDownLatch(1);
+    final String key = "test\n" + System.nanoTime();
+    final List<Integer> results = new ArrayList<Integer>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 5; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          Integer result = service.getShared(service.new Request<Integer>(key,
+              newLoader(release)));
+          synchronized (results) {
+            results.add(result);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    // Let all threads reach the in-progress request : one waits for the latch, the others for
+    // its result
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(10);
+      }
+    }
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(5, results.size());
+    for (Integer result : results) {
+      assertEquals(Integer.valueOf(1), result);
+    }
+    // Done requests are no more shared
+    assertEquals(Integer.valueOf(2),
+        service.getShared(service.new Request<Integer>(key, newLoader(release))));
+  }
+
+  /**
+   * Test that an asynchronous request is shared until it is done.
+   *
+   * @throws Exception the exception
+   */
+  public void testSubmitShared() throws Exception {
+    LastFmService service = LastFmService.getInstance();
+    CountDownLatch release = new CountDownLatch(1);
+    String key = "test\n" + System.nanoTime();
+    Future<Integer> first = service.submit(service.new Request<Integer>(key, newLoader(release)));
+    Future<Integer> second = service.submit(service.new Request<Integer>(key, newLoader(release)));
+    assertSame(first, second);
+    release.countDown();
+    assertEquals(Integer.valueOf(1), first.get());
+    assertEquals(1, loads.get());
+    // Done requests are no more shared
+    assertEquals(Integer.valueOf(2),
+        service.getShared(service.new Request<Integer>(key, newLoader(release))));
+  }
+
+  /**
+   * Test requests spreading by host.
+   */
+  public void testRateLimiter() {
+    HostRateLimiter limiter = new HostRateLimiter(100);
+    long start = System.currentTimeMillis();
+    assertEquals(0, limiter.acquire("a"));
+    // Other hosts are not delayed
+    assertEquals(0, limiter.acquire("b"));
+    limiter.acquire("a");
+    limiter.acquireForURL("http://a/path");
+    assertTrue(System.currentTimeMillis() - start >= 190);
+    // Not an URL
+    limiter.acquireForURL("none");
+  }
+
+  /**
+   * New test loader, waiting for the latch and returning the number of lookups performed so
+   * far.
+   *
+   * @param release the latch
+   *
+   * @return the loader
+   */
+  private Callable<Integer> newLoader(final CountDownLatch release) {
+    return new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        release.await();
+        return loads.incrementAndGet();
+      }
+    };
+  }
+}
@@ -857,6 +857,40 @@ public class TestHelpers {
     field.set(obj, value);
   }
 
+  /**
+   * Populate the collection with a synthetic library of the given size, without creating
+   * anything on disk. Used by benchmarks.
+   *
+   * @param nbTracks number of tracks (and files) to create
+   */
+  public static void populateSyntheticCollection(int nbTracks) {
+    Type type = getType();
+    Device device = DeviceManager.getInstance().registerDevice("synthetic_device",
+        Device.Type.DIRECTORY, ConstTest.DEVICES_BASE_PATH + "/synthetic_device");
+    Directory root = DirectoryManager.getInstance().registerDirectory(device);
+    Directory dir = null;
+    Album album = null;
+    Artist artist = null;
+    for (int i = 0; i < nbTracks; i++) {
+      // 12 tracks per album, 5 albums per artist
+      if (i % 12 == 0) {
+        int albumIndex = i / 12;
+        if (albumIndex % 5 == 0) {
+          artist = ArtistManager.getInstance().registerArtist("artist " + (albumIndex / 5));
+        }
+        album = AlbumManager.getInstance().registerAlbum("album " + albumIndex, albumIndex);
+        album.setProperty(Const.XML_ALBUM_DISCOVERED_COVER, Const.COVER_NONE);
+        dir = DirectoryManager.getInstance().registerDirectory("album " + albumIndex, root, device);
+      }
+      Genre genre = GenreManager.getInstance().registerGenre("genre " + (i % 40));
+      Year year = YearManager.getInstance().registerYear(Integer.toString(1950 + i % 60));
+      Track track = TrackManager.getInstance().registerTrack("track " + i, album, genre, artist,
+          120 + i % 300, year, i % 12 + 1, type, 1);
+      track.setComment("comment " + (i % 100));
+      FileManager.getInstance().registerFile("track " + i + ".mp3", dir, track, 4000000 + i, 192);
+    }
+  }
+
   /**
    * Print a dump of all current threads to System.out
    */
@@ -0,0 +1,126 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.jajuk.ConstTest;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Compare collection load time and peak heap between collection.xml and the binary snapshot,
+ * with sequential and parallel items building.
+ * <p>
+ * Not a unit test, run it manually from the test classpath with the number of tracks to
+ * generate as argument (default 100000), for instance :
+ * <code>java -Xmx1g -cp ... org.jajuk.base.CollectionLoadBenchmark 120000</code>
+ * </p>
+ */
+public final class CollectionLoadBenchmark {
+  /** Number of measured loads for each format. */
+  private static final int ROUNDS = 5;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private CollectionLoadBenchmark() {
+    super();
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of tracks to generate
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbTracks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    SessionService.setTestMode(true);
+    SessionService.setWorkspace(new File(ConstTest.SAMPLE_WORKSPACE_PATH).getAbsolutePath());
+    SessionService.getConfFileByPath("").mkdirs();
+    StartupCollectionService.registerItemManagers();
+    TestHelpers.populateSyntheticCollection(nbTracks);
+    Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, Const.TRUE);
+    Collection.commit();
+    File collectionFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    System.out.println("Tracks: " + nbTracks + ", collection.xml: " + collectionFile.length()
+        + " bytes, snapshot: " + CollectionSnapshot.getSnapshotFile().length() + " bytes");
+    // Warm-up all paths
+    for (boolean parallel : new boolean[] { false, true }) {
+      load(collectionFile, false, parallel);
+      load(collectionFile, true, parallel);
+    }
+    for (boolean parallel : new boolean[] { false, true }) {
+      for (boolean snapshot : new boolean[] { false, true }) {
+        long totalTime = 0;
+        long maxPeak = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+          long[] result = load(collectionFile, snapshot, parallel);
+          totalTime += result[0];
+          maxPeak = Math.max(maxPeak, result[1]);
+        }
+        System.out.println((snapshot ? "snapshot" : "xml     ")
+            + (parallel ? " parallel  " : " sequential") + " : " + (totalTime / ROUNDS)
+            + " ms average, peak heap " + (maxPeak / (1024 * 1024)) + " MB");
+      }
+    }
+  }
+
+  /**
+   * Clear the collection and load it again.
+   *
+   * @param collectionFile the collection file
+   * @param snapshot whether the snapshot should be used
+   * @param parallel whether items should be built in parallel
+   *
+   * @return elapsed time in ms and peak heap usage in bytes
+   *
+   * @throws Exception the exception
+   */
+  private static long[] load(File collectionFile, boolean snapshot, boolean parallel)
+      throws Exception {
+    Collection.clearCollection();
+    Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, Boolean.toString(snapshot));
+    Conf.setProperty(Const.CONF_COLLECTION_PARALLEL_LOADING, Boolean.toString(parallel));
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+    long time = System.currentTimeMillis();
+    Collection.load(collectionFile);
+    time = System.currentTimeMillis() - time;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return new long[] { time, peak };
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.ConstTest;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Compare the deep refresh time of a generated music tree with the sequential and the parallel
+ * refresh, then the deep refresh time of the known tree with and without skipping unchanged
+ * files.
+ * <p>
+ * The tree contains artist/album directories of tagged mp3 files (an ID3v2.3 tag followed by
+ * void MPEG frames). Not a unit test, run it manually from the test classpath with the number of
+ * albums and the number of tracks per album as arguments (default 200 and 12), for instance :
+ * <code>java -cp ... org.jajuk.base.DeviceRefreshBenchmark 500 12</code>. Note that the tree
+ * is read from the OS cache after the first refresh : to measure actual I/O latency, give an
+ * existing music directory (a network share for instance) as third argument, it is then
+ * refreshed instead of the generated tree.
+ * </p>
+ */
+public final class DeviceRefreshBenchmark {
+  /** Number of measured refreshes for each mode. */
+  private static final int ROUNDS = 3;
+  /** Albums per artist directory. */
+  private static final int ALBUMS_PER_ARTIST = 5;
+  /** Void MPEG 1 layer III frames in each file. */
+  private static final int FRAMES = 20;
+  /** MPEG 1 layer III, 128 kbps, 44.1 kHz frame size. */
+  private static final int FRAME_SIZE = 417;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private DeviceRefreshBenchmark() {
+    super();
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of albums and number of tracks per album
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbAlbums = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int nbTracks = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+    String url = args.length > 2 ? args[2] : ConstTest.DEVICES_BASE_PATH + "/benchmark_device";
+    SessionService.setTestMode(true);
+    SessionService.setWorkspace(new File(ConstTest.SAMPLE_WORKSPACE_PATH).getAbsolutePath());
+    SessionService.getConfFileByPath("").mkdirs();
+    StartupCollectionService.registerItemManagers();
+    StartupCollectionService.registerTypes();
+    File root = new File(url);
+    if (args.length <= 2) {
+      generateTree(root, nbAlbums, nbTracks);
+    }
+    System.out.println("Albums: " + nbAlbums + ", tracks: " + (nbAlbums * nbTracks));
+    // Warm-up both modes
+    refresh(url, false);
+    refresh(url, true);
+    for (boolean parallel : new boolean[] { false, true }) {
+      long total = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        total += refresh(url, parallel);
+      }
+      System.out.println((parallel ? "parallel   : " : "sequential : ") + (total / ROUNDS)
+          + " ms average, " + FileManager.getInstance().getElementCount() + " files");
+    }
+    // Deep refresh of an already known tree
+    Device device = DeviceManager.getInstance().getDeviceByName("benchmark_device");
+    for (boolean full : new boolean[] { true, false }) {
+      long total = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        long time = System.currentTimeMillis();
+        device.refreshCommand(true, full, false, null);
+        total += System.currentTimeMillis() - time;
+      }
+      System.out.println((full ? "known, full            : " : "known, skip unchanged  : ")
+          + (total / ROUNDS) + " ms average");
+    }
+    if (args.length <= 2) {
+      FileUtils.deleteDirectory(root);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Deep refresh the device from a void collection.
+   *
+   * @param url the device url
+   * @param parallel whether the parallel refresh should be used
+   *
+   * @return elapsed time in ms
+   *
+   * @throws Exception the exception
+   */
+  private static long refresh(String url, boolean parallel) throws Exception {
+    Collection.clearCollection();
+    Conf.setProperty(Const.CONF_REFRESH_PARALLEL, Boolean.toString(parallel));
+    Device device = DeviceManager.getInstance().registerDevice("benchmark_device",
+        Device.Type.DIRECTORY, url);
+    device.mount(false);
+    long time = System.currentTimeMillis();
+    device.refreshCommand(true, false, null);
+    return System.currentTimeMillis() - time;
+  }
+
+  /**
+   * Generate artist/album directories of tagged mp3 files.
+   *
+   * @param root the tree root
+   * @param nbAlbums number of albums
+   * @param nbTracks number of tracks per album
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void generateTree(File root, int nbAlbums, int nbTracks) throws IOException {
+    byte[] frames = new byte[FRAMES * FRAME_SIZE];
+    for (int i = 0; i < FRAMES; i++) {
+      frames[i * FRAME_SIZE] = (byte) 0xFF;
+      frames[i * FRAME_SIZE + 1] = (byte) 0xFB;
+      frames[i * FRAME_SIZE + 2] = (byte) 0x90;
+      frames[i * FRAME_SIZE + 3] = (byte) 0x64;
+    }
+    for (int album = 0; album < nbAlbums; album++) {
+      String artist = "artist " + (album / ALBUMS_PER_ARTIST);
+      File dir = new File(root, artist + "/album " + album);
+      dir.mkdirs();
+      for (int track = 0; track < nbTracks; track++) {
+        OutputStream out = new FileOutputStream(new File(dir, "track " + track + ".mp3"));
+        try {
+          out.write(getTag("track " + track, artist, "album " + album,
+              Integer.toString(track + 1)));
+          out.write(frames);
+        } finally {
+          out.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Build an ID3v2.3 tag.
+   *
+   * @param title the title
+   * @param artist the artist
+   * @param album the album
+   * @param order the track order
+   *
+   * @return the tag bytes
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static byte[] getTag(String title, String artist, String album, String order)
+      throws IOException {
+    ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    writeFrame(frames, "TIT2", title);
+    writeFrame(frames, "TPE1", artist);
+    writeFrame(frames, "TALB", album);
+    writeFrame(frames, "TRCK", order);
+    writeFrame(frames, "TCON", "Rock");
+    writeFrame(frames, "TYER", "2000");
+    int size = frames.size();
+    ByteArrayOutputStream tag = new ByteArrayOutputStream();
+    tag.write(new byte[] { 'I', 'D', '3', 3, 0, 0 });
+    // Synchsafe size
+    tag.write(new byte[] { (byte) ((size >> 21) & 0x7F), (byte) ((size >> 14) & 0x7F),
+        (byte) ((size >> 7) & 0x7F), (byte) (size & 0x7F) });
+    frames.writeTo(tag);
+    return tag.toByteArray();
+  }
+
+  /**
+   * Write an ID3v2.3 ISO-8859-1 text frame.
+   *
+   * @param out the output
+   * @param id the frame id
+   * @param text the text
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeFrame(ByteArrayOutputStream out, String id, String text)
+      throws IOException {
+    byte[] bytes = text.getBytes("ISO-8859-1");
+    int size = bytes.length + 1;
+    out.write(id.getBytes("ISO-8859-1"));
+    out.write(new byte[] { (byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8),
+        (byte) size, 0, 0, 0 });
+    out.write(bytes);
+  }
+}
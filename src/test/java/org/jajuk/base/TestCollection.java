@@ -26,6 +26,7 @@ import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.UtilString;
 import org.jajuk.util.error.JajukException;
@@ -112,6 +113,57 @@ public class TestCollection extends JajukTestCase {
     // tested above
   }
 
+  /**
+   * Parallel loading should build the same collection than the sequential one.
+   *
+   * @throws Exception the exception
+   */
+  public final void testParallelLoad() throws Exception {
+    TestHelpers.populateSyntheticCollection(1500);
+    java.io.File file = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, Const.TRUE);
+    Collection.commit();
+    for (String snapshot : new String[] { Const.FALSE, Const.TRUE }) {
+      Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, snapshot);
+      Conf.setProperty(Const.CONF_COLLECTION_PARALLEL_LOADING, Const.FALSE);
+      Collection.clearCollection();
+      Collection.load(file);
+      String sequential = getCollectionSummary();
+      Conf.setProperty(Const.CONF_COLLECTION_PARALLEL_LOADING, Const.TRUE);
+      Collection.clearCollection();
+      Collection.load(file);
+      assertEquals(sequential, getCollectionSummary());
+      assertEquals(1500, FileManager.getInstance().getElementCount());
+    }
+  }
+
+  /**
+   * Gets a summary of the loaded collection.
+   *
+   * @return items count by manager and a sample of files and tracks properties
+   */
+  private String getCollectionSummary() {
+    StringBuilder sb = new StringBuilder();
+    for (ItemManager manager : new ItemManager[] { DeviceManager.getInstance(),
+        GenreManager.getInstance(), ArtistManager.getInstance(),
+        AlbumArtistManager.getInstance(), AlbumManager.getInstance(),
+        YearManager.getInstance(), TrackManager.getInstance(), DirectoryManager.getInstance(),
+        FileManager.getInstance(), PlaylistManager.getInstance() }) {
+      sb.append(manager.getXMLTag()).append('=').append(manager.getElementCount()).append('\n');
+    }
+    for (File file : FileManager.getInstance().getFiles()) {
+      if (file.getName().endsWith("7.mp3")) {
+        Track track = file.getTrack();
+        sb.append(file.getDirectory().getName()).append('/').append(file.getName())
+            .append(' ').append(track.getName()).append(' ').append(track.getAlbum().getName())
+            .append(' ').append(track.getArtist().getName()).append(' ')
+            .append(track.getGenre().getName()).append(' ').append(track.getYear().getName())
+            .append(' ').append(track.getComment()).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
   /**
    * Test load not exists.
    * 
@@ -0,0 +1,222 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.RandomAccessFile;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Collection journal tests.
+ */
+public class TestCollectionJournal extends JajukTestCase {
+  private java.io.File collectionFile;
+  private File file;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL, Const.TRUE);
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE, "5");
+    collectionFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    Directory dir = TestHelpers.getDirectory();
+    file = TestHelpers.getFile("journal.mp3", dir, true, MockPlayer.class);
+    TestHelpers.getFile("journal2.mp3", dir, true, MockPlayer.class);
+    // First commit is a full one and starts the journal
+    Collection.commit();
+  }
+
+  /**
+   * Reload the collection from disk.
+   *
+   * @throws Exception the exception
+   */
+  private void reload() throws Exception {
+    Collection.clearCollection();
+    Collection.load(collectionFile);
+  }
+
+  /**
+   * Gets a file of the loaded collection.
+   *
+   * @param name the file name
+   *
+   * @return the file or null if it is not in the collection
+   */
+  private File getLoadedFile(String name) {
+    return FileManager.getInstance().getFileByID(
+        FileManager.createID(name, TestHelpers.getDirectory()));
+  }
+
+  /**
+   * Properties changes should be appended to the journal, not to the collection file.
+   *
+   * @throws Exception the exception
+   */
+  public void testPropertiesChangesJournaled() throws Exception {
+    long length = collectionFile.length();
+    long date = collectionFile.lastModified();
+    file.getTrack().setRate(33);
+    file.getTrack().setComment("journaled comment");
+    Collection.commit();
+    assertEquals(length, collectionFile.length());
+    assertEquals(date, collectionFile.lastModified());
+    assertTrue(CollectionJournal.getJournalFile().length() > 24);
+    reload();
+    Track track = getLoadedFile("journal.mp3").getTrack();
+    assertEquals(33, track.getRate());
+    assertEquals("journaled comment", track.getComment());
+  }
+
+  /**
+   * New and removed items should be replayed.
+   *
+   * @throws Exception the exception
+   */
+  public void testItemsRegistrationAndRemoval() throws Exception {
+    reload();
+    File newFile = TestHelpers.getFile("journal3.mp3", TestHelpers.getDirectory(), true,
+        MockPlayer.class);
+    FileManager.getInstance().removeFile(getLoadedFile("journal.mp3"));
+    Collection.commit();
+    reload();
+    assertNull(getLoadedFile("journal.mp3"));
+    File reloaded = getLoadedFile("journal3.mp3");
+    assertNotNull(reloaded);
+    assertEquals(newFile.getTrack().getID(), reloaded.getTrack().getID());
+    assertEquals(2, FileManager.getInstance().getElementCount());
+  }
+
+  /**
+   * Changes should keep being journaled after a reload.
+   *
+   * @throws Exception the exception
+   */
+  public void testJournalAfterReload() throws Exception {
+    file.getTrack().setRate(10);
+    Collection.commit();
+    reload();
+    long length = collectionFile.length();
+    getLoadedFile("journal.mp3").getTrack().setRate(20);
+    Collection.commit();
+    assertEquals(length, collectionFile.length());
+    reload();
+    assertEquals(20, getLoadedFile("journal.mp3").getTrack().getRate());
+  }
+
+  /**
+   * The journal should be folded into the collection file over the threshold.
+   *
+   * @throws Exception the exception
+   */
+  public void testFoldOverThreshold() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE, "0");
+    file.getTrack().setRate(12);
+    Collection.commit();
+    assertEquals(24, CollectionJournal.getJournalFile().length());
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE, "5");
+    reload();
+    assertEquals(12, getLoadedFile("journal.mp3").getTrack().getRate());
+  }
+
+  /**
+   * A partially written record should be ignored.
+   *
+   * @throws Exception the exception
+   */
+  public void testTruncatedJournal() throws Exception {
+    file.getTrack().setRate(5);
+    Collection.commit();
+    file.getTrack().setComment("lost comment");
+    Collection.commit();
+    java.io.File journal = CollectionJournal.getJournalFile();
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+    try {
+      raf.setLength(journal.length() - 3);
+    } finally {
+      raf.close();
+    }
+    reload();
+    Track track = getLoadedFile("journal.mp3").getTrack();
+    assertEquals(5, track.getRate());
+    assertFalse("lost comment".equals(track.getComment()));
+    // Next commit has to rewrite the collection file
+    assertTrue(CollectionJournal.getInstance().isFoldRequired());
+  }
+
+  /**
+   * A journal based on another collection file should be ignored.
+   *
+   * @throws Exception the exception
+   */
+  public void testJournalOfAnotherCollectionIgnored() throws Exception {
+    file.getTrack().setRate(7);
+    Collection.commit();
+    collectionFile.setLastModified(collectionFile.lastModified() - 10000);
+    reload();
+    assertEquals(0, getLoadedFile("journal.mp3").getTrack().getRate());
+  }
+
+  /**
+   * Backups should hold the journaled changes as they are restored without journal.
+   *
+   * @throws Exception the exception
+   */
+  public void testBackupFoldsJournal() throws Exception {
+    Conf.setProperty(Const.CONF_BACKUP_SIZE, "20");
+    file.getTrack().setRate(44);
+    Collection.commit();
+    Collection.backup();
+    assertEquals(24, CollectionJournal.getJournalFile().length());
+    java.io.File backup = null;
+    for (java.io.File candidate : collectionFile.getParentFile().listFiles()) {
+      if (candidate.getName().startsWith("collection-backup-")) {
+        backup = candidate;
+      }
+    }
+    assertNotNull(backup);
+    try {
+      Collection.clearCollection();
+      Collection.load(backup);
+      assertEquals(44, getLoadedFile("journal.mp3").getTrack().getRate());
+    } finally {
+      backup.delete();
+    }
+  }
+
+  /**
+   * No journal should be used when the feature is disabled.
+   *
+   * @throws Exception the exception
+   */
+  public void testJournalDisabled() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL, Const.FALSE);
+    long length = collectionFile.length();
+    file.getTrack().setComment("a longer comment written to the collection file");
+    Collection.commit();
+    assertTrue(collectionFile.length() > length);
+    assertFalse(CollectionJournal.getJournalFile().exists());
+  }
+}
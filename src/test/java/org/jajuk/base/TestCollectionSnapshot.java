@@ -0,0 +1,128 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Binary collection snapshot tests.
+ */
+public class TestCollectionSnapshot extends JajukTestCase {
+  private java.io.File collectionFile;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, Const.TRUE);
+    collectionFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    Directory dir = TestHelpers.getDirectory();
+    File file = TestHelpers.getFile("snapshot.mp3", dir, true, MockPlayer.class);
+    TrackManager.getInstance().changeTrackRate(file.getTrack(), 42);
+    file.getTrack().setComment("a 'quoted' <comment> é");
+    TestHelpers.getFile("snapshot2.mp3", dir, true, MockPlayer.class);
+  }
+
+  /**
+   * Commit should write the snapshot next to the collection file.
+   *
+   * @throws Exception the exception
+   */
+  public void testCommitWritesSnapshot() throws Exception {
+    Collection.commit();
+    assertTrue(collectionFile.exists());
+    assertTrue(CollectionSnapshot.getSnapshotFile().exists());
+    assertTrue(CollectionSnapshot.isUsable(collectionFile));
+  }
+
+  /**
+   * Items loaded from the snapshot should be the same than the committed ones.
+   *
+   * @throws Exception the exception
+   */
+  public void testLoadFromSnapshot() throws Exception {
+    Collection.commit();
+    // Make sure the XML file cannot be the one loaded
+    FileUtils.writeStringToFile(collectionFile, "not xml");
+    collectionFile.setLastModified(CollectionSnapshot.getSnapshotFile().lastModified());
+    Collection.clearCollection();
+    Collection.load(collectionFile);
+    assertEquals(1, DeviceManager.getInstance().getElementCount());
+    assertEquals(2, FileManager.getInstance().getElementCount());
+    assertEquals(2, TrackManager.getInstance().getElementCount());
+    File file = FileManager.getInstance().getFileByID(
+        FileManager.createID("snapshot.mp3", TestHelpers.getDirectory()));
+    assertNotNull(file);
+    assertEquals(42, file.getTrack().getRate());
+    assertEquals("a 'quoted' <comment> é", file.getTrack().getComment());
+    assertEquals("myartist", file.getTrack().getArtist().getName());
+  }
+
+  /**
+   * A snapshot older than the collection file should be ignored.
+   *
+   * @throws Exception the exception
+   */
+  public void testOlderSnapshotIgnored() throws Exception {
+    Collection.commit();
+    java.io.File snapshot = CollectionSnapshot.getSnapshotFile();
+    snapshot.setLastModified(collectionFile.lastModified() - 10000);
+    assertFalse(CollectionSnapshot.isUsable(collectionFile));
+    FileUtils.writeStringToFile(snapshot, "garbage");
+    snapshot.setLastModified(collectionFile.lastModified() - 10000);
+    Collection.clearCollection();
+    Collection.load(collectionFile);
+    assertEquals(2, FileManager.getInstance().getElementCount());
+  }
+
+  /**
+   * A corrupted snapshot should make us fall back to the collection file.
+   *
+   * @throws Exception the exception
+   */
+  public void testCorruptedSnapshotFallback() throws Exception {
+    Collection.commit();
+    java.io.File snapshot = CollectionSnapshot.getSnapshotFile();
+    FileUtils.writeStringToFile(snapshot, "garbage");
+    snapshot.setLastModified(collectionFile.lastModified() + 10000);
+    Collection.clearCollection();
+    Collection.load(collectionFile);
+    assertEquals(2, FileManager.getInstance().getElementCount());
+    assertEquals(2, TrackManager.getInstance().getElementCount());
+  }
+
+  /**
+   * No snapshot should be used when the feature is disabled.
+   *
+   * @throws Exception the exception
+   */
+  public void testSnapshotDisabled() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_SNAPSHOT, Const.FALSE);
+    CollectionSnapshot.getSnapshotFile().delete();
+    Collection.commit();
+    assertFalse(CollectionSnapshot.getSnapshotFile().exists());
+    assertFalse(CollectionSnapshot.isUsable(collectionFile));
+  }
+}
@@ -34,7 +34,9 @@ import org.jajuk.services.players.IPlayerImpl;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.players.StackItem;
 import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
+import org.jajuk.util.UtilSystem;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.log.Log;
 import org.xml.sax.Attributes;
@@ -491,6 +493,139 @@ public class TestDevice extends JajukTestCase {
     assertEquals(1, device.getDirectories().size());
   }
 
+  /**
+   * Create a device with two levels of sub-directories, containing two files and one file.
+   * Void wav files are used as their tags are never corrupted.
+   *
+   * @param name the device name
+   *
+   * @return the device
+   *
+   * @throws Exception the exception
+   */
+  private Device getTreeDevice(String name) throws Exception {
+    StartupCollectionService.registerTypes();
+    Device device = TestHelpers.getDevice(name, Device.Type.DIRECTORY,
+        ConstTest.DEVICES_BASE_PATH + "/" + name);
+    // Void mp3 files are rejected as corrupted or not depending on the log initialization
+    new java.io.File(device.getUrl(), "audio1.mp3").delete();
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 2; j++) {
+        java.io.File dir = new java.io.File(device.getUrl() + "/dir" + i + "/sub" + j);
+        dir.mkdirs();
+        new java.io.File(dir, "track" + j + ".wav").createNewFile();
+        new java.io.File(dir.getParentFile(), "track" + j + ".wav").createNewFile();
+      }
+    }
+    device.mount(false);
+    return device;
+  }
+
+  /**
+   * Parallel refresh should register the same items than the sequential one.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshCommandParallel() throws Exception {
+    Device sequential = getTreeDevice("sequential_device");
+    Device parallel = getTreeDevice("parallel_device");
+    Conf.setProperty(Const.CONF_REFRESH_PARALLEL, Const.FALSE);
+    sequential.refreshCommand(true, false, null);
+    Conf.setProperty(Const.CONF_REFRESH_PARALLEL, Const.TRUE);
+    Conf.setProperty(Const.CONF_REFRESH_WALKER_THREADS, "3");
+    Conf.setProperty(Const.CONF_REFRESH_TAG_READER_THREADS, "3");
+    parallel.refreshCommand(true, false, null);
+    // Two files in each of the 3 directories and one in each of their 6 sub-directories
+    assertEquals(12, sequential.getFilesRecursively().size());
+    assertEquals(12, parallel.getFilesRecursively().size());
+    assertEquals(sequential.getRootDirectory().getDirectoriesRecursively().size(), parallel
+        .getRootDirectory().getDirectoriesRecursively().size());
+    // A new file is found by a fast refresh
+    new java.io.File(parallel.getUrl() + "/dir1/sub1/new.wav").createNewFile();
+    parallel.refreshCommand(false, false, null);
+    assertEquals(13, parallel.getFilesRecursively().size());
+  }
+
+  /**
+   * Deep refresh should only read again tags of changed files, unless full.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshCommandSkipUnchanged() throws Exception {
+    for (boolean parallel : new boolean[] { false, true }) {
+      Conf.setProperty(Const.CONF_REFRESH_PARALLEL, Boolean.toString(parallel));
+      Device device = getTreeDevice("unchanged_device_" + parallel);
+      device.refreshCommand(true, false, null);
+      File file = device.getFilesRecursively().get(0);
+      // Void wav files have a void comment, a tag read resets it
+      file.getTrack().setComment("kept");
+      device.refreshCommand(true, false, null);
+      assertEquals("kept", file.getTrack().getComment());
+      java.io.File fio = file.getFIO();
+      assertTrue(fio.setLastModified(fio.lastModified() - 10000));
+      device.refreshCommand(true, false, null);
+      assertEquals("", file.getTrack().getComment());
+      file.getTrack().setComment("kept");
+      device.refreshCommand(true, true, false, null);
+      assertEquals("", file.getTrack().getComment());
+    }
+  }
+
+  /**
+   * Changes of a watched device should be applied without refresh.
+   *
+   * @throws Exception the exception
+   */
+  public void testWatch() throws Exception {
+    Conf.setProperty(Const.CONF_DEVICES_WATCH, Const.TRUE);
+    try {
+      Device device = getTreeDevice("watched_device");
+      device.refreshCommand(true, false, null);
+      assertEquals(12, device.getFilesRecursively().size());
+      assertTrue(waitFor(device, -1));
+      // A new file and a new directory
+      new java.io.File(device.getUrl() + "/dir0/new.wav").createNewFile();
+      java.io.File newDir = new java.io.File(device.getUrl() + "/dir1/new");
+      newDir.mkdirs();
+      new java.io.File(newDir, "new.wav").createNewFile();
+      assertTrue(waitFor(device, 14));
+      // A removed directory and its 4 files
+      UtilSystem.deleteDir(new java.io.File(device.getUrl() + "/dir2"));
+      assertTrue(waitFor(device, 10));
+      // Changes are kept while the device is refreshing
+      assertTrue(device.startRefreshing());
+      new java.io.File(device.getUrl() + "/dir0/new2.wav").createNewFile();
+      Thread.sleep(4000);
+      assertEquals(10, device.getFilesRecursively().size());
+      device.stopRefreshing();
+      assertTrue(waitFor(device, 11));
+      device.unmount(false, false);
+      assertFalse(device.isWatched());
+    } finally {
+      Conf.setProperty(Const.CONF_DEVICES_WATCH, Const.FALSE);
+    }
+  }
+
+  /**
+   * Wait for the device to be watched or to contain a given number of files.
+   *
+   * @param device the device
+   * @param nbFiles the expected number of files or -1 to wait for the watch to start
+   *
+   * @return whether the expected state has been reached
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private boolean waitFor(Device device, int nbFiles) throws InterruptedException {
+    for (int i = 0; i < 200; i++) {
+      if (nbFiles == -1 ? device.isWatched() : device.getFilesRecursively().size() == nbFiles) {
+        return true;
+      }
+      Thread.sleep(100);
+    }
+    return false;
+  }
+
   /**
    * Test method for {@link org.jajuk.base.Device#setUrl(java.lang.String)}.
    *
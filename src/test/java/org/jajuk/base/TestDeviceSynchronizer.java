@@ -0,0 +1,191 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.ConstTest;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Synchronize a device directory with another one.
+ */
+public class TestDeviceSynchronizer extends JajukTestCase {
+  /** Source device. */
+  private Device source;
+  /** Destination device. */
+  private Device dest;
+  /** Source directory. */
+  private Directory sourceDir;
+  /** Destination directory. */
+  private Directory destDir;
+
+  /* (non-Javadoc)
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    // Registers the mp3 type
+    TestHelpers.getType();
+    source = TestHelpers.getDevice("src", Device.Type.DIRECTORY, ConstTest.DEVICES_BASE_PATH
+        + "/src_device");
+    dest = TestHelpers.getDevice("dest", Device.Type.DIRECTORY, ConstTest.DEVICES_BASE_PATH
+        + "/dest_device");
+    sourceDir = TestHelpers.getDirectory("music", source.getRootDirectory(), source);
+    destDir = TestHelpers.getDirectory("music", dest.getRootDirectory(), dest);
+    Conf.setProperty(Const.CONF_SYNC_CHECKSUM, Const.FALSE);
+  }
+
+  /**
+   * Write a file.
+   *
+   * @param dir the directory
+   * @param name the file name
+   * @param content the content
+   * @param date the modification date
+   *
+   * @return the file
+   *
+   * @throws Exception the exception
+   */
+  private File write(Directory dir, String name, String content, long date) throws Exception {
+    File file = new File(dir.getFio(), name);
+    FileUtils.writeStringToFile(file, content);
+    assertTrue(file.setLastModified(date));
+    return file;
+  }
+
+  /**
+   * Plan the synchronization from source to destination.
+   *
+   * @param sync the synchronizer
+   *
+   * @return the plan
+   *
+   * @throws Exception the exception
+   */
+  private DeviceSynchronizer.Plan plan(DeviceSynchronizer sync) throws Exception {
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      return sync.plan(pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Test copy of new files.
+   *
+   * @throws Exception the exception
+   */
+  public void testNewFiles() throws Exception {
+    long date = System.currentTimeMillis() - 100000;
+    write(sourceDir, "track1.mp3", "track 1", date);
+    write(sourceDir, "cover.jpg", "cover", date);
+    // Unknown types are not synchronized
+    write(sourceDir, "notes.txt", "notes", date);
+    // Same name, other case : already on destination
+    write(sourceDir, "track2.mp3", "track 2", date);
+    write(destDir, "TRACK2.mp3", "track 2", date);
+    DeviceSynchronizer sync = new DeviceSynchronizer(source, dest);
+    DeviceSynchronizer.Plan plan = plan(sync);
+    assertEquals(2, plan.getNewFiles().size());
+    assertEquals(0, plan.getChangedFiles().size());
+    assertEquals(2, sync.getTotalFiles());
+    assertEquals(12, sync.getTotalBytes());
+    sync = new DeviceSynchronizer(source, dest);
+    assertEquals(2, sync.synchronize());
+    assertEquals(12, sync.getCopiedBytes());
+    File copy = new File(destDir.getFio(), "track1.mp3");
+    assertEquals("track 1", FileUtils.readFileToString(copy));
+    assertEquals(date / 1000, copy.lastModified() / 1000);
+    assertTrue(new File(destDir.getFio(), "cover.jpg").exists());
+    assertFalse(new File(destDir.getFio(), "notes.txt").exists());
+    // Nothing left to do
+    assertEquals(0, new DeviceSynchronizer(source, dest).synchronize());
+  }
+
+  /**
+   * Test that newer source files replace their copy and that deleted files are left untouched.
+   *
+   * @throws Exception the exception
+   */
+  public void testChangedAndDeletedFiles() throws Exception {
+    long date = System.currentTimeMillis() - 100000;
+    write(sourceDir, "track1.mp3", "track 1 retagged", date);
+    write(destDir, "track1.mp3", "track 1", date - 10000);
+    // Newer copy : left untouched
+    write(sourceDir, "track2.mp3", "track 2", date - 10000);
+    write(destDir, "track2.mp3", "track 2 retagged", date);
+    write(destDir, "track3.mp3", "track 3", date);
+    DeviceSynchronizer sync = new DeviceSynchronizer(source, dest);
+    DeviceSynchronizer.Plan plan = plan(sync);
+    assertEquals(0, plan.getNewFiles().size());
+    assertEquals(1, plan.getChangedFiles().size());
+    List<File> deleted = plan.getDeletedFiles();
+    assertEquals(1, deleted.size());
+    assertEquals("track3.mp3", deleted.get(0).getName());
+    assertEquals(1, new DeviceSynchronizer(source, dest).synchronize());
+    assertEquals("track 1 retagged",
+        FileUtils.readFileToString(new File(destDir.getFio(), "track1.mp3")));
+    assertEquals("track 2 retagged",
+        FileUtils.readFileToString(new File(destDir.getFio(), "track2.mp3")));
+    assertTrue(new File(destDir.getFio(), "track3.mp3").exists());
+  }
+
+  /**
+   * Test that newer files of same size are only copied if their checksum differs, when required.
+   *
+   * @throws Exception the exception
+   */
+  public void testChecksum() throws Exception {
+    long date = System.currentTimeMillis() - 100000;
+    write(sourceDir, "track1.mp3", "track 1", date);
+    write(destDir, "track1.mp3", "track 1", date - 10000);
+    write(sourceDir, "track2.mp3", "track 2", date);
+    write(destDir, "track2.mp3", "track X", date - 10000);
+    assertEquals(0, plan(new DeviceSynchronizer(source, dest)).getChangedFiles().size());
+    Conf.setProperty(Const.CONF_SYNC_CHECKSUM, Const.TRUE);
+    List<File[]> changed = plan(new DeviceSynchronizer(source, dest)).getChangedFiles();
+    assertEquals(1, changed.size());
+    assertEquals("track2.mp3", changed.get(0)[0].getName());
+  }
+
+  /**
+   * Test that desynchronized directories are ignored.
+   *
+   * @throws Exception the exception
+   */
+  public void testDesynchronizedDirectory() throws Exception {
+    long date = System.currentTimeMillis() - 100000;
+    write(sourceDir, "track1.mp3", "track 1", date);
+    destDir.setProperty(Const.XML_DIRECTORY_SYNCHRONIZED, false);
+    assertEquals(0, plan(new DeviceSynchronizer(source, dest)).getNewFiles().size());
+    assertFalse(new File(destDir.getFio(), "track1.mp3").exists());
+  }
+}
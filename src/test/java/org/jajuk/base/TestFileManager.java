@@ -23,11 +23,16 @@ package org.jajuk.base;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
 import org.jajuk.TestHelpers;
 import org.jajuk.services.bookmark.History;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.error.JajukException;
 import org.junit.Test;
@@ -122,6 +127,142 @@ public class TestFileManager extends JajukTestCase {
     assertEquals(Const.NB_TRACKS_ON_ACTION, files.size());
   }
 
+  /**
+   * Test method for {@link org.jajuk.base.FileManager#refreshBestOfFiles()} : best of files
+   * should follow rate changes and skip banned tracks.
+   */
+  public void testRefreshBestOfFiles() {
+    List<File> files = new ArrayList<File>(40);
+    for (int i = 0; i < 40; i++) {
+      File file = TestHelpers.getFile("bestof" + i, true);
+      TrackManager.getInstance().changeTrackRate(file.getTrack(), i);
+      files.add(file);
+    }
+    FileManager.getInstance().refreshBestOfFiles();
+    List<File> bestof = FileManager.getInstance().getBestOfFiles();
+    assertEquals(Conf.getInt(Const.CONF_BESTOF_TRACKS_SIZE), bestof.size());
+    assertEquals(files.get(39), bestof.get(0));
+    assertEquals(files.get(38), bestof.get(1));
+    // Changed rate and banned track
+    TrackManager.getInstance().changeTrackRate(files.get(0).getTrack(), 100);
+    files.get(39).getTrack().setProperty(Const.XML_TRACK_BANNED, true);
+    FileManager.getInstance().refreshBestOfFiles();
+    bestof = FileManager.getInstance().getBestOfFiles();
+    assertEquals(files.get(0), bestof.get(0));
+    assertEquals(files.get(38), bestof.get(1));
+    assertFalse(bestof.contains(files.get(39)));
+    // Removed track
+    TrackManager.getInstance().removeItem(files.get(0).getTrack());
+    FileManager.getInstance().refreshBestOfFiles();
+    assertEquals(files.get(38), FileManager.getInstance().getBestOfFiles().get(0));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.FileManager#getGlobalBestofPlaylist()}.
+   */
+  public void testGetGlobalBestofPlaylist() {
+    List<File> files = new ArrayList<File>(100);
+    for (int i = 0; i < 100; i++) {
+      File file = TestHelpers.getFile("globalbestof" + i, true);
+      TrackManager.getInstance().changeTrackRate(file.getTrack(), i);
+      files.add(file);
+    }
+    // 5% of the 100 eligible files
+    List<File> bestof = FileManager.getInstance().getGlobalBestofPlaylist();
+    assertEquals(4, bestof.size());
+    for (int i = 96; i < 100; i++) {
+      assertTrue(bestof.contains(files.get(i)));
+    }
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.FileManager#getGlobalShuffleIterator()} : all ready
+   * and unbanned files should be returned once, recently played files last.
+   */
+  public void testGetGlobalShuffleIterator() {
+    Conf.setProperty(Const.CONF_GLOBAL_RANDOM_MODE, Const.MODE_TRACK);
+    // file0 to file149 are recent
+    List<File> files = populateHistory(200);
+    File banned = TestHelpers.getFile("shufflebanned", true);
+    banned.getTrack().setProperty(Const.XML_TRACK_BANNED, true);
+    Set<File> returned = new HashSet<File>();
+    Iterator<File> it = FileManager.getInstance().getGlobalShuffleIterator();
+    for (int i = 0; it.hasNext(); i++) {
+      File file = it.next();
+      assertTrue(returned.add(file));
+      // 50 not recent files first
+      assertEquals(i < 50, files.indexOf(file) < 50);
+    }
+    assertEquals(200, returned.size());
+    assertFalse(returned.contains(banned));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.FileManager#getGlobalShuffleIterator()} in album
+   * modes : files should be grouped by album.
+   */
+  public void testGetGlobalShuffleIteratorAlbums() {
+    Directory dir = TestHelpers.getDirectory();
+    List<File> files = new ArrayList<File>(12);
+    for (int i = 0; i < 3; i++) {
+      Album album = TestHelpers.getAlbum("shufflealbum" + i, 0);
+      for (int j = 0; j < 4; j++) {
+        files.add(TestHelpers.getFile("album" + i + "-file" + j, dir, true, MockPlayer.class,
+            album));
+      }
+    }
+    // Albums in order
+    Conf.setProperty(Const.CONF_GLOBAL_RANDOM_MODE, Const.MODE_ALBUM2);
+    List<File> shuffled = new ArrayList<File>(12);
+    Iterator<File> it = FileManager.getInstance().getGlobalShuffleIterator();
+    while (it.hasNext()) {
+      shuffled.add(it.next());
+    }
+    assertEquals(12, shuffled.size());
+    for (int i = 0; i < 12; i += 4) {
+      int first = files.indexOf(shuffled.get(i));
+      assertEquals(0, first % 4);
+      for (int j = 1; j < 4; j++) {
+        assertEquals(files.get(first + j), shuffled.get(i + j));
+      }
+    }
+    // Shuffled albums
+    Conf.setProperty(Const.CONF_GLOBAL_RANDOM_MODE, Const.MODE_ALBUM);
+    shuffled.clear();
+    it = FileManager.getInstance().getGlobalShuffleIterator();
+    while (it.hasNext()) {
+      shuffled.add(it.next());
+    }
+    assertEquals(12, shuffled.size());
+    for (int i = 0; i < 12; i++) {
+      assertEquals(shuffled.get(i - i % 4).getTrack().getAlbum(), shuffled.get(i).getTrack()
+          .getAlbum());
+    }
+  }
+
+  /**
+   * Test method for
+   * {@link org.jajuk.base.FileManager#getNoveltiesShuffleIterator(org.apache.commons.collections.Predicate)}.
+   */
+  public void testGetNoveltiesShuffleIterator() {
+    Conf.setProperty(Const.CONF_NOVELTIES_MODE, Const.MODE_TRACK);
+    File novelty = TestHelpers.getFile("novelty", true);
+    File old = TestHelpers.getFile("old", true);
+    old.getTrack().setProperty(Const.XML_TRACK_DISCOVERY_DATE, new Date(0));
+    Iterator<File> it = FileManager.getInstance().getNoveltiesShuffleIterator(null);
+    assertEquals(novelty, it.next());
+    assertFalse(it.hasNext());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.FileManager#getShuffleFile()}.
+   */
+  public void testGetShuffleFile() {
+    assertNull(FileManager.getInstance().getShuffleFile());
+    File file = TestHelpers.getFile("shuffle", true);
+    assertEquals(file, FileManager.getInstance().getShuffleFile());
+  }
+
   private List<File> populateHistory(int totalTracksNb) {
     long now = new Date().getTime();
     // create 500 items in collection and add them into history, 
@@ -21,9 +21,13 @@
 package org.jajuk.base;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
+import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.junit.Test;
 
 public class TestTrackManager extends JajukTestCase {
@@ -184,7 +188,32 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testGetAssociatedTracksItemBoolean() {
-    //TODO To be implemented
+    TestHelpers.populateSyntheticCollection(120);
+    Artist artist = ArtistManager.getInstance().getArtistByName("artist 1");
+    List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(artist, true);
+    // 12 tracks per album, 5 albums per artist
+    assertEquals(60, tracks.size());
+    for (int i = 0; i < tracks.size(); i++) {
+      assertEquals(artist, tracks.get(i).getArtist());
+      if (i > 0) {
+        assertTrue(new TrackComparator(TrackComparatorType.ARTIST_ALBUM).compare(
+            tracks.get(i - 1), tracks.get(i)) <= 0);
+      }
+    }
+    Genre genre = GenreManager.getInstance().getGenreByName("genre 3");
+    tracks = TrackManager.getInstance().getAssociatedTracks(genre, false);
+    assertEquals(3, tracks.size());
+    Year year = YearManager.getInstance().registerYear("1955");
+    tracks = TrackManager.getInstance().getAssociatedTracks(year, true);
+    assertEquals(2, tracks.size());
+    // Removing the single file of a track drops it from the caches
+    Track removed = tracks.get(0);
+    int artistTracks = TrackManager.getInstance().getAssociatedTracks(removed.getArtist(), false)
+        .size();
+    FileManager.getInstance().removeFile(removed.getFiles().get(0));
+    assertEquals(1, TrackManager.getInstance().getAssociatedTracks(year, true).size());
+    assertEquals(artistTracks - 1,
+        TrackManager.getInstance().getAssociatedTracks(removed.getArtist(), false).size());
   }
 
   /**
@@ -192,7 +221,19 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testGetAssociatedTracksListOfItemBoolean() {
-    //TODO To be implemented
+    TestHelpers.populateSyntheticCollection(120);
+    List<Item> genres = new ArrayList<Item>();
+    genres.add(GenreManager.getInstance().getGenreByName("genre 1"));
+    genres.add(GenreManager.getInstance().getGenreByName("genre 2"));
+    List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(genres, true);
+    assertEquals(6, tracks.size());
+    for (int i = 1; i < tracks.size(); i++) {
+      assertTrue(new TrackComparator(TrackComparatorType.GENRE_ARTIST_ALBUM).compare(
+          tracks.get(i - 1), tracks.get(i)) <= 0);
+    }
+    // Cleared tracks should not stay in caches
+    TrackManager.getInstance().clear();
+    assertEquals(0, TrackManager.getInstance().getAssociatedTracks(genres, true).size());
   }
 
   /**
@@ -232,7 +273,51 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testSearch() {
-    //TODO To be implemented
+    TestHelpers.populateSyntheticCollection(100);
+    String[] criterias = { "track 1", "TRACK 1", "ack 4", "album 3", "st 2", "ent 9", "k", "2",
+        "195", "track 17.mp3", "synthetic_device", "/", "", "nothing" };
+    for (String criteria : criterias) {
+      assertEquals(criteria, getSearchedFiles(TrackManager.getInstance().searchWithoutIndex(
+          criteria)), getSearchedFiles(TrackManager.getInstance().search(criteria)));
+    }
+    assertEquals(12, TrackManager.getInstance().search("album 3").size());
+  }
+
+  /**
+   * The search index should follow collection changes.
+   */
+  @Test
+  public void testSearchAfterChanges() {
+    TestHelpers.populateSyntheticCollection(24);
+    // Build the index
+    assertEquals(0, TrackManager.getInstance().search("brand new").size());
+    Track track = TrackManager.getInstance().getTracks().get(0);
+    track.setComment("brand new comment");
+    assertEquals(1, TrackManager.getInstance().search("brand new").size());
+    assertEquals(getSearchedFiles(TrackManager.getInstance().searchWithoutIndex("comment")),
+        getSearchedFiles(TrackManager.getInstance().search("comment")));
+    // Removing its single file drops the track
+    FileManager.getInstance().removeFile(track.getFiles().get(0));
+    assertEquals(0, TrackManager.getInstance().search("brand new").size());
+    assertEquals(23, TrackManager.getInstance().search("track").size());
+    TrackManager.getInstance().clear();
+    assertEquals(0, TrackManager.getInstance().search("track").size());
+  }
+
+  /**
+   * Gets the sorted IDs of searched files.
+   *
+   * @param results the search results
+   *
+   * @return the files IDs
+   */
+  private static List<String> getSearchedFiles(List<SearchResult> results) {
+    List<String> out = new ArrayList<String>(results.size());
+    for (SearchResult result : results) {
+      out.add(result.getFile().getID());
+    }
+    Collections.sort(out);
+    return out;
   }
 
   /**
@@ -0,0 +1,100 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.File;
+import java.util.List;
+
+import org.jajuk.ConstTest;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+
+/**
+ * Compare the search box queries time with the search index and with a full tracks scan.
+ * <p>
+ * Not a unit test, run it manually from the test classpath with the number of tracks to
+ * generate as argument (default 100000), for instance :
+ * <code>java -Xmx1g -cp ... org.jajuk.base.TrackSearchBenchmark 120000</code>
+ * </p>
+ */
+public final class TrackSearchBenchmark {
+  /** Number of measured rounds for each query. */
+  private static final int ROUNDS = 20;
+  /** Typed queries, from very selective to matching almost everything. */
+  private static final String[] QUERIES = { "track 4242", "album 1234", "artist 7",
+      "comment 5", "ack 1", "19", "a" };
+
+  /**
+   * Private constructor for utility class.
+   */
+  private TrackSearchBenchmark() {
+    super();
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of tracks to generate
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbTracks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    SessionService.setTestMode(true);
+    SessionService.setWorkspace(new File(ConstTest.SAMPLE_WORKSPACE_PATH).getAbsolutePath());
+    SessionService.getConfFileByPath("").mkdirs();
+    StartupCollectionService.registerItemManagers();
+    TestHelpers.populateSyntheticCollection(nbTracks);
+    TrackManager manager = TrackManager.getInstance();
+    long time = System.currentTimeMillis();
+    manager.search("warm-up");
+    System.out.println("Tracks: " + nbTracks + ", index built in "
+        + (System.currentTimeMillis() - time) + " ms");
+    for (String query : QUERIES) {
+      // Warm-up
+      manager.search(query);
+      manager.searchWithoutIndex(query);
+      long indexed = 0;
+      long scan = 0;
+      int results = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        long start = System.nanoTime();
+        results = manager.search(query).size();
+        indexed += System.nanoTime() - start;
+        start = System.nanoTime();
+        manager.searchWithoutIndex(query);
+        scan += System.nanoTime() - start;
+      }
+      System.out.println("'" + query + "' (" + results + " results) : index "
+          + (indexed / ROUNDS / 1000) + " us, scan " + (scan / ROUNDS / 1000) + " us");
+    }
+    // Incremental maintenance cost : change a few tracks between queries
+    List<Track> tracks = manager.getTracks();
+    long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      tracks.get(i * 100 % nbTracks).setComment("changed " + i);
+      manager.search("changed");
+    }
+    System.out.println("Query after a change : " + ((System.nanoTime() - start) / ROUNDS / 1000)
+        + " us");
+  }
+}
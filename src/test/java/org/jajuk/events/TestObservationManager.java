@@ -20,12 +20,19 @@
  */
 package org.jajuk.events;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
 
 /**
  * .
@@ -205,4 +212,116 @@ public class TestObservationManager extends JajukTestCase {
     ObservationManager.notifySync(new JajukEvent(JajukEvents.ALBUM_CHANGED));
     ObservationManager.unregister(observer);
   }
+
+  /**
+   * Waits until a condition is met, at most 10 secs.
+   *
+   * @param condition the condition
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private static void waitFor(Condition condition) throws InterruptedException {
+    for (int i = 0; i < 1000 && !condition.isMet(); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.isMet());
+  }
+
+  /**
+   * A condition to wait for.
+   */
+  private interface Condition {
+    /**
+     * Checks if the condition is met.
+     *
+     * @return true, if met
+     */
+    boolean isMet();
+  }
+
+  /**
+   * Events of a given subject should be executed in notification order.
+   *
+   * @throws Exception the exception
+   */
+  public void testSubjectOrder() throws Exception {
+    final List<Object> executed = Collections.synchronizedList(new ArrayList<Object>());
+    ObservationManager.register(new Observer() {
+      @Override
+      public void update(JajukEvent event) {
+        executed.add(event.getDetails().get(Const.DETAIL_CONTENT));
+      }
+
+      @Override
+      public Set<JajukEvents> getRegistrationKeys() {
+        return EnumSet.of(JajukEvents.FILE_LAUNCHED);
+      }
+    });
+    long dispatched = ObservationManager.getDispatchedEventsCount();
+    for (int i = 0; i < 50; i++) {
+      Properties details = new Properties();
+      details.put(Const.DETAIL_CONTENT, i);
+      ObservationManager.notify(new JajukEvent(JajukEvents.FILE_LAUNCHED, details));
+    }
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return executed.size() == 50;
+      }
+    });
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i, executed.get(i));
+    }
+    assertTrue(ObservationManager.getDispatchedEventsCount() >= dispatched + 50);
+    assertTrue(ObservationManager.getMaxDispatchLatency() >= ObservationManager
+        .getAverageDispatchLatency());
+  }
+
+  /**
+   * Refresh events equal to a waiting one should be coalesced.
+   *
+   * @throws Exception the exception
+   */
+  public void testCoalescing() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    ObservationManager.register(new Observer() {
+      @Override
+      public void update(JajukEvent event) {
+        called.incrementAndGet();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      @Override
+      public Set<JajukEvents> getRegistrationKeys() {
+        return EnumSet.of(JajukEvents.QUEUE_NEED_REFRESH);
+      }
+    });
+    long coalesced = ObservationManager.getCoalescedEventsCount();
+    ObservationManager.notify(new JajukEvent(JajukEvents.QUEUE_NEED_REFRESH));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    // Executing event blocks, others are waiting and are coalesced
+    for (int i = 0; i < 5; i++) {
+      ObservationManager.notify(new JajukEvent(JajukEvents.QUEUE_NEED_REFRESH));
+    }
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return ObservationManager.queue.isEmpty() && ObservationManager.getQueueDepth() == 1;
+      }
+    });
+    assertEquals(coalesced + 4, ObservationManager.getCoalescedEventsCount());
+    release.countDown();
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return called.get() == 2 && ObservationManager.getQueueDepth() == 0;
+      }
+    });
+  }
 }
@@ -0,0 +1,113 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.covers;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Album;
+import org.jajuk.events.JajukEvent;
+import org.jajuk.events.JajukEvents;
+import org.jajuk.util.Const;
+
+/**
+ * .
+ */
+public class TestImageCache extends JajukTestCase {
+  private ImageCache cache;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  public void specificSetUp() throws Exception {
+    cache = ImageCache.getInstance();
+    cache.clear();
+  }
+
+  /**
+   * Gets the number of strong tier hits so far. Statistics are kept by clear() and the cache is
+   * shared by all the tests.
+   *
+   * @return the number of hits
+   */
+  private long getHits() {
+    Matcher matcher = Pattern.compile("(\\d+) hits").matcher(cache.getStatistics());
+    assertTrue(cache.getStatistics(), matcher.find());
+    return Long.parseLong(matcher.group(1));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.covers.ImageCache#get(java.lang.String)}.
+   */
+  public void testGetAndPut() {
+    long hits = getHits();
+    BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+    assertNull(cache.get("key"));
+    cache.put("key", image);
+    assertSame(image, cache.get("key"));
+    cache.remove("key");
+    assertNull(cache.get("key"));
+    assertEquals(cache.getStatistics(), hits + 1, getHits());
+  }
+
+  /**
+   * Least recently used images over the budget should move to the soft tier and come back when
+   * used.
+   */
+  public void testBudget() {
+    // 32 MB default budget, 4 MB images
+    BufferedImage[] images = new BufferedImage[10];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+      cache.put("key" + i, images[i]);
+    }
+    assertTrue(cache.getStatistics(), cache.getStatistics().contains("8 images (32768 KB"));
+    // Images are still softly referenced
+    for (int i = 0; i < images.length; i++) {
+      assertSame(images[i], cache.get("key" + i));
+    }
+    assertTrue(cache.getStatistics(), cache.getStatistics().contains("8 images (32768 KB"));
+  }
+
+  /**
+   * Thumbs of an album should be evicted when its thumbs are created.
+   */
+  public void testThumbCreated() {
+    Album album = TestHelpers.getAlbum();
+    String key = ImageCache.getThumbKey(album, 100);
+    cache.put(key, new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+    cache.put("other", new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+    Properties details = new Properties();
+    details.put(Const.DETAIL_CONTENT, album);
+    cache.update(new JajukEvent(JajukEvents.THUMB_CREATED, details));
+    assertNull(cache.get(key));
+    assertNotNull(cache.get("other"));
+    cache.update(new JajukEvent(JajukEvents.COVER_NEED_REFRESH));
+    assertNull(cache.get("other"));
+  }
+}
@@ -22,9 +22,16 @@ package org.jajuk.services.lyrics;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.JajukTestCase;
@@ -34,6 +41,8 @@ import org.jajuk.services.lyrics.providers.GenericWebLyricsProvider;
 import org.jajuk.services.lyrics.providers.ILyricsProvider;
 import org.jajuk.services.lyrics.providers.LyricsManiaWebLyricsProvider;
 import org.jajuk.services.lyrics.providers.LyricsWikiaWebLyricsProvider;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
 import org.jajuk.util.DownloadManager;
 import org.jajuk.util.log.Log;
 
@@ -52,6 +61,10 @@ public class TestLyrics extends JajukTestCase {
   /** The Constant TITLE.   */
   private static final String TITLE = "Dissolved Girl";
   private File tmp = null;
+  /** Local lyrics server, see startServer(). */
+  private HttpServer server = null;
+  /** Number of requests received by the local server. */
+  private final AtomicInteger requests = new AtomicInteger(0);
 
   @Override
   public void specificSetUp() throws Exception {
@@ -60,6 +73,92 @@ public class TestLyrics extends JajukTestCase {
     tmp = TestHelpers.getFile("test.tmp", true).getFIO();
   }
 
+  /* (non-Javadoc)
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    if (server != null) {
+      server.stop(0);
+      server = null;
+      LyricsService.loadProviders();
+    }
+    Conf.setProperty(Const.CONF_LYRICS_PARALLEL, Const.TRUE);
+    super.tearDown();
+  }
+
+  /**
+   * Test that parallel web lookups return the first found lyrics without waiting for slower
+   * providers.
+   *
+   * @throws Exception the exception
+   */
+  public void testWebProvidersFirstWins() throws Exception {
+    startServer();
+    useProviders(new LocalWebLyricsProvider("slow"), new LocalWebLyricsProvider("none"),
+        new LocalWebLyricsProvider("fast"));
+    Conf.setProperty(Const.CONF_LYRICS_PARALLEL, Const.TRUE);
+    org.jajuk.base.File file = getUniqueFile();
+    long start = System.currentTimeMillis();
+    assertEquals("fast", LyricsService.getLyrics(file));
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals("fast", ((LocalWebLyricsProvider) LyricsService.getCurrentProvider()).path);
+    // Second lookup is served by the lyrics cache
+    int count = requests.get();
+    assertEquals("fast", LyricsService.getLyrics(file));
+    assertEquals(count, requests.get());
+    assertEquals("fast", ((LocalWebLyricsProvider) LyricsService.getCurrentProvider()).path);
+  }
+
+  /**
+   * Test web lookups in providers order.
+   *
+   * @throws Exception the exception
+   */
+  public void testWebProvidersInOrder() throws Exception {
+    startServer();
+    useProviders(new LocalWebLyricsProvider("none"), new LocalWebLyricsProvider("fast"),
+        new LocalWebLyricsProvider("slow"));
+    Conf.setProperty(Const.CONF_LYRICS_PARALLEL, Const.FALSE);
+    assertEquals("fast", LyricsService.getLyrics(getUniqueFile()));
+    // Slow provider is not queried
+    assertEquals(2, requests.get());
+  }
+
+  /**
+   * Test that a lookup without result is not done again.
+   *
+   * @throws Exception the exception
+   */
+  public void testWebProvidersMissCached() throws Exception {
+    startServer();
+    useProviders(new LocalWebLyricsProvider("none"), new LocalWebLyricsProvider("none"));
+    Conf.setProperty(Const.CONF_LYRICS_PARALLEL, Const.TRUE);
+    org.jajuk.base.File file = getUniqueFile();
+    assertNull(LyricsService.getLyrics(file));
+    assertNull(LyricsService.getCurrentProvider());
+    assertEquals(2, requests.get());
+    assertNull(LyricsService.getLyrics(file));
+    assertEquals(2, requests.get());
+  }
+
+  /**
+   * Test that a lookup failing for a network reason is not recorded as a miss.
+   *
+   * @throws Exception the exception
+   */
+  public void testWebProvidersFailureNotCached() throws Exception {
+    startServer();
+    LocalWebLyricsProvider provider = new LocalWebLyricsProvider("none");
+    useProviders(provider);
+    org.jajuk.base.File file = getUniqueFile();
+    // Nothing listens there
+    server.stop(0);
+    assertNull(LyricsService.getLyrics(file));
+    assertNull(LyricsCache.get(file.getTrack().getArtist().getName2(), file.getTrack()
+        .getName()));
+  }
+
   /**
    * Test AZLyrics provider response to get lyrics.
    */
@@ -160,4 +259,113 @@ public class TestLyrics extends JajukTestCase {
     assertTrue("Lyrics(" + provider.getProviderHostname() + "): " + lyrics,
         lyrics.indexOf(TESTED_WORD) != -1);
   }
+
+  /**
+   * Start a local lyrics server : /fast returns "fast", /slow returns "slow" after 5 seconds
+   * and /none returns a 404 error.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        try {
+          if (path.startsWith("/none")) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+          }
+          if (path.startsWith("/slow")) {
+            Thread.sleep(5000);
+          }
+          byte[] body = path.substring(1, 5).getBytes("UTF-8");
+          exchange.sendResponseHeaders(200, body.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(body);
+          out.close();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  /**
+   * Replace the loaded providers.
+   *
+   * @param providers the providers to use
+   */
+  private void useProviders(ILyricsProvider... providers) {
+    LyricsService.getProviders().clear();
+    for (ILyricsProvider provider : providers) {
+      LyricsService.getProviders().add(provider);
+    }
+  }
+
+  /**
+   * Gets a file whose track has never been looked up, lyrics lookups are cached on disk.
+   *
+   * @return the file
+   */
+  private org.jajuk.base.File getUniqueFile() {
+    return TestHelpers.getFile("lyrics" + System.nanoTime() + ".mp3", true);
+  }
+
+  /**
+   * Provider querying the local lyrics server, the page content are the lyrics.
+   */
+  private class LocalWebLyricsProvider extends GenericWebLyricsProvider {
+    /** Server path, one of fast, slow or none. */
+    private final String path;
+
+    /**
+     * Instantiates a new local web lyrics provider.
+     *
+     * @param path server path, one of fast, slow or none
+     */
+    LocalWebLyricsProvider(String path) {
+      super("http://127.0.0.1:" + server.getAddress().getPort() + "/" + path + "/"
+          + Const.PATTERN_ARTIST + "/" + Const.PATTERN_TRACKNAME);
+      this.path = path;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.services.lyrics.providers.GenericWebLyricsProvider#getLyrics(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getLyrics(String artist, String title) {
+      return callProvider(artist, title);
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.services.lyrics.providers.GenericWebLyricsProvider#getWebURL(java.lang.String, java.lang.String)
+     */
+    @Override
+    public URL getWebURL(String artist, String title) {
+      return getActualURL(artist, title);
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.services.lyrics.providers.ILyricsProvider#getResponseEncoding()
+     */
+    @Override
+    public String getResponseEncoding() {
+      return "UTF-8";
+    }
+
+    /* (non-Javadoc)
+     * @see org.jajuk.services.lyrics.providers.ILyricsProvider#getProviderHostname()
+     */
+    @Override
+    public String getProviderHostname() {
+      return path;
+    }
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.jajuk.ConstTest;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.File;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Compare the track switch latency and cost with and without mplayer processes reuse, using
+ * {@link StubMPlayer} as mplayer.
+ * <p>
+ * Each track is played until its position is known then stopped, like when skipping tracks.
+ * Measured CPU time includes the mplayer processes under Linux only (from /proc/self/stat,
+ * assuming 100 clock ticks per second).
+ * </p>
+ * <p>
+ * Not a unit test, run it manually from the test classpath with the number of tracks to play as
+ * argument (default 50), for instance :
+ * <code>java -cp ... org.jajuk.services.players.MPlayerBenchmark 100</code>
+ * </p>
+ */
+public final class MPlayerBenchmark {
+  /** Number of tracks played before measuring. */
+  private static final int WARM_UP = 3;
+  /** Delay for killed processes to terminate, in ms. */
+  private static final int EXIT_DELAY = 1000;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private MPlayerBenchmark() {
+    super();
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of tracks to play
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbTracks = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+    SessionService.setTestMode(true);
+    SessionService.setWorkspace(new java.io.File(ConstTest.SAMPLE_WORKSPACE_PATH)
+        .getAbsolutePath());
+    SessionService.getConfFileByPath("").mkdirs();
+    StartupCollectionService.registerItemManagers();
+    java.io.File dir = new java.io.File(ConstTest.TECH_TESTS_PATH);
+    dir.mkdirs();
+    java.io.File script = new java.io.File(dir, "stub_mplayer.sh");
+    java.io.File startsLog = new java.io.File(dir, "stub_mplayer.log");
+    StubMPlayer.writeScript(script, startsLog);
+    Conf.setProperty(Const.CONF_MPLAYER_PATH_FORCED, script.getAbsolutePath());
+    Conf.setProperty(Const.CONF_FADE_DURATION, "0");
+    File[] files = new File[nbTracks];
+    for (int i = 0; i < nbTracks; i++) {
+      files[i] = TestHelpers.getFile("file" + i + ".mp3", true);
+    }
+    System.out.println("Tracks: " + nbTracks);
+    for (boolean reuse : new boolean[] { false, true }) {
+      Conf.setProperty(Const.CONF_MPLAYER_REUSE_PROCESS, Boolean.toString(reuse));
+      for (int i = 0; i < WARM_UP; i++) {
+        play(files[i]);
+      }
+      MPlayerEngine.getInstance().shutdown();
+      Thread.sleep(EXIT_DELAY);
+      startsLog.delete();
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      long startedThreads = threads.getTotalStartedThreadCount();
+      long cpu = getCpuTime();
+      long latency = 0;
+      long maxLatency = 0;
+      for (File file : files) {
+        long time = play(file);
+        latency += time;
+        maxLatency = Math.max(maxLatency, time);
+      }
+      MPlayerEngine.getInstance().shutdown();
+      Thread.sleep(EXIT_DELAY);
+      cpu = getCpuTime() - cpu;
+      System.out.println((reuse ? "Reused process" : "Process per track") + " : latency "
+          + (latency / nbTracks / 1000) + " us (max " + (maxLatency / 1000) + " us), CPU "
+          + (cpu / nbTracks / 1000) + " us/track, "
+          + Files.readAllLines(startsLog.toPath(), Charset.defaultCharset()).size()
+          + " mplayer processes, "
+          + (threads.getTotalStartedThreadCount() - startedThreads) + " threads started");
+    }
+    // Stop the observation manager thread
+    System.exit(0);
+  }
+
+  /**
+   * Play a file until its position is known then stop it.
+   *
+   * @param file the file
+   *
+   * @return the time between the play call and the known position, in ns
+   *
+   * @throws Exception the exception
+   */
+  private static long play(File file) throws Exception {
+    long start = System.nanoTime();
+    MPlayerPlayerImpl impl = new MPlayerPlayerImpl();
+    impl.play(file, 0f, Const.TO_THE_END, 1f);
+    long time = System.nanoTime() - start;
+    impl.stop();
+    return time;
+  }
+
+  /**
+   * Gets the CPU time of the JVM and of its terminated child processes.
+   *
+   * @return the CPU time in ns
+   *
+   * @throws Exception the exception
+   */
+  private static long getCpuTime() throws Exception {
+    long cpu = ((com.sun.management.OperatingSystemMXBean) ManagementFactory
+        .getOperatingSystemMXBean()).getProcessCpuTime();
+    java.io.File stat = new java.io.File("/proc/self/stat");
+    if (stat.exists()) {
+      String content = new String(Files.readAllBytes(stat.toPath()), Charset.defaultCharset());
+      // Fields after the command name, which may contain spaces
+      String[] fields = content.substring(content.lastIndexOf(')') + 2).split(" ");
+      // cutime and cstime are fields 16 and 17 of the whole line
+      long ticks = Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+      cpu += ticks * 10000000L;
+    }
+    return cpu;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Minimal mplayer stand-in answering the slave mode commands used by
+ * {@link MPlayerPlayerImpl}, see {@link MPlayerBenchmark}.
+ * <p>
+ * Files whose path contains "short" last <code>SHORT_LENGTH</code> secs, others last
+ * <code>LENGTH</code> secs. Files are not read.
+ * </p>
+ */
+public final class StubMPlayer {
+  /** Duration of the files in secs. */
+  public static final float LENGTH = 235.28f;
+  /** Duration of the short files in secs. */
+  public static final float SHORT_LENGTH = 1f;
+  /** Simulated file opening time in ms. */
+  private static final int OPEN_DELAY = 20;
+  /** Simulated delay of the end of file report of a stopped file, in ms. */
+  private static final int STOP_DELAY = 100;
+  /** Whether the process stays alive between files. */
+  private static boolean idle;
+  /** Current file, null if none. */
+  private static String file;
+  /** Date the current file started at position 0, in ms. */
+  private static long start;
+  /** Date of pause, -1 if not paused. */
+  private static long pauseDate = -1;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private StubMPlayer() {
+    super();
+  }
+
+  /**
+   * Write a shell script launching the stub, to be used as forced mplayer path.
+   *
+   * @param script the script file
+   * @param startsLog file a line is appended to at each start, to count started processes
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws URISyntaxException the URI syntax exception
+   */
+  public static void writeScript(File script, File startsLog) throws IOException,
+      URISyntaxException {
+    String classpath = new File(StubMPlayer.class.getProtectionDomain().getCodeSource()
+        .getLocation().toURI()).getAbsolutePath();
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java";
+    // exec so that killing the script process kills the stub
+    FileUtils.writeStringToFile(script, "#!/bin/sh\n\necho started >> \""
+        + startsLog.getAbsolutePath() + "\"\nexec \"" + java + "\" -cp \"" + classpath + "\" "
+        + StubMPlayer.class.getName() + " \"$@\"\n");
+    script.setExecutable(true);
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args mplayer arguments
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int startPosition = 0;
+    for (int i = 0; i < args.length; i++) {
+      if ("-idle".equals(args[i])) {
+        idle = true;
+      } else if ("-ss".equals(args[i])) {
+        startPosition = Integer.parseInt(args[++i]);
+      }
+    }
+    if (!idle) {
+      load(args[args.length - 1], startPosition);
+    }
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    while (true) {
+      if (in.ready()) {
+        String line = in.readLine();
+        if (line == null || !command(line.trim())) {
+          return;
+        }
+      } else {
+        Thread.sleep(5);
+      }
+      if (file != null && pauseDate < 0 && position() >= length()) {
+        file = null;
+        if (idle) {
+          System.out.println("EOF code: 1  ");
+        } else {
+          System.out.println("Exiting... (End of file)");
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Run a command.
+   *
+   * @param line the command line
+   *
+   * @return false if the process must exit
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private static boolean command(String line) throws InterruptedException {
+    if (line.startsWith("loadfile ")) {
+      String path = line.substring("loadfile ".length());
+      if (path.startsWith("\"")) {
+        path = path.substring(1, path.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+      }
+      load(path, 0);
+    } else if ("quit".equals(line)) {
+      return false;
+    } else if (file == null) {
+      // Idle, other commands are ignored
+      return true;
+    } else if ("get_time_pos".equals(line)) {
+      System.out.println("ANS_TIME_POSITION=" + position());
+    } else if ("get_time_length".equals(line)) {
+      System.out.println("ANS_LENGTH=" + length());
+    } else if (line.startsWith("seek ") && line.endsWith(" 2")) {
+      float position = Float.parseFloat(line.split(" ")[1]);
+      start = System.currentTimeMillis() - (long) (position * 1000);
+    } else if ("pause".equals(line)) {
+      if (pauseDate < 0) {
+        pauseDate = System.currentTimeMillis();
+      } else {
+        start += System.currentTimeMillis() - pauseDate;
+        pauseDate = -1;
+      }
+    } else if ("stop".equals(line)) {
+      file = null;
+      if (idle) {
+        // Late for the next player of the process
+        Thread.sleep(STOP_DELAY);
+        System.out.println("EOF code: 4  ");
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Start playing a file.
+   *
+   * @param path the file path
+   * @param startPosition start position in secs
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private static void load(String path, int startPosition) throws InterruptedException {
+    System.out.println("Playing " + path + ".");
+    Thread.sleep(OPEN_DELAY);
+    file = path;
+    start = System.currentTimeMillis() - startPosition * 1000L;
+    pauseDate = -1;
+    System.out.println("Starting playback...");
+  }
+
+  /**
+   * Gets the current position.
+   *
+   * @return the position in secs
+   */
+  private static float position() {
+    long now = pauseDate < 0 ? System.currentTimeMillis() : pauseDate;
+    return (now - start) / 1000f;
+  }
+
+  /**
+   * Gets the current file duration.
+   *
+   * @return the duration in secs
+   */
+  private static float length() {
+    return file.contains("short") ? SHORT_LENGTH : LENGTH;
+  }
+}
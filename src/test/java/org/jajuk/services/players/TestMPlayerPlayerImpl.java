@@ -0,0 +1,154 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.ConstTest;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.File;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Play files with {@link StubMPlayer} as mplayer.
+ */
+public class TestMPlayerPlayerImpl extends JajukTestCase {
+  /** Stub starts log. */
+  private java.io.File startsLog;
+
+  /* (non-Javadoc)
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    java.io.File script = new java.io.File(ConstTest.TECH_TESTS_PATH, "stub_mplayer.sh");
+    startsLog = new java.io.File(ConstTest.TECH_TESTS_PATH, "stub_mplayer.log");
+    StubMPlayer.writeScript(script, startsLog);
+    Conf.setProperty(Const.CONF_MPLAYER_PATH_FORCED, script.getAbsolutePath());
+    Conf.setProperty(Const.CONF_FADE_DURATION, "0");
+  }
+
+  /* (non-Javadoc)
+   * @see org.jajuk.JajukTestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    MPlayerEngine.getInstance().shutdown();
+    super.tearDown();
+  }
+
+  /**
+   * Gets the number of started mplayer processes.
+   *
+   * @return the number of started mplayer processes
+   *
+   * @throws Exception the exception
+   */
+  private int getStarts() throws Exception {
+    if (!startsLog.exists()) {
+      return 0;
+    }
+    List<?> lines = FileUtils.readLines(startsLog);
+    return lines.size();
+  }
+
+  /**
+   * Test that a stopped process plays the next file.
+   *
+   * @throws Exception the exception
+   */
+  public void testReuseProcess() throws Exception {
+    Conf.setProperty(Const.CONF_MPLAYER_REUSE_PROCESS, Const.TRUE);
+    MPlayerPlayerImpl impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file1.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    long start = System.currentTimeMillis();
+    // The length answer may come after the position one
+    while (impl.getDurationSec() == 0 && System.currentTimeMillis() - start < 2000) {
+      Thread.sleep(50);
+    }
+    assertEquals(120000, impl.getDurationSec());
+    impl.stop();
+    impl = new MPlayerPlayerImpl();
+    File file = TestHelpers.getFile("file2.mp3", true);
+    // Start at the middle of the track
+    impl.play(file, 0.5f, Const.TO_THE_END, 0.5f);
+    assertTrue(Long.toString(impl.getElapsedTimeMillis()), impl.getElapsedTimeMillis() >= 60000);
+    impl.stop();
+    assertEquals(1, getStarts());
+  }
+
+  /**
+   * Test that each file is played by a new process when processes reuse is disabled.
+   *
+   * @throws Exception the exception
+   */
+  public void testNoReuse() throws Exception {
+    Conf.setProperty(Const.CONF_MPLAYER_REUSE_PROCESS, Const.FALSE);
+    MPlayerPlayerImpl impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file1.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    impl.stop();
+    impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file2.mp3", true), 0.5f, Const.TO_THE_END, 0.5f);
+    assertTrue(Long.toString(impl.getElapsedTimeMillis()), impl.getElapsedTimeMillis() >= 60000);
+    impl.stop();
+    assertEquals(2, getStarts());
+  }
+
+  /**
+   * Test that the process is available for the next file once the played file is over.
+   *
+   * @throws Exception the exception
+   */
+  public void testEndOfFile() throws Exception {
+    Conf.setProperty(Const.CONF_MPLAYER_REUSE_PROCESS, Const.TRUE);
+    MPlayerPlayerImpl impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("short.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    long start = System.currentTimeMillis();
+    while (!impl.bEOF && System.currentTimeMillis() - start < 5000) {
+      Thread.sleep(50);
+    }
+    assertTrue(impl.bEOF);
+    impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file1.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    impl.stop();
+    assertEquals(1, getStarts());
+  }
+
+  /**
+   * Test that a paused process is not reused.
+   *
+   * @throws Exception the exception
+   */
+  public void testPausedProcessNotReused() throws Exception {
+    Conf.setProperty(Const.CONF_MPLAYER_REUSE_PROCESS, Const.TRUE);
+    MPlayerPlayerImpl impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file1.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    impl.pause();
+    impl.stop();
+    impl = new MPlayerPlayerImpl();
+    impl.play(TestHelpers.getFile("file2.mp3", true), 0f, Const.TO_THE_END, 0.5f);
+    impl.stop();
+    assertEquals(2, getStarts());
+  }
+}
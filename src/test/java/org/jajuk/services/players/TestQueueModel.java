@@ -594,6 +594,36 @@ public class TestQueueModel extends JajukTestCase {
     QueueModel.computesPlanned(true);
   }
 
+  /**
+   * Test method for {@link org.jajuk.services.players.QueueModel#push(java.util.Iterator)} :
+   * planned tracks are pulled from the source, even without continue mode.
+   *
+   * @throws Exception the exception
+   */
+  public void testPushSource() throws Exception {
+    Conf.setProperty(Const.CONF_STATE_REPEAT, "false");
+    Conf.setProperty(Const.CONF_STATE_REPEAT_ALL, "false");
+    List<File> files = new ArrayList<File>(20);
+    for (int i = 0; i < 20; i++) {
+      files.add(TestHelpers.getFile("source" + i, true));
+    }
+    QueueModel.push(files.iterator());
+    TestHelpers.waitForThreadToFinish("Queue Push Thread");
+    assertEquals(1, QueueModel.getQueueSize());
+    assertEquals(files.get(0), QueueModel.getItem(0).getFile());
+    List<StackItem> planned = QueueModel.getPlanned();
+    assertEquals(Math.min(Conf.getInt(Const.CONF_OPTIONS_VISIBLE_PLANNED), 19), planned.size());
+    assertEquals(files.get(1), planned.get(0).getFile());
+    // planned tracks are played
+    QueueModel.finished(true);
+    assertEquals(2, QueueModel.getQueueSize());
+    assertEquals(files.get(1), QueueModel.getCurrentItem().getFile());
+    // a new selection stops pulling from the source
+    QueueModel.push(new StackItem(files.get(5)), false);
+    TestHelpers.waitForThreadToFinish("Queue Push Thread");
+    assertTrue(QueueModel.getPlanned().isEmpty());
+  }
+
   /**
    * Test method for {@link org.jajuk.services.players.QueueModel#clear()}.
    *
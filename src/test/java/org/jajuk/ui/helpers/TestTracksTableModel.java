@@ -0,0 +1,257 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Item;
+import org.jajuk.base.Track;
+import org.jajuk.base.TrackManager;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.ui.helpers.TracksTableModel}.
+ */
+public class TestTracksTableModel extends JajukTestCase {
+  /** Shown columns. */
+  private List<String> columns;
+
+  /* (non-Javadoc)
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    for (int i = 0; i < 300; i++) {
+      TestHelpers.getFile("track" + i + ".mp3", true);
+    }
+    columns = new ArrayList<String>();
+    columns.add(Const.XML_PLAY);
+    columns.add(Const.XML_NAME);
+    columns.add(Const.XML_TRACK_LENGTH);
+    columns.add(Const.XML_FILES);
+    columns.add(Const.XML_TRACK_HITS);
+  }
+
+  /**
+   * Test populate model.
+   */
+  public void testPopulateModel() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(columns);
+    assertEquals(300, model.getRowCount());
+    for (int row = 0; row < model.getRowCount(); row++) {
+      Track track = (Track) model.getItemAt(row);
+      assertEquals(track.getName(), model.getValueAt(row, 1));
+      assertEquals(track.getFiles().get(0).getAbsolutePath(), model.getValueAt(row, 14));
+      // cached values are reused
+      assertSame(model.getValueAt(row, 7), model.getValueAt(row, 7));
+      assertTrue(model.getValueAt(row, 0) instanceof org.jajuk.ui.widgets.IconLabel);
+    }
+    // Hidden columns are not computed
+    assertEquals("", model.getValueAt(0, 2));
+    assertEquals("", model.getValueAt(0, 12));
+    // Out of bounds rows
+    assertNull(model.getValueAt(300, 1));
+  }
+
+  /**
+   * Test filtering.
+   */
+  public void testFilter() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(columns);
+    model.populateModel(Const.XML_NAME, "track12", columns);
+    // track12.mp3 and track120.mp3 to track129.mp3
+    assertEquals(11, model.getRowCount());
+    for (int row = 0; row < model.getRowCount(); row++) {
+      assertTrue(((String) model.getValueAt(row, 1)).startsWith("track12"));
+    }
+  }
+
+  /**
+   * Test edition and undo.
+   */
+  public void testSetValueAndUndo() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.setEditable(true);
+    model.populateModel(columns);
+    Track track = (Track) model.getItemAt(5);
+    model.setValueAt("edited", 5, 1);
+    assertEquals("edited", model.getValueAt(5, 1));
+    model.undo(5, 1);
+    assertEquals(track.getName(), model.getValueAt(5, 1));
+    // Not editable columns
+    assertFalse(model.isCellEditable(5, 0));
+    assertFalse(model.isCellEditable(5, 7));
+    model.setEditable(false);
+    assertFalse(model.isCellEditable(5, 1));
+  }
+
+  /**
+   * Test clear.
+   */
+  public void testClear() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(columns);
+    model.clear();
+    assertEquals(0, model.getRowCount());
+    assertNull(model.getValueAt(0, 1));
+    TestHelpers.getFile("other.mp3", true);
+    model.populateModel(columns);
+    assertEquals(301, model.getRowCount());
+  }
+
+  /**
+   * Test incremental update of changed tracks.
+   */
+  public void testUpdateItems() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(columns);
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+    // In place update
+    Track track = (Track) model.getItemAt(10);
+    assertEquals(0l, model.getValueAt(10, 13));
+    track.setHits(42l);
+    assertTrue(model.updateItems(Collections.singletonList(track)));
+    assertEquals(1, events.size());
+    assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+    assertEquals(10, events.get(0).getFirstRow());
+    assertEquals(42l, model.getValueAt(10, 13));
+    // Changed files update their track
+    events.clear();
+    assertTrue(model.updateItems(Collections.singletonList(track.getFiles().get(0))));
+    assertEquals(1, events.size());
+    // New track inserted at its sorted position
+    events.clear();
+    Track other = TestHelpers.getFile("other.mp3", true).getTrack();
+    assertTrue(model.updateItems(Collections.singletonList(other)));
+    assertEquals(301, model.getRowCount());
+    assertEquals(1, events.size());
+    assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+    int row = events.get(0).getFirstRow();
+    assertSame(other, model.getItemAt(row));
+    List<Item> rows = new ArrayList<Item>();
+    for (int i = 0; i < model.getRowCount(); i++) {
+      rows.add(model.getItemAt(i));
+    }
+    model.populateModel(columns);
+    for (int i = 0; i < model.getRowCount(); i++) {
+      assertSame(model.getItemAt(i), rows.get(i));
+    }
+  }
+
+  /**
+   * A changed row is not kept in place next to a changed row that moves.
+   */
+  public void testUpdateItemsMovedNeighbours() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(columns);
+    Item previous = model.getItemAt(9);
+    Item moved = model.getItemAt(10);
+    Item next = model.getItemAt(11);
+    // Both move before the first row, next is still sorted after moved
+    moved.setProperty(Const.XML_TRACK_ORDER, 0l);
+    next.setProperty(Const.XML_TRACK_ORDER, 0l);
+    List<Item> changed = new ArrayList<Item>();
+    changed.add(moved);
+    changed.add(next);
+    assertTrue(model.updateItems(changed));
+    assertSame(moved, model.getItemAt(0));
+    assertSame(next, model.getItemAt(1));
+    assertSame(previous, model.getItemAt(11));
+  }
+
+  /**
+   * Changed items are not applied while a populate is running.
+   *
+   * @throws Exception the exception
+   */
+  public void testUpdateItemsDuringPopulate() throws Exception {
+    final CountDownLatch computing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final TracksTableModel model = new TracksTableModel("test") {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected Item[] computeRows(String property, String sPattern) {
+        computing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.computeRows(property, sPattern);
+      }
+    };
+    Thread populate = new Thread() {
+      @Override
+      public void run() {
+        model.populateModel(columns);
+      }
+    };
+    populate.start();
+    computing.await();
+    Track track = TrackManager.getInstance().getTracks().get(5);
+    assertFalse(model.updateItems(Collections.singletonList(track)));
+    release.countDown();
+    populate.join();
+    assertEquals(300, model.getRowCount());
+    assertTrue(model.updateItems(Collections.singletonList(track)));
+  }
+
+  /**
+   * Changed tracks are removed or inserted according to the filter.
+   */
+  public void testUpdateItemsFilter() {
+    TracksTableModel model = new TracksTableModel("test");
+    model.populateModel(Const.XML_TRACK_COMMENT, "foo", columns);
+    assertEquals(0, model.getRowCount());
+    Track track = TrackManager.getInstance().getTracks().get(5);
+    track.setProperty(Const.XML_TRACK_COMMENT, "foo");
+    assertTrue(model.updateItems(Collections.singletonList(track)));
+    assertEquals(1, model.getRowCount());
+    assertSame(track, model.getItemAt(0));
+    track.setProperty(Const.XML_TRACK_COMMENT, "bar");
+    assertTrue(model.updateItems(Collections.singletonList(track)));
+    assertEquals(0, model.getRowCount());
+    // Too many moved rows require a full populate
+    model.populateModel(columns);
+    // Reverse rows order
+    for (int row = 0; row < model.getRowCount(); row++) {
+      model.getItemAt(row).setProperty(Const.XML_TRACK_ORDER, 1000l - row);
+    }
+    assertFalse(model.updateItems(TrackManager.getInstance().getTracks()));
+  }
+}
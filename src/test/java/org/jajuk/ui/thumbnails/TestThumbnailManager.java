@@ -0,0 +1,120 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.thumbnails;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Album;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+
+/**
+ * .
+ */
+public class TestThumbnailManager extends JajukTestCase {
+  private Album album;
+  private File cover;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  public void specificSetUp() throws Exception {
+    album = TestHelpers.getAlbum("thumbs_album", 123);
+    // A large landscape cover
+    cover = new File(SessionService.getConfFileByPath(""), "cover.jpg");
+    ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB), "jpg", cover);
+    album.setProperty(Const.XML_ALBUM_SELECTED_COVER, cover.getAbsolutePath());
+    for (int size = 50; size <= 300; size += 50) {
+      ThumbnailManager.getThumbBySize(album, size).getParentFile().mkdirs();
+    }
+    ThumbnailManager.cleanThumbs(album);
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.thumbnails.ThumbnailManager#refreshThumbnail(Album, int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshThumbnail() throws Exception {
+    assertTrue(ThumbnailManager.refreshThumbnail(album, 100));
+    // All sizes are created at once, keeping the cover ratio
+    for (int size = 50; size <= 300; size += 50) {
+      File thumb = ThumbnailManager.getThumbBySize(album, size);
+      assertTrue(album.isThumbAvailable(size));
+      BufferedImage image = ImageIO.read(thumb);
+      assertEquals(size, image.getWidth());
+      assertEquals((int) (size / (1600d / 1200d)), image.getHeight());
+      // No lock or temporary file left
+      for (File file : thumb.getParentFile().listFiles()) {
+        assertFalse(file.getName(), file.getName().endsWith(".lock")
+            || file.getName().endsWith(".tmp"));
+      }
+    }
+    // Already available
+    assertFalse(ThumbnailManager.refreshThumbnail(album, 200));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.thumbnails.ThumbnailManager#refreshThumbnail(Album, int)}
+   * with several threads asking thumbs of the same album.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshThumbnailConcurrent() throws Exception {
+    Thread[] threads = new Thread[6];
+    final boolean[] results = new boolean[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          results[index] = ThumbnailManager.refreshThumbnail(album, (index + 1) * 50);
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+      assertTrue(results[i]);
+    }
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.thumbnails.ThumbnailManager#createThumbnail(File, File, int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testCreateThumbnail() throws Exception {
+    File thumb = ThumbnailManager.getThumbBySize(album, 150);
+    ThumbnailManager.createThumbnail(cover, thumb, 150);
+    BufferedImage image = ImageIO.read(thumb);
+    assertEquals(150, image.getWidth());
+    assertEquals(112, image.getHeight());
+  }
+}
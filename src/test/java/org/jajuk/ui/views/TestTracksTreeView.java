@@ -25,12 +25,17 @@ import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.JTree;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeSelectionEvent;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 import org.jajuk.JajukTestCase;
@@ -39,10 +44,12 @@ import org.jajuk.base.Album;
 import org.jajuk.base.Artist;
 import org.jajuk.base.Genre;
 import org.jajuk.base.Track;
+import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.jajuk.base.TrackManager;
 import org.jajuk.base.Year;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.ui.actions.ActionManager;
+import org.jajuk.ui.helpers.TreeRootElement;
 import org.jajuk.ui.views.TracksTreeView.TracksMouseAdapter;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
@@ -187,101 +194,207 @@ public class TestTracksTreeView extends JajukTestCase {
   }
 
   /**
-   * Test method for.
+   * Register a track.
+   *
+   * @param name the track name
+   * @param album the album name
+   * @param genre the genre name
+   * @param artist the artist name
+   * @param year the year
    *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByGenre()}.
+   * @return the track
    */
-  public final void testPopulateTreeByGenre() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByGenre();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+  private Track registerTrack(String name, String album, String genre, String artist, int year) {
+    return TrackManager.getInstance().registerTrack(name, TestHelpers.getAlbum(album, 0),
+        TestHelpers.getGenre(genre), TestHelpers.getArtist(artist), 123,
+        TestHelpers.getYear(year), 1, TestHelpers.getType(), 1);
   }
 
   /**
-   * Test method for.
+   * Populate a view without UI with a given order.
+   *
+   * @param order the tree order
    *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByArtist()}.
+   * @return the view
    */
-  public final void testPopulateTreeByArtist() {
+  private TracksTreeView populate(TrackComparatorType order) {
+    Conf.setProperty(Const.CONF_OPTIONS_HIDE_UNMOUNTED, "false");
+    Conf.setProperty(Const.CONF_LOGICAL_TREE_SORT_ORDER, Integer.toString(order.ordinal()));
     TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByArtist();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+    view.top = new TreeRootElement("root");
+    view.populateTree();
+    return view;
   }
 
   /**
-   * Test method for.
+   * Load the children of a node like the tree does when it is expanded.
+   *
+   * @param node the node
    *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByYear()}.
+   * @return the node
    */
-  public final void testPopulateTreeByYear() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByYear();
-    } catch (NullPointerException e) {
-      // reported on headless settings
+  private TracksGroupNode load(TreeNode node) {
+    TracksGroupNode group = (TracksGroupNode) node;
+    assertFalse(group.areChildrenLoaded());
+    for (MutableTreeNode child : group.loadChildren(null)) {
+      group.add(child);
     }
+    return group;
   }
 
   /**
-   * Test method for.
-   *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByAlbum()}.
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by genre.
+   */
+  public final void testPopulateTreeByGenre() {
+    registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track2", "album2", "rock", "artist1", 2000);
+    registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    TracksTreeView view = populate(TrackComparatorType.GENRE_ARTIST_ALBUM);
+    // Only the first level is created
+    assertEquals(2, view.top.getChildCount());
+    assertEquals("jazz", view.top.getChildAt(0).toString());
+    assertEquals("rock", view.top.getChildAt(1).toString());
+    assertFalse(((TracksGroupNode) view.top.getChildAt(1)).areChildrenLoaded());
+    TracksGroupNode rock = load(view.top.getChildAt(1));
+    assertEquals(2, rock.getChildCount());
+    assertEquals("artist1", rock.getChildAt(0).toString());
+    assertEquals("artist2", rock.getChildAt(1).toString());
+    // Albums of the artist in this genre only
+    TracksGroupNode artist1 = load(rock.getChildAt(0));
+    assertEquals(1, artist1.getChildCount());
+    assertEquals("album2", artist1.getChildAt(0).toString());
+    TracksGroupNode album2 = load(artist1.getChildAt(0));
+    assertEquals(1, album2.getChildCount());
+    assertEquals("track2", ((TrackNode) album2.getChildAt(0)).getTrack().getName());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by artist.
+   */
+  public final void testPopulateTreeByArtist() {
+    registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track2", "album2", "rock", "artist1", 2000);
+    registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    TracksTreeView view = populate(TrackComparatorType.ARTIST_ALBUM);
+    assertEquals(2, view.top.getChildCount());
+    assertTrue(view.top.getChildAt(0) instanceof ArtistNode);
+    TracksGroupNode artist1 = load(view.top.getChildAt(0));
+    assertEquals(2, artist1.getChildCount());
+    assertEquals("album2", artist1.getChildAt(0).toString());
+    assertEquals("album3", artist1.getChildAt(1).toString());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by year.
+   */
+  public final void testPopulateTreeByYear() {
+    registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    TracksTreeView view = populate(TrackComparatorType.YEAR_ALBUM);
+    // Most recent first
+    assertEquals(2, view.top.getChildCount());
+    assertEquals(2001, ((YearNode) view.top.getChildAt(0)).getYear().getValue());
+    assertEquals(2000, ((YearNode) view.top.getChildAt(1)).getYear().getValue());
+    TracksGroupNode year = load(view.top.getChildAt(1));
+    assertEquals(1, year.getChildCount());
+    assertEquals("album1", year.getChildAt(0).toString());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by album.
    */
   public final void testPopulateTreeByAlbum() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByAlbum();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+    registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track2", "album1", "rock", "artist1", 2000);
+    registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    TracksTreeView view = populate(TrackComparatorType.ALBUM);
+    assertEquals(2, view.top.getChildCount());
+    TracksGroupNode album = load(view.top.getChildAt(0));
+    assertEquals("album1", album.toString());
+    assertEquals(2, album.getChildCount());
+    assertEquals(2, album.getTracks().size());
   }
 
   /**
-   * Test method for.
-   *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByDiscovery()}.
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by discovery date.
    */
   public final void testPopulateTreeByDiscovery() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByDiscovery();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+    Track track = registerTrack("track1", "album1", "rock", "artist2", 2000);
+    TracksTreeView view = populate(TrackComparatorType.DISCOVERY_ALBUM);
+    // All periods are displayed
+    assertEquals(DiscoveryDateNode.PERIODS_LABELS.length, view.top.getChildCount());
+    int period = DiscoveryDateNode.getPeriod(track);
+    TracksGroupNode node = load(view.top.getChildAt(period));
+    assertEquals(1, node.getChildCount());
+    assertEquals("album1", node.getChildAt(0).toString());
+    assertEquals(1, ((List<?>) node.getUserObject()).size());
   }
 
   /**
-   * Test method for.
-   *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByRate()}.
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by rate.
    */
   public final void testPopulateTreeByRate() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByRate();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+    registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    TracksTreeView view = populate(TrackComparatorType.RATE_ALBUM);
+    assertEquals(2, view.top.getChildCount());
+    assertTrue(view.top.getChildAt(0) instanceof AlbumNode);
   }
 
   /**
-   * Test method for.
-   *
-   * {@link org.jajuk.ui.views.TracksTreeView#populateTreeByHits()}.
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#populateTree()}
+   * by hits, and hits changes.
    */
   public final void testPopulateTreeByHits() {
-    TracksTreeView view = new TracksTreeView();
-    try {
-      view.populateTreeByHits();
-    } catch (NullPointerException e) {
-      // reported on headless settings
-    }
+    Track track1 = registerTrack("track1", "album1", "rock", "artist2", 2000);
+    Track track3 = registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    track1.setHits(1);
+    track3.setHits(5);
+    TracksTreeView view = populate(TrackComparatorType.HITS_ALBUM);
+    // Most played first
+    assertEquals("album3", view.top.getChildAt(0).toString());
+    TreeNode album1 = view.top.getChildAt(1);
+    assertEquals("album1", album1.toString());
+    track1.setHits(10);
+    view.updateTracks(Collections.singleton(track1));
+    // Same node moved
+    assertSame(album1, view.top.getChildAt(0));
+    assertEquals("album3", view.top.getChildAt(1).toString());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.ui.views.TracksTreeView#updateTracks(java.util.Collection)}.
+   */
+  public final void testUpdateTracks() {
+    Track track1 = registerTrack("track1", "album1", "rock", "artist2", 2000);
+    registerTrack("track2", "album2", "rock", "artist1", 2000);
+    TracksTreeView view = populate(TrackComparatorType.GENRE_ARTIST_ALBUM);
+    TracksGroupNode rock = load(view.top.getChildAt(0));
+    TreeNode artist2 = rock.getChildAt(1);
+    // New genre and new artist in a loaded genre
+    Track track3 = registerTrack("track3", "album3", "jazz", "artist1", 2001);
+    Track track4 = registerTrack("track4", "album4", "rock", "artist0", 2001);
+    Set<Track> changed = new HashSet<Track>();
+    changed.add(track3);
+    changed.add(track4);
+    view.updateTracks(changed);
+    assertEquals(2, view.top.getChildCount());
+    assertEquals("jazz", view.top.getChildAt(0).toString());
+    assertSame(rock, view.top.getChildAt(1));
+    assertEquals(3, rock.getChildCount());
+    assertEquals("artist0", rock.getChildAt(0).toString());
+    assertSame(artist2, rock.getChildAt(2));
+    // Removed track
+    TrackManager.getInstance().removeItem(track1);
+    view.updateTracks(Collections.singleton(track1));
+    assertEquals(2, rock.getChildCount());
+    assertEquals("artist1", rock.getChildAt(1).toString());
   }
 
   /**
@@ -462,7 +575,7 @@ public class TestTracksTreeView extends JajukTestCase {
    * 
    */
   public final void testDiscoveryDateNode() {
-    DiscoveryDateNode ad = new DiscoveryDateNode(null);
+    DiscoveryDateNode ad = new DiscoveryDateNode(0);
     assertNotNull(ad);
   }
 
@@ -495,7 +608,7 @@ public class TestTracksTreeView extends JajukTestCase {
         true, true, 1, true));
     assertFalse(icon.equals(ad.getIcon()));
     icon = ad.getIcon();
-    assertNotNull(ad.getTreeCellRendererComponent(new JTree(), new DiscoveryDateNode("str"), true,
+    assertNotNull(ad.getTreeCellRendererComponent(new JTree(), new DiscoveryDateNode(1), true,
         true, true, 1, true));
     assertFalse(icon.equals(ad.getIcon()));
     icon = ad.getIcon();
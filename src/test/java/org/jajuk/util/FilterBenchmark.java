@@ -0,0 +1,178 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang.StringUtils;
+import org.jajuk.ConstTest;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Item;
+import org.jajuk.base.PropertyMetaInformation;
+import org.jajuk.base.Track;
+import org.jajuk.base.TrackManager;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.log.Log;
+
+/**
+ * Compare the table views filtering time with the compiled filter and with the original
+ * algorithm.
+ * <p>
+ * Not a unit test, run it manually from the test classpath with the number of tracks to
+ * generate as argument (default 100000), for instance :
+ * <code>java -Xmx1g -cp ... org.jajuk.util.FilterBenchmark 120000</code>
+ * </p>
+ */
+public final class FilterBenchmark {
+  /** Number of measured rounds for each filter. */
+  private static final int ROUNDS = 10;
+  /** Filters as typed in the table views, from very selective to matching almost everything. */
+  private static final Filter[] FILTERS = { new Filter(null, "track 4242", true, false),
+      new Filter(null, "album 12", true, false), new Filter(null, "a", true, false),
+      new Filter(Const.XML_TRACK_ALBUM, "album 7", true, false),
+      new Filter(Const.XML_NAME, "track 1", false, false),
+      new Filter(null, "track 4242", true, true), new Filter(null, "Album 1.*", true, true) };
+
+  /**
+   * Private constructor for utility class.
+   */
+  private FilterBenchmark() {
+    super();
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of tracks to generate
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbTracks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    SessionService.setTestMode(true);
+    SessionService.setWorkspace(new File(ConstTest.SAMPLE_WORKSPACE_PATH).getAbsolutePath());
+    SessionService.getConfFileByPath("").mkdirs();
+    StartupCollectionService.registerItemManagers();
+    TestHelpers.populateSyntheticCollection(nbTracks);
+    List<Track> tracks = TrackManager.getInstance().getTracks();
+    System.out.println("Tracks: " + nbTracks + ", filtering threads: "
+        + Runtime.getRuntime().availableProcessors());
+    for (Filter filter : FILTERS) {
+      // Warm-up
+      Filter.filterItems(tracks, filter, Track.class);
+      filterItemsWithoutCompiling(tracks, filter);
+      long compiled = 0;
+      long original = 0;
+      int results = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        long start = System.nanoTime();
+        results = Filter.filterItems(tracks, filter, Track.class).size();
+        compiled += System.nanoTime() - start;
+        start = System.nanoTime();
+        filterItemsWithoutCompiling(tracks, filter);
+        original += System.nanoTime() - start;
+      }
+      System.out.println("'" + filter.getValue() + "' on "
+          + (filter.getProperty() == null ? "any" : filter.getProperty())
+          + (filter.isExact() ? " (exact)" : "") + " (" + results + " results) : compiled "
+          + (compiled / ROUNDS / 1000) + " us, original " + (original / ROUNDS / 1000) + " us");
+    }
+  }
+
+  /**
+   * Filter a list without compiling the filter, this is the original algorithm of
+   * <code>Filter.filterItems()</code>. Used as reference by the measures and by TestFilter.
+   *
+   * @param list The input list to filter.
+   * @param filter The filter to apply on the list.
+   *
+   * @return the filtered list
+   */
+  static <T extends Item> List<T> filterItemsWithoutCompiling(List<T> list, Filter filter) {
+    if (filter == null || filter.getValue() == null) {
+      return list;
+    }
+    // Check if property is not the "fake" any property
+    boolean bAny = (filter.getProperty() == null || "any".equals(filter.getProperty()));
+    String comparator = null;
+    String checked = filter.getValue();
+    // If checked is void, return the list as it
+    if (StringUtils.isBlank(checked)) {
+      return list;
+    }
+    // If pattern is wrong, return a void list
+    try {
+      Pattern.compile(checked);
+    } catch (PatternSyntaxException e) {
+      Log.debug("Wrong regexp pattern: " + checked);
+      return Collections.emptyList();
+    }
+    List<T> newList = new ArrayList<T>();
+    Iterator<T> it = list.iterator();
+    while (it.hasNext()) {
+      T item = it.next();
+      // If none property set, the search if global "any"
+      if (bAny) {
+        comparator = item.getAny();
+      } else {
+        if (filter.isHuman()) {
+          comparator = item.getHumanValue(filter.getProperty());
+        } else {
+          comparator = item.getStringValue(filter.getProperty());
+        }
+      }
+      // perform the test
+      boolean bMatch = false;
+      if (filter.isExact()) {
+        // Check every item property (no not use getAny() string will not match
+        // as it is a concatenation of all properties)
+        for (String propertyName : item.getProperties().keySet()) {
+          // Ignore technical/invisible property (id for instance)
+          PropertyMetaInformation meta = item.getMeta(propertyName);
+          if (!meta.isVisible()) {
+            continue;
+          }
+          String value = item.getHumanValue(propertyName);
+          // Escape the string so regexp ignore special characters
+          value = UtilString.escapeString(value);
+          if (value.matches(checked)) {
+            bMatch = true;
+            break;
+          }
+        }
+      } else {
+        // Do not use Regexp matches() method, too costly
+        bMatch = UtilString.matchesIgnoreCaseAndOrder(checked, comparator);
+      }
+      if (bMatch) {
+        newList.add(item);
+      }
+    }
+    return newList;
+  }
+}
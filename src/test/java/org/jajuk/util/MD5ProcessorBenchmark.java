@@ -0,0 +1,154 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compare the IDs hashing throughput of MD5Processor with the former implementation (one shared
+ * synchronized digest, String.getBytes(), BigInteger.toString(36) and String.intern()), with
+ * one thread then with several threads.
+ * <p>
+ * Inputs mimic items IDs sources : a few thousand files paths hashed once and a few hundred
+ * artist names hashed again and again. Not a unit test, run it manually from the test classpath
+ * with the number of threads as argument (default 4), for instance :
+ * <code>java -cp ... org.jajuk.util.MD5ProcessorBenchmark 8</code>
+ * </p>
+ */
+public final class MD5ProcessorBenchmark {
+  /** Number of measured rounds for each implementation. */
+  private static final int ROUNDS = 5;
+  /** Number of hashes per round and per thread. */
+  private static final int HASHES = 500000;
+  /** Former implementation digest. */
+  private static MessageDigest msgDigest;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private MD5ProcessorBenchmark() {
+    super();
+  }
+
+  /**
+   * Former implementation.
+   *
+   * @param sIn input String
+   *
+   * @return hashed output
+   *
+   * @throws Exception the exception
+   */
+  private static synchronized String formerHash(String sIn) throws Exception {
+    msgDigest.update(sIn.getBytes("UTF-8"));
+    return new BigInteger(msgDigest.digest()).abs().toString(36).intern();
+  }
+
+  /**
+   * Hash inputs.
+   *
+   * @param inputs the inputs
+   * @param offset first input
+   * @param former whether the former implementation is used
+   *
+   * @throws Exception the exception
+   */
+  private static void hash(String[] inputs, int offset, boolean former) throws Exception {
+    for (int i = 0; i < HASHES; i++) {
+      String input = inputs[(offset + i) % inputs.length];
+      if (former) {
+        formerHash(input);
+      } else {
+        MD5Processor.hash(input);
+      }
+    }
+  }
+
+  /**
+   * Measure a round.
+   *
+   * @param inputs the inputs
+   * @param nbThreads number of threads
+   * @param former whether the former implementation is used
+   *
+   * @return elapsed time in ms
+   *
+   * @throws Exception the exception
+   */
+  private static long round(final String[] inputs, int nbThreads, final boolean former)
+      throws Exception {
+    final CountDownLatch done = new CountDownLatch(nbThreads);
+    long start = System.currentTimeMillis();
+    for (int t = 0; t < nbThreads; t++) {
+      final int offset = t * 997;
+      new Thread("MD5 benchmark " + t) {
+        @Override
+        public void run() {
+          try {
+            hash(inputs, offset, former);
+          } catch (Exception e) {
+            e.printStackTrace();
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    done.await();
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args number of threads
+   *
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    int nbThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    msgDigest = MessageDigest.getInstance("MD5");
+    String[] inputs = new String[5000];
+    for (int i = 0; i < inputs.length; i++) {
+      if (i % 10 == 0) {
+        inputs[i] = "artist " + (i % 400);
+      } else {
+        inputs[i] = "music/Artist " + (i % 400) + "/Album " + (i % 1300) + "/" + i
+            + " - Track é.mp3";
+      }
+    }
+    for (int threads : new int[] { 1, nbThreads }) {
+      for (boolean former : new boolean[] { true, false }) {
+        // Warm-up
+        round(inputs, threads, former);
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+          total += round(inputs, threads, former);
+        }
+        long ns = total * 1000000 / ROUNDS / HASHES / threads;
+        System.out.println(threads + " thread(s), " + (former ? "former  : " : "current : ")
+            + (total / ROUNDS) + " ms per round, " + ns + " ns per hash");
+      }
+    }
+  }
+}
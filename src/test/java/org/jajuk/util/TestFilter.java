@@ -24,7 +24,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
 import org.jajuk.base.Item;
+import org.jajuk.base.Track;
 
 /**
  * .
@@ -84,4 +86,32 @@ public class TestFilter extends JajukTestCase {
     list = Filter.filterItems(list, filter, Item.class);
     // TODO: more sophisticated testing is missing here
   }
+
+  /**
+   * Test method for
+   * {@link org.jajuk.util.Filter#filterItems(java.util.List, org.jajuk.util.Filter, java.lang.Class)}
+   * on tracks : the compiled filter should match the same items than the original algorithm.
+   */
+  public final void testFilterItemsTracks() {
+    List<Track> tracks = new ArrayList<Track>();
+    tracks.add(TestHelpers.getFile("Hey Jude", true).getTrack());
+    tracks.add(TestHelpers.getFile("Let it be", true).getTrack());
+    tracks.add(TestHelpers.getFile("Jude.law", true).getTrack());
+    Filter[] filters = { new Filter(null, "jude", true, false),
+        new Filter("any", "JUDE hey", true, false),
+        new Filter(Const.XML_NAME, "be let", false, false),
+        new Filter(Const.XML_NAME, "jude", true, false),
+        new Filter(Const.XML_TRACK_ARTIST, "myartist", true, false),
+        new Filter(null, "Hey Jude", true, true), new Filter(null, "Jude.*", true, true),
+        new Filter(null, "nothing", true, false) };
+    int[] expected = { 2, 1, 1, 2, 3, 1, 1, 0 };
+    for (int i = 0; i < filters.length; i++) {
+      List<Track> filtered = Filter.filterItems(tracks, filters[i], Track.class);
+      assertEquals(filters[i].getValue(), expected[i], filtered.size());
+      assertEquals(FilterBenchmark.filterItemsWithoutCompiling(tracks, filters[i]), filtered);
+    }
+    // A changed track should be filtered with its new values
+    tracks.get(1).setProperty(Const.XML_TRACK_COMMENT, "for jude");
+    assertEquals(3, Filter.filterItems(tracks, filters[0], Track.class).size());
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.ThreadTestHelper;
+
+/**
+ * .
+ */
+public class TestMD5Processor extends JajukTestCase {
+  private static final int NUMBER_OF_THREADS = 10;
+  private static final int NUMBER_OF_TESTS = 1000;
+
+  /**
+   * Reference implementation, the IDs format of existing collections.
+   *
+   * @param sIn input String
+   *
+   * @return the hash
+   *
+   * @throws Exception the exception
+   */
+  private static String reference(String sIn) throws Exception {
+    byte[] digest = java.security.MessageDigest.getInstance("MD5").digest(sIn.getBytes("UTF-8"));
+    return new BigInteger(digest).abs().toString(36);
+  }
+
+  /**
+   * Random string mixing ASCII, accented, CJK and supplementary characters, and sometimes an
+   * unpaired surrogate.
+   *
+   * @param random the random
+   *
+   * @return the string
+   */
+  private static String randomString(Random random) {
+    StringBuilder sb = new StringBuilder();
+    int length = random.nextInt(200);
+    for (int i = 0; i < length; i++) {
+      switch (random.nextInt(6)) {
+      case 0:
+        sb.append((char) (0x80 + random.nextInt(0x780)));
+        break;
+      case 1:
+        sb.append((char) (0x800 + random.nextInt(0xd000)));
+        break;
+      case 2:
+        sb.appendCodePoint(0x10000 + random.nextInt(0x10000));
+        break;
+      case 3:
+        sb.append((char) (0xd800 + random.nextInt(0x800)));
+        break;
+      default:
+        sb.append((char) random.nextInt(0x80));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Test method for {@link org.jajuk.util.MD5Processor#hash(java.lang.CharSequence)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testHash() throws Exception {
+    assertEquals(reference(""), MD5Processor.hash(""));
+    assertEquals(reference("sample_device/dir/file.mp3"),
+        MD5Processor.hash(new StringBuilder("sample_device").append("/dir/").append("file.mp3")));
+    assertEquals(reference("Beyoncé 東京 𝄞 \ud800x"),
+        MD5Processor.hash("Beyoncé 東京 𝄞 \ud800x"));
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      String s = randomString(random);
+      assertEquals(s, reference(s), MD5Processor.hash(s));
+    }
+  }
+
+  /**
+   * IDs are compared with '==' so they must be interned.
+   *
+   * @throws Exception the exception
+   */
+  public void testHashInterned() throws Exception {
+    String id = MD5Processor.hash("interned");
+    assertSame(reference("interned").intern(), id);
+    assertSame(id, MD5Processor.hash(new StringBuilder("intern").append("ed")));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.util.MD5Processor#hash(java.lang.CharSequence)} with many
+   * threads.
+   *
+   * @throws Exception the exception
+   */
+  public void testHashMultipleThreads() throws Exception {
+    final String[] inputs = new String[100];
+    final String[] expected = new String[inputs.length];
+    Random random = new Random(7);
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = randomString(random);
+      expected[i] = reference(inputs[i]).intern();
+    }
+    ThreadTestHelper helper = new ThreadTestHelper(NUMBER_OF_THREADS, NUMBER_OF_TESTS);
+    helper.executeTest(new ThreadTestHelper.TestRunnable() {
+      @Override
+      public void doEnd(int threadnum) throws Exception {
+        // do stuff at the end ...
+      }
+
+      @Override
+      public void run(int threadnum, int iter) {
+        int i = (threadnum * 31 + iter) % inputs.length;
+        assertSame(expected[i], MD5Processor.hash(inputs[i]));
+      }
+    });
+  }
+
+  /**
+   * Test private constructor.
+   *
+   * @throws Exception the exception
+   */
+  public void testPrivateConstructor() throws Exception {
+    // For EMMA code-coverage tests
+    TestHelpers.executePrivateConstructor(MD5Processor.class);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.ConstTest;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+
+/**
+ * Export of the Prepare Party files.
+ */
+public class TestPartyExporter extends JajukTestCase {
+  /** Target location. */
+  private File destDir;
+  /** Exported files. */
+  private List<org.jajuk.base.File> files;
+
+  /* (non-Javadoc)
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    destDir = new File(ConstTest.DEVICES_BASE_PATH, "party");
+    assertTrue(destDir.mkdirs());
+    files = new ArrayList<org.jajuk.base.File>();
+    for (int i = 0; i < 20; i++) {
+      org.jajuk.base.File file = TestHelpers.getFile("file" + i + ".mp3", true);
+      FileUtils.writeStringToFile(file.getFIO(), "content" + i);
+      files.add(file);
+    }
+  }
+
+  /**
+   * Check the exported files and the playlist order.
+   *
+   * @param names expected file names without the number prefix
+   *
+   * @throws Exception the exception
+   */
+  private void checkExport(String... names) throws Exception {
+    List<String> lines = FileUtils.readLines(new File(destDir, "playlist.m3u"));
+    assertEquals(Const.PLAYLIST_NOTE, lines.get(0));
+    assertEquals(names.length + 1, lines.size());
+    for (int i = 0; i < names.length; i++) {
+      String name = lines.get(i + 1);
+      assertTrue(name, name.endsWith('_' + names[i]));
+      assertEquals("content" + i, FileUtils.readFileToString(new File(destDir, name)));
+    }
+  }
+
+  /**
+   * Test export.
+   *
+   * @throws Exception the exception
+   */
+  public void testExport() throws Exception {
+    PartyExporter exporter = new PartyExporter(files, destDir, false, false, null, null);
+    exporter.export();
+    assertEquals(20, exporter.getExportedFiles());
+    assertEquals(0, exporter.getConvertErrors());
+    String[] names = new String[20];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = "file" + i + ".mp3";
+    }
+    checkExport(names);
+    assertEquals(1, files.get(0).getTrack().getHits());
+  }
+
+  /**
+   * Files that cannot be converted are copied in their original format.
+   *
+   * @throws Exception the exception
+   */
+  public void testExportConversionFailure() throws Exception {
+    PartyExporter exporter = new PartyExporter(files.subList(0, 3), destDir, false, true, "ogg",
+        "not_existing_pacpl_command");
+    exporter.export();
+    assertEquals(3, exporter.getExportedFiles());
+    assertEquals(3, exporter.getConvertErrors());
+    checkExport("file0.mp3", "file1.mp3", "file2.mp3");
+  }
+
+  /**
+   * Files already in the target format are not converted.
+   *
+   * @throws Exception the exception
+   */
+  public void testExportSameFormat() throws Exception {
+    PartyExporter exporter = new PartyExporter(files.subList(0, 2), destDir, true, true, "mp3",
+        "not_existing_pacpl_command");
+    exporter.export();
+    assertEquals(0, exporter.getConvertErrors());
+    checkExport("file0.mp3", "file1.mp3");
+  }
+
+  /**
+   * A missing file stops the export.
+   *
+   * @throws Exception the exception
+   */
+  public void testExportMissingFile() throws Exception {
+    assertTrue(files.get(5).getFIO().delete());
+    PartyExporter exporter = new PartyExporter(files, destDir, false, false, null, null);
+    try {
+      exporter.export();
+      fail("Missing file should stop the export");
+    } catch (java.io.IOException e) {
+      // expected
+    }
+    assertEquals(5, exporter.getExportedFiles());
+  }
+}